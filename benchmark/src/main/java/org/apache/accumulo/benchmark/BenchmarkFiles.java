@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.crypto.CryptoServiceFactory;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.file.blockfile.impl.CacheProvider;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Creates the synthetic data and RFiles that benchmarks read. Files are written to a temporary
+ * directory on the local file system.
+ */
+final class BenchmarkFiles {
+
+  static final int VALUE_LENGTH = 64;
+
+  private BenchmarkFiles() {}
+
+  static FileSystem getLocalFs() throws IOException {
+    return FileSystem.getLocal(new Configuration());
+  }
+
+  /**
+   * @return the row for a number, zero padded to the given length so rows sort numerically
+   */
+  static String row(int num, int length) {
+    String digits = Integer.toString(num);
+    StringBuilder sb = new StringBuilder(Math.max(length, digits.length()));
+    for (int i = digits.length(); i < length; i++) {
+      sb.append('0');
+    }
+    return sb.append(digits).toString();
+  }
+
+  static Key key(int num, int rowLength) {
+    return new Key(row(num, rowLength), "cf", "cq" + (num % 4), "", 1L);
+  }
+
+  /**
+   * @return a value that is partly repetitive, so it compresses about as well as typical data
+   */
+  static Value value(int num) {
+    StringBuilder sb = new StringBuilder(VALUE_LENGTH);
+    sb.append("{\"id\":").append(num).append(",\"status\":\"")
+        .append(num % 5 == 0 ? "degraded" : "nominal").append("\",\"reading\":")
+        .append(num * 7919 % 1000);
+    while (sb.length() < VALUE_LENGTH) {
+      sb.append(' ');
+    }
+    sb.setLength(VALUE_LENGTH);
+    return new Value(sb.toString().getBytes(UTF_8));
+  }
+
+  /**
+   * Writes the rows of a range of numbers that belong to one of a set of files. Row numbers are
+   * spread over the files round robin, so a scan of all the files merges entries from every file.
+   *
+   * @return the total size of the keys and values written
+   */
+  static long write(Path file, AccumuloConfiguration tableConf, int numRows, int rowLength,
+      int fileIndex, int numFiles) throws IOException {
+    FileSystem fs = getLocalFs();
+    FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder()
+        .forFile(file.toString(), fs, fs.getConf(), CryptoServiceFactory.newDefaultInstance())
+        .withTableConfiguration(tableConf).build();
+    long size = 0;
+    try {
+      writer.startDefaultLocalityGroup();
+      for (int i = fileIndex; i < numRows; i += numFiles) {
+        Key k = key(i, rowLength);
+        Value v = value(i);
+        writer.append(k, v);
+        size += k.getSize() + v.getSize();
+      }
+    } finally {
+      writer.close();
+    }
+    return size;
+  }
+
+  static FileSKVIterator open(Path file, AccumuloConfiguration tableConf,
+      CacheProvider cacheProvider) throws IOException {
+    FileSystem fs = getLocalFs();
+    return FileOperations.getInstance().newReaderBuilder()
+        .forFile(file.toString(), fs, fs.getConf(), CryptoServiceFactory.newDefaultInstance())
+        .withTableConfiguration(tableConf).withCacheProvider(cacheProvider).build();
+  }
+
+  static Path createTempDir() throws IOException {
+    return Files.createTempDirectory("accumulo-benchmark");
+  }
+
+  static void deleteDir(Path dir) throws IOException {
+    if (dir == null) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.HeapIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the two ways {@link HeapIterator} merges its sources, a priority queue and a tournament
+ * tree of losers, over sources backed by arrays so the merge dominates the time. Runs of
+ * consecutive entries come from the same source, which both take a fast path for. HeapIteratorTest
+ * counts the comparisons of the same merges, which do not vary between runs the way the timings do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class HeapMergeBenchmark {
+
+  private static final int NUM_ROWS = 200_000;
+  private static final int ROW_LENGTH = 16;
+
+  @Param({"2", "4", "8", "12", "16", "32", "64"})
+  public int sourceCount;
+
+  // the number of consecutive rows in each source, or zero to put each row in a random source, the
+  // way the rows of a tablet are spread over its files
+  @Param({"0", "1", "16"})
+  public int runLength;
+
+  @Param({"heap", "loserTree"})
+  public String merge;
+
+  private Merge merged;
+
+  @Setup
+  public void setup() {
+    List<List<Key>> keys = new ArrayList<>();
+    for (int i = 0; i < sourceCount; i++) {
+      keys.add(new ArrayList<>());
+    }
+    Random random = new Random(42);
+    for (int row = 0; row < NUM_ROWS; row++) {
+      int source = runLength == 0 ? random.nextInt(sourceCount) : (row / runLength) % sourceCount;
+      keys.get(source).add(BenchmarkFiles.key(row, ROW_LENGTH));
+    }
+
+    List<SortedKeyValueIterator<Key,Value>> sources = new ArrayList<>();
+    for (List<Key> sourceKeys : keys) {
+      sources.add(new ArraySource(sourceKeys.toArray(new Key[0]), BenchmarkFiles.value(0)));
+    }
+    merged = new Merge(sources, merge.equals("loserTree"));
+  }
+
+  /**
+   * Reads every entry of the sources in order, reported as the time per entry.
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public void scan(Blackhole bh) throws IOException {
+    merged.seek(new Range(), Collections.emptySet(), false);
+    while (merged.hasTop()) {
+      bh.consume(merged.getTopKey());
+      bh.consume(merged.getTopValue());
+      merged.next();
+    }
+  }
+
+  /**
+   * Reads sorted keys from an array, so that moving to the next key costs little next to the merge.
+   * The range is ignored and every seek starts from the first key.
+   */
+  private static class ArraySource implements SortedKeyValueIterator<Key,Value> {
+
+    private final Key[] keys;
+    private final Value value;
+    private int pos;
+
+    ArraySource(Key[] keys, Value value) {
+      this.keys = keys;
+      this.value = value;
+      this.pos = keys.length;
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasTop() {
+      return pos < keys.length;
+    }
+
+    @Override
+    public void next() {
+      pos++;
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+      pos = 0;
+    }
+
+    @Override
+    public Key getTopKey() {
+      return keys[pos];
+    }
+
+    @Override
+    public Value getTopValue() {
+      return value;
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Merges its sources the way it is told to, instead of choosing by the number of sources.
+   */
+  private static class Merge extends HeapIterator {
+
+    private final List<SortedKeyValueIterator<Key,Value>> sources;
+
+    Merge(List<SortedKeyValueIterator<Key,Value>> sources, boolean loserTree) {
+      this.sources = sources;
+      createHeap(sources.size(), loserTree);
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
+        throws IOException {
+      clear();
+      for (SortedKeyValueIterator<Key,Value> source : sources) {
+        source.seek(range, columnFamilies, inclusive);
+        addSource(source);
+      }
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.file.rfile.RelativeKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares keys and encodes and decodes them relative to the previous key, as RFile data blocks do.
+ * Consecutive keys share a row prefix that grows with the row length, so comparisons of longer rows
+ * scan further before finding a difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class KeyBenchmark {
+
+  private static final int NUM_KEYS = 1024;
+
+  @Param({"16", "64", "256"})
+  public int rowLength;
+
+  private Key[] keys;
+  private byte[] encoded;
+  private ByteArrayOutputStream encodeBuffer;
+
+  @Setup
+  public void setup() throws IOException {
+    keys = new Key[NUM_KEYS];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      keys[i] = BenchmarkFiles.key(i, rowLength);
+    }
+    encodeBuffer = new ByteArrayOutputStream();
+    encode();
+    encoded = encodeBuffer.toByteArray();
+  }
+
+  private void encode() throws IOException {
+    encodeBuffer.reset();
+    DataOutputStream out = new DataOutputStream(encodeBuffer);
+    Key prev = null;
+    for (Key key : keys) {
+      new RelativeKey(prev, key).write(out);
+      prev = key;
+    }
+    out.flush();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS - 1)
+  public int compareTo() {
+    int sum = 0;
+    for (int i = 1; i < NUM_KEYS; i++) {
+      sum += keys[i - 1].compareTo(keys[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS)
+  public int encodeRelative() throws IOException {
+    encode();
+    return encodeBuffer.size();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS)
+  public void decodeRelative(Blackhole bh) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+    RelativeKey rk = new RelativeKey();
+    for (int i = 0; i < NUM_KEYS; i++) {
+      rk.readFields(in);
+      bh.consume(rk.getKey());
+    }
+  }
+}
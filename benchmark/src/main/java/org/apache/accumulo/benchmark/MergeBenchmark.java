@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.file.blockfile.impl.BasicCacheProvider;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.MultiIterator;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Merges the entries of several RFiles with the heap based {@link MultiIterator}, as a tablet
+ * merges its files. Rows are spread over the files round robin, so consecutive entries come from
+ * different files. The files are uncompressed and fully cached, so the merge dominates the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MergeBenchmark {
+
+  private static final int NUM_ROWS = 200_000;
+  private static final int ROW_LENGTH = 16;
+  private static final int ENTRIES_PER_SEEK = 10;
+
+  @Param({"1", "4", "16"})
+  public int fileCount;
+
+  private Path dir;
+  private BlockCacheManager cacheManager;
+  private List<FileSKVIterator> readers;
+  private MultiIterator merged;
+  private int[] seekRows;
+  private int nextSeek = 0;
+
+  @Setup
+  public void setup() throws Exception {
+    ConfigurationCopy tableConf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    tableConf.set(Property.TABLE_FILE_COMPRESSION_TYPE, "none");
+
+    dir = BenchmarkFiles.createTempDir();
+    List<Path> files = new ArrayList<>();
+    long dataSize = 0;
+    for (int i = 0; i < fileCount; i++) {
+      Path file = dir.resolve("bench" + i + ".rf");
+      dataSize += BenchmarkFiles.write(file, tableConf, NUM_ROWS, ROW_LENGTH, i, fileCount);
+      files.add(file);
+    }
+
+    ConfigurationCopy cacheConf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cacheConf.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    cacheConf.set(Property.TSERV_DATACACHE_SIZE, Long.toString(2 * dataSize));
+    cacheManager = BlockCacheManagerFactory.getInstance(cacheConf);
+    cacheManager.start(new BlockCacheConfiguration(cacheConf));
+    BasicCacheProvider cacheProvider = new BasicCacheProvider(
+        cacheManager.getBlockCache(CacheType.INDEX), cacheManager.getBlockCache(CacheType.DATA));
+
+    readers = new ArrayList<>();
+    List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<>();
+    for (Path file : files) {
+      FileSKVIterator reader = BenchmarkFiles.open(file, tableConf, cacheProvider);
+      readers.add(reader);
+      iters.add(reader);
+    }
+    merged = new MultiIterator(iters, false);
+
+    Random random = new Random(42);
+    seekRows = new int[4096];
+    for (int i = 0; i < seekRows.length; i++) {
+      seekRows[i] = random.nextInt(NUM_ROWS);
+    }
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+    if (readers != null) {
+      for (FileSKVIterator reader : readers) {
+        reader.close();
+      }
+    }
+    if (cacheManager != null) {
+      cacheManager.stop();
+    }
+    BenchmarkFiles.deleteDir(dir);
+  }
+
+  /**
+   * Reads every entry of the files in order, reported as the time per entry.
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public void scan(Blackhole bh) throws IOException {
+    merged.seek(new Range(), Collections.emptySet(), false);
+    while (merged.hasTop()) {
+      bh.consume(merged.getTopKey());
+      bh.consume(merged.getTopValue());
+      merged.next();
+    }
+  }
+
+  /**
+   * Seeks every file to a random row and reads a few merged entries from there.
+   */
+  @Benchmark
+  public void seek(Blackhole bh) throws IOException {
+    int row = seekRows[nextSeek++ & (seekRows.length - 1)];
+    merged.seek(new Range(BenchmarkFiles.key(row, ROW_LENGTH), null), Collections.emptySet(),
+        false);
+    for (int i = 0; i < ENTRIES_PER_SEEK && merged.hasTop(); i++) {
+      bh.consume(merged.getTopKey());
+      bh.consume(merged.getTopValue());
+      merged.next();
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.file.blockfile.impl.BasicCacheProvider;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Seeks and scans an RFile on local disk. The data cache is sized to hold about the given fraction
+ * of the file's data blocks, so random seeks find their block in the cache about that often. With a
+ * ratio of 0 there is no data cache and every block is read from the file and decompressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RFileBenchmark {
+
+  static final int NUM_ROWS = 200_000;
+  private static final int ENTRIES_PER_SEEK = 10;
+
+  @Param({"none", "gz"})
+  public String codec;
+
+  @Param({"16K", "100K"})
+  public String blockSize;
+
+  @Param({"16", "128"})
+  public int rowLength;
+
+  @Param({"0.0", "0.5", "1.0"})
+  public double cacheHitRatio;
+
+  private Path dir;
+  private BlockCacheManager cacheManager;
+  private FileSKVIterator reader;
+  private int[] seekRows;
+  private int nextSeek = 0;
+
+  @Setup
+  public void setup() throws Exception {
+    ConfigurationCopy tableConf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    tableConf.set(Property.TABLE_FILE_COMPRESSION_TYPE, codec);
+    tableConf.set(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE, blockSize);
+
+    dir = BenchmarkFiles.createTempDir();
+    Path file = dir.resolve("bench.rf");
+    long dataSize = BenchmarkFiles.write(file, tableConf, NUM_ROWS, rowLength, 0, 1);
+
+    ConfigurationCopy cacheConf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cacheConf.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    // blocks are cached uncompressed, so the cache is sized relative to the raw data
+    long dataCacheSize = (long) (cacheHitRatio * dataSize);
+    if (dataCacheSize > 0) {
+      cacheConf.set(Property.TSERV_DATACACHE_SIZE, Long.toString(dataCacheSize));
+    }
+    cacheManager = BlockCacheManagerFactory.getInstance(cacheConf);
+    cacheManager.start(new BlockCacheConfiguration(cacheConf));
+    BasicCacheProvider cacheProvider =
+        new BasicCacheProvider(cacheManager.getBlockCache(CacheType.INDEX),
+            dataCacheSize > 0 ? cacheManager.getBlockCache(CacheType.DATA) : null);
+
+    reader = BenchmarkFiles.open(file, tableConf, cacheProvider);
+
+    Random random = new Random(42);
+    seekRows = new int[4096];
+    for (int i = 0; i < seekRows.length; i++) {
+      seekRows[i] = random.nextInt(NUM_ROWS);
+    }
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+    if (cacheManager != null) {
+      cacheManager.stop();
+    }
+    BenchmarkFiles.deleteDir(dir);
+  }
+
+  /**
+   * Seeks to a random row and reads a few entries from there.
+   */
+  @Benchmark
+  public void seek(Blackhole bh) throws IOException {
+    int row = seekRows[nextSeek++ & (seekRows.length - 1)];
+    reader.seek(new Range(BenchmarkFiles.key(row, rowLength), null), Collections.emptySet(), false);
+    for (int i = 0; i < ENTRIES_PER_SEEK && reader.hasTop(); i++) {
+      bh.consume(reader.getTopKey());
+      bh.consume(reader.getTopValue());
+      reader.next();
+    }
+  }
+
+  /**
+   * Reads every entry in the file, reported as the time per entry.
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public void scan(Blackhole bh) throws IOException {
+    reader.seek(new Range(), Collections.emptySet(), false);
+    while (reader.hasTop()) {
+      bh.consume(reader.getTopKey());
+      bh.consume(reader.getTopValue());
+      reader.next();
+    }
+  }
+}
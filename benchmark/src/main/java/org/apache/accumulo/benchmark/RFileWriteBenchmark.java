@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.crypto.CryptoServiceFactory;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.hadoop.fs.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes an RFile to local disk, which encodes keys relative to each other and compresses data
+ * blocks with the codec. Reported as the time per entry written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RFileWriteBenchmark {
+
+  private static final int NUM_ROWS = RFileBenchmark.NUM_ROWS;
+
+  @Param({"none", "gz"})
+  public String codec;
+
+  @Param({"16K", "100K"})
+  public String blockSize;
+
+  @Param({"16", "128"})
+  public int rowLength;
+
+  private ConfigurationCopy tableConf;
+  private FileSystem fs;
+  private Path dir;
+  private Key[] keys;
+  private Value[] values;
+
+  @Setup
+  public void setup() throws IOException {
+    tableConf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    tableConf.set(Property.TABLE_FILE_COMPRESSION_TYPE, codec);
+    tableConf.set(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE, blockSize);
+    fs = BenchmarkFiles.getLocalFs();
+    dir = BenchmarkFiles.createTempDir();
+
+    keys = new Key[NUM_ROWS];
+    values = new Value[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      keys[i] = BenchmarkFiles.key(i, rowLength);
+      values[i] = BenchmarkFiles.value(i);
+    }
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+    BenchmarkFiles.deleteDir(dir);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public long write() throws IOException {
+    Path file = dir.resolve("bench.rf");
+    Files.deleteIfExists(file);
+    FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder()
+        .forFile(file.toString(), fs, fs.getConf(), CryptoServiceFactory.newDefaultInstance())
+        .withTableConfiguration(tableConf).build();
+    writer.startDefaultLocalityGroup();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      writer.append(keys[i], values[i]);
+    }
+    writer.close();
+    return writer.getLength();
+  }
+}
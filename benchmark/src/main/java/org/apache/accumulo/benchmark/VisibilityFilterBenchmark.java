@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.VisibilityFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filters entries by column visibility, as every scan does. The filter caches the result for each
+ * distinct visibility it sees, so data with many distinct visibilities evaluates more expressions.
+ * A new filter is created for each pass over the data, as each scan creates its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VisibilityFilterBenchmark {
+
+  private static final int NUM_ENTRIES = 10_000;
+
+  @Param({"", "A", "A&B", "(A|B)&(C|D)&E"})
+  public String visibility;
+
+  @Param({"1", "1000"})
+  public int distinctVisibilities;
+
+  private final Authorizations auths = new Authorizations("A", "B", "C", "D", "E");
+  private final byte[] defaultVisibility = new byte[0];
+  private TreeMap<Key,Value> data;
+
+  @Setup
+  public void setup() {
+    data = new TreeMap<>();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      String cv = visibility;
+      if (distinctVisibilities > 1 && !cv.isEmpty()) {
+        // an alternative no one is authorized for makes the visibility distinct without changing
+        // whether it is visible
+        cv = "(" + cv + ")|Z" + (i % distinctVisibilities);
+      }
+      data.put(new Key(BenchmarkFiles.row(i, 16), "cf", "cq", cv, 1L), BenchmarkFiles.value(i));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ENTRIES)
+  public void filter(Blackhole bh) throws IOException {
+    SortedKeyValueIterator<Key,Value> iter =
+        VisibilityFilter.wrap(new SortedMapIterator(data), auths, defaultVisibility);
+    iter.seek(new Range(), Collections.emptySet(), false);
+    while (iter.hasTop()) {
+      bh.consume(iter.getTopKey());
+      iter.next();
+    }
+  }
+}
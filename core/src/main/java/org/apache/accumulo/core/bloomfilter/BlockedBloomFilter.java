@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.bloomfilter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.bloom.Key;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A split block Bloom filter. The filter is divided into blocks of 256 bits, which fit in a single
+ * cache line. A key hashes to one block and sets one bit in each of the block's eight 32 bit words,
+ * so testing a key touches a single cache line, where a {@link BloomFilter} probes a bit per hash
+ * function spread across its whole vector.
+ * <p>
+ * A filter is sized for the number of keys it holds. A {@link Builder} sizes a single filter for
+ * the keys of a small file once all are known, and chains filters of a fixed size for larger files.
+ *
+ * @see <a href="https://github.com/apache/parquet-format/blob/master/BloomFilter.md">Parquet split
+ *      block Bloom filter</a>
+ */
+public class BlockedBloomFilter implements Writable {
+
+  private static final byte VERSION = 1;
+
+  private static final int WORDS_PER_BLOCK = 8;
+  private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Integer.SIZE;
+  private static final int MAX_BLOCKS = Integer.MAX_VALUE / WORDS_PER_BLOCK;
+
+  // odd constants that turn one 32 bit hash into a bit position for each word of a block
+  private static final int[] SALT = {0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7,
+      0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+  private int[] words;
+
+  /** Default constructor - use with readFields */
+  public BlockedBloomFilter() {}
+
+  private BlockedBloomFilter(int numBlocks) {
+    this.words = new int[numBlocks * WORDS_PER_BLOCK];
+  }
+
+  /**
+   * Computes the number of blocks needed for a number of keys and a false positive rate.
+   */
+  static int numBlocks(long numKeys, double errorRate) {
+    // the false positive rate of a filter with 8 hash functions is (1 - e^(-8n/m))^8, treating the
+    // blocks as one vector of m bits
+    double bits = -WORDS_PER_BLOCK * numKeys / Math.log(1 - Math.pow(errorRate, 1.0 / 8));
+    return (int) Math.max(1, Math.min(MAX_BLOCKS, Math.ceil(bits / BITS_PER_BLOCK)));
+  }
+
+  static long hash(Key key) {
+    return Hashing.murmur3_128().hashBytes(key.getBytes()).asLong();
+  }
+
+  private void add(long hash) {
+    int offset = block(hash);
+    int h = (int) hash;
+    for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+      words[offset + i] |= 1 << ((h * SALT[i]) >>> 27);
+    }
+  }
+
+  private int block(long hash) {
+    int numBlocks = words.length / WORDS_PER_BLOCK;
+    // maps the upper half of the hash onto the blocks without a division
+    return (int) (((hash >>> 32) * numBlocks) >>> 32) * WORDS_PER_BLOCK;
+  }
+
+  /**
+   * Determines whether a specified key belongs to this filter.
+   *
+   * @return false if the key was not added to the filter, true if it probably was
+   */
+  public boolean membershipTest(Key key) {
+    long hash = hash(key);
+    int offset = block(hash);
+    int h = (int) hash;
+    for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+      int mask = 1 << ((h * SALT[i]) >>> 27);
+      if ((words[offset + i] & mask) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the size of the filter in bytes
+   */
+  public long getSize() {
+    return (long) words.length * Integer.BYTES;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeByte(VERSION);
+    out.writeInt(words.length / WORDS_PER_BLOCK);
+    for (int word : words) {
+      out.writeInt(word);
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version: " + version);
+    }
+    int numBlocks = in.readInt();
+    if (numBlocks <= 0 || numBlocks > MAX_BLOCKS) {
+      throw new IOException("Invalid number of blocks: " + numBlocks);
+    }
+    words = new int[numBlocks * WORDS_PER_BLOCK];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = in.readInt();
+    }
+  }
+
+  /**
+   * Builds the filters for the keys of a file. The 64 bit hashes of the first keys are kept, so
+   * that a file with no more than a filter's worth of keys gets one filter sized for exactly its
+   * keys. Once there are more, keys are added to a chain of filters, each sized for that many keys,
+   * as they arrive. Consecutive keys that are the same, like the row of every key in a row, are
+   * only counted once.
+   */
+  public static class Builder {
+
+    private final int keysPerFilter;
+    private final double errorRate;
+    // hashes of the first keys, until there are more than fit in one filter
+    private long[] hashes = new long[16];
+    private int buffered = 0;
+    private final List<BlockedBloomFilter> filters = new ArrayList<>();
+    private int keysInLastFilter = 0;
+    private long lastHash;
+    private long count = 0;
+
+    /**
+     * @param keysPerFilter
+     *          the number of keys each filter of a chain is sized for
+     * @param errorRate
+     *          the false positive rate of each filter
+     */
+    public Builder(int keysPerFilter, double errorRate) {
+      this.keysPerFilter = Math.max(1, keysPerFilter);
+      this.errorRate = errorRate;
+    }
+
+    public void add(Key key) {
+      long hash = hash(key);
+      if (count > 0 && lastHash == hash) {
+        return;
+      }
+      lastHash = hash;
+      count++;
+
+      if (hashes != null) {
+        if (buffered < keysPerFilter) {
+          if (buffered == hashes.length) {
+            hashes = Arrays.copyOf(hashes, (int) Math.min(keysPerFilter, buffered * 2L));
+          }
+          hashes[buffered++] = hash;
+          return;
+        }
+        // too many keys for one exactly sized filter, move the hashes to the first full filter
+        BlockedBloomFilter first = new BlockedBloomFilter(numBlocks(keysPerFilter, errorRate));
+        for (int i = 0; i < buffered; i++) {
+          first.add(hashes[i]);
+        }
+        filters.add(first);
+        keysInLastFilter = buffered;
+        hashes = null;
+      }
+
+      if (keysInLastFilter == keysPerFilter) {
+        filters.add(new BlockedBloomFilter(numBlocks(keysPerFilter, errorRate)));
+        keysInLastFilter = 0;
+      }
+      filters.get(filters.size() - 1).add(hash);
+      keysInLastFilter++;
+    }
+
+    /**
+     * @return the number of distinct consecutive keys added
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return the filters holding all keys added, in the order they were filled
+     */
+    public List<BlockedBloomFilter> build() {
+      if (hashes == null) {
+        return filters;
+      }
+      BlockedBloomFilter filter = new BlockedBloomFilter(numBlocks(buffered, errorRate));
+      for (int i = 0; i < buffered; i++) {
+        filter.add(hashes[i]);
+      }
+      return List.of(filter);
+    }
+  }
+}
@@ -400,15 +400,39 @@ public enum Property {
   TSERV_CACHE_MANAGER_IMPL("tserver.cache.manager.class",
       "org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager", PropertyType.STRING,
       "Specifies the class name of the block cache factory implementation."
-          + " Alternative implementation is"
-          + " org.apache.accumulo.core.file.blockfile.cache.tinylfu.TinyLfuBlockCacheManager",
+          + " Alternative implementations are"
+          + " org.apache.accumulo.core.file.blockfile.cache.tinylfu.TinyLfuBlockCacheManager"
+          + " and org.apache.accumulo.core.file.blockfile.cache.slab.SlabBlockCacheManager,"
+          + " which stores blocks off-heap and requires -XX:MaxDirectMemorySize to be set"
+          + " large enough for all caches",
       "2.0.0"),
   TSERV_DATACACHE_SIZE("tserver.cache.data.size", "10%", PropertyType.MEMORY,
       "Specifies the size of the cache for RFile data blocks.", "1.3.5"),
   TSERV_INDEXCACHE_SIZE("tserver.cache.index.size", "25%", PropertyType.MEMORY,
       "Specifies the size of the cache for RFile index blocks.", "1.3.5"),
+  @Experimental
+  TSERV_INDEXCACHE_PINNED_SIZE("tserver.cache.index.pinned.size", "0", PropertyType.MEMORY,
+      "Specifies the size of a tier of RFile index blocks kept in memory, separate from the index"
+          + " cache. The index blocks above the lowest level of each open RFile are pinned in this"
+          + " tier until the file is closed, so scans reading many blocks can not evict them"
+          + " from the index cache. Blocks that do not fit are only held in the index cache. The"
+          + " bytes pinned for each table are reported by the"
+          + " accumulo.tserver.index.pinned.bytes metric. Set this to 0 to not pin index blocks.",
+      "2.1.0"),
   TSERV_SUMMARYCACHE_SIZE("tserver.cache.summary.size", "10%", PropertyType.MEMORY,
       "Specifies the size of the cache for summary data on each tablet server.", "2.0.0"),
+  @Experimental
+  TSERV_CACHE_L2_PATH("tserver.cache.l2.path", "", PropertyType.PATH,
+      "A local directory, ideally on an SSD, for a second level of the data and index block"
+          + " caches. Blocks read from files are also written here and misses in the in memory"
+          + " caches are served from this directory. Its contents survive restarts. When empty,"
+          + " there is no second level cache.",
+      "2.1.0"),
+  @Experimental
+  TSERV_CACHE_L2_SIZE("tserver.cache.l2.size", "10G", PropertyType.BYTES,
+      "The maximum size on disk of each of the data and index second level block caches,"
+          + " see tserver.cache.l2.path.",
+      "2.1.0"),
   TSERV_PORTSEARCH("tserver.port.search", "false", PropertyType.BOOLEAN,
       "if the ports above are in use, search higher ports until one is available", "1.3.5"),
   TSERV_CLIENTPORT("tserver.port.client", "9997", PropertyType.PORT,
@@ -436,6 +460,13 @@ public enum Property {
           + "logs over this threshold is minor compacted.  Also any tablet referencing this many "
           + "logs or more will be compacted.",
       "2.0.0"),
+  @Experimental
+  TSERV_WAL_STREAMS("tserver.wal.streams", "1", PropertyType.COUNT,
+      "The number of write ahead logs a tablet server writes to at the same time. Each tablet"
+          + " writes to one of them, chosen by its extent, and each is synced independently, so"
+          + " more streams allow more writes to be synced in parallel. Each stream rolls over to"
+          + " new logs on its own, so a tablet server references more logs for recovery.",
+      "2.1.0"),
   TSERV_WAL_MAX_SIZE("tserver.wal.max.size", "1G", PropertyType.BYTES,
       "The maximum size for each write-ahead log. See comment for property"
           + " tserver.memory.maps.max",
@@ -490,6 +521,34 @@ public enum Property {
       "1.7.1"),
   TSERV_SCAN_MAX_OPENFILES("tserver.scan.files.open.max", "100", PropertyType.COUNT,
       "Maximum total RFiles that all tablets in a tablet server can open for scans. ", "1.4.0"),
+  @Experimental
+  TSERV_SCAN_READ_AHEAD_BATCHES("tserver.scan.readahead.batches", "1", PropertyType.COUNT,
+      "The most batches a tablet server reads ahead of a client scanning a user table, once the"
+          + " scan has passed its read ahead threshold. The server keeps reading batches while"
+          + " fewer than this many are waiting for the client, so that the time spent sending"
+          + " batches to the client overlaps with the time spent reading the next ones. Each"
+          + " waiting batch can hold up to table.scan.max.memory of results.",
+      "2.1.0"),
+  @Experimental
+  TSERV_SCAN_PARTITION_THREADS("tserver.scan.partition.threads", "16", PropertyType.COUNT,
+      "The number of threads used to read the parts of scans of tables that set"
+          + " table.scan.partitions.",
+      "2.1.0"),
+  @Experimental
+  TSERV_READ_AHEAD_THREADS("tserver.readahead.threads", "16", PropertyType.COUNT,
+      "The number of threads used to read RFile data blocks ahead of sequential scans of tables"
+          + " that set table.file.readahead.blocks.",
+      "2.1.0"),
+  @Experimental
+  TSERV_READ_AHEAD_MAX_MEMORY("tserver.readahead.memory.max", "64M", PropertyType.BYTES,
+      "The most memory a tablet server uses for data blocks read ahead of sequential scans that"
+          + " the scans have not reached yet. Blocks are not read ahead while this much is in use.",
+      "2.1.0"),
+  @Experimental
+  TSERV_COMPRESSION_THREADS("tserver.compaction.compress.threads", "4", PropertyType.COUNT,
+      "The number of threads a tablet server uses to compress the data blocks of files written by"
+          + " its minor and major compactions, for tables that set table.file.compress.threads.",
+      "2.1.0"),
   TSERV_MAX_IDLE("tserver.files.open.idle", "1m", PropertyType.TIMEDURATION,
       "Tablet servers leave previously used RFiles open for future queries."
           + " This setting determines how much time an unused RFile should be kept open"
@@ -499,6 +558,14 @@ public enum Property {
       "An in-memory data store for accumulo implemented in c++ that increases"
           + " the amount of data accumulo can hold in memory and avoids Java GC" + " pauses.",
       "1.3.5"),
+  @Experimental
+  TSERV_OFFHEAPMAP_ENABLED("tserver.memory.maps.offheap.enabled", "false", PropertyType.BOOLEAN,
+      "An in-memory data store for accumulo implemented in Java that keeps keys and values"
+          + " outside of the Java heap, like the native map but without needing the native"
+          + " library. When enabled it is used instead of the native map. The memory comes from"
+          + " the JVM's direct memory, so -XX:MaxDirectMemorySize must allow for"
+          + " tserver.memory.maps.max.",
+      "2.1.0"),
   TSERV_MAXMEM("tserver.memory.maps.max", "33%", PropertyType.MEMORY,
       "Maximum amount of memory that can be used to buffer data written to a"
           + " tablet server. There are two other properties that can effectively limit"
@@ -699,6 +766,12 @@ public enum Property {
   @ReplacedBy(property = Property.TSERV_WAL_SORT_BUFFER_SIZE)
   TSERV_SORT_BUFFER_SIZE("tserver.sort.buffer.size", "10%", PropertyType.MEMORY,
       "The amount of memory to use when sorting logs during recovery.", "1.5.0"),
+  @Experimental
+  TSERV_WAL_SORT_THREADS("tserver.wal.sort.threads", "1", PropertyType.COUNT,
+      "The number of threads each log sort uses to sort and write the buffers read from the log,"
+          + " while the log continues to be read. Each of these threads may hold a buffer of"
+          + " tserver.wal.sort.buffer.size, so this multiplies the memory a sort can use.",
+      "2.1.0"),
   TSERV_WAL_SORT_FILE_PREFIX("tserver.wal.sort.file.", null, PropertyType.PREFIX,
       "The rfile properties to use when sorting logs during recovery. Most of the properties"
           + " that begin with 'table.file' can be used here. For example, to set the compression"
@@ -708,6 +781,13 @@ public enum Property {
       "The number of threads for the distributed work queue. These threads are"
           + " used for copying failed bulk import RFiles.",
       "1.4.2"),
+  @Experimental
+  TSERV_WAL_COMPRESSION_TYPE("tserver.wal.compress.type", "none", PropertyType.STRING,
+      "Compression algorithm used on the mutations of each batch written to a write ahead log."
+          + " Logs written with any setting can be read with any other setting. Possible values:"
+          + " zstd, gz, snappy, bzip2, lzo, lz4, none. An unknown or unsupported value is logged"
+          + " and the mutations are written uncompressed.",
+      "2.1.0"),
   TSERV_WAL_SYNC("tserver.wal.sync", "true", PropertyType.BOOLEAN,
       "Use the SYNC_BLOCK create flag to sync WAL writes to disk. Prevents"
           + " problems recovering from sudden system resets.",
@@ -960,6 +1040,21 @@ public enum Property {
       "The maximum amount of memory that will be used to cache results of a client query/scan. "
           + "Once this limit is reached, the buffered data is sent to the client.",
       "1.3.5"),
+  @Experimental
+  TABLE_SCAN_PARTITIONS("table.scan.partitions", "1", PropertyType.COUNT,
+      "The number of parts a scan of one range of a tablet is split into. When greater than one,"
+          + " the range is split at rows found in the index of the tablet's files, and the parts"
+          + " are read concurrently using tserver.scan.partition.threads and returned in order."
+          + " Each part runs the table's scan iterators separately, so this should only be set for"
+          + " tables whose iterators only look at one row at a time. Isolated scans and batch"
+          + " scans are not split.",
+      "2.1.0"),
+  @Experimental
+  TABLE_SCAN_PARTITION_THRESHOLD("table.scan.partition.threshold", "64M", PropertyType.BYTES,
+      "A range of a tablet is only split into table.scan.partitions parts when the data blocks of"
+          + " the tablet's files that overlap it hold more than this many bytes, estimated from the"
+          + " number of index entries in the range and table.file.compress.blocksize.",
+      "2.1.0"),
   TABLE_FILE_TYPE("table.file.type", RFile.EXTENSION, PropertyType.STRING,
       "Change the type of file a table writes", "1.3.5"),
   TABLE_LOAD_BALANCER("table.balancer", "org.apache.accumulo.core.spi.balancer.SimpleLoadBalancer",
@@ -977,6 +1072,64 @@ public enum Property {
       PropertyType.BYTES,
       "The maximum size of index blocks in RFiles before they are compressed and written.",
       "1.4.0"),
+  @Experimental
+  TABLE_FILE_RESTART_INTERVAL("table.file.restart.interval", "0", PropertyType.COUNT,
+      "The number of entries between restart points in RFile data blocks. A restart point"
+          + " stores a key without encoding it relative to the previous key, and a seek can"
+          + " binary search the restart points of a block instead of reading it from the start."
+          + " Setting this to 0 writes no restart points. Files with restart points can not be"
+          + " read by versions of Accumulo before 2.1.0.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_DICTIONARY_FAMILIES("table.file.dictionary.families", "0", PropertyType.COUNT,
+      "The maximum number of column families in the dictionary of each locality group of an"
+          + " RFile. Column families are added to the dictionary as they are first written, and"
+          + " a family in the dictionary is stored in data blocks as a small id instead of its"
+          + " bytes. Setting this to 0 disables the dictionary. Files with a dictionary can not"
+          + " be read by versions of Accumulo before 2.1.0.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_DICTIONARY_VISIBILITIES("table.file.dictionary.visibilities", "0", PropertyType.COUNT,
+      "The maximum number of column visibilities in the dictionary of each locality group of"
+          + " an RFile. Works like table.file.dictionary.families, and is worth enabling when"
+          + " a table uses a small set of visibilities. Setting this to 0 disables the dictionary.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_READAHEAD_BLOCKS("table.file.readahead.blocks", "0", PropertyType.COUNT,
+      "The number of data blocks to read ahead of a sequential scan of an RFile. Once a scan"
+          + " reads a few consecutive blocks, the following blocks are read and decompressed in"
+          + " the background. Blocks read ahead are added to the data cache when the scan reaches"
+          + " them. Setting this to 0 disables read ahead. Tablet servers share the threads and"
+          + " memory set by tserver.readahead.threads and tserver.readahead.memory.max among all"
+          + " scans reading ahead.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_COMPRESSION_THREADS("table.file.compress.threads", "0", PropertyType.COUNT,
+      "The number of data blocks of an RFile that may be compressed at once by background"
+          + " threads while the file is written, so that writing a single file can use more than"
+          + " one core. Blocks are still written to the file in order. The threads are shared by"
+          + " all compactions of a tablet server and sized by tserver.compaction.compress.threads."
+          + " Files written elsewhere compress each block on the thread writing the file, as does"
+          + " setting this to 0.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_COMPRESSION_DICTIONARY_SIZE("table.file.compress.dictionary.size", "0B",
+      PropertyType.BYTES,
+      "The size of a compression dictionary to train for each RFile when the compression type is"
+          + " gz. The dictionary is trained from the first data blocks written to the file and"
+          + " stored in the file, and all data blocks of the file are compressed with it, which"
+          + " helps small blocks with content common across blocks. The size is limited to 32K."
+          + " Files written with a dictionary can not be read by versions before 2.1.0. Setting"
+          + " this to 0 compresses blocks without a dictionary.",
+      "2.1.0"),
+  @Experimental
+  TABLE_FILE_MMAP_ENABLED("table.file.mmap.enabled", "false", PropertyType.BOOLEAN,
+      "Memory maps RFiles on file:// volumes when reading them. Uncompressed data blocks, of"
+          + " tables using the none compression type without encryption, are then copied"
+          + " directly from the mapping into the data cache when they are not cached. The mapping"
+          + " is released when the file is closed. Checksums kept by Hadoop's local file system"
+          + " are not verified for mapped files.",
+      "2.1.0"),
   TABLE_FILE_BLOCK_SIZE("table.file.blocksize", "0B", PropertyType.BYTES,
       "The HDFS block size used when writing RFiles. When set to 0B, the"
           + " value/defaults of HDFS property 'dfs.block.size' will be used.",
@@ -1015,13 +1168,39 @@ public enum Property {
       "org.apache.accumulo.core.file.keyfunctor.RowFunctor", PropertyType.CLASSNAME,
       "A function that can transform the key prior to insertion and check of"
           + " bloom filter. org.apache.accumulo.core.file.keyfunctor.RowFunctor,"
-          + " org.apache.accumulo.core.file.keyfunctor.ColumnFamilyFunctor, and"
-          + " org.apache.accumulo.core.file.keyfunctor.ColumnQualifierFunctor are"
-          + " allowable values. One can extend any of the above mentioned classes to"
+          + " org.apache.accumulo.core.file.keyfunctor.ColumnFamilyFunctor,"
+          + " org.apache.accumulo.core.file.keyfunctor.ColumnQualifierFunctor, and"
+          + " org.apache.accumulo.core.file.keyfunctor.RowPrefixFunctor are allowable"
+          + " values. One can extend any of the above mentioned classes to"
           + " perform specialized parsing of the key. ",
       "1.3.5"),
   TABLE_BLOOM_HASHTYPE("table.bloom.hash.type", "murmur", PropertyType.STRING,
       "The bloom filter hash type", "1.3.5"),
+  @Experimental
+  TABLE_BLOOM_TYPE("table.bloom.type", "dynamic", PropertyType.STRING,
+      "The type of bloom filter written to new files. Possible values: dynamic, a chain of"
+          + " bloom filters each holding table.bloom.size keys, whose hash functions probe"
+          + " bits across the whole filter; blocked, filters where all probes for a key fall in"
+          + " one cache line, a single one sized for the keys in the file when it is closed if"
+          + " the file has no more than table.bloom.size keys, otherwise a chain of filters each"
+          + " holding table.bloom.size keys. The table.bloom.hash.type property does not apply to"
+          + " blocked filters. Unknown types write a dynamic filter. Files written with blocked"
+          + " filters have no bloom filter when read by versions before 2.1.0.",
+      "2.1.0"),
+  @Experimental
+  TABLE_BLOOM_PREFIX_LENGTH("table.bloom.prefix.length", "0", PropertyType.COUNT,
+      "The length of the row prefix added to the bloom filter by the"
+          + " org.apache.accumulo.core.file.keyfunctor.RowPrefixFunctor key functor. Scans of"
+          + " all rows with a prefix at least this long can then skip files without the"
+          + " prefix. Set this to 0 to use table.bloom.prefix.delimiter instead.",
+      "2.1.0"),
+  @Experimental
+  TABLE_BLOOM_PREFIX_DELIMITER("table.bloom.prefix.delimiter", "", PropertyType.STRING,
+      "A single ASCII character ending the row prefix added to the bloom filter by the"
+          + " org.apache.accumulo.core.file.keyfunctor.RowPrefixFunctor key functor, when"
+          + " table.bloom.prefix.length is 0. The prefix of a row includes its first"
+          + " delimiter, rows without a delimiter are added whole.",
+      "2.1.0"),
   TABLE_BULK_MAX_TABLETS("table.bulk.max.tablets", "0", PropertyType.COUNT,
       "The maximum number of tablets allowed for one bulk import file. Value of 0 is Unlimited. "
           + "This property is only enforced in the new bulk import API",
@@ -1719,7 +1898,8 @@ public enum Property {
       TSERV_SUMMARYCACHE_SIZE,
 
       // others
-      TSERV_NATIVEMAP_ENABLED, TSERV_SCAN_MAX_OPENFILES);
+      TSERV_NATIVEMAP_ENABLED, TSERV_OFFHEAPMAP_ENABLED, TSERV_WAL_STREAMS,
+      TSERV_SCAN_MAX_OPENFILES);
 
   /**
    * Checks if the given property may be changed via Zookeeper, but not recognized until the restart
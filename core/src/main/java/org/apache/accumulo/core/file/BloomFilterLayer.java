@@ -27,12 +27,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
+import org.apache.accumulo.core.bloomfilter.BlockedBloomFilter;
 import org.apache.accumulo.core.bloomfilter.DynamicBloomFilter;
 import org.apache.accumulo.core.classloader.ClassLoaderUtil;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -46,6 +49,7 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.blockfile.impl.CacheProvider;
 import org.apache.accumulo.core.file.keyfunctor.KeyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.RowPrefixFunctor;
 import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
@@ -68,6 +72,9 @@ public class BloomFilterLayer {
   private static final SecureRandom random = new SecureRandom();
   private static final Logger LOG = LoggerFactory.getLogger(BloomFilterLayer.class);
   public static final String BLOOM_FILE_NAME = "acu_bloom";
+  public static final String BLOCKED_BLOOM_FILE_NAME = "acu_bloom_blocked";
+  public static final String DYNAMIC_TYPE = "dynamic";
+  public static final String BLOCKED_TYPE = "blocked";
   public static final int HASH_COUNT = 5;
 
   private static ExecutorService loadThreadPool = null;
@@ -87,6 +94,8 @@ public class BloomFilterLayer {
 
   public static class Writer implements FileSKVWriter {
     private DynamicBloomFilter bloomFilter;
+    private BlockedBloomFilter.Builder blockedBloomFilter;
+    private double errorRate;
     private int numKeys;
     private int vectorSize;
 
@@ -109,11 +118,22 @@ public class BloomFilterLayer {
       // <code>n</code> is the number of keys and <code>c</code> is the desired
       // max. error rate.
       // Our desired error rate is by default 0.005, i.e. 0.5%
-      double errorRate = acuconf.getFraction(Property.TABLE_BLOOM_ERRORRATE);
-      vectorSize = (int) Math
-          .ceil(-HASH_COUNT * numKeys / Math.log(1.0 - Math.pow(errorRate, 1.0 / HASH_COUNT)));
-      bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT,
-          Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE)), numKeys);
+      errorRate = acuconf.getFraction(Property.TABLE_BLOOM_ERRORRATE);
+
+      String type = acuconf.get(Property.TABLE_BLOOM_TYPE);
+      if (type.equals(BLOCKED_TYPE)) {
+        // sized for the keys in the file when it is closed, or chained for large files
+        blockedBloomFilter = new BlockedBloomFilter.Builder(numKeys, errorRate);
+      } else {
+        if (!type.equals(DYNAMIC_TYPE)) {
+          LOG.warn("Unknown bloom filter type {} in {}, writing a {} bloom filter", type,
+              Property.TABLE_BLOOM_TYPE.getKey(), DYNAMIC_TYPE);
+        }
+        vectorSize = (int) Math
+            .ceil(-HASH_COUNT * numKeys / Math.log(1.0 - Math.pow(errorRate, 1.0 / HASH_COUNT)));
+        bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT,
+            Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE)), numKeys);
+      }
 
       /**
        * load KeyFunctor
@@ -128,7 +148,11 @@ public class BloomFilterLayer {
           clazz = ClassLoaderUtil.loadClass(context, classname, KeyFunctor.class);
 
         transformer = clazz.getDeclaredConstructor().newInstance();
+        if (transformer instanceof RowPrefixFunctor)
+          ((RowPrefixFunctor) transformer).init(acuconf);
 
+      } catch (IllegalArgumentException e) {
+        throw e;
       } catch (Exception e) {
         LOG.error("Failed to find KeyFunctor: " + acuconf.get(Property.TABLE_BLOOM_KEY_FUNCTOR), e);
         throw new IllegalArgumentException(
@@ -143,8 +167,12 @@ public class BloomFilterLayer {
         throws IOException {
       writer.append(key, val);
       Key bloomKey = transformer.transform(key);
-      if (bloomKey.getBytes().length > 0)
-        bloomFilter.add(bloomKey);
+      if (bloomKey.getBytes().length > 0) {
+        if (blockedBloomFilter != null)
+          blockedBloomFilter.add(bloomKey);
+        else
+          bloomFilter.add(bloomKey);
+      }
     }
 
     @Override
@@ -153,9 +181,21 @@ public class BloomFilterLayer {
       if (closed)
         return;
 
-      DataOutputStream out = writer.createMetaStore(BLOOM_FILE_NAME);
+      DataOutputStream out = writer
+          .createMetaStore(blockedBloomFilter != null ? BLOCKED_BLOOM_FILE_NAME : BLOOM_FILE_NAME);
       out.writeUTF(transformer.getClass().getName());
-      bloomFilter.write(out);
+      // the prefix functor stores its prefix with the filter. Other functors, even Writable ones,
+      // are followed directly by the filter, as in files written before the prefix functor.
+      if (transformer instanceof RowPrefixFunctor)
+        ((RowPrefixFunctor) transformer).write(out);
+      if (blockedBloomFilter != null) {
+        List<BlockedBloomFilter> filters = blockedBloomFilter.build();
+        out.writeInt(filters.size());
+        for (BlockedBloomFilter filter : filters)
+          filter.write(out);
+      } else {
+        bloomFilter.write(out);
+      }
       out.flush();
       out.close();
       writer.close();
@@ -196,7 +236,7 @@ public class BloomFilterLayer {
 
   static class BloomFilterLoader {
 
-    private volatile DynamicBloomFilter bloomFilter;
+    private volatile Predicate<Key> bloomFilter;
     private int loadRequest = 0;
     private int loadThreshold = 1;
     private int maxLoadThreads;
@@ -220,8 +260,13 @@ public class BloomFilterLayer {
         DataInputStream in = null;
 
         try {
-          in = reader.getMetaStore(BLOOM_FILE_NAME);
-          DynamicBloomFilter tmpBloomFilter = new DynamicBloomFilter();
+          boolean blocked = true;
+          try {
+            in = reader.getMetaStore(BLOCKED_BLOOM_FILE_NAME);
+          } catch (NoSuchMetaStoreException nsme) {
+            blocked = false;
+            in = reader.getMetaStore(BLOOM_FILE_NAME);
+          }
 
           // check for closed again after open but before reading the bloom filter in
           if (closed)
@@ -234,15 +279,42 @@ public class BloomFilterLayer {
 
           Class<? extends KeyFunctor> clazz =
               ClassLoaderUtil.loadClass(context, ClassName, KeyFunctor.class);
-          transformer = clazz.getDeclaredConstructor().newInstance();
+          KeyFunctor tmpTransformer = clazz.getDeclaredConstructor().newInstance();
+          if (tmpTransformer instanceof RowPrefixFunctor)
+            ((RowPrefixFunctor) tmpTransformer).readFields(in);
+          transformer = tmpTransformer;
 
           /**
            * read in bloom filter
            */
 
-          tmpBloomFilter.readFields(in);
           // only set the bloom filter after it is fully constructed
-          bloomFilter = tmpBloomFilter;
+          if (blocked) {
+            int numFilters = in.readInt();
+            if (numFilters <= 0) {
+              throw new IOException("Invalid number of bloom filters: " + numFilters);
+            }
+            BlockedBloomFilter[] filters = new BlockedBloomFilter[numFilters];
+            for (int i = 0; i < numFilters; i++) {
+              filters[i] = new BlockedBloomFilter();
+              filters[i].readFields(in);
+            }
+            if (numFilters == 1) {
+              bloomFilter = filters[0]::membershipTest;
+            } else {
+              bloomFilter = key -> {
+                for (BlockedBloomFilter filter : filters) {
+                  if (filter.membershipTest(key))
+                    return true;
+                }
+                return false;
+              };
+            }
+          } else {
+            DynamicBloomFilter tmpBloomFilter = new DynamicBloomFilter();
+            tmpBloomFilter.readFields(in);
+            bloomFilter = tmpBloomFilter::membershipTest;
+          }
         } catch (NoSuchMetaStoreException nsme) {
           // file does not have a bloom filter, ignore it
         } catch (IOException ioe) {
@@ -328,7 +400,7 @@ public class BloomFilterLayer {
       if (bloomKey == null || bloomKey.getBytes().length == 0)
         return true;
 
-      return bloomFilter.membershipTest(bloomKey);
+      return bloomFilter.test(bloomKey);
     }
 
     public void close() {
@@ -438,6 +510,11 @@ public class BloomFilterLayer {
     public void setCacheProvider(CacheProvider cacheProvider) {
       reader.setCacheProvider(cacheProvider);
     }
+
+    @Override
+    public FileSKVIterator getIndex() throws IOException {
+      return reader.getIndex();
+    }
   }
 
   public static void main(String[] args) throws IOException {
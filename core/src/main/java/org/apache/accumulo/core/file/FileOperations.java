@@ -23,6 +23,7 @@ import static org.apache.accumulo.core.file.blockfile.impl.CacheProvider.NULL_PR
 import java.io.IOException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -97,6 +98,7 @@ public abstract class FileOperations {
    *     .withTableConfiguration(...)
    *     .withRateLimiter(...) // optional
    *     .withCompression(...) // optional
+   *     .withCompressionExecutor(...) // optional
    *     .build();
    * </pre>
    */
@@ -173,6 +175,7 @@ public abstract class FileOperations {
     // writer only objects
     public final String compression;
     public final FSDataOutputStream outputStream;
+    public final ExecutorService compressionExecutor;
     public final boolean enableAccumuloStart;
     // reader only objects
     public final CacheProvider cacheProvider;
@@ -186,9 +189,10 @@ public abstract class FileOperations {
 
     public FileOptions(AccumuloConfiguration tableConfiguration, String filename, FileSystem fs,
         Configuration fsConf, RateLimiter rateLimiter, String compression,
-        FSDataOutputStream outputStream, boolean enableAccumuloStart, CacheProvider cacheProvider,
-        Cache<String,Long> fileLenCache, boolean seekToBeginning, CryptoService cryptoService,
-        Range range, Set<ByteSequence> columnFamilies, boolean inclusive) {
+        FSDataOutputStream outputStream, ExecutorService compressionExecutor,
+        boolean enableAccumuloStart, CacheProvider cacheProvider, Cache<String,Long> fileLenCache,
+        boolean seekToBeginning, CryptoService cryptoService, Range range,
+        Set<ByteSequence> columnFamilies, boolean inclusive) {
       this.tableConfiguration = tableConfiguration;
       this.filename = filename;
       this.fs = fs;
@@ -196,6 +200,7 @@ public abstract class FileOperations {
       this.rateLimiter = rateLimiter;
       this.compression = compression;
       this.outputStream = outputStream;
+      this.compressionExecutor = compressionExecutor;
       this.enableAccumuloStart = enableAccumuloStart;
       this.cacheProvider = cacheProvider;
       this.fileLenCache = fileLenCache;
@@ -234,6 +239,10 @@ public abstract class FileOperations {
       return outputStream;
     }
 
+    public ExecutorService getCompressionExecutor() {
+      return compressionExecutor;
+    }
+
     public boolean isAccumuloStartEnabled() {
       return enableAccumuloStart;
     }
@@ -309,27 +318,29 @@ public abstract class FileOperations {
     }
 
     protected FileOptions toWriterBuilderOptions(String compression,
-        FSDataOutputStream outputStream, boolean startEnabled) {
+        FSDataOutputStream outputStream, ExecutorService compressionExecutor,
+        boolean startEnabled) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, compression,
-          outputStream, startEnabled, NULL_PROVIDER, null, false, cryptoService, null, null, true);
+          outputStream, compressionExecutor, startEnabled, NULL_PROVIDER, null, false,
+          cryptoService, null, null, true);
     }
 
     protected FileOptions toReaderBuilderOptions(CacheProvider cacheProvider,
         Cache<String,Long> fileLenCache, boolean seekToBeginning) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, cacheProvider == null ? NULL_PROVIDER : cacheProvider, fileLenCache,
+          null, false, cacheProvider == null ? NULL_PROVIDER : cacheProvider, fileLenCache,
           seekToBeginning, cryptoService, null, null, true);
     }
 
     protected FileOptions toIndexReaderBuilderOptions(Cache<String,Long> fileLenCache) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, NULL_PROVIDER, fileLenCache, false, cryptoService, null, null, true);
+          null, false, NULL_PROVIDER, fileLenCache, false, cryptoService, null, null, true);
     }
 
     protected FileOptions toScanReaderBuilderOptions(Range range, Set<ByteSequence> columnFamilies,
         boolean inclusive) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, NULL_PROVIDER, null, false, cryptoService, range, columnFamilies, inclusive);
+          null, false, NULL_PROVIDER, null, false, cryptoService, range, columnFamilies, inclusive);
     }
 
     protected AccumuloConfiguration getTableConfiguration() {
@@ -343,6 +354,7 @@ public abstract class FileOperations {
   public class WriterBuilder extends FileHelper implements WriterTableConfiguration {
     private String compression;
     private FSDataOutputStream outputStream;
+    private ExecutorService compressionExecutor;
     private boolean enableAccumuloStart = true;
 
     public WriterTableConfiguration forOutputStream(String extension,
@@ -379,8 +391,14 @@ public abstract class FileOperations {
       return this;
     }
 
+    public WriterBuilder withCompressionExecutor(ExecutorService compressionExecutor) {
+      this.compressionExecutor = compressionExecutor;
+      return this;
+    }
+
     public FileSKVWriter build() throws IOException {
-      return openWriter(toWriterBuilderOptions(compression, outputStream, enableAccumuloStart));
+      return openWriter(toWriterBuilderOptions(compression, outputStream, compressionExecutor,
+          enableAccumuloStart));
     }
   }
 
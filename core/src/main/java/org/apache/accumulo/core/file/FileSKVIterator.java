@@ -39,6 +39,15 @@ public interface FileSKVIterator extends InterruptibleIterator, AutoCloseable {
 
   void setCacheProvider(CacheProvider cacheProvider);
 
+  /**
+   * Returns an iterator over the index of this file, which has the last key of each data block and
+   * can be seeked to the start of a range. The index reads through this reader, so closing it
+   * closes this reader.
+   */
+  default FileSKVIterator getIndex() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   void close() throws IOException;
 }
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.slab;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A set of off-heap slabs that are all carved into chunks of the same size. Chunks are identified
+ * by an int id, {@code slab * chunksPerSlab + chunk}. Free chunks are kept on a stack and, once the
+ * class can not get another slab, chunks are reclaimed using the CLOCK algorithm over the chunk
+ * owners.
+ *
+ * <p>
+ * All mutating methods synchronize on the size class. Readers of cached data never need the lock,
+ * because each {@link SlabBlockCache.SlabEntry} references its slab buffer directly.
+ */
+class SizeClass {
+
+  /** Owner placeholder for a chunk that was handed out but whose entry is not yet visible */
+  static final SlabBlockCache.SlabEntry PENDING =
+      new SlabBlockCache.SlabEntry(null, null, null, -1, -1, 0);
+
+  private final int index;
+  private final int chunkSize;
+  private final int chunksPerSlab;
+
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private SlabBlockCache.SlabEntry[] owners = new SlabBlockCache.SlabEntry[0];
+  private int[] free = new int[0];
+  private int freeCount = 0;
+  private int usedCount = 0;
+  private int clockHand = 0;
+  private long storedBytes = 0;
+
+  final LongAdder hits = new LongAdder();
+  final LongAdder inserts = new LongAdder();
+  final LongAdder evicted = new LongAdder();
+
+  SizeClass(int index, int chunkSize, int slabSize) {
+    this.index = index;
+    this.chunkSize = chunkSize;
+    this.chunksPerSlab = slabSize / chunkSize;
+  }
+
+  int getIndex() {
+    return index;
+  }
+
+  int getChunkSize() {
+    return chunkSize;
+  }
+
+  synchronized int getSlabCount() {
+    return slabs.size();
+  }
+
+  synchronized ByteBuffer getSlab(int chunk) {
+    return slabs.get(chunk / chunksPerSlab);
+  }
+
+  int getOffset(int chunk) {
+    return (chunk % chunksPerSlab) * chunkSize;
+  }
+
+  /**
+   * Hands a new slab to this size class, making all of its chunks free.
+   */
+  synchronized void addSlab(ByteBuffer slab) {
+    int first = slabs.size() * chunksPerSlab;
+    slabs.add(slab);
+    owners = Arrays.copyOf(owners, owners.length + chunksPerSlab);
+    if (free.length < freeCount + chunksPerSlab) {
+      free = Arrays.copyOf(free, freeCount + chunksPerSlab);
+    }
+    // push in reverse so that lower chunk ids are handed out first
+    for (int i = chunksPerSlab - 1; i >= 0; i--) {
+      free[freeCount++] = first + i;
+    }
+  }
+
+  /**
+   * Takes a free chunk, marking it as {@link #PENDING}.
+   *
+   * @return the chunk id or -1 if no chunk is free
+   */
+  synchronized int allocateFree() {
+    if (freeCount == 0) {
+      return -1;
+    }
+    int chunk = free[--freeCount];
+    owners[chunk] = PENDING;
+    usedCount++;
+    return chunk;
+  }
+
+  /**
+   * Evicts the first unreferenced chunk owner found by the clock hand and hands its chunk out,
+   * marking it as {@link #PENDING}. Referenced owners get a second chance.
+   *
+   * @param onEvict
+   *          called with the owner of the chunk that was reclaimed, while holding the lock
+   * @return the chunk id or -1 if no chunk could be reclaimed
+   */
+  synchronized int allocateByEviction(Consumer<SlabBlockCache.SlabEntry> onEvict) {
+    int chunk = allocateFree();
+    if (chunk >= 0 || owners.length == 0) {
+      return chunk;
+    }
+
+    for (int i = 0; i < owners.length * 2; i++) {
+      int pos = clockHand;
+      clockHand = (clockHand + 1) % owners.length;
+      SlabBlockCache.SlabEntry owner = owners[pos];
+      if (owner == null || owner == PENDING) {
+        continue;
+      }
+      if (owner.referenced) {
+        owner.referenced = false;
+        continue;
+      }
+      evict(pos, onEvict);
+      owners[pos] = PENDING;
+      usedCount++;
+      return pos;
+    }
+    return -1;
+  }
+
+  private void evict(int chunk, Consumer<SlabBlockCache.SlabEntry> onEvict) {
+    SlabBlockCache.SlabEntry owner = owners[chunk];
+    owner.evicted = true;
+    owners[chunk] = null;
+    usedCount--;
+    storedBytes -= owner.length;
+    evicted.increment();
+    onEvict.accept(owner);
+  }
+
+  /**
+   * Makes an entry the owner of a chunk previously handed out as {@link #PENDING}.
+   */
+  synchronized void publish(int chunk, SlabBlockCache.SlabEntry entry) {
+    owners[chunk] = entry;
+    storedBytes += entry.length;
+    inserts.increment();
+  }
+
+  /**
+   * Returns a {@link #PENDING} chunk that never got published to the free stack.
+   */
+  synchronized void release(int chunk) {
+    owners[chunk] = null;
+    usedCount--;
+    free[freeCount++] = chunk;
+  }
+
+  /**
+   * Evicts everything stored in the last slab of this size class and removes the slab, so that it
+   * can be handed to another size class.
+   *
+   * @return the slab or null if this class has no slab or the last slab has chunks in flight
+   */
+  synchronized ByteBuffer surrenderSlab(Consumer<SlabBlockCache.SlabEntry> onEvict) {
+    if (slabs.isEmpty()) {
+      return null;
+    }
+
+    int first = (slabs.size() - 1) * chunksPerSlab;
+    for (int i = first; i < owners.length; i++) {
+      if (owners[i] == PENDING) {
+        return null;
+      }
+    }
+
+    for (int i = first; i < owners.length; i++) {
+      if (owners[i] != null) {
+        evict(i, onEvict);
+      }
+    }
+
+    int newFreeCount = 0;
+    for (int i = 0; i < freeCount; i++) {
+      if (free[i] < first) {
+        free[newFreeCount++] = free[i];
+      }
+    }
+    freeCount = newFreeCount;
+    owners = Arrays.copyOf(owners, first);
+    clockHand = first == 0 ? 0 : clockHand % first;
+    return slabs.remove(slabs.size() - 1);
+  }
+
+  /**
+   * Gets point in time statistics for this size class.
+   */
+  synchronized SlabBlockCache.SizeClassStats getStats() {
+    return new SlabBlockCache.SizeClassStats(chunkSize, slabs.size(),
+        (long) slabs.size() * chunksPerSlab, usedCount, storedBytes, hits.sum(), inserts.sum(),
+        evicted.sum());
+  }
+}
@@ -0,0 +1,592 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.slab;
+
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_EVICTIONS;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_FRAGMENTATION;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_HITS;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_INSERTS;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_OCCUPANCY;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_SLAB_CACHE_SLABS;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.accumulo.core.file.blockfile.cache.impl.ClassSize;
+import org.apache.accumulo.core.file.blockfile.cache.impl.SizeConstants;
+import org.apache.accumulo.core.file.blockfile.cache.lru.SynchronousLoadingBlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.util.threads.ThreadPools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * A block cache that keeps block bytes outside of the Java heap, in direct {@link ByteBuffer}
+ * slabs. Only the block name, a small descriptor and optional block indexes live on the heap, so
+ * the cache can be made much larger than what the heap and garbage collector could comfortably
+ * hold.
+ *
+ * <p>
+ * Memory is managed like a slab allocator. The cache memory is split into fixed size slabs, which
+ * are lazily allocated up to the maximum cache size. Each slab belongs to a single size class and
+ * is carved into equally sized chunks. A block is stored in one chunk of the smallest size class
+ * that fits it. Once all slabs are allocated, a size class reclaims chunks from its own blocks
+ * using the CLOCK (second chance) algorithm. A size class that never got a slab takes the last slab
+ * of the size class with the most slabs.
+ *
+ * <p>
+ * The {@link CacheEntry} returned by this cache holds an on-heap copy of the block, which is only
+ * referenced for the duration of a read. Reads are optimistic; a block that is evicted while being
+ * copied is treated as a miss.
+ *
+ * <p>
+ * Direct memory is limited by the JVM option {@code -XX:MaxDirectMemorySize}, which must be large
+ * enough for the sum of all caches using this implementation.
+ */
+public class SlabBlockCache extends SynchronousLoadingBlockCache implements BlockCache {
+
+  private static final Logger log = LoggerFactory.getLogger(SlabBlockCache.class);
+
+  /** Statistics thread */
+  static final int statThreadPeriod = 60;
+
+  /** Approximate on-heap size of a cached block, not including its name */
+  static final long ENTRY_OVERHEAD = ClassSize
+      .align(ClassSize.OBJECT + 4 * ClassSize.REFERENCE + 4 * SizeConstants.SIZEOF_INT
+          + 2 * SizeConstants.SIZEOF_BOOLEAN)
+      + ClassSize.CONCURRENT_HASHMAP_ENTRY + ClassSize.STRING;
+
+  private final ConcurrentHashMap<String,SlabEntry> map;
+
+  private final SizeClass[] sizeClasses;
+
+  private final int[] chunkSizes;
+
+  /** Off-heap bytes allocated for slabs */
+  private final AtomicLong allocated = new AtomicLong(0);
+
+  /** On-heap bytes used by block indexes */
+  private final AtomicLong indexHeapSize = new AtomicLong(0);
+
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong requestCount = new AtomicLong(0);
+
+  /** Serializes moving slabs between size classes */
+  private final Object rebalanceLock = new Object();
+
+  private final long maxIndexHeapSize;
+
+  private final ScheduledExecutorService scheduleThreadPool =
+      ThreadPools.createScheduledExecutorService(1, "SlabBlockCacheStats");
+
+  private final SlabBlockCacheConfiguration conf;
+
+  /** Per size class meters, removed from the registry when the cache shuts down */
+  private final List<Meter> meters = new ArrayList<>();
+
+  public SlabBlockCache(final SlabBlockCacheConfiguration conf) {
+    this.conf = conf;
+    this.chunkSizes = conf.getChunkSizes();
+    this.sizeClasses = new SizeClass[chunkSizes.length];
+    for (int i = 0; i < chunkSizes.length; i++) {
+      sizeClasses[i] = new SizeClass(i, chunkSizes[i], conf.getSlabSize());
+    }
+    this.map = new ConcurrentHashMap<>(
+        (int) Math.ceil(1.2 * conf.getMaxSize() / Math.max(1, conf.getBlockSize())));
+    this.maxIndexHeapSize = (long) Math.floor(conf.getMaxSize() * conf.getIndexHeapFactor());
+    this.scheduleThreadPool.scheduleAtFixedRate(this::logStats, statThreadPeriod, statThreadPeriod,
+        TimeUnit.SECONDS);
+    registerMetrics(Metrics.globalRegistry);
+  }
+
+  /**
+   * Publishes the statistics of each size class, tagged with the cache type and chunk size.
+   */
+  private void registerMetrics(MeterRegistry registry) {
+    for (SizeClass sc : sizeClasses) {
+      Tags tags = Tags.of("cache", String.valueOf(conf.getType()), "chunk.size",
+          Integer.toString(sc.getChunkSize()));
+      meters.add(Gauge.builder(METRICS_TSERVER_SLAB_CACHE_SLABS, sc, SizeClass::getSlabCount)
+          .tags(tags).description("Slabs held by a size class").register(registry));
+      meters.add(
+          Gauge.builder(METRICS_TSERVER_SLAB_CACHE_OCCUPANCY, sc, s -> s.getStats().getOccupancy())
+              .tags(tags).description("Fraction of the chunks of a size class that hold a block")
+              .register(registry));
+      meters.add(Gauge
+          .builder(METRICS_TSERVER_SLAB_CACHE_FRAGMENTATION, sc,
+              s -> s.getStats().getFragmentation())
+          .tags(tags).description("Fraction of the bytes of used chunks not holding block data")
+          .register(registry));
+      meters.add(FunctionCounter.builder(METRICS_TSERVER_SLAB_CACHE_HITS, sc.hits, LongAdder::sum)
+          .tags(tags).description("Cache hits of a size class").register(registry));
+      meters.add(
+          FunctionCounter.builder(METRICS_TSERVER_SLAB_CACHE_INSERTS, sc.inserts, LongAdder::sum)
+              .tags(tags).description("Blocks stored in a size class").register(registry));
+      meters.add(
+          FunctionCounter.builder(METRICS_TSERVER_SLAB_CACHE_EVICTIONS, sc.evicted, LongAdder::sum)
+              .tags(tags).description("Blocks evicted from a size class").register(registry));
+    }
+  }
+
+  /**
+   * The on-heap descriptor of a block stored in a slab chunk.
+   */
+  static final class SlabEntry {
+    final String name;
+    final SizeClass sizeClass;
+    final ByteBuffer slab;
+    final int chunk;
+    final int offset;
+    final int length;
+
+    /** Set on access, cleared by the clock hand */
+    volatile boolean referenced = true;
+
+    /** Set before the chunk of this entry is reused */
+    volatile boolean evicted = false;
+
+    private CacheEntry.Weighable index;
+    private int indexWeight = 0;
+
+    SlabEntry(String name, SizeClass sizeClass, ByteBuffer slab, int chunk, int offset,
+        int length) {
+      this.name = name;
+      this.sizeClass = sizeClass;
+      this.slab = slab;
+      this.chunk = chunk;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /*
+   * This class exists so that every cache entry does not have a reference to the cache.
+   */
+  private class SlabCacheEntry implements CacheEntry {
+    private final SlabEntry entry;
+    private final byte[] buffer;
+
+    SlabCacheEntry(SlabEntry entry, byte[] buffer) {
+      this.entry = entry;
+      this.buffer = buffer;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      return buffer;
+    }
+
+    @Override
+    public <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      return entry == null ? null : SlabBlockCache.this.getIndex(entry, supplier);
+    }
+
+    @Override
+    public void indexWeightChanged() {
+      if (entry != null) {
+        SlabBlockCache.this.indexWeightChanged(entry);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends CacheEntry.Weighable> T getIndex(SlabEntry entry, Supplier<T> supplier) {
+    synchronized (entry) {
+      if (entry.index == null && !entry.evicted && indexHeapSize.get() < maxIndexHeapSize) {
+        entry.index = supplier.get();
+        entry.indexWeight = entry.index.weight();
+        indexHeapSize.addAndGet(entry.indexWeight);
+      }
+      return (T) entry.index;
+    }
+  }
+
+  private void indexWeightChanged(SlabEntry entry) {
+    synchronized (entry) {
+      if (entry.index != null && !entry.evicted) {
+        int newWeight = entry.index.weight();
+        indexHeapSize.addAndGet(newWeight - entry.indexWeight);
+        entry.indexWeight = newWeight;
+      }
+    }
+  }
+
+  private void onEvict(SlabEntry entry) {
+    map.remove(entry.name, entry);
+    synchronized (entry) {
+      if (entry.index != null) {
+        indexHeapSize.addAndGet(-entry.indexWeight);
+        entry.index = null;
+      }
+    }
+  }
+
+  /**
+   * Copies the bytes of an entry to the heap.
+   *
+   * @return the bytes or null if the entry was evicted during the copy
+   */
+  private byte[] read(SlabEntry entry) {
+    if (entry.evicted) {
+      return null;
+    }
+    byte[] data = new byte[entry.length];
+    ByteBuffer dup = entry.slab.duplicate();
+    dup.position(entry.offset);
+    dup.get(data, 0, entry.length);
+    // ensure the copy is not reordered after the check below
+    VarHandle.loadLoadFence();
+    if (entry.evicted) {
+      return null;
+    }
+    entry.referenced = true;
+    return data;
+  }
+
+  /**
+   * Allocates the memory of a new slab.
+   */
+  protected ByteBuffer allocateSlab(int size) {
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  private int sizeClassFor(int length) {
+    int pos = Arrays.binarySearch(chunkSizes, length);
+    return pos >= 0 ? pos : -(pos + 1);
+  }
+
+  /**
+   * Gets a chunk from a size class, in order of preference by taking a free chunk, allocating a new
+   * slab, reclaiming a chunk from the size class or taking a slab from another size class.
+   *
+   * @return the chunk id or -1 if no memory could be found for the size class
+   */
+  private int allocate(SizeClass sc) {
+    int chunk = sc.allocateFree();
+    if (chunk >= 0) {
+      return chunk;
+    }
+
+    long slabSize = conf.getSlabSize();
+    long current;
+    while ((current = allocated.get()) + slabSize <= conf.getMaxSize()) {
+      if (allocated.compareAndSet(current, current + slabSize)) {
+        ByteBuffer slab;
+        try {
+          slab = allocateSlab(conf.getSlabSize());
+        } catch (OutOfMemoryError e) {
+          // the slab was never allocated, so do not count it against the cache
+          allocated.addAndGet(-slabSize);
+          log.warn("Unable to allocate a {} byte slab, -XX:MaxDirectMemorySize may be too low",
+              slabSize, e);
+          break;
+        }
+        sc.addSlab(slab);
+        chunk = sc.allocateFree();
+        if (chunk >= 0) {
+          return chunk;
+        }
+      }
+    }
+
+    chunk = sc.allocateByEviction(this::onEvict);
+    if (chunk >= 0) {
+      return chunk;
+    }
+
+    synchronized (rebalanceLock) {
+      SizeClass donor = null;
+      int donorSlabs = 0;
+      for (SizeClass other : sizeClasses) {
+        int slabs = other.getSlabCount();
+        if (other != sc && slabs > donorSlabs) {
+          donor = other;
+          donorSlabs = slabs;
+        }
+      }
+
+      if (donor != null) {
+        ByteBuffer slab = donor.surrenderSlab(this::onEvict);
+        if (slab != null) {
+          log.trace("Moved slab from size class {} to {}", donor.getChunkSize(), sc.getChunkSize());
+          sc.addSlab(slab);
+        }
+      }
+    }
+
+    return sc.allocateByEviction(this::onEvict);
+  }
+
+  // BlockCache implementation
+
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    SlabEntry existing = map.get(blockName);
+    if (existing != null) {
+      byte[] data = read(existing);
+      if (data != null) {
+        return new SlabCacheEntry(existing, data);
+      }
+    }
+
+    int classIndex = sizeClassFor(buf.length);
+    if (classIndex >= sizeClasses.length) {
+      // too large for a slab, hand the block back without caching it
+      return new SlabCacheEntry(null, buf);
+    }
+
+    SizeClass sc = sizeClasses[classIndex];
+    int chunk = allocate(sc);
+    if (chunk < 0) {
+      return new SlabCacheEntry(null, buf);
+    }
+
+    SlabEntry entry =
+        new SlabEntry(blockName, sc, sc.getSlab(chunk), chunk, sc.getOffset(chunk), buf.length);
+    ByteBuffer dup = entry.slab.duplicate();
+    dup.position(entry.offset);
+    dup.put(buf, 0, buf.length);
+
+    SlabEntry current = map.putIfAbsent(blockName, entry);
+    if (current != null) {
+      sc.release(chunk);
+      byte[] data = read(current);
+      return new SlabCacheEntry(data == null ? null : current, data == null ? buf : data);
+    }
+
+    sc.publish(chunk, entry);
+    return new SlabCacheEntry(entry, buf);
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName) {
+    requestCount.incrementAndGet();
+    CacheEntry ce = getBlockNoStats(blockName);
+    if (ce != null) {
+      hitCount.incrementAndGet();
+      ((SlabCacheEntry) ce).entry.sizeClass.hits.increment();
+    }
+    return ce;
+  }
+
+  @Override
+  protected CacheEntry getBlockNoStats(String blockName) {
+    SlabEntry entry = map.get(blockName);
+    if (entry == null) {
+      return null;
+    }
+    byte[] data = read(entry);
+    if (data == null) {
+      return null;
+    }
+    return new SlabCacheEntry(entry, data);
+  }
+
+  @Override
+  protected int getMaxEntrySize() {
+    return chunkSizes[chunkSizes.length - 1];
+  }
+
+  /**
+   * The heap used by this cache is the descriptors of cached blocks and the block indexes, the
+   * block bytes are off-heap.
+   */
+  @Override
+  public long getMaxHeapSize() {
+    long expectedBlocks =
+        (long) Math.ceil(1.2 * conf.getMaxSize() / Math.max(1, conf.getBlockSize()));
+    return ClassSize.CONCURRENT_HASHMAP + expectedBlocks * ENTRY_OVERHEAD + maxIndexHeapSize;
+  }
+
+  @Override
+  public long getMaxSize() {
+    return conf.getMaxSize();
+  }
+
+  /**
+   * Get the off-heap memory currently allocated for slabs.
+   */
+  public long getAllocatedSize() {
+    return allocated.get();
+  }
+
+  /**
+   * Get the heap currently used by block indexes.
+   */
+  public long getIndexHeapSize() {
+    return indexHeapSize.get();
+  }
+
+  /**
+   * Get the number of cached blocks.
+   */
+  public long size() {
+    return map.size();
+  }
+
+  @Override
+  public BlockCache.Stats getStats() {
+    long hits = hitCount.get();
+    long requests = requestCount.get();
+    return new BlockCache.Stats() {
+      @Override
+      public long hitCount() {
+        return hits;
+      }
+
+      @Override
+      public long requestCount() {
+        return requests;
+      }
+    };
+  }
+
+  /**
+   * Point in time statistics of a single size class.
+   */
+  public static class SizeClassStats {
+    private final int chunkSize;
+    private final int slabs;
+    private final long chunks;
+    private final long usedChunks;
+    private final long storedBytes;
+    private final long hits;
+    private final long inserts;
+    private final long evicted;
+
+    SizeClassStats(int chunkSize, int slabs, long chunks, long usedChunks, long storedBytes,
+        long hits, long inserts, long evicted) {
+      this.chunkSize = chunkSize;
+      this.slabs = slabs;
+      this.chunks = chunks;
+      this.usedChunks = usedChunks;
+      this.storedBytes = storedBytes;
+      this.hits = hits;
+      this.inserts = inserts;
+      this.evicted = evicted;
+    }
+
+    public int getChunkSize() {
+      return chunkSize;
+    }
+
+    public int getSlabs() {
+      return slabs;
+    }
+
+    public long getChunks() {
+      return chunks;
+    }
+
+    public long getUsedChunks() {
+      return usedChunks;
+    }
+
+    public long getStoredBytes() {
+      return storedBytes;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getInserts() {
+      return inserts;
+    }
+
+    public long getEvicted() {
+      return evicted;
+    }
+
+    /**
+     * The fraction of the bytes in used chunks that do not hold block data.
+     */
+    public double getFragmentation() {
+      long usedBytes = usedChunks * chunkSize;
+      return usedBytes == 0 ? 0 : 1 - ((double) storedBytes / usedBytes);
+    }
+
+    /**
+     * The fraction of the chunks of this size class that hold a block.
+     */
+    public double getOccupancy() {
+      return chunks == 0 ? 0 : (double) usedChunks / chunks;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "chunkSize=%d slabs=%d used=%d/%d fragmentation=%.1f%% hits=%d inserts=%d evicted=%d",
+          chunkSize, slabs, usedChunks, chunks, getFragmentation() * 100, hits, inserts, evicted);
+    }
+  }
+
+  /**
+   * Get statistics for every size class that has at least one slab.
+   */
+  public List<SizeClassStats> getSizeClassStats() {
+    List<SizeClassStats> stats = new ArrayList<>();
+    for (SizeClass sc : sizeClasses) {
+      SizeClassStats scs = sc.getStats();
+      if (scs.getSlabs() > 0) {
+        stats.add(scs);
+      }
+    }
+    return stats;
+  }
+
+  public void logStats() {
+    float allocatedMB = ((float) getAllocatedSize()) / ((float) (1024 * 1024));
+    float maxMB = ((float) conf.getMaxSize()) / ((float) (1024 * 1024));
+    float indexMB = ((float) getIndexHeapSize()) / ((float) (1024 * 1024));
+    long hits = hitCount.get();
+    long requests = requestCount.get();
+    log.debug(
+        "Cache Stats: Off-heap Allocated={}MB, Max={}MB, Index Heap={}MB, Blocks={},"
+            + " Access={}, Hit={}, Hit Ratio={}%",
+        allocatedMB, maxMB, indexMB, size(), requests, hits,
+        requests == 0 ? 0 : hits * 100.0 / requests);
+    if (log.isTraceEnabled()) {
+      getSizeClassStats().forEach(scs -> log.trace("Size class stats: {}", scs));
+    }
+  }
+
+  public void shutdown() {
+    this.scheduleThreadPool.shutdown();
+    meters.forEach(Metrics.globalRegistry::remove);
+    meters.clear();
+  }
+}
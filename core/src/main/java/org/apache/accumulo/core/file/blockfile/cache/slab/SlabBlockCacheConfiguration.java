@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.slab;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager.Configuration;
+import org.apache.accumulo.core.spi.cache.CacheType;
+
+import com.google.common.base.Preconditions;
+
+public final class SlabBlockCacheConfiguration {
+
+  public static final String PROPERTY_PREFIX = "slab";
+
+  /** Default Configuration Parameters */
+  public static final Integer DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+  public static final Integer DEFAULT_MIN_CHUNK_SIZE = 1024;
+  public static final Float DEFAULT_GROWTH_FACTOR = 1.25f;
+  public static final Float DEFAULT_INDEX_HEAP_FACTOR = 0.02f;
+
+  // property names
+  public static final String SLAB_SIZE_PROPERTY = "slab.size";
+  public static final String MIN_CHUNK_SIZE_PROPERTY = "min.chunk.size";
+  public static final String GROWTH_FACTOR_PROPERTY = "growth.factor";
+  public static final String INDEX_HEAP_FACTOR_PROPERTY = "index.heap.factor";
+
+  /** Size of each off-heap slab, all slabs are carved into chunks of a single size class */
+  private final int slabSize;
+
+  /** Chunk size of the smallest size class */
+  private final int minChunkSize;
+
+  /** Ratio between the chunk sizes of two consecutive size classes */
+  private final float growthFactor;
+
+  /** Fraction of the max cache size that on-heap block indexes may consume */
+  private final float indexHeapFactor;
+
+  private final Configuration conf;
+
+  private final Map<String,String> props;
+
+  private final CacheType type;
+
+  private Optional<String> get(String k) {
+    return Optional.ofNullable(props.get(k));
+  }
+
+  public SlabBlockCacheConfiguration(Configuration conf, CacheType type) {
+
+    this.type = type;
+    this.conf = conf;
+    this.props = conf.getProperties(PROPERTY_PREFIX, type);
+
+    int configuredSlabSize =
+        get(SLAB_SIZE_PROPERTY).map(Integer::valueOf).filter(i -> i > 0).orElse(DEFAULT_SLAB_SIZE);
+    // a cache smaller than one slab still gets a single slab covering all of its memory
+    this.slabSize = (int) Math.min(configuredSlabSize, Math.max(1, conf.getMaxSize(type)));
+    this.minChunkSize = get(MIN_CHUNK_SIZE_PROPERTY).map(Integer::valueOf).filter(i -> i > 0)
+        .orElse(DEFAULT_MIN_CHUNK_SIZE);
+    this.growthFactor = get(GROWTH_FACTOR_PROPERTY).map(Float::valueOf).filter(f -> f > 1)
+        .orElse(DEFAULT_GROWTH_FACTOR);
+    this.indexHeapFactor = get(INDEX_HEAP_FACTOR_PROPERTY).map(Float::valueOf).filter(f -> f >= 0)
+        .orElse(DEFAULT_INDEX_HEAP_FACTOR);
+
+    if (this.getIndexHeapFactor() >= 1.0f) {
+      throw new IllegalArgumentException("index heap factor must be < 1");
+    }
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+  public int getMinChunkSize() {
+    return minChunkSize;
+  }
+
+  public float getGrowthFactor() {
+    return growthFactor;
+  }
+
+  public float getIndexHeapFactor() {
+    return indexHeapFactor;
+  }
+
+  /**
+   * Computes the chunk sizes of all size classes. Sizes start at the minimum chunk size, grow by
+   * the growth factor, are aligned to 8 bytes and end with a class whose chunks span a whole slab.
+   */
+  public int[] getChunkSizes() {
+    int[] sizes = new int[16];
+    int count = 0;
+    long size = Math.min(minChunkSize, slabSize);
+    while (size < slabSize) {
+      if (count == sizes.length) {
+        sizes = Arrays.copyOf(sizes, count * 2);
+      }
+      sizes[count++] = (int) size;
+      size = Math.max(size + 8, ((long) Math.ceil(size * growthFactor) + 7) & ~7L);
+    }
+    sizes = Arrays.copyOf(sizes, count + 1);
+    sizes[count] = slabSize;
+    return sizes;
+  }
+
+  public static class Builder {
+    private Map<String,String> props = new HashMap<>();
+    private String prefix;
+
+    private Builder(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public Builder slabSize(int ss) {
+      Preconditions.checkArgument(ss > 0);
+      props.put(prefix + SLAB_SIZE_PROPERTY, ss + "");
+      return this;
+    }
+
+    public Builder minChunkSize(int mcs) {
+      Preconditions.checkArgument(mcs > 0);
+      props.put(prefix + MIN_CHUNK_SIZE_PROPERTY, mcs + "");
+      return this;
+    }
+
+    public Builder growthFactor(float gf) {
+      Preconditions.checkArgument(gf > 1);
+      props.put(prefix + GROWTH_FACTOR_PROPERTY, Float.toString(gf));
+      return this;
+    }
+
+    public Builder indexHeapFactor(float ihf) {
+      Preconditions.checkArgument(ihf >= 0 && ihf < 1);
+      props.put(prefix + INDEX_HEAP_FACTOR_PROPERTY, Float.toString(ihf));
+      return this;
+    }
+
+    public Map<String,String> buildMap() {
+      return Map.copyOf(props);
+    }
+  }
+
+  public static Builder builder(CacheType ct) {
+    return new Builder(BlockCacheManager.getFullyQualifiedPropertyPrefix(PROPERTY_PREFIX, ct));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ", slabSize: " + this.getSlabSize() + ", minChunkSize: "
+        + this.getMinChunkSize() + ", growthFactor: " + this.getGrowthFactor()
+        + ", indexHeapFactor: " + this.getIndexHeapFactor();
+  }
+
+  public long getMaxSize() {
+    return conf.getMaxSize(type);
+  }
+
+  public long getBlockSize() {
+    return conf.getBlockSize();
+  }
+
+  public CacheType getType() {
+    return type;
+  }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.tiered;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.accumulo.core.util.threads.ThreadPools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent block store on a local filesystem, used as a second level behind an in memory
+ * {@link org.apache.accumulo.core.spi.cache.BlockCache}.
+ *
+ * <p>
+ * Blocks are appended by a single background thread to segment files in a directory. Each record
+ * holds the block name, the block length, a CRC32 of the block and the block bytes, so the segments
+ * themselves are the persistent index. When the cache is opened, the record headers of all existing
+ * segments are read to rebuild the in memory index, which makes blocks written before a restart
+ * immediately available. A torn record at the end of a segment, left by a crash, is truncated away.
+ *
+ * <p>
+ * When the total size of the segments exceeds the maximum size, whole segments are deleted oldest
+ * first. Block names include the file path and Accumulo never rewrites a file at the same path, so
+ * blocks of files removed by compactions are never served again and simply age out.
+ */
+public class DiskBlockCache implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(DiskBlockCache.class);
+
+  static final String SEGMENT_PREFIX = "segment-";
+  static final String SEGMENT_SUFFIX = ".blocks";
+
+  /** Name length, block length and CRC32 */
+  private static final int HEADER_SIZE = 4 + 4 + 8;
+
+  private static final int WRITE_QUEUE_SIZE = 64;
+
+  private static final long MIN_SEGMENT_SIZE = 1L << 20;
+  private static final long MAX_SEGMENT_SIZE = 256L << 20;
+
+  private static class Segment {
+    final long id;
+    final Path path;
+    final List<String> names = new ArrayList<>();
+    long size;
+    volatile FileChannel channel;
+    volatile boolean closed = false;
+
+    Segment(long id, Path path) throws IOException {
+      this.id = id;
+      this.path = path;
+      this.channel = open(path);
+      this.size = channel.size();
+    }
+
+    private static FileChannel open(Path p) throws IOException {
+      return FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Gets the channel of this segment. A thread interrupted during a read closes the channel for
+     * all threads, so a closed channel of a live segment is reopened.
+     */
+    FileChannel channel() throws IOException {
+      FileChannel fc = channel;
+      if (!fc.isOpen()) {
+        synchronized (this) {
+          if (closed) {
+            throw new ClosedChannelException();
+          }
+          fc = channel;
+          if (!fc.isOpen()) {
+            fc = open(path);
+            channel = fc;
+          }
+        }
+      }
+      return fc;
+    }
+
+    synchronized void close(boolean force) throws IOException {
+      closed = true;
+      if (force && channel.isOpen()) {
+        channel.force(true);
+      }
+      channel.close();
+    }
+
+    void delete() throws IOException {
+      close(false);
+      Files.deleteIfExists(path);
+    }
+  }
+
+  private static class Location {
+    final Segment segment;
+    final long offset;
+    final int length;
+    final long crc;
+
+    Location(Segment segment, long offset, int length, long crc) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.crc = crc;
+    }
+  }
+
+  private final Path dir;
+  private final long maxSize;
+  private final long segmentSize;
+
+  private final ConcurrentHashMap<String,Location> index = new ConcurrentHashMap<>();
+
+  /** Segments oldest first, only modified by the writer thread and open/close */
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long totalSize = 0;
+
+  private final ThreadPoolExecutor writer;
+
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong requestCount = new AtomicLong(0);
+  private final AtomicLong droppedWrites = new AtomicLong(0);
+
+  private volatile boolean closed = false;
+
+  /**
+   * Opens the cache using segments of a sixteenth of the maximum size, within 1M and 256M.
+   */
+  public DiskBlockCache(Path dir, long maxSize) throws IOException {
+    this(dir, maxSize, Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxSize / 16)));
+  }
+
+  /**
+   * Opens the cache, creating the directory if needed and rebuilding the index from any segments
+   * found in it.
+   *
+   * @param dir
+   *          local directory used exclusively by this cache
+   * @param maxSize
+   *          maximum number of bytes of all segments
+   * @param segmentSize
+   *          the size at which a new segment is started
+   */
+  public DiskBlockCache(Path dir, long maxSize, long segmentSize) throws IOException {
+    this.dir = dir;
+    this.maxSize = maxSize;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(dir);
+    recover();
+    this.writer = ThreadPools.createFixedThreadPool(1, "DiskBlockCacheWriter",
+        new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE));
+  }
+
+  private void recover() throws IOException {
+    TreeMap<Long,Path> found = new TreeMap<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*")) {
+      for (Path p : ds) {
+        String fn = String.valueOf(p.getFileName());
+        if (fn.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            long id = Long.parseLong(
+                fn.substring(SEGMENT_PREFIX.length(), fn.length() - SEGMENT_SUFFIX.length()));
+            found.put(id, p);
+          } catch (NumberFormatException e) {
+            log.warn("Ignoring unexpected file {} in block cache directory", p);
+          }
+        }
+      }
+    }
+
+    for (Entry<Long,Path> entry : found.entrySet()) {
+      Path p = entry.getValue();
+      Segment seg = new Segment(entry.getKey(), p);
+      long pos = 0;
+      long len = seg.channel().size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (pos + HEADER_SIZE <= len) {
+        header.clear();
+        readFully(seg.channel(), header, pos);
+        header.flip();
+        int nameLen = header.getInt();
+        int dataLen = header.getInt();
+        long crc = header.getLong();
+        if (nameLen <= 0 || dataLen < 0 || pos + HEADER_SIZE + nameLen + dataLen > len) {
+          break;
+        }
+        ByteBuffer nameBuf = ByteBuffer.allocate(nameLen);
+        readFully(seg.channel(), nameBuf, pos + HEADER_SIZE);
+        String name = new String(nameBuf.array(), UTF_8);
+        index.put(name, new Location(seg, pos + HEADER_SIZE + nameLen, dataLen, crc));
+        seg.names.add(name);
+        pos += HEADER_SIZE + nameLen + dataLen;
+      }
+      if (pos < len) {
+        log.info("Truncating incomplete record at {} in block cache segment {}", pos, p);
+        seg.channel().truncate(pos);
+      }
+      seg.size = pos;
+      segments.addLast(seg);
+      totalSize += pos;
+    }
+
+    log.info("Opened disk block cache {} with {} blocks in {} segments, {} bytes", dir,
+        index.size(), segments.size(), totalSize);
+    evictIfNeeded();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+    while (buf.hasRemaining()) {
+      int read = channel.read(buf, pos);
+      if (read < 0) {
+        throw new IOException("Unexpected end of block cache segment");
+      }
+      pos += read;
+    }
+  }
+
+  /**
+   * Reads a block from disk.
+   *
+   * @return the block or null if it is not present, was evicted while reading or is corrupt
+   */
+  public byte[] get(String blockName) {
+    requestCount.incrementAndGet();
+    Location loc = index.get(blockName);
+    if (loc == null) {
+      return null;
+    }
+
+    byte[] data = new byte[loc.length];
+    try {
+      readFully(loc.segment.channel(), ByteBuffer.wrap(data), loc.offset);
+    } catch (IOException e) {
+      // the segment was most likely deleted while reading
+      log.trace("Failed to read block {} from {}", blockName, loc.segment.path, e);
+      return null;
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    if (crc.getValue() != loc.crc) {
+      log.warn("Checksum mismatch for block {} in {}, ignoring it", blockName, loc.segment.path);
+      index.remove(blockName, loc);
+      return null;
+    }
+
+    hitCount.incrementAndGet();
+    return data;
+  }
+
+  /**
+   * Queues a block to be written to disk. If the writer is not keeping up, the block is dropped.
+   */
+  public void put(String blockName, byte[] data) {
+    if (closed || index.containsKey(blockName)) {
+      return;
+    }
+    try {
+      writer.execute(() -> write(blockName, data));
+    } catch (RejectedExecutionException e) {
+      droppedWrites.incrementAndGet();
+    }
+  }
+
+  private void write(String blockName, byte[] data) {
+    if (index.containsKey(blockName)) {
+      return;
+    }
+
+    try {
+      Segment seg = segments.peekLast();
+      if (seg == null || seg.size >= segmentSize) {
+        long id = seg == null ? 0 : seg.id + 1;
+        seg = new Segment(id, dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+        segments.addLast(seg);
+      }
+
+      byte[] name = blockName.getBytes(UTF_8);
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, data.length);
+
+      ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + name.length + data.length);
+      buf.putInt(name.length).putInt(data.length).putLong(crc.getValue()).put(name).put(data);
+      buf.flip();
+
+      long pos = seg.size;
+      while (buf.hasRemaining()) {
+        pos += seg.channel().write(buf, pos);
+      }
+
+      index.put(blockName,
+          new Location(seg, seg.size + HEADER_SIZE + name.length, data.length, crc.getValue()));
+      seg.names.add(blockName);
+      totalSize += pos - seg.size;
+      seg.size = pos;
+
+      evictIfNeeded();
+    } catch (IOException e) {
+      log.warn("Failed to write block {} to disk block cache {}", blockName, dir, e);
+    }
+  }
+
+  private void evictIfNeeded() throws IOException {
+    while (totalSize > maxSize && segments.size() > 1) {
+      Segment oldest = segments.removeFirst();
+      for (String name : oldest.names) {
+        index.computeIfPresent(name, (k, loc) -> loc.segment == oldest ? null : loc);
+      }
+      totalSize -= oldest.size;
+      oldest.delete();
+      log.debug("Evicted disk block cache segment {} with {} blocks", oldest.path,
+          oldest.names.size());
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  public long getDroppedWrites() {
+    return droppedWrites.get();
+  }
+
+  /**
+   * Get the number of blocks stored on disk.
+   */
+  public long size() {
+    return index.size();
+  }
+
+  /**
+   * Waits for all queued writes to reach the disk and closes the segments. The index is not lost, a
+   * new instance opened on the same directory will serve the same blocks.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (Segment seg : segments) {
+      seg.close(true);
+    }
+    index.clear();
+  }
+}
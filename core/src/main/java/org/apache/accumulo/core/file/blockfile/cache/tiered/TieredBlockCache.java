@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.tiered;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+
+/**
+ * A {@link BlockCache} that puts a {@link DiskBlockCache} behind another, usually in memory, block
+ * cache. Misses in the first level are served from disk before falling back to the loader, which
+ * reads the block from its file. Blocks read from their file are written to disk in the background,
+ * so they are available from disk after they are evicted from the first level and after a restart.
+ */
+public class TieredBlockCache implements BlockCache, Closeable {
+
+  private final BlockCache l1;
+  private final DiskBlockCache l2;
+
+  public TieredBlockCache(BlockCache l1, DiskBlockCache l2) {
+    this.l1 = l1;
+    this.l2 = l2;
+  }
+
+  public BlockCache getFirstLevel() {
+    return l1;
+  }
+
+  public DiskBlockCache getSecondLevel() {
+    return l2;
+  }
+
+  /**
+   * Wraps a loader so that a block is looked for on disk before it is loaded, and written to disk
+   * after it is loaded.
+   */
+  private class TieredLoader implements Loader {
+    private final String blockName;
+    private final Loader loader;
+
+    TieredLoader(String blockName, Loader loader) {
+      this.blockName = blockName;
+      this.loader = loader;
+    }
+
+    @Override
+    public Map<String,Loader> getDependencies() {
+      Map<String,Loader> deps = loader.getDependencies();
+      if (deps.isEmpty()) {
+        return deps;
+      }
+      Map<String,Loader> wrapped = new HashMap<>();
+      for (Entry<String,Loader> entry : deps.entrySet()) {
+        wrapped.put(entry.getKey(), new TieredLoader(entry.getKey(), entry.getValue()));
+      }
+      return wrapped;
+    }
+
+    @Override
+    public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+      byte[] data = l2.get(blockName);
+      if (data != null) {
+        return data.length > maxSize ? null : data;
+      }
+
+      data = loader.load(maxSize, dependencies);
+      if (data != null) {
+        l2.put(blockName, data);
+      }
+      return data;
+    }
+  }
+
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    l2.put(blockName, buf);
+    return l1.cacheBlock(blockName, buf);
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName) {
+    CacheEntry ce = l1.getBlock(blockName);
+    if (ce != null) {
+      return ce;
+    }
+
+    byte[] data = l2.get(blockName);
+    if (data != null) {
+      return l1.cacheBlock(blockName, data);
+    }
+    return null;
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName, Loader loader) {
+    return l1.getBlock(blockName, new TieredLoader(blockName, loader));
+  }
+
+  @Override
+  public long getMaxHeapSize() {
+    return l1.getMaxHeapSize();
+  }
+
+  @Override
+  public long getMaxSize() {
+    return l1.getMaxSize();
+  }
+
+  /**
+   * Returns the stats of both levels combined. A lookup is counted once, by the first level, and is
+   * a hit if either level had the block. The second level's own counts are available from
+   * {@link #getSecondLevel()}.
+   */
+  @Override
+  public Stats getStats() {
+    Stats l1Stats = l1.getStats();
+    long hits = l1Stats.hitCount() + l2.getHitCount();
+    long requests = l1Stats.requestCount();
+    return new Stats() {
+      @Override
+      public long hitCount() {
+        return hits;
+      }
+
+      @Override
+      public long requestCount() {
+        return requests;
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    l2.close();
+  }
+}
@@ -24,10 +24,24 @@ public class BasicCacheProvider implements CacheProvider {
 
   private final BlockCache indexCache;
   private final BlockCache dataCache;
+  private final ReadAheadPool readAheadPool;
+  private final PinnedBlockTier pinnedBlockTier;
 
   public BasicCacheProvider(BlockCache indexCache, BlockCache dataCache) {
+    this(indexCache, dataCache, null);
+  }
+
+  public BasicCacheProvider(BlockCache indexCache, BlockCache dataCache,
+      ReadAheadPool readAheadPool) {
+    this(indexCache, dataCache, readAheadPool, null);
+  }
+
+  public BasicCacheProvider(BlockCache indexCache, BlockCache dataCache,
+      ReadAheadPool readAheadPool, PinnedBlockTier pinnedBlockTier) {
     this.indexCache = indexCache;
     this.dataCache = dataCache;
+    this.readAheadPool = readAheadPool;
+    this.pinnedBlockTier = pinnedBlockTier;
   }
 
   @Override
@@ -40,4 +54,14 @@ public class BasicCacheProvider implements CacheProvider {
     return indexCache;
   }
 
+  @Override
+  public ReadAheadPool getReadAheadPool() {
+    return readAheadPool;
+  }
+
+  @Override
+  public PinnedBlockTier getPinnedBlockTier() {
+    return pinnedBlockTier;
+  }
+
 }
@@ -23,6 +23,7 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -33,6 +34,7 @@ import java.util.function.Supplier;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile.Reader.BlockReader;
 import org.apache.accumulo.core.file.rfile.bcfile.MetaBlockDoesNotExist;
+import org.apache.accumulo.core.file.streams.MappedFileInputStream;
 import org.apache.accumulo.core.file.streams.RateLimitedInputStream;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCache.Loader;
@@ -76,6 +78,9 @@ public class CachableBlockFile {
     RateLimiter readLimiter = null;
     Configuration hadoopConf = null;
     CryptoService cryptoService = null;
+    int readAheadBlocks = 0;
+    boolean mapped = false;
+    String pinnedTableId = null;
 
     public CachableBuilder conf(Configuration hadoopConf) {
       this.hadoopConf = hadoopConf;
@@ -89,6 +94,36 @@ public class CachableBlockFile {
       return this;
     }
 
+    /**
+     * Like {@link #fsPath(FileSystem, Path)}, but if mapLocalFiles is true and the file is on the
+     * local file system, the file is memory mapped instead of opened. Uncompressed data blocks of a
+     * mapped file are copied directly from the mapping when they are not in the data cache, and the
+     * mapping is released when the reader is closed. Checksums kept by Hadoop's local file system
+     * are not verified for mapped files.
+     */
+    public CachableBuilder fsPath(FileSystem fs, Path dataFile, boolean mapLocalFiles) {
+      fsPath(fs, dataFile);
+      if (mapLocalFiles && "file".equals(fs.getUri().getScheme())) {
+        java.nio.file.Path localFile = Paths.get(fs.makeQualified(dataFile).toUri());
+        this.inputSupplier = () -> {
+          MappedFileInputStream in = MappedFileInputStream.map(localFile);
+          // files too large to map as a single buffer are opened as usual
+          return in == null ? fs.open(dataFile) : in;
+        };
+        this.mapped = true;
+      }
+      return this;
+    }
+
+    /**
+     * Pins upper level index blocks of the file in the {@link PinnedBlockTier} of the cache
+     * provider, accounting for them under the given table, while the file is open.
+     */
+    public CachableBuilder pinIndexBlocks(String tableId) {
+      this.pinnedTableId = tableId;
+      return this;
+    }
+
     public CachableBuilder input(InputStream is, String cacheId) {
       this.cacheId = cacheId;
       this.inputSupplier = () -> is;
@@ -119,6 +154,15 @@ public class CachableBlockFile {
       this.cryptoService = cryptoService;
       return this;
     }
+
+    /**
+     * @param readAheadBlocks
+     *          the number of data blocks to read ahead of a sequential scan, 0 disables read ahead
+     */
+    public CachableBuilder readAhead(int readAheadBlocks) {
+      this.readAheadBlocks = readAheadBlocks;
+      return this;
+    }
   }
 
   /**
@@ -134,6 +178,12 @@ public class CachableBlockFile {
     private boolean closed = false;
     private final Configuration conf;
     private final CryptoService cryptoService;
+    private final int readAheadBlocks;
+    private final boolean mapped;
+    // the mapped file, if it is mapped and its data blocks are stored as is
+    private volatile MappedFileInputStream rawMappedInput = null;
+    private volatile boolean rawMappedInputChecked = false;
+    private final PinnedBlockTier.FileBlocks pinnedBlocks;
 
     private final IoeSupplier<InputStream> inputSupplier;
     private final IoeSupplier<Long> lengthSupplier;
@@ -159,8 +209,9 @@ public class CachableBlockFile {
 
       BCFile.Reader reader = bcfr.get();
       if (reader == null) {
+        InputStream in = inputSupplier.get();
         RateLimitedInputStream fsIn =
-            new RateLimitedInputStream((InputStream & Seekable) inputSupplier.get(), readLimiter);
+            new RateLimitedInputStream((InputStream & Seekable) in, readLimiter);
         BCFile.Reader tmpReader = null;
         if (serializedMetadata == null) {
           if (fileLenCache == null) {
@@ -185,6 +236,9 @@ public class CachableBlockFile {
 
         if (bcfr.compareAndSet(null, tmpReader)) {
           fin = fsIn;
+          if (tmpReader.isDataStoredRaw() && in instanceof MappedFileInputStream) {
+            rawMappedInput = (MappedFileInputStream) in;
+          }
           return tmpReader;
         } else {
           fsIn.close();
@@ -229,12 +283,29 @@ public class CachableBlockFile {
       private long offset;
       private long compressedSize;
       private long rawSize;
+      private boolean loadingMeta;
 
       private RawBlockLoader(long offset, long compressedSize, long rawSize, boolean loadingMeta) {
         super(loadingMeta);
         this.offset = offset;
         this.compressedSize = compressedSize;
         this.rawSize = rawSize;
+        this.loadingMeta = loadingMeta;
+      }
+
+      @Override
+      public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+        if (!loadingMeta && rawSize <= maxSize) {
+          try {
+            byte[] b = readMappedDataBlock(offset, compressedSize, rawSize);
+            if (b != null) {
+              return b;
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        return super.load(maxSize, dependencies);
       }
 
       @Override
@@ -363,6 +434,22 @@ public class CachableBlockFile {
       this.readLimiter = b.readLimiter;
       this.conf = b.hadoopConf;
       this.cryptoService = Objects.requireNonNull(b.cryptoService);
+      this.readAheadBlocks = b.readAheadBlocks;
+      this.mapped = b.mapped;
+      PinnedBlockTier pinnedTier = b.cacheProvider.getPinnedBlockTier();
+      this.pinnedBlocks =
+          pinnedTier == null ? null : pinnedTier.openFile(this.cacheId, b.pinnedTableId);
+    }
+
+    public int getReadAheadBlocks() {
+      return readAheadBlocks;
+    }
+
+    /**
+     * @return the pool of the cache provider currently set, or null if blocks are not read ahead
+     */
+    public ReadAheadPool getReadAheadPool() {
+      return cacheProvider.getReadAheadPool();
     }
 
     /**
@@ -409,6 +496,43 @@ public class CachableBlockFile {
       return new CachedBlockRead(_currBlock);
     }
 
+    /**
+     * Like {@link #getMetaBlock(long, long, long)}, but if pin is true the block is pinned in the
+     * {@link PinnedBlockTier} until this file is closed, if the tier has room for it.
+     */
+    public CachedBlockRead getMetaBlock(long offset, long compressedSize, long rawSize, boolean pin)
+        throws IOException {
+      if (!pin || pinnedBlocks == null) {
+        return getMetaBlock(offset, compressedSize, rawSize);
+      }
+
+      PinnedBlockTier.PinnedEntry entry = pinnedBlocks.get(offset);
+      if (entry == null) {
+        CachedBlockRead block = getMetaBlock(offset, compressedSize, rawSize);
+        byte[] buffer;
+        if (block.isIndexable()) {
+          buffer = block.getBuffer();
+        } else if (rawSize <= MAX_ARRAY_SIZE) {
+          buffer = new byte[(int) rawSize];
+          try {
+            block.readFully(buffer);
+          } finally {
+            block.close();
+          }
+          block = new CachedBlockRead(null, buffer);
+        } else {
+          return block;
+        }
+
+        entry = pinnedBlocks.pin(offset, buffer);
+        if (entry == null) {
+          return block;
+        }
+      }
+
+      return new CachedBlockRead(entry, entry.getBuffer());
+    }
+
     /**
      * It is intended that once the BlockRead object is returned to the caller, that the caller will
      * read the entire block and then call close on the BlockRead class.
@@ -431,11 +555,42 @@ public class CachableBlockFile {
       return new CachedBlockRead(_currBlock);
     }
 
+    /**
+     * Copies an uncompressed data block of a memory mapped file directly from the mapping.
+     *
+     * @return the block, or null if it can not be read from a mapping
+     */
+    private byte[] readMappedDataBlock(long offset, long compressedSize, long rawSize)
+        throws IOException {
+      if (!mapped || compressedSize != rawSize || rawSize > MAX_ARRAY_SIZE) {
+        return null;
+      }
+
+      if (!rawMappedInputChecked) {
+        // opening the file sets rawMappedInput
+        getBCFile();
+        rawMappedInputChecked = true;
+      }
+
+      MappedFileInputStream in = rawMappedInput;
+      if (in == null) {
+        return null;
+      }
+
+      byte[] b = new byte[(int) rawSize];
+      in.read(offset, b, 0, b.length);
+      if (readLimiter != null) {
+        readLimiter.acquire(rawSize);
+      }
+      return b;
+    }
+
     public CachedBlockRead getDataBlock(long offset, long compressedSize, long rawSize)
         throws IOException {
       BlockCache _dCache = cacheProvider.getDataCache();
       if (_dCache != null) {
         String _lookup = this.cacheId + "R" + offset;
+        // on a miss, the loader copies the block from the mapping if the file is mapped
         CacheEntry ce =
             _dCache.getBlock(_lookup, new RawBlockLoader(offset, compressedSize, rawSize, false));
         if (ce != null) {
@@ -443,10 +598,73 @@ public class CachableBlockFile {
         }
       }
 
+      byte[] mappedBlock = readMappedDataBlock(offset, compressedSize, rawSize);
+      if (mappedBlock != null) {
+        // an entry of its own lets a block index be built for the block while it is read
+        return new CachedBlockRead(new UncachedEntry(mappedBlock), mappedBlock);
+      }
+
       BlockReader _currBlock = getBCFile().getDataBlock(offset, compressedSize, rawSize);
       return new CachedBlockRead(_currBlock);
     }
 
+    /**
+     * Reads a data block ahead of a scan. A block that is in the data cache is returned from the
+     * cache, otherwise the block is read and decompressed into memory without adding it to the
+     * cache. Pass the block to {@link #useReadAheadBlock(long, CachedBlockRead)} when the scan
+     * reaches it.
+     *
+     * @return the block, or null if it is too large to read into memory or is read from a memory
+     *         mapped file
+     */
+    public CachedBlockRead readAheadDataBlock(long offset, long compressedSize, long rawSize)
+        throws IOException {
+      if (rawMappedInput != null) {
+        // reading a mapped block is a copy, there is nothing to gain from doing it ahead of time
+        return null;
+      }
+
+      BlockCache _dCache = cacheProvider.getDataCache();
+      if (_dCache != null) {
+        CacheEntry ce = _dCache.getBlock(this.cacheId + "R" + offset);
+        if (ce != null) {
+          return new CachedBlockRead(ce, ce.getBuffer());
+        }
+      }
+
+      if (rawSize > MAX_ARRAY_SIZE) {
+        return null;
+      }
+
+      BlockReader _currBlock = getBCFile().getDataBlock(offset, compressedSize, rawSize);
+      try {
+        byte[] b = new byte[(int) rawSize];
+        _currBlock.readFully(b);
+        return new CachedBlockRead(null, b);
+      } finally {
+        _currBlock.close();
+      }
+    }
+
+    /**
+     * Adds a block returned by {@link #readAheadDataBlock(long, long, long)} to the data cache, now
+     * that a scan has reached it. A block the cache does not take still gets an entry of its own,
+     * so that a block index can be built for it while the scan reads it.
+     */
+    public CachedBlockRead useReadAheadBlock(long offset, CachedBlockRead block) {
+      if (block.cb != null) {
+        return block;
+      }
+      BlockCache _dCache = cacheProvider.getDataCache();
+      if (_dCache != null) {
+        CacheEntry ce = _dCache.cacheBlock(this.cacheId + "R" + offset, block.getBuffer());
+        if (ce != null) {
+          return new CachedBlockRead(ce, ce.getBuffer());
+        }
+      }
+      return new CachedBlockRead(new UncachedEntry(block.getBuffer()), block.getBuffer());
+    }
+
     @Override
     public synchronized void close() throws IOException {
       if (closed)
@@ -454,6 +672,9 @@ public class CachableBlockFile {
 
       closed = true;
 
+      if (pinnedBlocks != null)
+        pinnedBlocks.release();
+
       BCFile.Reader reader = bcfr.get();
       if (reader != null)
         reader.close();
@@ -473,6 +694,36 @@ public class CachableBlockFile {
 
   }
 
+  /**
+   * The entry of a block that is not in a cache. It holds the block's index for as long as the
+   * block is referenced.
+   */
+  private static class UncachedEntry implements CacheEntry {
+    private final byte[] buffer;
+    private Weighable index;
+
+    UncachedEntry(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      return buffer;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      if (index == null) {
+        index = supplier.get();
+      }
+      return (T) index;
+    }
+
+    @Override
+    public void indexWeightChanged() {}
+  }
+
   public static class CachedBlockRead extends DataInputStream {
     private SeekableByteArrayInputStream seekableInput;
     private final CacheEntry cb;
@@ -513,11 +764,17 @@ public class CachableBlockFile {
     }
 
     public <T extends Weighable> T getIndex(Supplier<T> indexSupplier) {
+      // blocks read ahead of a scan may not be cached
+      if (cb == null) {
+        return null;
+      }
       return cb.getIndex(indexSupplier);
     }
 
     public void indexWeightChanged() {
-      cb.indexWeightChanged();
+      if (cb != null) {
+        cb.indexWeightChanged();
+      }
     }
   }
 }
@@ -26,4 +26,18 @@ public interface CacheProvider {
   BlockCache getDataCache();
 
   BlockCache getIndexCache();
+
+  /**
+   * @return the pool that reads data blocks ahead of scans, or null if blocks are not read ahead
+   */
+  default ReadAheadPool getReadAheadPool() {
+    return null;
+  }
+
+  /**
+   * @return the tier upper level index blocks are pinned in, or null if they are not pinned
+   */
+  default PinnedBlockTier getPinnedBlockTier() {
+    return null;
+  }
 }
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.impl;
+
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_INDEX_PINNED_BYTES;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.spi.cache.CacheEntry.Weighable;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * A bounded tier of index blocks pinned in memory for as long as the files they belong to are open.
+ * Unlike blocks in the index cache, pinned blocks are not evicted by other blocks, so scans reading
+ * many blocks can not displace the upper levels of the index of frequently read files. When the
+ * tier is full, blocks are not pinned and are only read through the index cache.
+ * <p>
+ * Blocks are pinned once per file, and shared by all readers that have the file open. The bytes
+ * pinned for each table are published as a metric while the table has blocks pinned. The tier is
+ * created by the tablet server along with its block caches, reaches readers through their
+ * {@link CacheProvider}, and is closed with the caches.
+ */
+public class PinnedBlockTier {
+
+  private final long maxSize;
+  // guarded by this
+  private long size = 0;
+  private final Map<String,FileBlocks> files = new HashMap<>();
+  private final Map<String,TableSize> tables = new HashMap<>();
+
+  /**
+   * @param maxSize
+   *          the number of bytes that can be pinned
+   */
+  public PinnedBlockTier(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the number of bytes pinned
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * @return the number of bytes pinned for each table that has blocks pinned
+   */
+  public synchronized Map<String,Long> getSizeByTable() {
+    Map<String,Long> sizes = new HashMap<>();
+    tables.forEach((table, tableSize) -> sizes.put(table, tableSize.bytes));
+    return sizes;
+  }
+
+  /**
+   * Unpins all blocks and removes the metrics of the tier. Files still open read their index blocks
+   * through the index cache.
+   */
+  public synchronized void close() {
+    files.values().forEach(file -> file.blocks.clear());
+    files.clear();
+    tables.values().forEach(tableSize -> Metrics.globalRegistry.remove(tableSize.gauge));
+    tables.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the blocks pinned for a file of a table, shared with other readers of the file, or null
+   *         if the file's blocks can not be pinned. Every reader that gets the blocks must
+   *         {@link FileBlocks#release()} them.
+   */
+  synchronized FileBlocks openFile(String cacheId, String tableId) {
+    if (maxSize <= 0 || cacheId == null || tableId == null) {
+      return null;
+    }
+    FileBlocks file = files.computeIfAbsent(cacheId, id -> new FileBlocks(id, tableId));
+    file.readers++;
+    return file;
+  }
+
+  private static class TableSize {
+    // read by the gauge without holding the tier's lock
+    private volatile long bytes = 0;
+    private Gauge gauge;
+  }
+
+  static class PinnedEntry implements CacheEntry, Weighable {
+    private final byte[] buffer;
+
+    PinnedEntry(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      return buffer;
+    }
+
+    @Override
+    public <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      return null;
+    }
+
+    @Override
+    public void indexWeightChanged() {}
+
+    @Override
+    public int weight() {
+      // the array header and the entry itself
+      return buffer.length + 32;
+    }
+  }
+
+  /**
+   * The blocks pinned for one file, released when the last reader of the file is closed.
+   */
+  class FileBlocks {
+    private final String cacheId;
+    private final String tableId;
+    private final Map<Long,PinnedEntry> blocks = new ConcurrentHashMap<>();
+    // guarded by the tier
+    private long fileSize = 0;
+    private int readers = 0;
+
+    private FileBlocks(String cacheId, String tableId) {
+      this.cacheId = cacheId;
+      this.tableId = tableId;
+    }
+
+    PinnedEntry get(long offset) {
+      return blocks.get(offset);
+    }
+
+    /**
+     * Pins a block if there is room in the tier.
+     *
+     * @return the pinned block, or null if it was not pinned
+     */
+    PinnedEntry pin(long offset, byte[] buffer) {
+      synchronized (PinnedBlockTier.this) {
+        if (files.get(cacheId) != this) {
+          // released, or unpinned by closing the tier
+          return null;
+        }
+        PinnedEntry entry = blocks.get(offset);
+        if (entry == null) {
+          entry = new PinnedEntry(buffer);
+          if (size + entry.weight() > maxSize) {
+            return null;
+          }
+          blocks.put(offset, entry);
+          size += entry.weight();
+          fileSize += entry.weight();
+          TableSize tableSize = tables.computeIfAbsent(tableId, table -> {
+            TableSize ts = new TableSize();
+            ts.gauge = Gauge.builder(METRICS_TSERVER_INDEX_PINNED_BYTES, ts, t -> t.bytes)
+                .tag("table.id", table).register(Metrics.globalRegistry);
+            return ts;
+          });
+          tableSize.bytes += entry.weight();
+        }
+        return entry;
+      }
+    }
+
+    /**
+     * Called once by each reader of the file when it is closed. The blocks are unpinned when the
+     * last reader releases them.
+     */
+    void release() {
+      synchronized (PinnedBlockTier.this) {
+        if (--readers > 0 || files.get(cacheId) != this) {
+          return;
+        }
+        files.remove(cacheId);
+        blocks.clear();
+        size -= fileSize;
+        TableSize tableSize = tables.get(tableId);
+        if (tableSize != null) {
+          tableSize.bytes -= fileSize;
+          if (tableSize.bytes == 0) {
+            Metrics.globalRegistry.remove(tableSize.gauge);
+            tables.remove(tableId);
+          }
+        }
+        fileSize = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The threads and memory shared by all data blocks read ahead of scans. A block is only read ahead
+ * if its size fits in what is left of the memory budget, and its size stays reserved until the scan
+ * reaches the block or stops reading ahead. The owner of the pool shuts down its executor.
+ */
+public class ReadAheadPool {
+
+  private final ExecutorService executor;
+  private final long maxBytes;
+  private final AtomicLong reserved = new AtomicLong(0);
+
+  public ReadAheadPool(ExecutorService executor, long maxBytes) {
+    this.executor = executor;
+    this.maxBytes = maxBytes;
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Reserves memory for a block read ahead.
+   *
+   * @return true if the bytes were reserved, false if that would exceed the budget
+   */
+  public boolean reserve(long bytes) {
+    long current;
+    do {
+      current = reserved.get();
+      if (current + bytes > maxBytes) {
+        return false;
+      }
+    } while (!reserved.compareAndSet(current, current + bytes));
+    return true;
+  }
+
+  public void release(long bytes) {
+    reserved.addAndGet(-bytes);
+  }
+
+  /**
+   * @return the bytes reserved for blocks read ahead and not yet released
+   */
+  public long getReserved() {
+    return reserved.get();
+  }
+}
@@ -27,9 +27,19 @@ public class ScanCacheProvider implements CacheProvider {
 
   private final BlockCache indexCache;
   private final BlockCache dataCache;
+  private final ReadAheadPool readAheadPool;
+  private final PinnedBlockTier pinnedBlockTier;
 
   public ScanCacheProvider(AccumuloConfiguration tableConfig, ScanDispatch dispatch,
       BlockCache indexCache, BlockCache dataCache) {
+    this(tableConfig, dispatch, indexCache, dataCache, null, null);
+  }
+
+  public ScanCacheProvider(AccumuloConfiguration tableConfig, ScanDispatch dispatch,
+      BlockCache indexCache, BlockCache dataCache, ReadAheadPool readAheadPool,
+      PinnedBlockTier pinnedBlockTier) {
+    this.readAheadPool = readAheadPool;
+    this.pinnedBlockTier = pinnedBlockTier;
     switch (dispatch.getIndexCacheUsage()) {
       case ENABLED:
         this.indexCache = indexCache;
@@ -77,4 +87,14 @@ public class ScanCacheProvider implements CacheProvider {
   public BlockCache getIndexCache() {
     return indexCache;
   }
+
+  @Override
+  public ReadAheadPool getReadAheadPool() {
+    return readAheadPool;
+  }
+
+  @Override
+  public PinnedBlockTier getPinnedBlockTier() {
+    return pinnedBlockTier;
+  }
 }
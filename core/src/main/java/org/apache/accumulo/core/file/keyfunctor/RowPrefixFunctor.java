@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.keyfunctor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.bloom.Key;
+
+/**
+ * Adds a prefix of each row to the bloom filter, so that scans of all rows with a prefix can use
+ * the filter. The prefix of a row is either its first {@link Property#TABLE_BLOOM_PREFIX_LENGTH}
+ * bytes, or the row up to and including the first {@link Property#TABLE_BLOOM_PREFIX_DELIMITER}.
+ * Rows that are too short or have no delimiter are added whole.
+ * <p>
+ * The filter is checked for ranges that only contain rows with the same prefix, like a range
+ * created by {@link Range#prefix(Text)} with a prefix at least as long as the configured one, and
+ * for ranges of a single row. The length or delimiter is stored in the file with the filter, so
+ * changing the table's configuration does not affect files already written.
+ */
+public class RowPrefixFunctor implements KeyFunctor, Writable {
+
+  private int length = 0;
+  private int delimiter = -1;
+
+  /**
+   * Configures the prefix from a table's configuration, before writing a file.
+   */
+  public void init(AccumuloConfiguration conf) {
+    length = conf.getCount(Property.TABLE_BLOOM_PREFIX_LENGTH);
+    String delim = conf.get(Property.TABLE_BLOOM_PREFIX_DELIMITER);
+    if (length > 0) {
+      delimiter = -1;
+    } else if (delim.length() == 1 && delim.charAt(0) < 0x80) {
+      delimiter = delim.charAt(0);
+    } else {
+      throw new IllegalArgumentException(getClass().getSimpleName() + " requires "
+          + Property.TABLE_BLOOM_PREFIX_LENGTH.getKey() + " to be positive or "
+          + Property.TABLE_BLOOM_PREFIX_DELIMITER.getKey() + " to be a single ASCII character");
+    }
+  }
+
+  /**
+   * @return the length of the prefix of a row, or the length of the row if it has no prefix
+   */
+  private int prefixLength(byte[] row, int offset, int len) {
+    if (length > 0) {
+      return Math.min(length, len);
+    }
+    for (int i = 0; i < len; i++) {
+      if (row[offset + i] == delimiter) {
+        return i + 1;
+      }
+    }
+    return len;
+  }
+
+  /**
+   * @return true if the row has a prefix, false if it is shorter than the prefix length or has no
+   *         delimiter
+   */
+  private boolean hasPrefix(byte[] row, int offset, int prefixLen) {
+    return length > 0 ? prefixLen == length
+        : prefixLen > 0 && row[offset + prefixLen - 1] == delimiter;
+  }
+
+  @Override
+  public Key transform(org.apache.accumulo.core.data.Key acuKey) {
+    ByteSequence row = acuKey.getRowData();
+    int prefixLen = prefixLength(row.getBackingArray(), row.offset(), row.length());
+    byte[] keyData = new byte[prefixLen];
+    System.arraycopy(row.getBackingArray(), row.offset(), keyData, 0, prefixLen);
+    return new Key(keyData, 1.0);
+  }
+
+  @Override
+  public Key transform(Range range) {
+    if (range.getStartKey() == null || range.getEndKey() == null) {
+      return null;
+    }
+
+    ByteSequence row = range.getStartKey().getRowData();
+    byte[] data = row.getBackingArray();
+    int prefixLen = prefixLength(data, row.offset(), row.length());
+
+    if (!hasPrefix(data, row.offset(), prefixLen)) {
+      // the row was added whole, so only a range of that one row can be checked
+      return RowFunctor.isRangeInBloomFilter(range, PartialKey.ROW) ? transform(range.getStartKey())
+          : null;
+    }
+
+    // all rows starting with the prefix, and only those, have the prefix
+    byte[] prefix = Arrays.copyOfRange(data, row.offset(), row.offset() + prefixLen);
+    Text following = Range.followingPrefix(new Text(prefix));
+    if (following == null) {
+      return null;
+    }
+    int cmp = range.getEndKey().compareTo(new org.apache.accumulo.core.data.Key(following));
+    if (cmp < 0 || (cmp == 0 && !range.isEndKeyInclusive())) {
+      return new Key(prefix, 1.0);
+    }
+    return null;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(length);
+    out.writeInt(delimiter);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    length = in.readInt();
+    delimiter = in.readInt();
+  }
+}
@@ -35,6 +35,15 @@ public class BlockIndex implements Weighable {
 
   public static BlockIndex getIndex(CachedBlockRead cacheBlock, IndexEntry indexEntry)
       throws IOException {
+    return getIndex(cacheBlock, indexEntry, null);
+  }
+
+  /**
+   * @param dictionary
+   *          the column dictionary of the block's locality group, or null
+   */
+  static BlockIndex getIndex(CachedBlockRead cacheBlock, IndexEntry indexEntry,
+      ColumnDictionary dictionary) throws IOException {
 
     BlockIndex blockIndex = cacheBlock.getIndex(BlockIndex::new);
     if (blockIndex == null)
@@ -44,7 +53,7 @@ public class BlockIndex implements Weighable {
 
     // 1 is a power of two, but do not care about it
     if (accessCount >= 2 && isPowerOfTwo(accessCount)) {
-      blockIndex.buildIndex(accessCount, cacheBlock, indexEntry);
+      blockIndex.buildIndex(accessCount, cacheBlock, indexEntry, dictionary);
       cacheBlock.indexWeightChanged();
     }
 
@@ -159,10 +168,10 @@ public class BlockIndex implements Weighable {
   }
 
   private synchronized void buildIndex(int indexEntries, CachedBlockRead cacheBlock,
-      IndexEntry indexEntry) throws IOException {
+      IndexEntry indexEntry, ColumnDictionary dictionary) throws IOException {
     cacheBlock.seek(0);
 
-    RelativeKey rk = new RelativeKey();
+    RelativeKey rk = new RelativeKey(dictionary);
     Value val = new Value();
 
     int interval = indexEntry.getNumEntries() / indexEntries;
@@ -181,13 +190,13 @@ public class BlockIndex implements Weighable {
 
     while (count < (indexEntry.getNumEntries() - interval + 1)) {
 
-      Key myPrevKey = rk.getKey();
       int pos = cacheBlock.getPosition();
       rk.readFields(cacheBlock);
       val.readFields(cacheBlock);
 
       if (count > 0 && count % interval == 0) {
-        index.add(new BlockIndexEntry(pos, indexEntry.getNumEntries() - count, myPrevKey));
+        // keys are only created for the entries kept in the index
+        index.add(new BlockIndexEntry(pos, indexEntry.getNumEntries() - count, rk.getPrevKey()));
       }
 
       count++;
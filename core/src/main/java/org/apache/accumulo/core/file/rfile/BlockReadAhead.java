@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachedBlockRead;
+import org.apache.accumulo.core.file.blockfile.impl.ReadAheadPool;
+import org.apache.accumulo.core.file.rfile.MultiLevelIndex.IndexEntry;
+import org.apache.accumulo.core.file.rfile.MultiLevelIndex.Reader.IndexIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the data blocks of a locality group ahead of a sequential scan. Once a reader moves from
+ * one data block to the next {@value #SEQUENTIAL_THRESHOLD} times without seeking elsewhere, the
+ * following blocks in the index are read and decompressed in the background, using the threads and
+ * memory of the {@link ReadAheadPool} of the reader's cache provider. Blocks read ahead are held
+ * until the scan reaches them and are only added to the data cache then, so blocks a scan never
+ * reaches do not displace blocks in the cache.
+ */
+class BlockReadAhead {
+
+  private static final Logger log = LoggerFactory.getLogger(BlockReadAhead.class);
+
+  static final int SEQUENTIAL_THRESHOLD = 2;
+
+  /**
+   * A block being read ahead. Its size is reserved in the pool until the scan takes the block or
+   * the block is discarded, and a discarded block that is being read is released once the read
+   * ends.
+   */
+  private static class PendingBlock {
+    final long offset;
+    final long size;
+    final ReadAheadPool pool;
+    Future<CachedBlockRead> future;
+    private boolean started = false;
+    private boolean done = false;
+    private boolean discarded = false;
+    private boolean released = false;
+
+    PendingBlock(long offset, long size, ReadAheadPool pool) {
+      this.offset = offset;
+      this.size = size;
+      this.pool = pool;
+    }
+
+    /**
+     * @return false if the block was discarded before it started to be read
+     */
+    synchronized boolean start() {
+      started = !discarded;
+      return started;
+    }
+
+    synchronized void finish() {
+      done = true;
+      if (discarded) {
+        release();
+      }
+    }
+
+    /**
+     * @return true if the block is being read, which continues in the background
+     */
+    synchronized boolean discard() {
+      discarded = true;
+      if (!started || done) {
+        release();
+        return false;
+      }
+      return true;
+    }
+
+    synchronized void release() {
+      if (!released) {
+        released = true;
+        pool.release(size);
+      }
+    }
+  }
+
+  private final CachableBlockFile.Reader reader;
+  private final int maxBlocks;
+  // blocks being read ahead, in index order, starting with the block after the current block
+  private final ArrayDeque<PendingBlock> pending = new ArrayDeque<>();
+  private int sequentialBlocks = 0;
+
+  BlockReadAhead(CachableBlockFile.Reader reader, int maxBlocks) {
+    this.reader = reader;
+    this.maxBlocks = maxBlocks;
+  }
+
+  /**
+   * Gets a data block, from the blocks read ahead if it is the next one.
+   *
+   * @param entry
+   *          the index entry of the block, which the iterator just returned
+   * @param sequential
+   *          true if the block follows the block the reader was positioned in, false if the reader
+   *          seeked to it
+   */
+  CachedBlockRead getBlock(IndexEntry entry, IndexIterator iiter, boolean sequential)
+      throws IOException {
+    CachedBlockRead block = null;
+
+    while (block == null && !pending.isEmpty()) {
+      PendingBlock pb = pending.poll();
+      if (pb.offset == entry.getOffset()) {
+        block = take(pb);
+      } else {
+        discard(pb);
+      }
+    }
+
+    if (block == null) {
+      block = reader.getDataBlock(entry.getOffset(), entry.getCompressedSize(), entry.getRawSize());
+    }
+
+    if (sequential) {
+      sequentialBlocks++;
+      if (sequentialBlocks >= SEQUENTIAL_THRESHOLD) {
+        schedule(iiter);
+      }
+    } else {
+      sequentialBlocks = 0;
+    }
+
+    return block;
+  }
+
+  private CachedBlockRead take(PendingBlock pb) throws IOException {
+    CachedBlockRead block;
+    try {
+      block = pb.future.get();
+    } catch (ExecutionException e) {
+      pb.release();
+      log.debug("Failed to read block at offset {} ahead of scan, reading it again", pb.offset,
+          e.getCause());
+      return null;
+    } catch (InterruptedException e) {
+      discard(pb);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for block read ahead");
+    }
+
+    // the block is now held by the scan rather than the pool
+    pb.release();
+    return block == null ? null : reader.useReadAheadBlock(pb.offset, block);
+  }
+
+  /**
+   * @return true if the block is being read, which continues in the background
+   */
+  private static boolean discard(PendingBlock pb) {
+    // a running read is not interrupted, as that could close the file's shared input stream
+    pb.future.cancel(false);
+    return pb.discard();
+  }
+
+  /**
+   * Starts reading the blocks after the current block that are not already pending, leaving the
+   * index iterator where it was. Stops at the first block that does not fit in the memory of the
+   * pool.
+   */
+  private void schedule(IndexIterator iiter) {
+    ReadAheadPool pool = reader.getReadAheadPool();
+    if (pool == null) {
+      return;
+    }
+
+    int moved = 0;
+    try {
+      while (moved < maxBlocks && iiter.hasNext()) {
+        IndexEntry next = iiter.next();
+        moved++;
+        if (moved > pending.size()) {
+          long offset = next.getOffset();
+          long compressedSize = next.getCompressedSize();
+          long rawSize = next.getRawSize();
+          if (!pool.reserve(rawSize)) {
+            break;
+          }
+          PendingBlock pb = new PendingBlock(offset, rawSize, pool);
+          try {
+            pb.future = pool.getExecutor().submit(() -> {
+              if (!pb.start()) {
+                return null;
+              }
+              try {
+                return reader.readAheadDataBlock(offset, compressedSize, rawSize);
+              } finally {
+                pb.finish();
+              }
+            });
+          } catch (RejectedExecutionException e) {
+            // the pool is shut down
+            pool.release(rawSize);
+            break;
+          }
+          pending.add(pb);
+        }
+      }
+    } finally {
+      for (int i = 0; i < moved; i++) {
+        iiter.previous();
+      }
+    }
+  }
+
+  /**
+   * Discards the blocks being read ahead and waits for reads already running to finish, so that
+   * none of them use the file after it is closed.
+   */
+  void close() {
+    for (PendingBlock pb : pending) {
+      if (discard(pb)) {
+        try {
+          pb.future.get();
+        } catch (ExecutionException e) {
+          // the block is discarded, so the failure does not matter
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    pending.clear();
+    sequentialBlocks = 0;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Dictionaries of the column families, and optionally the column visibilities, of an RFile locality
+ * group. Starting with {@link RFile#RINDEX_VER_10}, a column family or visibility that is in its
+ * dictionary is written in a data block as its id in the dictionary instead of its bytes. Wide rows
+ * that cycle through a fixed set of columns store each family once per locality group instead of
+ * once per row.
+ *
+ * <p>
+ * Values are added to a dictionary as they are first written, until it is full, so ids never change
+ * while a locality group is written. The dictionaries are written with the locality group's
+ * metadata, which is read before any of its data blocks.
+ */
+class ColumnDictionary {
+
+  private final int maxFamilies;
+  private final int maxVisibilities;
+
+  private final List<byte[]> families = new ArrayList<>();
+  private final List<byte[]> visibilities = new ArrayList<>();
+
+  // only used when writing
+  private final Map<ByteSequence,Integer> familyIds = new HashMap<>();
+  private final Map<ByteSequence,Integer> visibilityIds = new HashMap<>();
+
+  /**
+   * Creates empty dictionaries for writing a locality group.
+   *
+   * @param maxFamilies
+   *          the most column families to add, 0 to never add any
+   * @param maxVisibilities
+   *          the most column visibilities to add, 0 to never add any
+   */
+  ColumnDictionary(int maxFamilies, int maxVisibilities) {
+    this.maxFamilies = maxFamilies;
+    this.maxVisibilities = maxVisibilities;
+  }
+
+  /**
+   * Creates empty dictionaries for reading, filled by {@link #readFields(DataInput)}.
+   */
+  ColumnDictionary() {
+    this(0, 0);
+  }
+
+  private static int getId(ByteSequence value, Map<ByteSequence,Integer> ids, List<byte[]> values,
+      int max) {
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    if (values.size() >= max) {
+      return -1;
+    }
+    byte[] copy = value.toArray();
+    values.add(copy);
+    ids.put(new ArrayByteSequence(copy), values.size() - 1);
+    return values.size() - 1;
+  }
+
+  /**
+   * @return the id of a column family, adding it to the dictionary if it is not full, or -1 if it
+   *         is not in the dictionary
+   */
+  int getFamilyId(ByteSequence cf) {
+    return getId(cf, familyIds, families, maxFamilies);
+  }
+
+  /**
+   * @return the id of a column visibility, adding it to the dictionary if it is not full, or -1 if
+   *         it is not in the dictionary
+   */
+  int getVisibilityId(ByteSequence cv) {
+    return getId(cv, visibilityIds, visibilities, maxVisibilities);
+  }
+
+  private static byte[] get(List<byte[]> values, int id, String type) throws IOException {
+    if (id < 0 || id >= values.size()) {
+      throw new IOException(
+          "Column " + type + " id " + id + " is not in a dictionary of size " + values.size());
+    }
+    return values.get(id);
+  }
+
+  /**
+   * @return the column family with the id, which the caller must not modify
+   */
+  byte[] getFamily(int id) throws IOException {
+    return get(families, id, "family");
+  }
+
+  /**
+   * @return the column visibility with the id, which the caller must not modify
+   */
+  byte[] getVisibility(int id) throws IOException {
+    return get(visibilities, id, "visibility");
+  }
+
+  /**
+   * @return true if no column family or visibility is in the dictionaries
+   */
+  boolean isEmpty() {
+    return families.isEmpty() && visibilities.isEmpty();
+  }
+
+  int numFamilies() {
+    return families.size();
+  }
+
+  int numVisibilities() {
+    return visibilities.size();
+  }
+
+  /**
+   * @return an estimate of the memory used by the dictionaries when reading
+   */
+  int estimateSize() {
+    int size = 64;
+    for (byte[] cf : families) {
+      size += cf.length + 16;
+    }
+    for (byte[] cv : visibilities) {
+      size += cv.length + 16;
+    }
+    return size;
+  }
+
+  private static void write(DataOutput out, List<byte[]> values) throws IOException {
+    WritableUtils.writeVInt(out, values.size());
+    for (byte[] value : values) {
+      WritableUtils.writeVInt(out, value.length);
+      out.write(value);
+    }
+  }
+
+  private static void read(DataInput in, List<byte[]> values) throws IOException {
+    values.clear();
+    int size = WritableUtils.readVInt(in);
+    for (int i = 0; i < size; i++) {
+      byte[] value = new byte[WritableUtils.readVInt(in)];
+      in.readFully(value);
+      values.add(value);
+    }
+  }
+
+  void write(DataOutput out) throws IOException {
+    write(out, families);
+    write(out, visibilities);
+  }
+
+  void readFields(DataInput in) throws IOException {
+    read(in, families);
+    read(in, visibilities);
+  }
+}
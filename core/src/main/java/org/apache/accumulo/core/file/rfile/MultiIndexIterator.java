@@ -21,7 +21,6 @@ package org.apache.accumulo.core.file.rfile;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -32,7 +31,6 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.file.blockfile.impl.CacheProvider;
-import org.apache.accumulo.core.file.rfile.MultiLevelIndex.IndexEntry;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iteratorsImpl.system.HeapIterator;
@@ -41,14 +39,21 @@ import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 class MultiIndexIterator extends HeapIterator implements FileSKVIterator {
 
   private RFile.Reader source;
+  private List<MultiLevelIndex.Reader> indexes;
 
-  MultiIndexIterator(RFile.Reader source, List<Iterator<IndexEntry>> indexes) {
+  MultiIndexIterator(RFile.Reader source, List<MultiLevelIndex.Reader> indexes) throws IOException {
     super(indexes.size());
 
     this.source = source;
+    this.indexes = indexes;
 
-    for (Iterator<IndexEntry> index : indexes) {
-      addSource(new IndexIterator(index));
+    lookup(new Key());
+  }
+
+  private void lookup(Key key) throws IOException {
+    clear();
+    for (MultiLevelIndex.Reader index : indexes) {
+      addSource(new IndexIterator(index.lookup(key)));
     }
   }
 
@@ -63,10 +68,15 @@ class MultiIndexIterator extends HeapIterator implements FileSKVIterator {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Positions this iterator at the first index entry whose block may hold the start of the range.
+   * Column families and the end of the range are ignored, so callers must stop at the end of the
+   * range themselves.
+   */
   @Override
   public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
       throws IOException {
-    throw new UnsupportedOperationException();
+    lookup(range.getStartKey() == null ? new Key() : range.getStartKey());
   }
 
   @Override
@@ -316,7 +316,8 @@ public class MultiLevelIndex {
     public void readFields(DataInput in, int version) throws IOException {
 
       if (version == RFile.RINDEX_VER_6 || version == RFile.RINDEX_VER_7
-          || version == RFile.RINDEX_VER_8) {
+          || version == RFile.RINDEX_VER_8 || version == RFile.RINDEX_VER_9
+          || version == RFile.RINDEX_VER_10) {
         level = in.readInt();
         offset = in.readInt();
         hasNext = in.readBoolean();
@@ -627,7 +628,7 @@ public class MultiLevelIndex {
         }
 
         IndexEntry ie = indexBlock.getIndex().get(pos);
-        Node child = new Node(this, getIndexBlock(ie));
+        Node child = new Node(this, getIndexBlock(indexBlock, ie));
         return child.lookup(key);
       }
 
@@ -637,7 +638,7 @@ public class MultiLevelIndex {
           return this;
 
         IndexEntry ie = indexBlock.getIndex().get(currentPos);
-        Node child = new Node(this, getIndexBlock(ie));
+        Node child = new Node(this, getIndexBlock(indexBlock, ie));
         return child.getLast();
       }
 
@@ -647,7 +648,7 @@ public class MultiLevelIndex {
           return this;
 
         IndexEntry ie = indexBlock.getIndex().get(currentPos);
-        Node child = new Node(this, getIndexBlock(ie));
+        Node child = new Node(this, getIndexBlock(indexBlock, ie));
         return child.getFirst();
       }
 
@@ -658,7 +659,7 @@ public class MultiLevelIndex {
         currentPos--;
 
         IndexEntry ie = indexBlock.getIndex().get(currentPos);
-        Node child = new Node(this, getIndexBlock(ie));
+        Node child = new Node(this, getIndexBlock(indexBlock, ie));
         return child.getLast();
 
       }
@@ -670,7 +671,7 @@ public class MultiLevelIndex {
         currentPos++;
 
         IndexEntry ie = indexBlock.getIndex().get(currentPos);
-        Node child = new Node(this, getIndexBlock(ie));
+        Node child = new Node(this, getIndexBlock(indexBlock, ie));
         return child.getFirst();
 
       }
@@ -804,10 +805,23 @@ public class MultiLevelIndex {
       this.blockStore = blockStore;
     }
 
-    private IndexBlock getIndexBlock(IndexEntry ie) throws IOException {
+    /**
+     * Creates a reader of an index already read by another reader, which reads index blocks below
+     * the root from a different reader of the same file.
+     */
+    Reader(Reader r, CachableBlockFile.Reader blockStore) {
+      this.version = r.version;
+      this.size = r.size;
+      this.rootBlock = r.rootBlock;
+      this.blockStore = blockStore;
+    }
+
+    private IndexBlock getIndexBlock(IndexBlock parent, IndexEntry ie) throws IOException {
       IndexBlock iblock = new IndexBlock();
+      // pin the upper levels of the index, the lowest level is left to the index cache
+      boolean pin = parent.getLevel() > 1;
       CachableBlockFile.CachedBlockRead in =
-          blockStore.getMetaBlock(ie.getOffset(), ie.getCompressedSize(), ie.getRawSize());
+          blockStore.getMetaBlock(ie.getOffset(), ie.getCompressedSize(), ie.getRawSize(), pin);
       iblock.readFields(in, version);
       in.close();
 
@@ -824,7 +838,8 @@ public class MultiLevelIndex {
       size = 0;
 
       if (version == RFile.RINDEX_VER_6 || version == RFile.RINDEX_VER_7
-          || version == RFile.RINDEX_VER_8) {
+          || version == RFile.RINDEX_VER_8 || version == RFile.RINDEX_VER_9
+          || version == RFile.RINDEX_VER_10) {
         size = in.readInt();
       }
 
@@ -859,7 +874,7 @@ public class MultiLevelIndex {
 
       if (ib.getLevel() > 0) {
         for (IndexEntry ie : index) {
-          IndexBlock cib = getIndexBlock(ie);
+          IndexBlock cib = getIndexBlock(ib, ie);
           getIndexInfo(cib, sizesByLevel, countsByLevel);
         }
       }
@@ -900,7 +915,7 @@ public class MultiLevelIndex {
         out.println(sb);
 
         if (ib.getLevel() > 0) {
-          IndexBlock cib = getIndexBlock(ie);
+          IndexBlock cib = getIndexBlock(ib, ie);
           printIndex(cib, recursePrefix, out);
         }
       }
@@ -26,6 +26,7 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -72,6 +73,7 @@ import org.apache.accumulo.core.iteratorsImpl.system.LocalityGroupIterator.Local
 import org.apache.accumulo.core.iteratorsImpl.system.LocalityGroupIterator.LocalityGroupContext;
 import org.apache.accumulo.core.iteratorsImpl.system.LocalityGroupIterator.LocalityGroupSeekCache;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
+import org.apache.accumulo.core.spi.cache.CacheEntry.Weighable;
 import org.apache.accumulo.core.util.LocalityGroupUtil;
 import org.apache.accumulo.core.util.MutableByteSequence;
 import org.apache.commons.lang3.mutable.MutableLong;
@@ -92,6 +94,20 @@ public class RFile {
 
   private static final int RINDEX_MAGIC = 0x20637474;
 
+  static final int RINDEX_VER_10 = 10; // Added column dictionaries to locality groups. Column
+                                       // families, and optionally visibilities, that are in the
+                                       // dictionary of their locality group are written in data
+                                       // blocks as their id in the dictionary. The dictionaries
+                                       // are stored in the locality group metadata, with
+                                       // whether the group's data blocks have restart points.
+                                       // Only written when some dictionary is not empty.
+  static final int RINDEX_VER_9 = 9; // Added restart points to data blocks. Every Nth key in a
+                                     // data block is written without encoding it relative to the
+                                     // previous key and the offsets of these keys are written at
+                                     // the end of the block. A seek binary searches the restart
+                                     // points instead of reading a block from its start. Only
+                                     // written when there are restart points, otherwise the
+                                     // file is written as version 8.
   static final int RINDEX_VER_8 = 8; // Added sample storage. There is a sample locality group for
                                      // each locality group. Sample are built using a Sampler and
                                      // sampler configuration. The Sampler and its configuration are
@@ -160,6 +176,8 @@ public class RFile {
     private MultiLevelIndex.BufferedWriter indexWriter;
     private MultiLevelIndex.Reader indexReader;
     private int version;
+    private boolean restartPoints;
+    private ColumnDictionary dictionary;
 
     public LocalityGroupMetadata(int version, CachableBlockFile.Reader br) {
       columnFamilies = new HashMap<>();
@@ -167,18 +185,56 @@ public class RFile {
       this.version = version;
     }
 
-    public LocalityGroupMetadata(Set<ByteSequence> pcf, int indexBlockSize, BCFile.Writer bfw) {
+    /**
+     * Creates metadata that shares everything read from a file with other metadata, but reads index
+     * blocks from a different reader of the same file.
+     */
+    LocalityGroupMetadata(LocalityGroupMetadata lgm, CachableBlockFile.Reader br) {
+      this.startBlock = lgm.startBlock;
+      this.firstKey = lgm.firstKey;
+      this.columnFamilies = lgm.columnFamilies;
+      this.isDefaultLG = lgm.isDefaultLG;
+      this.name = lgm.name;
+      this.indexReader = new MultiLevelIndex.Reader(lgm.indexReader, br);
+      this.version = lgm.version;
+      this.restartPoints = lgm.restartPoints;
+      this.dictionary = lgm.dictionary;
+    }
+
+    /**
+     * @return an estimate of the memory used by this metadata, excluding its root index block
+     */
+    int estimateSize() {
+      int size = 128;
+      if (firstKey != null) {
+        size += firstKey.getSize();
+      }
+      if (columnFamilies != null) {
+        for (ByteSequence cf : columnFamilies.keySet()) {
+          size += cf.length() + 96;
+        }
+      }
+      if (dictionary != null) {
+        size += dictionary.estimateSize();
+      }
+      return size;
+    }
+
+    public LocalityGroupMetadata(Set<ByteSequence> pcf, int indexBlockSize, BCFile.Writer bfw,
+        ColumnDictionary dictionary) {
       isDefaultLG = true;
       columnFamilies = new HashMap<>();
       previousColumnFamilies = pcf;
+      this.dictionary = dictionary;
 
       indexWriter =
           new MultiLevelIndex.BufferedWriter(new MultiLevelIndex.Writer(bfw, indexBlockSize));
     }
 
     public LocalityGroupMetadata(String name, Set<ByteSequence> cfset, int indexBlockSize,
-        BCFile.Writer bfw) {
+        BCFile.Writer bfw, ColumnDictionary dictionary) {
       this.name = name;
+      this.dictionary = dictionary;
       isDefaultLG = false;
       columnFamilies = new HashMap<>();
       for (ByteSequence cf : cfset) {
@@ -287,6 +343,15 @@ public class RFile {
         firstKey = null;
       }
 
+      if (version == RINDEX_VER_10) {
+        restartPoints = in.readBoolean();
+        dictionary = new ColumnDictionary();
+        dictionary.readFields(in);
+      } else {
+        restartPoints = version == RINDEX_VER_9;
+        dictionary = null;
+      }
+
       indexReader.readFields(in);
     }
 
@@ -316,6 +381,11 @@ public class RFile {
       if (firstKey != null)
         firstKey.write(out);
 
+      if (version == RINDEX_VER_10) {
+        out.writeBoolean(restartPoints);
+        dictionary.write(out);
+      }
+
       indexWriter.close(out);
     }
 
@@ -354,6 +424,10 @@ public class RFile {
       out.printf("\t%-22s : %,d\n", "Num entries", numKeys);
       out.printf("\t%-22s : %s\n", "Column families",
           (isDefaultLG && columnFamilies == null ? "<UNKNOWN>" : columnFamilies.keySet()));
+      if (dictionary != null) {
+        out.printf("\t%-22s : %,d families, %,d visibilities\n", "Column dictionary",
+            dictionary.numFamilies(), dictionary.numVisibilities());
+      }
 
       if (includeIndexDetails) {
         out.printf("\t%-22s :\nIndex Entries", lastKey);
@@ -440,17 +514,31 @@ public class RFile {
 
     private SampleLocalityGroupWriter sample;
 
+    private final RestartPoints restartPoints;
+
+    private final RowSketch.Builder rowSketch;
+    private final List<RowSketch> rowSketches;
+
     // Use windowed stats to fix ACCUMULO-4669
     private RollingStats keyLenStats = new RollingStats(2017);
     private double averageKeySize = 0;
 
+    /**
+     * @param rowSketches
+     *          the list the sketch of the locality group's rows is added to when it is closed, or
+     *          null to not sketch its rows
+     */
     LocalityGroupWriter(BCFile.Writer fileWriter, long blockSize, long maxBlockSize,
-        LocalityGroupMetadata currentLocalityGroup, SampleLocalityGroupWriter sample) {
+        int restartInterval, LocalityGroupMetadata currentLocalityGroup,
+        SampleLocalityGroupWriter sample, List<RowSketch> rowSketches) {
       this.fileWriter = fileWriter;
       this.blockSize = blockSize;
       this.maxBlockSize = maxBlockSize;
+      this.restartPoints = new RestartPoints(restartInterval);
       this.currentLocalityGroup = currentLocalityGroup;
       this.sample = sample;
+      this.rowSketches = rowSketches;
+      this.rowSketch = rowSketches == null ? null : new RowSketch.Builder();
     }
 
     private boolean isGiantKey(Key k) {
@@ -476,8 +564,12 @@ public class RFile {
         sample.append(key, value);
       }
 
+      if (rowSketch != null) {
+        rowSketch.append(key, value);
+      }
+
       if (blockWriter == null) {
-        blockWriter = fileWriter.prepareDataBlock();
+        blockWriter = fileWriter.preparePipelinedDataBlock();
       } else if (blockWriter.getRawSize() > blockSize) {
 
         // Look for a key that's short to put in the index, defining short as average or below.
@@ -493,7 +585,7 @@ public class RFile {
         if ((closeKey.getSize() <= averageKeySize || blockWriter.getRawSize() > maxBlockSize)
             && !isGiantKey(closeKey)) {
           closeBlock(closeKey, false);
-          blockWriter = fileWriter.prepareDataBlock();
+          blockWriter = fileWriter.preparePipelinedDataBlock();
           // set average to zero so its recomputed for the next block
           averageKeySize = 0;
           // To constrain the growth of data blocks, we limit our worst case scenarios to closing
@@ -502,13 +594,20 @@ public class RFile {
         } else if (((long) key.getSize() + (long) value.getSize() + blockWriter.getRawSize() + 128L)
             >= Integer.MAX_VALUE) {
           closeBlock(closeKey, false);
-          blockWriter = fileWriter.prepareDataBlock();
+          blockWriter = fileWriter.preparePipelinedDataBlock();
           averageKeySize = 0;
 
         }
       }
 
-      RelativeKey rk = new RelativeKey(lastKeyInBlock, key);
+      RelativeKey rk;
+      if (restartPoints.isRestart(entries)) {
+        // the key of a restart point is not relative to the previous key
+        restartPoints.add((int) blockWriter.getRawSize());
+        rk = new RelativeKey(null, key, currentLocalityGroup.dictionary);
+      } else {
+        rk = new RelativeKey(lastKeyInBlock, key, currentLocalityGroup.dictionary);
+      }
 
       rk.write(blockWriter);
       value.write(blockWriter);
@@ -522,14 +621,20 @@ public class RFile {
     }
 
     private void closeBlock(Key key, boolean lastBlock) throws IOException {
-      blockWriter.close();
+      if (restartPoints.isEnabled()) {
+        restartPoints.write(blockWriter);
+      }
 
-      if (lastBlock)
-        currentLocalityGroup.indexWriter.addLast(key, entries, blockWriter.getStartPos(),
-            blockWriter.getCompressedSize(), blockWriter.getRawSize());
-      else
-        currentLocalityGroup.indexWriter.add(key, entries, blockWriter.getStartPos(),
-            blockWriter.getCompressedSize(), blockWriter.getRawSize());
+      // the block may be compressed in the background, so it is added to the index once its
+      // location in the file is known
+      MultiLevelIndex.BufferedWriter indexWriter = currentLocalityGroup.indexWriter;
+      int blockEntries = entries;
+      blockWriter.close((startPos, compressedSize, rawSize) -> {
+        if (lastBlock)
+          indexWriter.addLast(key, blockEntries, startPos, compressedSize, rawSize);
+        else
+          indexWriter.add(key, blockEntries, startPos, compressedSize, rawSize);
+      });
 
       if (sample != null)
         sample.flushIfNeeded();
@@ -547,6 +652,16 @@ public class RFile {
       if (sample != null) {
         sample.close();
       }
+
+      if (rowSketch != null) {
+        RowSketch sketch = rowSketch.build(prevKey);
+        if (sketch != null) {
+          rowSketches.add(sketch);
+        }
+      }
+
+      // the index of the locality group is complete once all of its blocks are written
+      fileWriter.writePendingDataBlocks();
     }
   }
 
@@ -560,9 +675,13 @@ public class RFile {
     private final long blockSize;
     private final long maxBlockSize;
     private final int indexBlockSize;
+    private final int restartInterval;
+    private final int maxDictionaryFamilies;
+    private final int maxDictionaryVisibilities;
 
     private ArrayList<LocalityGroupMetadata> localityGroups = new ArrayList<>();
     private ArrayList<LocalityGroupMetadata> sampleGroups = new ArrayList<>();
+    private ArrayList<RowSketch> rowSketches = new ArrayList<>();
     private LocalityGroupMetadata currentLocalityGroup = null;
     private LocalityGroupMetadata sampleLocalityGroup = null;
 
@@ -585,9 +704,34 @@ public class RFile {
 
     public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize,
         SamplerConfigurationImpl samplerConfig, Sampler sampler) {
+      this(bfw, blockSize, indexBlockSize,
+          DefaultConfiguration.getInstance().getCount(Property.TABLE_FILE_RESTART_INTERVAL),
+          samplerConfig, sampler);
+    }
+
+    public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize, int restartInterval,
+        SamplerConfigurationImpl samplerConfig, Sampler sampler) {
+      this(bfw, blockSize, indexBlockSize, restartInterval,
+          DefaultConfiguration.getInstance().getCount(Property.TABLE_FILE_DICTIONARY_FAMILIES),
+          DefaultConfiguration.getInstance().getCount(Property.TABLE_FILE_DICTIONARY_VISIBILITIES),
+          samplerConfig, sampler);
+    }
+
+    /**
+     * @param maxDictionaryFamilies
+     *          the most column families in the dictionary of each locality group
+     * @param maxDictionaryVisibilities
+     *          the most column visibilities in the dictionary of each locality group
+     */
+    public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize, int restartInterval,
+        int maxDictionaryFamilies, int maxDictionaryVisibilities,
+        SamplerConfigurationImpl samplerConfig, Sampler sampler) {
       this.blockSize = blockSize;
       this.maxBlockSize = (long) (blockSize * MAX_BLOCK_MULTIPLIER);
       this.indexBlockSize = indexBlockSize;
+      this.restartInterval = restartInterval;
+      this.maxDictionaryFamilies = maxDictionaryFamilies;
+      this.maxDictionaryVisibilities = maxDictionaryVisibilities;
       this.fileWriter = bfw;
       previousColumnFamilies = new HashSet<>();
       this.samplerConfig = samplerConfig;
@@ -603,16 +747,41 @@ public class RFile {
 
       closeData();
 
-      BlockAppender mba = fileWriter.prepareMetaBlock("RFile.index");
-
-      mba.writeInt(RINDEX_MAGIC);
-      mba.writeInt(RINDEX_VER_8);
+      if (!rowSketches.isEmpty()) {
+        try (BlockAppender sba = fileWriter.prepareMetaBlock(RowSketch.META_BLOCK)) {
+          RowSketch.write(rowSketches, sba);
+        }
+      }
 
       if (currentLocalityGroup != null) {
         localityGroups.add(currentLocalityGroup);
         sampleGroups.add(sampleLocalityGroup);
       }
 
+      // write the oldest version that can hold what was written, so older readers can read files
+      // that do not use the newer features
+      int version = restartInterval > 0 ? RINDEX_VER_9 : RINDEX_VER_8;
+      for (List<LocalityGroupMetadata> groups : List.of(localityGroups, sampleGroups)) {
+        for (LocalityGroupMetadata lc : groups) {
+          if (!lc.dictionary.isEmpty()) {
+            // data blocks refer to the dictionary by id
+            version = RINDEX_VER_10;
+          }
+        }
+      }
+
+      for (List<LocalityGroupMetadata> groups : List.of(localityGroups, sampleGroups)) {
+        for (LocalityGroupMetadata lc : groups) {
+          lc.version = version;
+          lc.restartPoints = restartInterval > 0;
+        }
+      }
+
+      BlockAppender mba = fileWriter.prepareMetaBlock("RFile.index");
+
+      mba.writeInt(RINDEX_MAGIC);
+      mba.writeInt(version);
+
       mba.writeInt(localityGroups.size());
 
       for (LocalityGroupMetadata lc : localityGroups) {
@@ -690,10 +859,10 @@ public class RFile {
 
       if (columnFamilies == null) {
         startedDefaultLocalityGroup = true;
-        currentLocalityGroup =
-            new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize, fileWriter);
-        sampleLocalityGroup =
-            new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize, fileWriter);
+        currentLocalityGroup = new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize,
+            fileWriter, newDictionary());
+        sampleLocalityGroup = new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize,
+            fileWriter, newDictionary());
       } else {
         if (!Collections.disjoint(columnFamilies, previousColumnFamilies)) {
           HashSet<ByteSequence> overlap = new HashSet<>(columnFamilies);
@@ -701,21 +870,24 @@ public class RFile {
           throw new IllegalArgumentException(
               "Column families over lap with previous locality group : " + overlap);
         }
-        currentLocalityGroup =
-            new LocalityGroupMetadata(name, columnFamilies, indexBlockSize, fileWriter);
-        sampleLocalityGroup =
-            new LocalityGroupMetadata(name, columnFamilies, indexBlockSize, fileWriter);
+        currentLocalityGroup = new LocalityGroupMetadata(name, columnFamilies, indexBlockSize,
+            fileWriter, newDictionary());
+        sampleLocalityGroup = new LocalityGroupMetadata(name, columnFamilies, indexBlockSize,
+            fileWriter, newDictionary());
         previousColumnFamilies.addAll(columnFamilies);
       }
 
       SampleLocalityGroupWriter sampleWriter = null;
       if (sampler != null) {
-        sampleWriter = new SampleLocalityGroupWriter(
-            new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, sampleLocalityGroup, null),
-            sampler);
+        sampleWriter = new SampleLocalityGroupWriter(new LocalityGroupWriter(fileWriter, blockSize,
+            maxBlockSize, restartInterval, sampleLocalityGroup, null, null), sampler);
       }
-      lgWriter = new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, currentLocalityGroup,
-          sampleWriter);
+      lgWriter = new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, restartInterval,
+          currentLocalityGroup, sampleWriter, rowSketches);
+    }
+
+    private ColumnDictionary newDictionary() {
+      return new ColumnDictionary(maxDictionaryFamilies, maxDictionaryVisibilities);
     }
 
     @Override
@@ -755,7 +927,10 @@ public class RFile {
     private int startBlock;
     private boolean closed = false;
     private int version;
+    private boolean restartPoints;
     private boolean checkRange = true;
+    private BlockReadAhead readAhead = null;
+    private ColumnDictionary dictionary;
 
     private LocalityGroupReader(CachableBlockFile.Reader reader, LocalityGroupMetadata lgm,
         int version) {
@@ -765,6 +940,8 @@ public class RFile {
       this.startBlock = lgm.startBlock;
       blockCount = index.size();
       this.version = version;
+      this.restartPoints = lgm.restartPoints;
+      this.dictionary = lgm.dictionary;
 
       this.reader = reader;
 
@@ -778,16 +955,20 @@ public class RFile {
       this.blockCount = lgr.blockCount;
       this.reader = lgr.reader;
       this.version = lgr.version;
+      this.restartPoints = lgr.restartPoints;
+      this.dictionary = lgr.dictionary;
     }
 
-    Iterator<IndexEntry> getIndex() throws IOException {
-      return index.lookup(new Key());
+    MultiLevelIndex.Reader getIndexReader() {
+      return index;
     }
 
     @Override
     public void close() throws IOException {
       closed = true;
       hasTop = false;
+      if (readAhead != null)
+        readAhead.close();
       if (currBlock != null)
         currBlock.close();
 
@@ -798,7 +979,6 @@ public class RFile {
     private CachableBlockFile.CachedBlockRead currBlock;
     private RelativeKey rk;
     private Value val;
-    private Key prevKey = null;
     private Range range = null;
     private boolean hasTop = false;
     private AtomicBoolean interruptFlag;
@@ -841,7 +1021,7 @@ public class RFile {
         if (iiter.hasNext()) {
           IndexEntry indexEntry = iiter.next();
           entriesLeft = indexEntry.getNumEntries();
-          currBlock = getDataBlock(indexEntry);
+          currBlock = getDataBlock(indexEntry, true);
 
           checkRange = range.afterEndKey(indexEntry.getKey());
           if (!checkRange)
@@ -855,7 +1035,6 @@ public class RFile {
         }
       }
 
-      prevKey = rk.getKey();
       rk.readFields(currBlock);
       val.readFields(currBlock);
 
@@ -867,13 +1046,23 @@ public class RFile {
         hasTop = !range.afterEndKey(rk.getKey());
     }
 
-    private CachableBlockFile.CachedBlockRead getDataBlock(IndexEntry indexEntry)
-        throws IOException {
+    /**
+     * @param sequential
+     *          true if the block follows the block the reader was positioned in
+     */
+    private CachableBlockFile.CachedBlockRead getDataBlock(IndexEntry indexEntry,
+        boolean sequential) throws IOException {
       if (interruptFlag != null && interruptFlag.get())
         throw new IterationInterruptedException();
 
       if (version == RINDEX_VER_3 || version == RINDEX_VER_4)
         return reader.getDataBlock(startBlock + iiter.previousIndex());
+
+      if (readAhead == null && reader.getReadAheadBlocks() > 0)
+        readAhead = new BlockReadAhead(reader, reader.getReadAheadBlocks());
+
+      if (readAhead != null)
+        return readAhead.getBlock(indexEntry, iiter, sequential);
       else
         return reader.getDataBlock(indexEntry.getOffset(), indexEntry.getCompressedSize(),
             indexEntry.getRawSize());
@@ -942,6 +1131,7 @@ public class RFile {
       }
 
       if (rk != null) {
+        Key prevKey = rk.getPrevKey();
         if (range.beforeStartKey(prevKey) && range.afterEndKey(getTopKey())) {
           // range is between the two keys in the file where the last range seeked to stopped, so
           // there is
@@ -965,12 +1155,11 @@ public class RFile {
           // and speed up others.
 
           MutableByteSequence valbs = new MutableByteSequence(new byte[64], 0, 0);
-          SkippR skippr =
-              RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, getTopKey(), entriesLeft);
+          SkippR skippr = RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, getTopKey(),
+              entriesLeft, dictionary);
           if (skippr.skipped > 0) {
             entriesLeft -= skippr.skipped;
             val = new Value(valbs.toArray());
-            prevKey = skippr.prevKey;
             rk = skippr.rk;
           }
 
@@ -1010,6 +1199,7 @@ public class RFile {
             iiter.previous();
           }
 
+          Key prevKey;
           if (iiter.hasPrevious())
             prevKey = new Key(iiter.peekPrevious().getKey()); // initially prevKey is the last key
                                                               // of the prev block
@@ -1018,7 +1208,7 @@ public class RFile {
 
           IndexEntry indexEntry = iiter.next();
           entriesLeft = indexEntry.getNumEntries();
-          currBlock = getDataBlock(indexEntry);
+          currBlock = getDataBlock(indexEntry, false);
 
           checkRange = range.afterEndKey(indexEntry.getKey());
           if (!checkRange)
@@ -1028,14 +1218,23 @@ public class RFile {
 
           Key currKey = null;
 
-          if (currBlock.isIndexable()) {
-            BlockIndex blockIndex = BlockIndex.getIndex(currBlock, indexEntry);
+          if (currBlock.isIndexable() && restartPoints && RestartPoints.canSeek(currBlock)) {
+            int restartEntriesLeft =
+                RestartPoints.seek(currBlock, startKey, entriesLeft, dictionary);
+            if (restartEntriesLeft > 0) {
+              // positioned at a restart point with a key before the start key, so reading from
+              // here does not depend on prevKey
+              entriesLeft = restartEntriesLeft;
+            }
+          } else if (currBlock.isIndexable()) {
+            // blocks without restart points, or with too few of them to seek
+            BlockIndex blockIndex = BlockIndex.getIndex(currBlock, indexEntry, dictionary);
             if (blockIndex != null) {
               BlockIndexEntry bie = blockIndex.seekBlock(startKey, currBlock);
               if (bie != null) {
                 // we are seeked to the current position of the key in the index
                 // need to prime the read process and read this key from the block
-                RelativeKey tmpRk = new RelativeKey();
+                RelativeKey tmpRk = new RelativeKey(dictionary);
                 tmpRk.setPrevKey(bie.getPrevKey());
                 tmpRk.readFields(currBlock);
                 val = new Value();
@@ -1051,9 +1250,8 @@ public class RFile {
             }
           }
 
-          SkippR skippr =
-              RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, currKey, entriesLeft);
-          prevKey = skippr.prevKey;
+          SkippR skippr = RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, currKey,
+              entriesLeft, dictionary);
           entriesLeft -= skippr.skipped;
           val = new Value(valbs.toArray());
           // set rk when everything above is successful, if exception
@@ -1136,6 +1334,73 @@ public class RFile {
     }
   }
 
+  /**
+   * The contents of an RFile's index meta block. Nothing in it refers to the input stream it was
+   * read from, so it is kept with the cached meta block and shared by every reader of the file.
+   */
+  private static class ParsedIndex implements Weighable {
+
+    private int version;
+    private final List<LocalityGroupMetadata> localityGroups = new ArrayList<>();
+    private List<LocalityGroupMetadata> sampleGroups = null;
+    private SamplerConfigurationImpl samplerConfig = null;
+    private int weight;
+
+    static ParsedIndex read(CachableBlockFile.CachedBlockRead mb) throws IOException {
+      ParsedIndex parsed = new ParsedIndex();
+
+      int magic = mb.readInt();
+      int ver = mb.readInt();
+      parsed.version = ver;
+
+      if (magic != RINDEX_MAGIC)
+        throw new IOException("Did not see expected magic number, saw " + magic);
+      if (ver != RINDEX_VER_10 && ver != RINDEX_VER_9 && ver != RINDEX_VER_8 && ver != RINDEX_VER_7
+          && ver != RINDEX_VER_6 && ver != RINDEX_VER_4 && ver != RINDEX_VER_3)
+        throw new IOException("Did not see expected version, saw " + ver);
+
+      int size = mb.readInt();
+
+      for (int i = 0; i < size; i++) {
+        LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, null);
+        lgm.readFields(mb);
+        parsed.localityGroups.add(lgm);
+      }
+
+      if ((ver == RINDEX_VER_10 || ver == RINDEX_VER_9 || ver == RINDEX_VER_8)
+          && mb.readBoolean()) {
+        parsed.sampleGroups = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+          LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, null);
+          lgm.readFields(mb);
+          parsed.sampleGroups.add(lgm);
+        }
+
+        parsed.samplerConfig = new SamplerConfigurationImpl(mb);
+      }
+
+      // root index blocks read from a cached block refer to its buffer, which the cache accounts
+      // for
+      long weight = 64;
+      for (LocalityGroupMetadata lgm : parsed.localityGroups) {
+        weight += lgm.estimateSize();
+      }
+      if (parsed.sampleGroups != null) {
+        for (LocalityGroupMetadata lgm : parsed.sampleGroups) {
+          weight += lgm.estimateSize();
+        }
+      }
+      parsed.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+
+      return parsed;
+    }
+
+    @Override
+    public int weight() {
+      return weight;
+    }
+  }
+
   public static class Reader extends HeapIterator implements FileSKVIterator {
 
     private final CachableBlockFile.Reader reader;
@@ -1161,49 +1426,48 @@ public class RFile {
     public Reader(CachableBlockFile.Reader rdr) throws IOException {
       this.reader = rdr;
 
+      ParsedIndex parsed;
       try (CachableBlockFile.CachedBlockRead mb = reader.getMetaBlock("RFile.index")) {
-        int magic = mb.readInt();
-        int ver = mb.readInt();
-        rfileVersion = ver;
-
-        if (magic != RINDEX_MAGIC)
-          throw new IOException("Did not see expected magic number, saw " + magic);
-        if (ver != RINDEX_VER_8 && ver != RINDEX_VER_7 && ver != RINDEX_VER_6 && ver != RINDEX_VER_4
-            && ver != RINDEX_VER_3)
-          throw new IOException("Did not see expected version, saw " + ver);
-
-        int size = mb.readInt();
-        currentReaders = new LocalityGroupReader[size];
-
-        deepCopies = new LinkedList<>();
-
-        for (int i = 0; i < size; i++) {
-          LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, rdr);
-          lgm.readFields(mb);
-          localityGroups.add(lgm);
-
-          currentReaders[i] = new LocalityGroupReader(reader, lgm, ver);
+        // the parsed index is kept with the cached block, so reopening the file does not parse it
+        // again
+        try {
+          parsed = mb.getIndex(() -> {
+            try {
+              return ParsedIndex.read(mb);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
         }
+        if (parsed == null) {
+          parsed = ParsedIndex.read(mb);
+        }
+      }
 
-        readers = currentReaders;
-
-        if (ver == RINDEX_VER_8 && mb.readBoolean()) {
-          sampleReaders = new LocalityGroupReader[size];
-
-          for (int i = 0; i < size; i++) {
-            LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, rdr);
-            lgm.readFields(mb);
-            sampleGroups.add(lgm);
+      rfileVersion = parsed.version;
+      deepCopies = new LinkedList<>();
 
-            sampleReaders[i] = new LocalityGroupReader(reader, lgm, ver);
-          }
+      currentReaders = new LocalityGroupReader[parsed.localityGroups.size()];
+      for (int i = 0; i < currentReaders.length; i++) {
+        LocalityGroupMetadata lgm = new LocalityGroupMetadata(parsed.localityGroups.get(i), rdr);
+        localityGroups.add(lgm);
+        currentReaders[i] = new LocalityGroupReader(reader, lgm, rfileVersion);
+      }
+      readers = currentReaders;
 
-          samplerConfig = new SamplerConfigurationImpl(mb);
-        } else {
-          sampleReaders = null;
-          samplerConfig = null;
+      if (parsed.sampleGroups != null) {
+        sampleReaders = new LocalityGroupReader[parsed.sampleGroups.size()];
+        for (int i = 0; i < sampleReaders.length; i++) {
+          LocalityGroupMetadata lgm = new LocalityGroupMetadata(parsed.sampleGroups.get(i), rdr);
+          sampleGroups.add(lgm);
+          sampleReaders[i] = new LocalityGroupReader(reader, lgm, rfileVersion);
         }
-
+        samplerConfig = parsed.samplerConfig;
+      } else {
+        sampleReaders = null;
+        samplerConfig = null;
       }
 
       lgContext = new LocalityGroupContext(currentReaders);
@@ -1446,12 +1710,13 @@ public class RFile {
       return (lgCache == null ? 0 : lgCache.getNumLGSeeked());
     }
 
+    @Override
     public FileSKVIterator getIndex() throws IOException {
 
-      ArrayList<Iterator<IndexEntry>> indexes = new ArrayList<>();
+      ArrayList<MultiLevelIndex.Reader> indexes = new ArrayList<>();
 
       for (LocalityGroupReader lgr : currentReaders) {
-        indexes.add(lgr.getIndex());
+        indexes.add(lgr.getIndexReader());
       }
 
       return new MultiIndexIterator(this, indexes);
@@ -1477,6 +1742,11 @@ public class RFile {
       return getSample(this.samplerConfig);
     }
 
+    @VisibleForTesting
+    int getVersion() {
+      return rfileVersion;
+    }
+
     public void printInfo(boolean includeIndexDetails) throws IOException {
 
       System.out.printf("%-24s : %d\n", "RFile Version", rfileVersion);
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 
+import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.sample.Sampler;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.Property;
@@ -46,12 +47,33 @@ public class RFileOperations extends FileOperations {
 
   private static final Collection<ByteSequence> EMPTY_CF_SET = Collections.emptySet();
 
+  /**
+   * @return the id of the table a file is in the directory of, or null if it is not in a table
+   *         directory
+   */
+  private static String getTableId(Path file) {
+    Path tabletDir = file.getParent();
+    Path tableDir = tabletDir == null ? null : tabletDir.getParent();
+    Path tablesDir = tableDir == null ? null : tableDir.getParent();
+    if (tablesDir != null && ("/" + tablesDir.getName()).equals(Constants.HDFS_TABLES_DIR)) {
+      return tableDir.getName();
+    }
+    return null;
+  }
+
   private static RFile.Reader getReader(FileOptions options) throws IOException {
-    CachableBuilder cb =
-        new CachableBuilder().fsPath(options.getFileSystem(), new Path(options.getFilename()))
-            .conf(options.getConfiguration()).fileLen(options.getFileLenCache())
-            .cacheProvider(options.cacheProvider).readLimiter(options.getRateLimiter())
-            .cryptoService(options.getCryptoService());
+    AccumuloConfiguration tableConf = options.getTableConfiguration();
+    Path file = new Path(options.getFilename());
+    CachableBuilder cb = new CachableBuilder()
+        .fsPath(options.getFileSystem(), file,
+            tableConf.getBoolean(Property.TABLE_FILE_MMAP_ENABLED))
+        .conf(options.getConfiguration()).fileLen(options.getFileLenCache())
+        .cacheProvider(options.cacheProvider).readLimiter(options.getRateLimiter())
+        .cryptoService(options.getCryptoService())
+        .readAhead(tableConf.getCount(Property.TABLE_FILE_READAHEAD_BLOCKS));
+    if (options.cacheProvider.getPinnedBlockTier() != null) {
+      cb.pinIndexBlocks(getTableId(file));
+    }
     return new RFile.Reader(cb);
   }
 
@@ -96,6 +118,8 @@ public class RFileOperations extends FileOperations {
         "table.file.compress.blocksize.index must be greater than 0 and less than "
             + Integer.MAX_VALUE);
 
+    int restartInterval = acuconf.getCount(Property.TABLE_FILE_RESTART_INTERVAL);
+
     SamplerConfigurationImpl samplerConfig = SamplerConfigurationImpl.newSamplerConfig(acuconf);
     Sampler sampler = null;
 
@@ -132,8 +156,12 @@ public class RFileOperations extends FileOperations {
     }
 
     BCFile.Writer _cbw = new BCFile.Writer(outputStream, options.getRateLimiter(), compression,
-        conf, options.cryptoService);
+        conf, options.cryptoService, options.getCompressionExecutor(),
+        acuconf.getCount(Property.TABLE_FILE_COMPRESSION_THREADS),
+        (int) acuconf.getAsBytes(Property.TABLE_FILE_COMPRESSION_DICTIONARY_SIZE));
 
-    return new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize, samplerConfig, sampler);
+    return new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize, restartInterval,
+        acuconf.getCount(Property.TABLE_FILE_DICTIONARY_FAMILIES),
+        acuconf.getCount(Property.TABLE_FILE_DICTIONARY_VISIBILITIES), samplerConfig, sampler);
   }
 }
@@ -20,10 +20,13 @@ package org.apache.accumulo.core.file.rfile;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachedBlockRead;
 import org.apache.accumulo.core.util.MutableByteSequence;
 import org.apache.accumulo.core.util.UnsynchronizedBuffer;
 import org.apache.hadoop.io.Writable;
@@ -36,6 +39,20 @@ public class RelativeKey implements Writable {
   private Key key;
   private Key prevKey;
 
+  // Decoded fields of the last key read and the key before it, used when reading. Keys are only
+  // created from these on request.
+  private static final int ROW = 0;
+  private static final int CF = 1;
+  private static final int CQ = 2;
+  private static final int CV = 3;
+  private FieldData[] fields;
+  private FieldData[] prevFields;
+  private long ts;
+  private long prevTs;
+  private boolean deleted;
+  private boolean prevDeleted;
+  private boolean decoded = false;
+
   private byte fieldsSame;
   private byte fieldsPrefixed;
 
@@ -55,9 +72,10 @@ public class RelativeKey implements Writable {
   private static final byte CQ_COMMON_PREFIX = BIT << 2;
   private static final byte CV_COMMON_PREFIX = BIT << 3;
   private static final byte TS_DIFF = BIT << 4;
+  // the field is written as its id in the locality group's ColumnDictionary
+  private static final byte CF_DICTIONARY = BIT << 5;
+  private static final byte CV_DICTIONARY = BIT << 6;
 
-  // private static final byte UNUSED_2_5 = BIT << 5;
-  // private static final byte UNUSED_2_6 = BIT << 6;
   // private static final byte UNUSED_2_7 = (byte) (BIT << 7);
 
   // Values for prefix compression
@@ -67,19 +85,106 @@ public class RelativeKey implements Writable {
   int cvCommonPrefixLen;
   long tsDiff;
 
+  // Values for dictionary encoding
+  int cfId;
+  int cvId;
+
+  // dictionary of the locality group being read, if any
+  private final ColumnDictionary dictionary;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  /**
+   * The bytes of one field of a decoded key. A field read from a cached block refers to the block's
+   * buffer, other fields are assembled in scratch space owned by the field. The bytes are only
+   * copied into an array of their own when a {@link Key} is created.
+   */
+  private static class FieldData extends MutableByteSequence {
+    private static final long serialVersionUID = 1L;
+
+    // scratch space, only referred to by this field or the same field of the previous key
+    private byte[] scratch = EMPTY;
+    // array with exactly the bytes of this field that is used by a created key, or null
+    private byte[] keyArray = EMPTY;
+
+    FieldData() {
+      super(EMPTY, 0, 0);
+    }
+
+    void set(FieldData other) {
+      setArray(other.data, other.offset, other.length);
+      keyArray = other.keyArray;
+    }
+
+    void set(byte[] array) {
+      setArray(array, 0, array.length);
+      keyArray = array;
+    }
+
+    /**
+     * Returns scratch space of at least len bytes that the same field of the previous key does not
+     * refer to, so the previous key can still be used as the source of a common prefix.
+     */
+    byte[] getScratch(FieldData prev, int len) {
+      if (prev.data == scratch) {
+        byte[] tmp = scratch;
+        scratch = prev.scratch;
+        prev.scratch = tmp;
+      }
+      if (scratch.length < len) {
+        scratch = new byte[UnsynchronizedBuffer.nextArraySize(len)];
+      }
+      return scratch;
+    }
+
+    byte[] toKeyArray() {
+      if (keyArray == null) {
+        keyArray = Arrays.copyOfRange(data, offset, offset + length);
+      }
+      return keyArray;
+    }
+  }
+
+  private static FieldData[] newFields() {
+    return new FieldData[] {new FieldData(), new FieldData(), new FieldData(), new FieldData()};
+  }
+
   /**
    * This constructor is used when one needs to read from an input stream
    */
   public RelativeKey() {
+    this((ColumnDictionary) null);
+  }
 
+  /**
+   * This constructor is used when one needs to read keys whose column families or visibilities may
+   * be written as ids in a dictionary
+   */
+  RelativeKey(ColumnDictionary dictionary) {
+    this.dictionary = dictionary;
+    fields = newFields();
+    prevFields = newFields();
   }
 
   /**
    * This constructor is used when constructing a key for writing to an output stream
    */
   public RelativeKey(Key prevKey, Key key) {
+    this(prevKey, key, null);
+  }
+
+  /**
+   * This constructor is used when constructing a key for writing to an output stream, writing its
+   * column family and visibility as ids in a dictionary when they are in it
+   *
+   * @param dictionary
+   *          the dictionary of the locality group, which a column is added to if it is not full, or
+   *          null
+   */
+  RelativeKey(Key prevKey, Key key, ColumnDictionary dictionary) {
 
     this.key = key;
+    this.dictionary = dictionary;
 
     fieldsSame = 0;
     fieldsPrefixed = 0;
@@ -130,6 +235,26 @@ public class RelativeKey implements Writable {
       fieldsSame |= fieldsPrefixed == 0 ? 0 : PREFIX_COMPRESSION_ENABLED;
     }
 
+    if (dictionary != null) {
+      // an id is never longer than a prefix, but a field that is the same as the previous key's is
+      // not written at all
+      if ((fieldsSame & CF_SAME) != CF_SAME) {
+        cfId = dictionary.getFamilyId(key.getColumnFamilyData());
+        if (cfId >= 0) {
+          fieldsPrefixed = (byte) ((fieldsPrefixed & ~CF_COMMON_PREFIX) | CF_DICTIONARY);
+        }
+      }
+
+      if ((fieldsSame & CV_SAME) != CV_SAME) {
+        cvId = dictionary.getVisibilityId(key.getColumnVisibilityData());
+        if (cvId >= 0) {
+          fieldsPrefixed = (byte) ((fieldsPrefixed & ~CV_COMMON_PREFIX) | CV_DICTIONARY);
+        }
+      }
+
+      fieldsSame |= fieldsPrefixed == 0 ? 0 : PREFIX_COMPRESSION_ENABLED;
+    }
+
     // stored deleted information in bit vector instead of its own byte
     if (key.isDeleted())
       fieldsSame |= DELETED;
@@ -161,10 +286,26 @@ public class RelativeKey implements Writable {
     return prevLen == curLen ? -1 : maxChecks;
   }
 
+  /**
+   * Sets the key that the next key read by {@link #readFields(DataInput)} is relative to.
+   */
   public void setPrevKey(Key pk) {
-    this.prevKey = pk;
+    fields[ROW].set(pk.getRowData().toArray());
+    fields[CF].set(pk.getColumnFamilyData().toArray());
+    fields[CQ].set(pk.getColumnQualifierData().toArray());
+    fields[CV].set(pk.getColumnVisibilityData().toArray());
+    ts = pk.getTimestamp();
+    deleted = pk.isDeleted();
+    key = pk;
+    decoded = true;
   }
 
+  /**
+   * Reads the next key. The key is decoded without copying its fields, when reading from a cached
+   * block the fields refer to the block's buffer. A {@link Key} is only created when
+   * {@link #getKey()} or {@link #getPrevKey()} is called, so keys that are skipped over never
+   * allocate.
+   */
   @Override
   public void readFields(DataInput in) throws IOException {
     fieldsSame = in.readByte();
@@ -174,51 +315,52 @@ public class RelativeKey implements Writable {
       fieldsPrefixed = 0;
     }
 
-    byte[] row, cf, cq, cv;
-    long ts;
-
-    if ((fieldsSame & ROW_SAME) == ROW_SAME) {
-      row = prevKey.getRowData().toArray();
-    } else if ((fieldsPrefixed & ROW_COMMON_PREFIX) == ROW_COMMON_PREFIX) {
-      row = readPrefix(in, prevKey.getRowData());
-    } else {
-      row = read(in);
+    FieldData[] tmp = prevFields;
+    prevFields = fields;
+    fields = tmp;
+    prevTs = ts;
+    prevDeleted = deleted;
+    prevKey = key;
+    key = null;
+
+    byte[] blockBuffer = null;
+    if (in instanceof CachedBlockRead && ((CachedBlockRead) in).isIndexable()) {
+      blockBuffer = ((CachedBlockRead) in).getBuffer();
     }
 
-    if ((fieldsSame & CF_SAME) == CF_SAME) {
-      cf = prevKey.getColumnFamilyData().toArray();
-    } else if ((fieldsPrefixed & CF_COMMON_PREFIX) == CF_COMMON_PREFIX) {
-      cf = readPrefix(in, prevKey.getColumnFamilyData());
-    } else {
-      cf = read(in);
-    }
-
-    if ((fieldsSame & CQ_SAME) == CQ_SAME) {
-      cq = prevKey.getColumnQualifierData().toArray();
-    } else if ((fieldsPrefixed & CQ_COMMON_PREFIX) == CQ_COMMON_PREFIX) {
-      cq = readPrefix(in, prevKey.getColumnQualifierData());
-    } else {
-      cq = read(in);
-    }
-
-    if ((fieldsSame & CV_SAME) == CV_SAME) {
-      cv = prevKey.getColumnVisibilityData().toArray();
-    } else if ((fieldsPrefixed & CV_COMMON_PREFIX) == CV_COMMON_PREFIX) {
-      cv = readPrefix(in, prevKey.getColumnVisibilityData());
-    } else {
-      cv = read(in);
+    // the same and prefix bits of each field are at the same position in both bytes
+    for (int i = ROW; i <= CV; i++) {
+      byte bit = (byte) (BIT << i);
+      if ((fieldsSame & bit) == bit) {
+        fields[i].set(prevFields[i]);
+      } else if (i == CF && (fieldsPrefixed & CF_DICTIONARY) == CF_DICTIONARY) {
+        fields[i].set(getDictionary().getFamily(WritableUtils.readVInt(in)));
+      } else if (i == CV && (fieldsPrefixed & CV_DICTIONARY) == CV_DICTIONARY) {
+        fields[i].set(getDictionary().getVisibility(WritableUtils.readVInt(in)));
+      } else if ((fieldsPrefixed & bit) == bit) {
+        readPrefix(in, fields[i], prevFields[i]);
+      } else {
+        read(in, blockBuffer, fields[i], prevFields[i]);
+      }
     }
 
     if ((fieldsSame & TS_SAME) == TS_SAME) {
-      ts = prevKey.getTimestamp();
+      ts = prevTs;
     } else if ((fieldsPrefixed & TS_DIFF) == TS_DIFF) {
-      ts = WritableUtils.readVLong(in) + prevKey.getTimestamp();
+      ts = WritableUtils.readVLong(in) + prevTs;
     } else {
       ts = WritableUtils.readVLong(in);
     }
 
-    this.key = new Key(row, cf, cq, cv, ts, (fieldsSame & DELETED) == DELETED, false);
-    this.prevKey = this.key;
+    deleted = (fieldsSame & DELETED) == DELETED;
+    decoded = true;
+  }
+
+  private ColumnDictionary getDictionary() throws IOException {
+    if (dictionary == null) {
+      throw new IOException("Key refers to a column dictionary, but the reader has none");
+    }
+    return dictionary;
   }
 
   public static class SkippR {
@@ -235,161 +377,68 @@ public class RelativeKey implements Writable {
 
   public static SkippR fastSkip(DataInput in, Key seekKey, MutableByteSequence value, Key prevKey,
       Key currKey, int entriesLeft) throws IOException {
-    // this method mostly avoids object allocation and only does compares when the row changes
+    return fastSkip(in, seekKey, value, prevKey, currKey, entriesLeft, null);
+  }
 
-    MutableByteSequence row, cf, cq, cv;
-    MutableByteSequence prow, pcf, pcq, pcv;
+  static SkippR fastSkip(DataInput in, Key seekKey, MutableByteSequence value, Key prevKey,
+      Key currKey, int entriesLeft, ColumnDictionary dictionary) throws IOException {
+    // this method avoids object allocation, keys are decoded in place and only compared when a
+    // field changes, a Key is only created for the key where the skip stops
 
     ByteSequence stopRow = seekKey.getRowData();
     ByteSequence stopCF = seekKey.getColumnFamilyData();
     ByteSequence stopCQ = seekKey.getColumnQualifierData();
 
-    long ts = -1;
-    long pts = -1;
-    boolean pdel = false;
-
     int rowCmp = -1, cfCmp = -1, cqCmp = -1;
 
+    RelativeKey rk = new RelativeKey(dictionary);
+
     if (currKey != null) {
 
-      prow = new MutableByteSequence(currKey.getRowData());
-      pcf = new MutableByteSequence(currKey.getColumnFamilyData());
-      pcq = new MutableByteSequence(currKey.getColumnQualifierData());
-      pcv = new MutableByteSequence(currKey.getColumnVisibilityData());
-      pts = currKey.getTimestamp();
-
-      row = new MutableByteSequence(currKey.getRowData());
-      cf = new MutableByteSequence(currKey.getColumnFamilyData());
-      cq = new MutableByteSequence(currKey.getColumnQualifierData());
-      cv = new MutableByteSequence(currKey.getColumnVisibilityData());
-      ts = currKey.getTimestamp();
-
-      rowCmp = row.compareTo(stopRow);
-      cfCmp = cf.compareTo(stopCF);
-      cqCmp = cq.compareTo(stopCQ);
-
-      if (rowCmp >= 0) {
-        if (rowCmp > 0) {
-          RelativeKey rk = new RelativeKey();
-          rk.key = rk.prevKey = new Key(currKey);
-          return new SkippR(rk, 0, prevKey);
-        }
+      rowCmp = currKey.getRowData().compareTo(stopRow);
+      cfCmp = currKey.getColumnFamilyData().compareTo(stopCF);
+      cqCmp = currKey.getColumnQualifierData().compareTo(stopCQ);
 
-        if (cfCmp >= 0) {
-          if (cfCmp > 0) {
-            RelativeKey rk = new RelativeKey();
-            rk.key = rk.prevKey = new Key(currKey);
-            return new SkippR(rk, 0, prevKey);
-          }
-
-          if (cqCmp >= 0) {
-            RelativeKey rk = new RelativeKey();
-            rk.key = rk.prevKey = new Key(currKey);
-            return new SkippR(rk, 0, prevKey);
-          }
-        }
+      if (rowCmp > 0 || (rowCmp == 0 && (cfCmp > 0 || (cfCmp == 0 && cqCmp >= 0)))) {
+        rk.setPrevKey(new Key(currKey));
+        rk.prevKey = prevKey;
+        return new SkippR(rk, 0, prevKey);
       }
 
+      rk.setPrevKey(currKey);
     } else {
-      row = new MutableByteSequence(new byte[64], 0, 0);
-      cf = new MutableByteSequence(new byte[64], 0, 0);
-      cq = new MutableByteSequence(new byte[64], 0, 0);
-      cv = new MutableByteSequence(new byte[64], 0, 0);
-
-      prow = new MutableByteSequence(new byte[64], 0, 0);
-      pcf = new MutableByteSequence(new byte[64], 0, 0);
-      pcq = new MutableByteSequence(new byte[64], 0, 0);
-      pcv = new MutableByteSequence(new byte[64], 0, 0);
+      // positioned at the start of a block, the first key in a block is not relative to the key
+      // before it
+      rk.key = prevKey;
     }
 
-    byte fieldsSame = -1;
-    byte fieldsPrefixed = 0;
     int count = 0;
-    Key newPrevKey = null;
 
     while (count < entriesLeft) {
 
-      pdel = (fieldsSame & DELETED) == DELETED;
+      rk.readFields(in);
+      readValue(in, value);
 
-      fieldsSame = in.readByte();
-      if ((fieldsSame & PREFIX_COMPRESSION_ENABLED) == PREFIX_COMPRESSION_ENABLED)
-        fieldsPrefixed = in.readByte();
-      else
-        fieldsPrefixed = 0;
+      count++;
 
       boolean changed = false;
 
-      if ((fieldsSame & ROW_SAME) != ROW_SAME) {
-
-        MutableByteSequence tmp = prow;
-        prow = row;
-        row = tmp;
-
-        if ((fieldsPrefixed & ROW_COMMON_PREFIX) == ROW_COMMON_PREFIX)
-          readPrefix(in, row, prow);
-        else
-          read(in, row);
-
+      if ((rk.fieldsSame & ROW_SAME) != ROW_SAME) {
         // read a new row, so need to compare...
-        rowCmp = row.compareTo(stopRow);
+        rowCmp = rk.fields[ROW].compareTo(stopRow);
         changed = true;
       } // else the row is the same as the last, so no need to compare
 
-      if ((fieldsSame & CF_SAME) != CF_SAME) {
-
-        MutableByteSequence tmp = pcf;
-        pcf = cf;
-        cf = tmp;
-
-        if ((fieldsPrefixed & CF_COMMON_PREFIX) == CF_COMMON_PREFIX)
-          readPrefix(in, cf, pcf);
-        else
-          read(in, cf);
-
-        cfCmp = cf.compareTo(stopCF);
+      if ((rk.fieldsSame & CF_SAME) != CF_SAME) {
+        cfCmp = rk.fields[CF].compareTo(stopCF);
         changed = true;
       }
 
-      if ((fieldsSame & CQ_SAME) != CQ_SAME) {
-
-        MutableByteSequence tmp = pcq;
-        pcq = cq;
-        cq = tmp;
-
-        if ((fieldsPrefixed & CQ_COMMON_PREFIX) == CQ_COMMON_PREFIX)
-          readPrefix(in, cq, pcq);
-        else
-          read(in, cq);
-
-        cqCmp = cq.compareTo(stopCQ);
+      if ((rk.fieldsSame & CQ_SAME) != CQ_SAME) {
+        cqCmp = rk.fields[CQ].compareTo(stopCQ);
         changed = true;
       }
 
-      if ((fieldsSame & CV_SAME) != CV_SAME) {
-
-        MutableByteSequence tmp = pcv;
-        pcv = cv;
-        cv = tmp;
-
-        if ((fieldsPrefixed & CV_COMMON_PREFIX) == CV_COMMON_PREFIX)
-          readPrefix(in, cv, pcv);
-        else
-          read(in, cv);
-      }
-
-      if ((fieldsSame & TS_SAME) != TS_SAME) {
-        pts = ts;
-
-        if ((fieldsPrefixed & TS_DIFF) == TS_DIFF)
-          ts = WritableUtils.readVLong(in) + pts;
-        else
-          ts = WritableUtils.readVLong(in);
-      }
-
-      readValue(in, value);
-
-      count++;
-
       if (changed && rowCmp >= 0) {
         if (rowCmp > 0)
           break;
@@ -405,107 +454,106 @@ public class RelativeKey implements Writable {
 
     }
 
-    if (count > 1) {
-      MutableByteSequence trow, tcf, tcq, tcv;
-      long tts;
-
-      // when the current keys field is same as the last, then
-      // set the prev keys field the same as the current key
-      trow = (fieldsSame & ROW_SAME) == ROW_SAME ? row : prow;
-      tcf = (fieldsSame & CF_SAME) == CF_SAME ? cf : pcf;
-      tcq = (fieldsSame & CQ_SAME) == CQ_SAME ? cq : pcq;
-      tcv = (fieldsSame & CV_SAME) == CV_SAME ? cv : pcv;
-      tts = (fieldsSame & TS_SAME) == TS_SAME ? ts : pts;
-
-      newPrevKey = new Key(trow.getBackingArray(), trow.offset(), trow.length(),
-          tcf.getBackingArray(), tcf.offset(), tcf.length(), tcq.getBackingArray(), tcq.offset(),
-          tcq.length(), tcv.getBackingArray(), tcv.offset(), tcv.length(), tts);
-      newPrevKey.setDeleted(pdel);
-    } else if (count == 1) {
-      if (currKey != null)
-        newPrevKey = currKey;
-      else
-        newPrevKey = prevKey;
-    } else {
+    if (count == 0) {
       throw new IllegalStateException();
     }
 
-    RelativeKey result = new RelativeKey();
-    result.key = new Key(row.getBackingArray(), row.offset(), row.length(), cf.getBackingArray(),
-        cf.offset(), cf.length(), cq.getBackingArray(), cq.offset(), cq.length(),
-        cv.getBackingArray(), cv.offset(), cv.length(), ts);
-    result.key.setDeleted((fieldsSame & DELETED) != 0);
-    result.prevKey = result.key;
-
-    return new SkippR(result, count, newPrevKey);
-  }
-
-  private static void read(DataInput in, MutableByteSequence mbseq) throws IOException {
-    int len = WritableUtils.readVInt(in);
-    read(in, mbseq, len);
+    return new SkippR(rk, count, rk.getPrevKey());
   }
 
   private static void readValue(DataInput in, MutableByteSequence mbseq) throws IOException {
     int len = in.readInt();
-    read(in, mbseq, len);
-  }
+    if (in instanceof CachedBlockRead && ((CachedBlockRead) in).isIndexable()) {
+      // refer to the value in the cached block instead of copying it
+      CachedBlockRead block = (CachedBlockRead) in;
+      int pos = block.getPosition();
+      if (block.skipBytes(len) != len) {
+        throw new EOFException();
+      }
+      mbseq.setArray(block.getBuffer(), pos, len);
+      return;
+    }
 
-  private static void read(DataInput in, MutableByteSequence mbseqDestination, int len)
-      throws IOException {
-    if (mbseqDestination.getBackingArray().length < len) {
-      mbseqDestination.setArray(new byte[UnsynchronizedBuffer.nextArraySize(len)], 0, 0);
+    if (mbseq.getBackingArray().length < len) {
+      mbseq.setArray(new byte[UnsynchronizedBuffer.nextArraySize(len)], 0, 0);
     }
 
-    in.readFully(mbseqDestination.getBackingArray(), 0, len);
-    mbseqDestination.setLength(len);
+    in.readFully(mbseq.getBackingArray(), 0, len);
+    mbseq.setArray(mbseq.getBackingArray(), 0, len);
   }
 
-  private static byte[] readPrefix(DataInput in, ByteSequence prefixSource) throws IOException {
-    int prefixLen = WritableUtils.readVInt(in);
-    int remainingLen = WritableUtils.readVInt(in);
-    byte[] data = new byte[prefixLen + remainingLen];
-    if (prefixSource.isBackedByArray()) {
-      System.arraycopy(prefixSource.getBackingArray(), prefixSource.offset(), data, 0, prefixLen);
+  private static void read(DataInput in, byte[] blockBuffer, FieldData dest, FieldData prev)
+      throws IOException {
+    int len = WritableUtils.readVInt(in);
+    if (blockBuffer != null) {
+      // refer to the field in the cached block instead of copying it
+      CachedBlockRead block = (CachedBlockRead) in;
+      int pos = block.getPosition();
+      if (block.skipBytes(len) != len) {
+        throw new EOFException();
+      }
+      dest.setArray(blockBuffer, pos, len);
     } else {
-      byte[] prefixArray = prefixSource.toArray();
-      System.arraycopy(prefixArray, 0, data, 0, prefixLen);
+      byte[] scratch = dest.getScratch(prev, len);
+      in.readFully(scratch, 0, len);
+      dest.setArray(scratch, 0, len);
     }
-    // read remaining
-    in.readFully(data, prefixLen, remainingLen);
-    return data;
+    dest.keyArray = null;
   }
 
-  private static void readPrefix(DataInput in, MutableByteSequence dest, ByteSequence prefixSource)
-      throws IOException {
+  private static void readPrefix(DataInput in, FieldData dest, FieldData prev) throws IOException {
     int prefixLen = WritableUtils.readVInt(in);
     int remainingLen = WritableUtils.readVInt(in);
     int len = prefixLen + remainingLen;
-    if (dest.getBackingArray().length < len) {
-      dest.setArray(new byte[UnsynchronizedBuffer.nextArraySize(len)], 0, 0);
-    }
-    if (prefixSource.isBackedByArray()) {
-      System.arraycopy(prefixSource.getBackingArray(), prefixSource.offset(),
-          dest.getBackingArray(), 0, prefixLen);
-    } else {
-      byte[] prefixArray = prefixSource.toArray();
-      System.arraycopy(prefixArray, 0, dest.getBackingArray(), 0, prefixLen);
-    }
+    byte[] scratch = dest.getScratch(prev, len);
+    System.arraycopy(prev.getBackingArray(), prev.offset(), scratch, 0, prefixLen);
     // read remaining
-    in.readFully(dest.getBackingArray(), prefixLen, remainingLen);
-    dest.setLength(len);
+    in.readFully(scratch, prefixLen, remainingLen);
+    dest.setArray(scratch, 0, len);
+    dest.keyArray = null;
   }
 
-  private static byte[] read(DataInput in) throws IOException {
-    int len = WritableUtils.readVInt(in);
-    byte[] data = new byte[len];
-    in.readFully(data);
-    return data;
+  private static Key toKey(FieldData[] fields, long ts, boolean deleted) {
+    return new Key(fields[ROW].toKeyArray(), fields[CF].toKeyArray(), fields[CQ].toKeyArray(),
+        fields[CV].toKeyArray(), ts, deleted, false);
   }
 
+  /**
+   * Returns the last key read. The key is created on the first call after a read, fields that did
+   * not change since the previous key share its arrays.
+   */
   public Key getKey() {
+    if (key == null && decoded) {
+      key = toKey(fields, ts, deleted);
+    }
     return key;
   }
 
+  /**
+   * Compares the row, column family and column qualifier of the last key read to those of another
+   * key, without creating a key.
+   */
+  int compareRowColumns(Key other) {
+    int cmp = fields[ROW].compareTo(other.getRowData());
+    if (cmp == 0) {
+      cmp = fields[CF].compareTo(other.getColumnFamilyData());
+      if (cmp == 0) {
+        cmp = fields[CQ].compareTo(other.getColumnQualifierData());
+      }
+    }
+    return cmp;
+  }
+
+  /**
+   * Returns the key before the last key read.
+   */
+  public Key getPrevKey() {
+    if (prevKey == null) {
+      prevKey = toKey(prevFields, prevTs, prevDeleted);
+    }
+    return prevKey;
+  }
+
   private static void write(DataOutput out, ByteSequence bs) throws IOException {
     WritableUtils.writeVInt(out, bs.length());
     out.write(bs.getBackingArray(), bs.offset(), bs.length());
@@ -540,6 +588,9 @@ public class RelativeKey implements Writable {
 
     if ((fieldsSame & CF_SAME) == CF_SAME) {
       // same, write nothing
+    } else if ((fieldsPrefixed & CF_DICTIONARY) == CF_DICTIONARY) {
+      // in the dictionary, write its id
+      WritableUtils.writeVInt(out, cfId);
     } else if ((fieldsPrefixed & CF_COMMON_PREFIX) == CF_COMMON_PREFIX) {
       // similar, write what's common
       writePrefix(out, key.getColumnFamilyData(), cfCommonPrefixLen);
@@ -560,6 +611,9 @@ public class RelativeKey implements Writable {
 
     if ((fieldsSame & CV_SAME) == CV_SAME) {
       // same, write nothing
+    } else if ((fieldsPrefixed & CV_DICTIONARY) == CV_DICTIONARY) {
+      // in the dictionary, write its id
+      WritableUtils.writeVInt(out, cvId);
     } else if ((fieldsPrefixed & CV_COMMON_PREFIX) == CV_COMMON_PREFIX) {
       // similar, write what's common
       writePrefix(out, key.getColumnVisibilityData(), cvCommonPrefixLen);
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachedBlockRead;
+
+/**
+ * Restart points of an RFile data block. When a file is written with a restart interval, the key of
+ * every Nth entry in a data block is written without encoding it relative to the previous key. The
+ * offsets of these entries are written at the end of the block, after its last entry, as:
+ *
+ * <pre>
+ * int offset[count]
+ * int interval
+ * int count
+ * </pre>
+ *
+ * Reading a block can start at any restart point, so a seek can binary search the restart points of
+ * a block instead of reading the block from its start. Files with restart points are written as
+ * {@link RFile#RINDEX_VER_9}, or as {@link RFile#RINDEX_VER_10} whose locality group metadata
+ * records whether the group's blocks have them.
+ */
+class RestartPoints {
+
+  private final int interval;
+  private int[] offsets = new int[16];
+  private int count = 0;
+
+  RestartPoints(int interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * @return true if restart points are written, otherwise {@link #write} should not be called
+   */
+  boolean isEnabled() {
+    return interval > 0;
+  }
+
+  /**
+   * @return true if the entry with the given index in the block should be a restart point
+   */
+  boolean isRestart(int entry) {
+    return isEnabled() && entry % interval == 0;
+  }
+
+  void add(int offset) {
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count * 2);
+    }
+    offsets[count++] = offset;
+  }
+
+  /**
+   * Writes the restart points added since the last call and clears them for the next block.
+   */
+  void write(DataOutput out) throws IOException {
+    for (int i = 0; i < count; i++) {
+      out.writeInt(offsets[i]);
+    }
+    out.writeInt(interval);
+    out.writeInt(count);
+    count = 0;
+  }
+
+  /**
+   * @return true if the block has at least two restart points, so that {@link #seek} can skip part
+   *         of it. The block is positioned at its start.
+   */
+  static boolean canSeek(CachedBlockRead block) throws IOException {
+    int end = block.getBuffer().length;
+    boolean seekable = false;
+    if (end >= 8) {
+      block.seek(end - 4);
+      int count = block.readInt();
+      block.seek(end - 8);
+      seekable = count > 1 && block.readInt() > 0;
+    }
+    block.seek(0);
+    return seekable;
+  }
+
+  /**
+   * Positions a block at its last restart point whose key has a row, column family and column
+   * qualifier less than those of the start key. Reading from there stops at the same entry as
+   * reading from the start of the block, after fewer entries. Only the keys of the restart points
+   * visited by the binary search are decoded.
+   *
+   * @param numEntries
+   *          the number of entries in the block
+   * @param dictionary
+   *          the column dictionary of the block's locality group, or null
+   * @return the number of entries left in the block at the restart point, or -1 if the block should
+   *         be read from its start, in which case the block is positioned at its start
+   */
+  static int seek(CachedBlockRead block, Key startKey, int numEntries, ColumnDictionary dictionary)
+      throws IOException {
+    int end = block.getBuffer().length;
+    block.seek(end - 4);
+    int count = block.readInt();
+
+    int found = 0;
+
+    block.seek(end - 8);
+    int interval = count > 1 ? block.readInt() : 0;
+
+    if (interval > 0) {
+      int offsetsStart = end - 8 - 4 * count;
+
+      RelativeKey rk = new RelativeKey(dictionary);
+
+      // the first restart point is the start of the block, so it is not searched
+      int low = 1;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        block.seek(offsetsStart + 4 * mid);
+        block.seek(block.readInt());
+        rk.readFields(block);
+        if (rk.compareRowColumns(startKey) < 0) {
+          found = mid;
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+
+      if (found > 0) {
+        block.seek(offsetsStart + 4 * found);
+        block.seek(block.readInt());
+        return numEntries - found * interval;
+      }
+    }
+
+    block.seek(0);
+    return -1;
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.NoSuchMetaStoreException;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The distribution of the rows of an RFile locality group, weighted by the bytes of their keys and
+ * values. A sketch is a list of rows in increasing order, each with the number of bytes in the
+ * locality group up to the end of that row. The rows are about evenly spaced by bytes, and the last
+ * row of the locality group is always included.
+ *
+ * <p>
+ * An RFile writes the sketches of its locality groups to the {@value #META_BLOCK} meta block when
+ * it is closed. The bytes up to a row in several files are the sum of the bytes up to it in each of
+ * them, so the sketches of a tablet's files can be merged to estimate its split points without
+ * reading any of their index or data blocks.
+ */
+public class RowSketch {
+
+  public static final String META_BLOCK = "RFile.rowSketch";
+
+  private static final int VERSION = 1;
+
+  // the most rows kept while writing, a sketch has about half of this or more rows
+  static final int MAX_ROWS = 256;
+
+  private final byte[][] rows;
+  private final long[] bytes;
+
+  private RowSketch(byte[][] rows, long[] bytes) {
+    this.rows = rows;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Builds the sketch of a locality group as its keys are written, in sorted order.
+   */
+  static class Builder {
+
+    private final int maxRows;
+    private final List<byte[]> rows = new ArrayList<>();
+    private long[] bytes = new long[16];
+
+    // the least number of bytes between rows of the sketch, which grows each time it is full
+    private long step = 1;
+    private long total = 0;
+    // a row waiting for its last key to be written before it is added to the sketch
+    private byte[] pendingRow = null;
+
+    Builder() {
+      this(MAX_ROWS);
+    }
+
+    Builder(int maxRows) {
+      this.maxRows = maxRows;
+    }
+
+    void append(Key key, Value value) {
+      if (pendingRow != null && !rowEquals(key, pendingRow)) {
+        addRow(pendingRow, total);
+        pendingRow = null;
+      }
+
+      total += key.getSize() + value.getSize();
+
+      if (pendingRow == null && total - lastBytes() >= step) {
+        pendingRow = key.getRowData().toArray();
+      }
+    }
+
+    private static boolean rowEquals(Key key, byte[] row) {
+      ByteSequence keyRow = key.getRowData();
+      return WritableComparator.compareBytes(keyRow.getBackingArray(), keyRow.offset(),
+          keyRow.length(), row, 0, row.length) == 0;
+    }
+
+    private long lastBytes() {
+      return rows.isEmpty() ? 0 : bytes[rows.size() - 1];
+    }
+
+    private void addRow(byte[] row, long rowBytes) {
+      if (rows.size() == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      bytes[rows.size()] = rowBytes;
+      rows.add(row);
+
+      if (rows.size() == maxRows) {
+        // keep about half of the rows, evenly spaced by bytes and ending with the last one
+        step = Math.max(1, rowBytes / (maxRows / 2));
+        int kept = 0;
+        long keptBytes = 0;
+        for (int i = 0; i < rows.size(); i++) {
+          if (bytes[i] - keptBytes >= step || i == rows.size() - 1) {
+            rows.set(kept, rows.get(i));
+            bytes[kept] = bytes[i];
+            keptBytes = bytes[i];
+            kept++;
+          }
+        }
+        rows.subList(kept, rows.size()).clear();
+      }
+    }
+
+    /**
+     * @param lastKey
+     *          the last key written to the locality group
+     * @return the sketch of the locality group, or null if nothing was written to it
+     */
+    RowSketch build(Key lastKey) {
+      if (pendingRow == null && total > lastBytes()) {
+        pendingRow = lastKey.getRowData().toArray();
+      }
+      if (pendingRow != null) {
+        addRow(pendingRow, total);
+        pendingRow = null;
+      }
+      if (rows.isEmpty()) {
+        return null;
+      }
+      return new RowSketch(rows.toArray(new byte[rows.size()][]),
+          Arrays.copyOf(bytes, rows.size()));
+    }
+  }
+
+  /**
+   * @return the number of bytes in rows less than or equal to the given row, as of the last row of
+   *         the sketch not after it, or all of the bytes if the row is null
+   */
+  public long bytesThrough(Text row) {
+    if (row == null) {
+      return bytes[bytes.length - 1];
+    }
+    int found = lastRowNotAfter(row);
+    return found == -1 ? 0 : bytes[found];
+  }
+
+  /**
+   * @return the number of bytes through the first row of the sketch after the given row, which is
+   *         at least the number of bytes in rows less than or equal to it
+   */
+  public long bytesThroughNext(Text row) {
+    int next = lastRowNotAfter(row) + 1;
+    return next == rows.length ? bytes[bytes.length - 1] : bytes[next];
+  }
+
+  private int lastRowNotAfter(Text row) {
+    int low = 0;
+    int high = rows.length - 1;
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (WritableComparator.compareBytes(rows[mid], 0, rows[mid].length, row.getBytes(), 0,
+          row.getLength()) <= 0) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the rows of the sketch, in increasing order
+   */
+  public List<Text> getRows() {
+    List<Text> result = new ArrayList<>(rows.length);
+    for (byte[] row : rows) {
+      result.add(new Text(row));
+    }
+    return result;
+  }
+
+  static void write(List<RowSketch> sketches, DataOutput out) throws IOException {
+    out.writeInt(VERSION);
+    out.writeInt(sketches.size());
+    for (RowSketch sketch : sketches) {
+      WritableUtils.writeVInt(out, sketch.rows.length);
+      for (int i = 0; i < sketch.rows.length; i++) {
+        WritableUtils.writeVInt(out, sketch.rows[i].length);
+        out.write(sketch.rows[i]);
+        WritableUtils.writeVLong(out, sketch.bytes[i]);
+      }
+    }
+  }
+
+  static List<RowSketch> read(DataInput in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported row sketch version " + version);
+    }
+    int count = in.readInt();
+    List<RowSketch> sketches = new ArrayList<>(count);
+    for (int s = 0; s < count; s++) {
+      int size = WritableUtils.readVInt(in);
+      byte[][] rows = new byte[size][];
+      long[] bytes = new long[size];
+      for (int i = 0; i < size; i++) {
+        rows[i] = new byte[WritableUtils.readVInt(in)];
+        in.readFully(rows[i]);
+        bytes[i] = WritableUtils.readVLong(in);
+      }
+      sketches.add(new RowSketch(rows, bytes));
+    }
+    return sketches;
+  }
+
+  /**
+   * Reads the sketches of the locality groups of a file.
+   *
+   * @return the sketches, or null if the file was written without them
+   */
+  public static List<RowSketch> read(FileSKVIterator reader) throws IOException {
+    try (DataInputStream in = reader.getMetaStore(META_BLOCK)) {
+      return read((DataInput) in);
+    } catch (NoSuchMetaStoreException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the bytes through the row summed over the sketches
+   */
+  public static long bytesThrough(List<RowSketch> sketches, Text row) {
+    long sum = 0;
+    for (RowSketch sketch : sketches) {
+      sum += sketch.bytesThrough(row);
+    }
+    return sum;
+  }
+
+  /**
+   * @return the bytes through the next row after the row summed over the sketches
+   */
+  public static long bytesThroughNext(List<RowSketch> sketches, Text row) {
+    long sum = 0;
+    for (RowSketch sketch : sketches) {
+      sum += sketch.bytesThroughNext(row);
+    }
+    return sum;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < rows.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(Key.toPrintableString(rows[i], 0, rows[i].length, 32)).append('=').append(bytes[i]);
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -27,12 +27,20 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.accumulo.core.crypto.CryptoEnvironmentImpl;
 import org.apache.accumulo.core.crypto.CryptoUtils;
@@ -83,6 +91,13 @@ public final class BCFile {
   static final Version API_VERSION_1 = new Version((short) 1, (short) 0);
   static final Log LOG = LogFactory.getLog(BCFile.class);
 
+  /**
+   * Name of the meta block holding the dictionary data blocks are compressed with, if any.
+   */
+  static final String DICTIONARY_BLOCK_NAME = "BCFile.dictionary";
+  // amount of data to train a dictionary from, as a multiple of the dictionary size
+  private static final int TRAINING_SAMPLE_FACTOR = 100;
+
   private static final String FS_OUTPUT_BUF_SIZE_ATTR = "tfile.fs.output.buffer.size";
   private static final String FS_INPUT_BUF_SIZE_ATTR = "tfile.fs.input.buffer.size";
 
@@ -120,11 +135,48 @@ public final class BCFile {
     // reusable buffers.
     private BytesWritable fsOutputBuffer;
     private long length = 0;
+    // the number of data blocks that may be compressed in the background at once
+    private final int compressionThreads;
+    // compresses data blocks in the background, shared with other writers
+    private final ExecutorService compressionExecutor;
+    // data blocks being compressed in the background, in the order they are written to the file
+    private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    private boolean writingPendingBlocks = false;
+    // the size of the dictionary to train for data blocks, 0 if data blocks use no dictionary
+    private final int dictionarySize;
+    // data blocks buffered uncompressed until the dictionary is trained from them
+    private final ArrayList<PendingBlock> trainingBlocks = new ArrayList<>();
+    private long trainingBytes = 0;
+    private boolean training;
+    private byte[] dictionary = null;
 
     public long getLength() {
       return this.length;
     }
 
+    /**
+     * Receives the location of a data block in the file once the block is written.
+     */
+    public interface BlockRegionListener {
+      void blockWritten(long startPos, long compressedSize, long rawSize) throws IOException;
+    }
+
+    /**
+     * A data block that is being compressed in the background.
+     */
+    private static final class PendingBlock {
+      private final BlockAppender appender;
+      private final Future<byte[]> compressed;
+      private final BlockRegionListener listener;
+
+      PendingBlock(BlockAppender appender, Future<byte[]> compressed,
+          BlockRegionListener listener) {
+        this.appender = appender;
+        this.compressed = compressed;
+        this.listener = listener;
+      }
+    }
+
     /**
      * Intermediate class that maintain the state of a Writable Compression Block.
      */
@@ -139,8 +191,8 @@ public final class BCFile {
       private OutputStream out;
 
       public WBlockState(Algorithm compressionAlgo, RateLimitedOutputStream fsOut,
-          BytesWritable fsOutputBuffer, Configuration conf, FileEncrypter encrypter)
-          throws IOException {
+          BytesWritable fsOutputBuffer, Configuration conf, FileEncrypter encrypter,
+          byte[] dictionary) throws IOException {
         this.compressAlgo = compressionAlgo;
         this.fsOut = fsOut;
         this.posStart = fsOut.position();
@@ -149,11 +201,15 @@ public final class BCFile {
 
         this.fsBufferedOutput =
             new SimpleBufferedOutputStream(this.fsOut, fsOutputBuffer.getBytes());
-        this.compressor = compressAlgo.getCompressor();
+        this.compressor = dictionary == null ? compressAlgo.getCompressor() : null;
 
         try {
           this.cipherOut = encrypter.encryptStream(fsBufferedOutput);
-          this.out = compressionAlgo.createCompressionStream(cipherOut, compressor, 0);
+          if (dictionary == null) {
+            this.out = compressionAlgo.createCompressionStream(cipherOut, compressor, 0);
+          } else {
+            this.out = CompressionDictionary.createCompressionStream(cipherOut, dictionary);
+          }
         } catch (IOException e) {
           compressAlgo.returnCompressor(compressor);
           throw e;
@@ -225,6 +281,10 @@ public final class BCFile {
     public class BlockAppender extends DataOutputStream {
       private final MetaBlockRegister metaBlockRegister;
       private final WBlockState wBlkState;
+      // the uncompressed data of a block that is compressed in the background
+      private final ByteArrayOutputStream rawOut;
+      private long startPos = -1;
+      private long compressedSize = -1;
       private boolean closed = false;
 
       /**
@@ -239,12 +299,21 @@ public final class BCFile {
         super(wbs.getOutputStream());
         this.metaBlockRegister = metaBlockRegister;
         this.wBlkState = wbs;
+        this.rawOut = null;
       }
 
       BlockAppender(WBlockState wbs) {
         super(wbs.getOutputStream());
         this.metaBlockRegister = null;
         this.wBlkState = wbs;
+        this.rawOut = null;
+      }
+
+      BlockAppender(ByteArrayOutputStream rawOut) {
+        super(rawOut);
+        this.metaBlockRegister = null;
+        this.wBlkState = null;
+        this.rawOut = rawOut;
       }
 
       /**
@@ -269,13 +338,27 @@ public final class BCFile {
        *         inside the compressor.
        */
       public long getCompressedSize() throws IOException {
+        if (wBlkState == null) {
+          checkWritten();
+          return compressedSize;
+        }
         return wBlkState.getCompressedSize();
       }
 
       public long getStartPos() {
+        if (wBlkState == null) {
+          checkWritten();
+          return startPos;
+        }
         return wBlkState.getStartPos();
       }
 
+      private void checkWritten() {
+        if (startPos < 0) {
+          throw new IllegalStateException("Data block has not been written to the file yet");
+        }
+      }
+
       @Override
       public void flush() {
         // The down stream is a special kind of stream that finishes a
@@ -288,23 +371,165 @@ public final class BCFile {
        */
       @Override
       public void close() throws IOException {
+        close(null);
+      }
+
+      /**
+       * Signaling the end of write to the block, and calling the listener with the location of the
+       * block once it is written to the file. A block from
+       * {@link Writer#preparePipelinedDataBlock()} may be compressed in the background, in which
+       * case it is written and the listener is called by a later call to the writer.
+       *
+       * @param listener
+       *          called once the block is written, may be null
+       */
+      public void close(BlockRegionListener listener) throws IOException {
         if (closed) {
           return;
         }
         try {
           ++errorCount;
-          wBlkState.finish();
-          if (metaBlockRegister != null)
-            metaBlockRegister.register(getRawSize(), wBlkState.getStartPos(),
-                wBlkState.getCurrentPos());
+          if (wBlkState == null && training) {
+            trainingBlocks.add(new PendingBlock(this, null, listener));
+            trainingBytes += rawOut.size();
+          } else if (wBlkState == null) {
+            pendingBlocks.add(new PendingBlock(this, compress(this), listener));
+          } else {
+            wBlkState.finish();
+            if (metaBlockRegister != null)
+              metaBlockRegister.register(getRawSize(), wBlkState.getStartPos(),
+                  wBlkState.getCurrentPos());
+          }
           --errorCount;
         } finally {
           closed = true;
           blkInProgress = false;
         }
+
+        // listeners may create blocks of their own, so they are called after this block is closed
+        if (wBlkState == null) {
+          if (training && trainingBytes >= (long) dictionarySize * TRAINING_SAMPLE_FACTOR) {
+            trainDictionary();
+          }
+          writePendingBlocks(compressionThreads);
+        } else if (listener != null) {
+          listener.blockWritten(wBlkState.getStartPos(), wBlkState.getCompressedSize(),
+              getRawSize());
+        }
       }
     }
 
+    /**
+     * Compresses a buffered block, in the background if the writer has compression threads.
+     */
+    private Future<byte[]> compress(BlockAppender appender) throws IOException {
+      Algorithm algo = getDefaultCompressionAlgorithm();
+      byte[] dict = dictionary;
+      if (compressionThreads > 0) {
+        try {
+          return compressionExecutor.submit(() -> compressBlock(algo, appender.rawOut, dict));
+        } catch (RejectedExecutionException e) {
+          // the executor is shutting down with the server, so finish the file on this thread
+        }
+      }
+      return CompletableFuture.completedFuture(compressBlock(algo, appender.rawOut, dict));
+    }
+
+    /**
+     * Compresses and encrypts a block in memory, the same way a block written directly to the file
+     * is.
+     */
+    private byte[] compressBlock(Algorithm algo, ByteArrayOutputStream raw, byte[] dict)
+        throws IOException {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 2 + 64);
+      RateLimitedOutputStream memOut =
+          new RateLimitedOutputStream(new FSDataOutputStream(compressed, null), null);
+      WBlockState wbs;
+      // encrypters are not required to be thread safe
+      synchronized (encrypter) {
+        wbs = new WBlockState(algo, memOut, new BytesWritable(), conf, encrypter, dict);
+      }
+      raw.writeTo(wbs.getOutputStream());
+      wbs.finish();
+      memOut.flush();
+      return compressed.toByteArray();
+    }
+
+    /**
+     * Writes blocks that finished compressing in the background to the file, in order, waiting for
+     * blocks until no more than the given number remain.
+     */
+    private void writePendingBlocks(int maxPending) throws IOException {
+      if (writingPendingBlocks) {
+        // called by a listener, which may write blocks of its own after the block it was called
+        // for
+        return;
+      }
+
+      writingPendingBlocks = true;
+      try {
+        while (!pendingBlocks.isEmpty()
+            && (pendingBlocks.size() > maxPending || pendingBlocks.peek().compressed.isDone())) {
+          PendingBlock pb = pendingBlocks.poll();
+          byte[] compressed;
+          try {
+            compressed = pb.compressed.get();
+          } catch (ExecutionException e) {
+            ++errorCount;
+            throw new IOException("Failed to compress data block", e.getCause());
+          } catch (InterruptedException e) {
+            ++errorCount;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for data block compression");
+          }
+
+          pb.appender.startPos = out.position();
+          pb.appender.compressedSize = compressed.length;
+          out.write(compressed);
+          if (pb.listener != null) {
+            pb.listener.blockWritten(pb.appender.startPos, pb.appender.compressedSize,
+                pb.appender.getRawSize());
+          }
+        }
+      } finally {
+        writingPendingBlocks = false;
+      }
+    }
+
+    /**
+     * Trains the dictionary from the blocks buffered so far, and starts compressing them with it.
+     */
+    private void trainDictionary() throws IOException {
+      training = false;
+
+      List<byte[]> samples = new ArrayList<>(trainingBlocks.size());
+      for (PendingBlock pb : trainingBlocks) {
+        samples.add(pb.appender.rawOut.toByteArray());
+      }
+      byte[] trained = CompressionDictionary.train(samples, dictionarySize);
+      // without a useful dictionary, blocks are compressed as usual
+      dictionary = trained.length == 0 ? null : trained;
+
+      for (PendingBlock pb : trainingBlocks) {
+        pendingBlocks.add(new PendingBlock(pb.appender, compress(pb.appender), pb.listener));
+      }
+      trainingBlocks.clear();
+    }
+
+    /**
+     * Writes all data blocks from {@link #preparePipelinedDataBlock()} to the file, waiting for the
+     * ones still being compressed.
+     */
+    public void writePendingDataBlocks() throws IOException {
+      if (writingPendingBlocks) {
+        return;
+      }
+      if (training) {
+        trainDictionary();
+      }
+      writePendingBlocks(0);
+    }
+
     /**
      * Constructor
      *
@@ -316,6 +541,33 @@ public final class BCFile {
      */
     public Writer(FSDataOutputStream fout, RateLimiter writeLimiter, String compressionName,
         Configuration conf, CryptoService cryptoService) throws IOException {
+      this(fout, writeLimiter, compressionName, conf, cryptoService, null, 0, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fout
+     *          FS output stream.
+     * @param compressionName
+     *          Name of the compression algorithm, which will be used for all data blocks.
+     * @param compressionExecutor
+     *          The executor that compresses data blocks from {@link #preparePipelinedDataBlock()}
+     *          in the background. If null, all blocks are compressed as they are written.
+     * @param compressionThreads
+     *          The number of data blocks from {@link #preparePipelinedDataBlock()} that may be
+     *          compressed in the background at once. If 0, all blocks are compressed as they are
+     *          written.
+     * @param dictionarySize
+     *          The size of the dictionary to train from the first data blocks and compress all data
+     *          blocks with. Only used with gz compression, where it is limited to
+     *          {@value CompressionDictionary#MAX_SIZE}. If 0, data blocks are compressed without a
+     *          dictionary.
+     * @see Compression#getSupportedAlgorithms
+     */
+    public Writer(FSDataOutputStream fout, RateLimiter writeLimiter, String compressionName,
+        Configuration conf, CryptoService cryptoService, ExecutorService compressionExecutor,
+        int compressionThreads, int dictionarySize) throws IOException {
       if (fout.getPos() != 0) {
         throw new IOException("Output file not at zero offset.");
       }
@@ -328,6 +580,14 @@ public final class BCFile {
       Magic.write(this.out);
       this.cryptoEnvironment = new CryptoEnvironmentImpl(Scope.RFILE, null);
       this.encrypter = cryptoService.getFileEncrypter(this.cryptoEnvironment);
+      this.compressionExecutor = compressionExecutor;
+      this.compressionThreads = compressionExecutor == null ? 0 : compressionThreads;
+      if (getDefaultCompressionAlgorithm() == Algorithm.GZ) {
+        this.dictionarySize = Math.min(dictionarySize, CompressionDictionary.MAX_SIZE);
+      } else {
+        this.dictionarySize = 0;
+      }
+      this.training = this.dictionarySize > 0;
     }
 
     /**
@@ -346,6 +606,16 @@ public final class BCFile {
             throw new IllegalStateException("Close() called with active block appender.");
           }
 
+          writePendingDataBlocks();
+
+          if (dictionary != null) {
+            try (BlockAppender appender =
+                prepareMetaBlock(DICTIONARY_BLOCK_NAME, getDefaultCompressionAlgorithm())) {
+              appender.write(dictionary);
+            }
+            dataIndex.setDictionary(true);
+          }
+
           // add metaBCFileIndex to metaIndex as the last meta block
           try (BlockAppender appender =
               prepareMetaBlock(DataIndex.BLOCK_NAME, getDefaultCompressionAlgorithm())) {
@@ -369,6 +639,11 @@ public final class BCFile {
           out.close();
         }
       } finally {
+        for (PendingBlock pb : pendingBlocks) {
+          pb.compressed.cancel(false);
+        }
+        pendingBlocks.clear();
+        trainingBlocks.clear();
         closed = true;
       }
     }
@@ -387,8 +662,10 @@ public final class BCFile {
         throw new MetaBlockAlreadyExists("name=" + name);
       }
 
+      writePendingDataBlocks();
+
       MetaBlockRegister mbr = new MetaBlockRegister(name, compressAlgo);
-      WBlockState wbs = new WBlockState(compressAlgo, out, fsOutputBuffer, conf, encrypter);
+      WBlockState wbs = new WBlockState(compressAlgo, out, fsOutputBuffer, conf, encrypter, null);
       BlockAppender ba = new BlockAppender(mbr, wbs);
       blkInProgress = true;
       metaBlkSeen = true;
@@ -427,13 +704,45 @@ public final class BCFile {
         throw new IllegalStateException("Cannot create Data Block after Meta Blocks.");
       }
 
-      WBlockState wbs =
-          new WBlockState(getDefaultCompressionAlgorithm(), out, fsOutputBuffer, conf, encrypter);
+      // blocks are written in the order they are created
+      writePendingDataBlocks();
+
+      WBlockState wbs = new WBlockState(getDefaultCompressionAlgorithm(), out, fsOutputBuffer, conf,
+          encrypter, dictionary);
       BlockAppender ba = new BlockAppender(wbs);
       blkInProgress = true;
       return ba;
     }
 
+    /**
+     * Create a Data Block that may be compressed in the background, after it is closed, while the
+     * caller goes on to the next block. Blocks are still written to the file in the order they are
+     * created. The caller must call BlockAppender.close(BlockRegionListener) to conclude the block
+     * creation, and learns the location of the block in the file through the listener. If the
+     * writer was not created with compression threads, this is the same as
+     * {@link #prepareDataBlock()}.
+     *
+     * @return The BlockAppender stream
+     */
+    public BlockAppender preparePipelinedDataBlock() throws IOException {
+      // while training, blocks are buffered even without compression threads
+      if (compressionThreads <= 0 && !training) {
+        return prepareDataBlock();
+      }
+
+      if (blkInProgress) {
+        throw new IllegalStateException("Cannot create Data Block until previous block is closed.");
+      }
+
+      if (metaBlkSeen) {
+        throw new IllegalStateException("Cannot create Data Block after Meta Blocks.");
+      }
+
+      BlockAppender ba = new BlockAppender(new ByteArrayOutputStream());
+      blkInProgress = true;
+      return ba;
+    }
+
     /**
      * Callback to make sure a meta block is added to the internal list when its stream is closed.
      */
@@ -465,6 +774,7 @@ public final class BCFile {
     final Version version;
     private byte[] decryptionParams;
     private FileDecrypter decrypter;
+    private volatile byte[] dictionary = null;
 
     /**
      * Intermediate class that maintain the state of a Readable Compression Block.
@@ -477,11 +787,11 @@ public final class BCFile {
       private volatile boolean closed;
 
       public <InputStreamType extends InputStream & Seekable> RBlockState(Algorithm compressionAlgo,
-          InputStreamType fsin, BlockRegion region, Configuration conf, FileDecrypter decrypter)
-          throws IOException {
+          InputStreamType fsin, BlockRegion region, Configuration conf, FileDecrypter decrypter,
+          byte[] dictionary) throws IOException {
         this.compressAlgo = compressionAlgo;
         this.region = region;
-        this.decompressor = compressionAlgo.getDecompressor();
+        this.decompressor = dictionary == null ? compressionAlgo.getDecompressor() : null;
 
         BoundedRangeFileInputStream boundedRangeFileInputStream = new BoundedRangeFileInputStream(
             fsin, this.region.getOffset(), this.region.getCompressedSize());
@@ -489,8 +799,13 @@ public final class BCFile {
         try {
           InputStream inputStreamToBeCompressed =
               decrypter.decryptStream(boundedRangeFileInputStream);
-          this.in = compressAlgo.createDecompressionStream(inputStreamToBeCompressed, decompressor,
-              getFSInputBufferSize(conf));
+          if (dictionary == null) {
+            this.in = compressAlgo.createDecompressionStream(inputStreamToBeCompressed,
+                decompressor, getFSInputBufferSize(conf));
+          } else {
+            this.in = CompressionDictionary.createDecompressionStream(inputStreamToBeCompressed,
+                dictionary, getFSInputBufferSize(conf));
+          }
         } catch (IOException e) {
           compressAlgo.returnDecompressor(decompressor);
           throw e;
@@ -703,7 +1018,7 @@ public final class BCFile {
       }
 
       BlockRegion region = imeBCIndex.getRegion();
-      return createReader(imeBCIndex.getCompressionAlgorithm(), region);
+      return createReader(imeBCIndex.getCompressionAlgorithm(), region, null);
     }
 
     public long getMetaBlockRawSize(String name) throws IOException, MetaBlockDoesNotExist {
@@ -729,13 +1044,21 @@ public final class BCFile {
       }
 
       BlockRegion region = dataIndex.getBlockRegionList().get(blockIndex);
-      return createReader(dataIndex.getDefaultCompressionAlgorithm(), region);
+      return createReader(dataIndex.getDefaultCompressionAlgorithm(), region, getDictionary());
     }
 
     public BlockReader getDataBlock(long offset, long compressedSize, long rawSize)
         throws IOException {
       BlockRegion region = new BlockRegion(offset, compressedSize, rawSize);
-      return createReader(dataIndex.getDefaultCompressionAlgorithm(), region);
+      return createReader(dataIndex.getDefaultCompressionAlgorithm(), region, getDictionary());
+    }
+
+    /**
+     * @return true if data blocks are stored as is, without compression or encryption
+     */
+    public boolean isDataStoredRaw() {
+      return dataIndex.getDefaultCompressionAlgorithm() == Algorithm.NONE
+          && !dataIndex.hasDictionary() && decrypter instanceof NoFileDecrypter;
     }
 
     public long getDataBlockRawSize(int blockIndex) {
@@ -747,9 +1070,35 @@ public final class BCFile {
       return dataIndex.getBlockRegionList().get(blockIndex).getRawSize();
     }
 
-    private BlockReader createReader(Algorithm compressAlgo, BlockRegion region)
+    /**
+     * Gets the dictionary data blocks are compressed with, loading it on first use.
+     *
+     * @return the dictionary, or null if data blocks are compressed without one
+     */
+    private byte[] getDictionary() throws IOException {
+      if (!dataIndex.hasDictionary()) {
+        return null;
+      }
+
+      byte[] dict = dictionary;
+      if (dict == null) {
+        synchronized (this) {
+          dict = dictionary;
+          if (dict == null) {
+            dict = new byte[(int) getMetaBlockRawSize(DICTIONARY_BLOCK_NAME)];
+            try (BlockReader reader = getMetaBlock(DICTIONARY_BLOCK_NAME)) {
+              reader.readFully(dict);
+            }
+            dictionary = dict;
+          }
+        }
+      }
+      return dict;
+    }
+
+    private BlockReader createReader(Algorithm compressAlgo, BlockRegion region, byte[] dictionary)
         throws IOException {
-      RBlockState rbs = new RBlockState(compressAlgo, in, region, conf, decrypter);
+      RBlockState rbs = new RBlockState(compressAlgo, in, region, conf, decrypter, dictionary);
       return new BlockReader(rbs);
     }
   }
@@ -848,7 +1197,12 @@ public final class BCFile {
   static class DataIndex {
     static final String BLOCK_NAME = "BCFile.index";
 
+    // appended to the compression algorithm name when data blocks are compressed with the
+    // dictionary meta block, so readers that do not support dictionaries reject the file
+    static final String DICTIONARY_SUFFIX = "+dictionary";
+
     private final Algorithm defaultCompressionAlgorithm;
+    private boolean dictionary = false;
 
     // for data blocks, each entry specifies a block's offset, compressed size
     // and raw size
@@ -856,7 +1210,13 @@ public final class BCFile {
 
     // for read, deserialized from a file
     public DataIndex(DataInput in) throws IOException {
-      defaultCompressionAlgorithm = Compression.getCompressionAlgorithmByName(Utils.readString(in));
+      String algorithmName = Utils.readString(in);
+      if (algorithmName.endsWith(DICTIONARY_SUFFIX)) {
+        dictionary = true;
+        algorithmName =
+            algorithmName.substring(0, algorithmName.length() - DICTIONARY_SUFFIX.length());
+      }
+      defaultCompressionAlgorithm = Compression.getCompressionAlgorithmByName(algorithmName);
 
       int n = Utils.readVInt(in);
       listRegions = new ArrayList<>(n);
@@ -878,12 +1238,21 @@ public final class BCFile {
       return defaultCompressionAlgorithm;
     }
 
+    public boolean hasDictionary() {
+      return dictionary;
+    }
+
+    public void setDictionary(boolean dictionary) {
+      this.dictionary = dictionary;
+    }
+
     public ArrayList<BlockRegion> getBlockRegionList() {
       return listRegions;
     }
 
     public void write(DataOutput out) throws IOException {
-      Utils.writeString(out, defaultCompressionAlgorithm.getName());
+      Utils.writeString(out,
+          defaultCompressionAlgorithm.getName() + (dictionary ? DICTIONARY_SUFFIX : ""));
 
       Utils.writeVInt(out, listRegions.size());
 
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.rfile.bcfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflate compression of data blocks with a preset dictionary trained from the data blocks of a
+ * file. Small blocks compress poorly on their own because each block starts with an empty history,
+ * a dictionary of content common across blocks, like column families and the structure of values,
+ * gives each block a useful history to refer to.
+ */
+final class CompressionDictionary {
+
+  /**
+   * The largest useful dictionary, deflate can not refer further back than this.
+   */
+  static final int MAX_SIZE = 32 * 1024;
+
+  // length of the substrings counted when scoring segments
+  private static final int DMER = 8;
+  // length of the pieces of samples the dictionary is built from
+  private static final int SEGMENT = 64;
+  private static final int COUNT_BITS = 20;
+  private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+  private CompressionDictionary() {}
+
+  private static int hash(byte[] data, int off) {
+    long dmer = 0;
+    for (int i = 0; i < DMER; i++) {
+      dmer = (dmer << 8) | (data[off + i] & 0xff);
+    }
+    return (int) ((dmer * 0x9E3779B97F4A7C15L) >>> (64 - COUNT_BITS));
+  }
+
+  private static final class Segment implements Comparable<Segment> {
+    final byte[] sample;
+    final int offset;
+    long score;
+
+    Segment(byte[] sample, int offset) {
+      this.sample = sample;
+      this.offset = offset;
+    }
+
+    long score(int[] counts) {
+      long s = 0;
+      for (int i = offset; i <= offset + SEGMENT - DMER; i++) {
+        // substrings that occur once add nothing, they are only in this segment
+        s += Math.max(0, counts[hash(sample, i)] - 1);
+      }
+      return s;
+    }
+
+    void cover(int[] counts) {
+      for (int i = offset; i <= offset + SEGMENT - DMER; i++) {
+        counts[hash(sample, i)] = 0;
+      }
+    }
+
+    @Override
+    public int compareTo(Segment o) {
+      return Long.compare(o.score, score);
+    }
+  }
+
+  /**
+   * Trains a dictionary from samples of data blocks. The samples are cut into segments, and the
+   * segments whose substrings are most frequent across all samples are chosen greedily. A chosen
+   * segment's substrings no longer count for other segments, so the dictionary covers as much
+   * common content as possible. The best segments go at the end of the dictionary, where deflate
+   * can refer to them most cheaply.
+   *
+   * @return the dictionary, which may be empty if the samples have no common content
+   */
+  static byte[] train(List<byte[]> samples, int maxSize) {
+    int[] counts = new int[1 << COUNT_BITS];
+    List<Segment> segments = new ArrayList<>();
+    for (byte[] sample : samples) {
+      for (int i = 0; i + DMER <= sample.length; i++) {
+        counts[hash(sample, i)]++;
+      }
+      for (int i = 0; i + SEGMENT <= sample.length; i += SEGMENT) {
+        segments.add(new Segment(sample, i));
+      }
+    }
+
+    PriorityQueue<Segment> queue = new PriorityQueue<>();
+    for (Segment segment : segments) {
+      segment.score = segment.score(counts);
+      if (segment.score > 0) {
+        queue.add(segment);
+      }
+    }
+
+    List<Segment> chosen = new ArrayList<>();
+    while (!queue.isEmpty() && (chosen.size() + 1) * SEGMENT <= maxSize) {
+      Segment segment = queue.poll();
+      // scores only go down as segments are chosen, so a stale score is an upper bound
+      long score = segment.score(counts);
+      if (score <= 0) {
+        continue;
+      }
+      if (!queue.isEmpty() && score < queue.peek().score) {
+        segment.score = score;
+        queue.add(segment);
+        continue;
+      }
+      segment.cover(counts);
+      chosen.add(segment);
+    }
+
+    ByteArrayOutputStream dictionary = new ByteArrayOutputStream(chosen.size() * SEGMENT);
+    for (int i = chosen.size() - 1; i >= 0; i--) {
+      Segment segment = chosen.get(i);
+      dictionary.write(segment.sample, segment.offset, SEGMENT);
+    }
+    return dictionary.toByteArray();
+  }
+
+  /**
+   * Creates a stream that compresses a block with a dictionary. Like the compression streams of
+   * {@link Compression.Algorithm}, flushing the stream finishes the block.
+   */
+  static OutputStream createCompressionStream(OutputStream downStream, byte[] dictionary) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    deflater.setDictionary(dictionary);
+    return new DeflaterOutputStream(downStream, deflater, COMPRESSION_BUFFER_SIZE) {
+      private boolean finished = false;
+
+      @Override
+      public void flush() throws IOException {
+        if (!finished) {
+          finished = true;
+          try {
+            finish();
+          } finally {
+            def.end();
+          }
+        }
+        out.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+        out.close();
+      }
+    };
+  }
+
+  /**
+   * Creates a stream that decompresses a block compressed with a dictionary.
+   */
+  static InputStream createDecompressionStream(InputStream downStream, byte[] dictionary,
+      int bufferSize) {
+    Inflater inflater = new Inflater(true);
+    inflater.setDictionary(dictionary);
+    return new InflaterInputStream(downStream, inflater, bufferSize) {
+      private boolean closed = false;
+
+      @Override
+      public void close() throws IOException {
+        if (!closed) {
+          closed = true;
+          try {
+            super.close();
+          } finally {
+            inf.end();
+          }
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.streams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.fs.Seekable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An input stream over a local file that is mapped into memory. Besides reading it as a stream,
+ * ranges of the file can be copied out of the mapping by position, without seeking and without
+ * synchronizing with other readers of the stream. Closing the stream waits for reads in progress
+ * and releases the mapping. If the JVM does not allow releasing it, the mapping is released when
+ * the stream is garbage collected.
+ */
+public class MappedFileInputStream extends InputStream implements Seekable {
+
+  private static final Logger log = LoggerFactory.getLogger(MappedFileInputStream.class);
+
+  // sun.misc.Unsafe.invokeCleaner, the only way to release a mapping before it is garbage collected
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Unable to release file mappings on close, they will be released by the GC", e);
+      unsafe = null;
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final ByteBuffer buffer;
+  // positional reads hold the read lock, so that the mapping is not released while they copy
+  private final ReadWriteLock unmapLock = new ReentrantReadWriteLock();
+  private volatile boolean closed = false;
+  private boolean unmapped = false;
+
+  private MappedFileInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Maps a local file into memory.
+   *
+   * @return the stream, or null if the file is too large to map as a single buffer
+   */
+  public static MappedFileInputStream map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return null;
+      }
+      return new MappedFileInputStream(channel.map(MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  public long length() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Copies a range of the file. Does not change the position of the stream.
+   */
+  public void read(long position, byte[] dest, int offset, int length) throws IOException {
+    unmapLock.readLock().lock();
+    try {
+      checkClosed();
+      if (position < 0 || position + length > buffer.capacity()) {
+        throw new EOFException("Can not read " + length + " bytes at " + position
+            + " from a file of length " + buffer.capacity());
+      }
+      ByteBuffer dup = buffer.duplicate();
+      dup.position((int) position);
+      dup.get(dest, offset, length);
+    } finally {
+      unmapLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return true if closing the stream released its mapping
+   */
+  public boolean isUnmapped() {
+    unmapLock.readLock().lock();
+    try {
+      return unmapped;
+    } finally {
+      unmapLock.readLock().unlock();
+    }
+  }
+
+  private void checkClosed() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  @Override
+  public synchronized int read() throws IOException {
+    checkClosed();
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    return buffer.get() & 0xff;
+  }
+
+  @Override
+  public synchronized int read(byte[] b, int off, int len) throws IOException {
+    checkClosed();
+    if (len == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    int n = Math.min(len, buffer.remaining());
+    buffer.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public synchronized long skip(long n) throws IOException {
+    checkClosed();
+    int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public synchronized int available() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public synchronized void seek(long pos) throws IOException {
+    checkClosed();
+    if (pos < 0 || pos > buffer.capacity()) {
+      throw new EOFException(
+          "Can not seek to " + pos + " in a file of length " + buffer.capacity());
+    }
+    buffer.position((int) pos);
+  }
+
+  @Override
+  public synchronized long getPos() {
+    return buffer.position();
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) {
+    return false;
+  }
+
+  @Override
+  public synchronized void close() {
+    // stream reads synchronize on this, positional reads hold the read lock
+    unmapLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (INVOKE_CLEANER != null) {
+        try {
+          INVOKE_CLEANER.invoke(UNSAFE, buffer);
+          unmapped = true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+          log.debug("Unable to release file mapping, it will be released by the GC", e);
+        }
+      }
+    } finally {
+      unmapLock.writeLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.iterators;
+
+import java.io.IOException;
+import java.util.function.BiPredicate;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * An iterator that can return many key value pairs in one call (only used by
+ * SortedKeyValueIterators). Reading a batch at a time saves the iterator above it from calling
+ * hasTop, getTopKey, getTopValue and next for each key value pair. Iterators that do not implement
+ * this interface are read one key value pair at a time by
+ * {@link #nextBatch(SortedKeyValueIterator, Key[], Value[], int, BiPredicate)}, which only copies
+ * the pairs the caller accepts.
+ *
+ * @since 2.1.0
+ */
+public interface BatchKeyValueIterator {
+
+  /**
+   * Copies the top key value pair and the ones following it that the filter accepts into the
+   * arrays, and moves past them and the pairs the filter rejects. The filter is passed pairs that
+   * may be changed by later calls to the iterator, and must not keep them. The keys and values
+   * copied belong to the caller and are not changed by later calls to the iterator. After this
+   * call, hasTop, getTopKey and getTopValue refer to the key value pair after the last one the
+   * filter was passed.
+   *
+   * @param max
+   *          the most key value pairs to copy, no more than the length of the arrays
+   * @return the number of key value pairs copied, which is less than max only if the iterator has
+   *         no top
+   */
+  int nextBatch(Key[] keys, Value[] values, int max, BiPredicate<Key,Value> filter)
+      throws IOException;
+
+  /**
+   * Reads a batch of all the key value pairs from an iterator.
+   *
+   * @see #nextBatch(Key[], Value[], int, BiPredicate)
+   */
+  static int nextBatch(SortedKeyValueIterator<Key,Value> iter, Key[] keys, Value[] values, int max)
+      throws IOException {
+    return nextBatch(iter, keys, values, max, (k, v) -> true);
+  }
+
+  /**
+   * Reads a batch from an iterator, calling {@link #nextBatch(Key[], Value[], int, BiPredicate)} if
+   * it implements this interface, or else passing its key value pairs to the filter one at a time
+   * and copying the accepted ones.
+   *
+   * @see #nextBatch(Key[], Value[], int, BiPredicate)
+   */
+  static int nextBatch(SortedKeyValueIterator<Key,Value> iter, Key[] keys, Value[] values, int max,
+      BiPredicate<Key,Value> filter) throws IOException {
+    if (iter instanceof BatchKeyValueIterator) {
+      return ((BatchKeyValueIterator) iter).nextBatch(keys, values, max, filter);
+    }
+
+    int count = 0;
+    while (count < max && iter.hasTop()) {
+      Key key = iter.getTopKey();
+      Value value = iter.getTopValue();
+      if (filter.test(key, value)) {
+        keys[count] = new Key(key);
+        values[count] = new Value(value);
+        count++;
+      }
+      iter.next();
+    }
+    return count;
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.accumulo.core.iterators;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
@@ -37,7 +38,7 @@ import org.apache.accumulo.core.data.Value;
  *
  * @since 2.0
  */
-public abstract class ServerFilter extends ServerWrappingIterator {
+public abstract class ServerFilter extends ServerWrappingIterator implements BatchKeyValueIterator {
 
   public ServerFilter(SortedKeyValueIterator<Key,Value> source) {
     super(source);
@@ -59,6 +60,15 @@ public abstract class ServerFilter extends ServerWrappingIterator {
     findTop();
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values, int max, BiPredicate<Key,Value> filter)
+      throws IOException {
+    int count = BatchKeyValueIterator.nextBatch(source, keys, values, max,
+        (k, v) -> (k.isDeleted() || accept(k, v)) && filter.test(k, v));
+    findTop();
+    return count;
+  }
+
   /**
    * Iterates over the source until an acceptable key/value pair is found.
    */
@@ -21,6 +21,7 @@ package org.apache.accumulo.core.iterators;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
@@ -35,7 +36,8 @@ import org.apache.accumulo.core.data.Value;
  *
  * @since 2.0
  */
-public abstract class SynchronizedServerFilter implements SortedKeyValueIterator<Key,Value> {
+public abstract class SynchronizedServerFilter
+    implements SortedKeyValueIterator<Key,Value>, BatchKeyValueIterator {
 
   protected final SortedKeyValueIterator<Key,Value> source;
 
@@ -74,6 +76,15 @@ public abstract class SynchronizedServerFilter implements SortedKeyValueIterator
     return source.hasTop();
   }
 
+  @Override
+  public synchronized int nextBatch(Key[] keys, Value[] values, int max,
+      BiPredicate<Key,Value> filter) throws IOException {
+    int count = BatchKeyValueIterator.nextBatch(source, keys, values, max,
+        (k, v) -> (k.isDeleted() || accept(k, v)) && filter.test(k, v));
+    findTop();
+    return count;
+  }
+
   /**
    * Iterates over the source until an acceptable key/value pair is found.
    */
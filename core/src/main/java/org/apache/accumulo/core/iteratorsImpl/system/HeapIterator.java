@@ -27,10 +27,22 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 
 /**
  * Constructs a {@link PriorityQueue} of multiple SortedKeyValueIterators. Provides a simple way to
- * interact with multiple SortedKeyValueIterators in sorted order.
+ * interact with multiple SortedKeyValueIterators in sorted order. When created for many sources, a
+ * tournament tree of losers is used instead of the queue. Moving the top to another source costs
+ * the queue about two comparisons per level, and the tree one, but the queue also keeps the least
+ * top key of the other sources, which lets a run of keys from one source cost one comparison each.
+ * The tree only finds that key once a run starts, at the cost of another comparison per level.
  */
 public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value> {
+
+  // the least number of sources for which HeapIteratorTest counts fewer comparisons with the tree
+  // when keys are spread over the sources
+  static final int LOSER_TREE_MIN_SOURCES = 8;
+
   private PriorityQueue<SortedKeyValueIterator<Key,Value>> heap;
+  private LoserTree tree;
+  // false when sources were added to the tree after its matches were last played
+  private boolean treeBuilt = false;
   private SortedKeyValueIterator<Key,Value> topIdx = null;
   private Key nextKey;
 
@@ -43,11 +55,24 @@ public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value>
   }
 
   protected void createHeap(int maxSize) {
-    if (heap != null)
+    createHeap(maxSize, maxSize >= LOSER_TREE_MIN_SOURCES);
+  }
+
+  /**
+   * @param loserTree
+   *          true to merge the sources with a tournament tree of losers, false to use a priority
+   *          queue
+   */
+  protected void createHeap(int maxSize, boolean loserTree) {
+    if (heap != null || tree != null)
       throw new IllegalStateException("heap already exist");
 
-    heap = new PriorityQueue<>(maxSize == 0 ? 1 : maxSize,
-        (si1, si2) -> si1.getTopKey().compareTo(si2.getTopKey()));
+    if (loserTree) {
+      tree = new LoserTree(maxSize);
+    } else {
+      heap = new PriorityQueue<>(maxSize == 0 ? 1 : maxSize,
+          (si1, si2) -> si1.getTopKey().compareTo(si2.getTopKey()));
+    }
   }
 
   @Override
@@ -72,6 +97,11 @@ public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value>
     }
 
     topIdx.next();
+    if (tree != null) {
+      nextFromTree();
+      return;
+    }
+
     if (topIdx.hasTop()) {
       if (nextKey == null) {
         // topIdx is the only iterator
@@ -99,6 +129,33 @@ public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value>
     }
   }
 
+  /**
+   * For the tree, nextKey is only known while the top iterator keeps winning. Finding it takes as
+   * many comparisons as replaying the matches, so it is only looked for when a replay leaves the
+   * same iterator on top, which is the start of a run of keys from one iterator. Until then each
+   * move replays the matches, which is one comparison per level of the tree.
+   */
+  private void nextFromTree() {
+    if (nextKey != null) {
+      if (topIdx.hasTop() && nextKey.compareTo(topIdx.getTopKey()) >= 0) {
+        return;
+      }
+      nextKey = null;
+    }
+
+    SortedKeyValueIterator<Key,Value> previous = topIdx;
+    if (treeBuilt) {
+      tree.replay();
+    } else {
+      tree.build();
+      treeBuilt = true;
+    }
+    topIdx = tree.winner();
+    if (topIdx != null && topIdx == previous) {
+      nextKey = tree.runnerUpKey();
+    }
+  }
+
   private void pullReferencesFromHeap() {
     topIdx = heap.remove();
     if (heap.isEmpty()) {
@@ -109,12 +166,22 @@ public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value>
   }
 
   protected final void clear() {
-    heap.clear();
+    if (tree != null) {
+      tree.clear();
+      treeBuilt = false;
+    } else {
+      heap.clear();
+    }
     topIdx = null;
     nextKey = null;
   }
 
   protected final void addSource(SortedKeyValueIterator<Key,Value> source) {
+    if (tree != null) {
+      addSourceToTree(source);
+      return;
+    }
+
     if (source.hasTop()) {
       heap.add(source);
       if (topIdx != null) {
@@ -124,4 +191,27 @@ public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value>
       pullReferencesFromHeap();
     }
   }
+
+  /**
+   * Adds a source to the tree without playing its matches, which are played the first time the top
+   * moves to another source. Until then the top and next keys are kept up to date here.
+   */
+  private void addSourceToTree(SortedKeyValueIterator<Key,Value> source) {
+    if (!source.hasTop()) {
+      return;
+    }
+
+    tree.add(source);
+    treeBuilt = false;
+
+    Key key = source.getTopKey();
+    if (topIdx == null) {
+      topIdx = source;
+    } else if (key.compareTo(topIdx.getTopKey()) < 0) {
+      nextKey = topIdx.getTopKey();
+      topIdx = source;
+    } else if (nextKey == null || key.compareTo(nextKey) < 0) {
+      nextKey = key;
+    }
+  }
 }
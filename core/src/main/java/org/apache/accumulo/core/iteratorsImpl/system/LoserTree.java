@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.iteratorsImpl.system;
+
+import java.util.ArrayList;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+/**
+ * A tournament tree of losers over sorted iterators. Each internal node holds the iterator that
+ * lost the match played there, and the overall winner is the iterator with the least top key. After
+ * the winner moves, the matches on the path from it to the root are replayed, which takes one
+ * comparison per level instead of the two or more per level of sifting a binary heap.
+ *
+ * <p>
+ * The leaves are numbered 0 to k-1 and are the nodes k to 2k-1 of the tree, so that the parent of
+ * node n is node n/2. Node 0 holds the winner. An iterator without a top loses to every other.
+ */
+final class LoserTree {
+
+  private final ArrayList<SortedKeyValueIterator<Key,Value>> leaves;
+  private int[] nodes;
+  private int size = 0;
+
+  LoserTree(int capacity) {
+    leaves = new ArrayList<>(capacity);
+    nodes = new int[Math.max(1, capacity)];
+  }
+
+  void clear() {
+    leaves.clear();
+    size = 0;
+  }
+
+  /**
+   * Adds an iterator, which is not part of the matches until the next call to {@link #build()}.
+   */
+  void add(SortedKeyValueIterator<Key,Value> source) {
+    leaves.add(source);
+    size++;
+    if (size > nodes.length) {
+      nodes = new int[size * 2];
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Plays all of the matches between the iterators added.
+   */
+  void build() {
+    nodes[0] = size == 1 ? 0 : play(1);
+  }
+
+  private int play(int node) {
+    if (node >= size) {
+      return node - size;
+    }
+    int left = play(2 * node);
+    int right = play(2 * node + 1);
+    if (beats(right, left)) {
+      nodes[node] = left;
+      return right;
+    }
+    nodes[node] = right;
+    return left;
+  }
+
+  /**
+   * Replays the matches of the winner after it moved.
+   */
+  void replay() {
+    int winner = nodes[0];
+    for (int node = (winner + size) >>> 1; node > 0; node >>>= 1) {
+      int other = nodes[node];
+      if (beats(other, winner)) {
+        nodes[node] = winner;
+        winner = other;
+      }
+    }
+    nodes[0] = winner;
+  }
+
+  /**
+   * @return the iterator with the least top key, or null if no iterator has a top
+   */
+  SortedKeyValueIterator<Key,Value> winner() {
+    SortedKeyValueIterator<Key,Value> winner = leaves.get(nodes[0]);
+    return winner.hasTop() ? winner : null;
+  }
+
+  /**
+   * @return the least top key of the iterators other than the winner, or null if none of them has a
+   *         top. The runner up lost its last match to the winner, so it is one of the losers on the
+   *         winner's path.
+   */
+  Key runnerUpKey() {
+    Key runnerUp = null;
+    for (int node = (nodes[0] + size) >>> 1; node > 0; node >>>= 1) {
+      SortedKeyValueIterator<Key,Value> other = leaves.get(nodes[node]);
+      if (other.hasTop() && (runnerUp == null || other.getTopKey().compareTo(runnerUp) < 0)) {
+        runnerUp = other.getTopKey();
+      }
+    }
+    return runnerUp;
+  }
+
+  private boolean beats(int a, int b) {
+    SortedKeyValueIterator<Key,Value> leafA = leaves.get(a);
+    if (!leafA.hasTop()) {
+      return false;
+    }
+    SortedKeyValueIterator<Key,Value> leafB = leaves.get(b);
+    return !leafB.hasTop() || leafA.getTopKey().compareTo(leafB.getTopKey()) < 0;
+  }
+}
@@ -25,12 +25,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.BatchKeyValueIterator;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.YieldCallback;
@@ -42,7 +44,7 @@ import org.apache.accumulo.core.iterators.YieldCallback;
  * their scan when that data is minor compacted. This iterator is designed to manage this behind the
  * scene.
  */
-public class SourceSwitchingIterator implements InterruptibleIterator {
+public class SourceSwitchingIterator implements InterruptibleIterator, BatchKeyValueIterator {
 
   public interface DataSource {
     boolean isCurrent();
@@ -148,6 +150,37 @@ public class SourceSwitchingIterator implements InterruptibleIterator {
     }
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values, int max, BiPredicate<Key,Value> filter)
+      throws IOException {
+    synchronized (copies) {
+      if (key == null) {
+        return 0;
+      }
+
+      boolean yielded = (yield.isPresent() && yield.get().hasYielded());
+      if (onlySwitchAfterRow || yielded || !source.isCurrent()) {
+        // let readNext switch sources and handle yields between each key value
+        int count = 0;
+        while (count < max && key != null) {
+          if (filter.test(key, val)) {
+            // the key is already a copy, the value may be reused by the source
+            keys[count] = key;
+            values[count] = new Value(val);
+            count++;
+          }
+          readNext(false);
+        }
+        return count;
+      }
+
+      // the source is positioned at the top key
+      int count = BatchKeyValueIterator.nextBatch(iter, keys, values, max, filter);
+      readTop();
+      return count;
+    }
+  }
+
   private void readNext(boolean initialSeek) throws IOException {
 
     // we need to check here if we were yielded in case the source was switched out and re-seeked by
@@ -182,6 +215,10 @@ public class SourceSwitchingIterator implements InterruptibleIterator {
       }
     }
 
+    readTop();
+  }
+
+  private void readTop() throws IOException {
     if (iter.hasTop()) {
       if (yield.isPresent() && yield.get().hasYielded()) {
         throw new IOException("Coding error: hasTop returned true but has yielded at "
@@ -368,6 +368,77 @@ import io.micrometer.core.instrument.MeterRegistry;
  * <td>Gauge</td>
  * <td></td>
  * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_INDEX_PINNED_BYTES}</td>
+ * <td>Gauge</td>
+ * <td>Tagged with the table id</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_CACHE_L2_HITS}</td>
+ * <td>Counter</td>
+ * <td>Tagged with the cache type</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_CACHE_L2_REQUESTS}</td>
+ * <td>Counter</td>
+ * <td>Tagged with the cache type</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_CACHE_L2_DROPPED}</td>
+ * <td>Counter</td>
+ * <td>Blocks not written to the second level cache because its writer fell behind, tagged with the
+ * cache type</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_SLABS}</td>
+ * <td>Gauge</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_OCCUPANCY}</td>
+ * <td>Gauge</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_FRAGMENTATION}</td>
+ * <td>Gauge</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_HITS}</td>
+ * <td>Counter</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_INSERTS}</td>
+ * <td>Counter</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
+ * <tr>
+ * <td>N/A</td>
+ * <td>N/A</td>
+ * <td>{@link #METRICS_TSERVER_SLAB_CACHE_EVICTIONS}</td>
+ * <td>Counter</td>
+ * <td>Tagged with the cache type and the chunk size of the slab cache size class</td>
+ * </tr>
  * <!-- scans -->
  * <tr>
  * <td>scan</td>
@@ -600,6 +671,17 @@ public interface MetricsProducer {
   String METRICS_TSERVER_QUERIES = METRICS_TSERVER_PREFIX + "queries";
   String METRICS_TSERVER_TABLETS_FILES = METRICS_TSERVER_PREFIX + "tablets.files";
   String METRICS_TSERVER_HOLD = METRICS_TSERVER_PREFIX + "hold";
+  String METRICS_TSERVER_INDEX_PINNED_BYTES = METRICS_TSERVER_PREFIX + "index.pinned.bytes";
+  String METRICS_TSERVER_CACHE_L2_HITS = METRICS_TSERVER_PREFIX + "cache.l2.hits";
+  String METRICS_TSERVER_CACHE_L2_REQUESTS = METRICS_TSERVER_PREFIX + "cache.l2.requests";
+  String METRICS_TSERVER_CACHE_L2_DROPPED = METRICS_TSERVER_PREFIX + "cache.l2.dropped";
+  String METRICS_TSERVER_SLAB_CACHE_SLABS = METRICS_TSERVER_PREFIX + "cache.slab.slabs";
+  String METRICS_TSERVER_SLAB_CACHE_OCCUPANCY = METRICS_TSERVER_PREFIX + "cache.slab.occupancy";
+  String METRICS_TSERVER_SLAB_CACHE_FRAGMENTATION =
+      METRICS_TSERVER_PREFIX + "cache.slab.fragmentation";
+  String METRICS_TSERVER_SLAB_CACHE_HITS = METRICS_TSERVER_PREFIX + "cache.slab.hits";
+  String METRICS_TSERVER_SLAB_CACHE_INSERTS = METRICS_TSERVER_PREFIX + "cache.slab.inserts";
+  String METRICS_TSERVER_SLAB_CACHE_EVICTIONS = METRICS_TSERVER_PREFIX + "cache.slab.evictions";
   String METRICS_TSERVER_INGEST_MUTATIONS = METRICS_TSERVER_PREFIX + "ingest.mutations";
   String METRICS_TSERVER_INGEST_BYTES = METRICS_TSERVER_PREFIX + "ingest.bytes";
   String METRICS_TSERVER_SCAN_RESULTS = METRICS_TSERVER_PREFIX + "scan.results";
@@ -145,6 +145,15 @@ public class ThreadPools {
       case TSERV_SUMMARY_PARTITION_THREADS:
         return createThreadPool(conf.getCount(p), conf.getCount(p), 60, TimeUnit.SECONDS,
             "summary partition");
+      case TSERV_SCAN_PARTITION_THREADS:
+        return createThreadPool(conf.getCount(p), conf.getCount(p), 60, TimeUnit.SECONDS,
+            "scan partition");
+      case TSERV_READ_AHEAD_THREADS:
+        return createThreadPool(conf.getCount(p), conf.getCount(p), 60, TimeUnit.SECONDS,
+            "block read ahead");
+      case TSERV_COMPRESSION_THREADS:
+        return createThreadPool(conf.getCount(p), conf.getCount(p), 60, TimeUnit.SECONDS,
+            "compaction block compression");
       case GC_DELETE_THREADS:
         return createFixedThreadPool(conf.getCount(p), "deleting");
       case REPLICATION_WORKER_THREADS:
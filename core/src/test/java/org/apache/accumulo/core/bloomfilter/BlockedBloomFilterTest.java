@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.bloomfilter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.util.bloom.Key;
+import org.junit.Test;
+
+public class BlockedBloomFilterTest {
+
+  private static Key key(String prefix, int i) {
+    return new Key(String.format("%s%08d", prefix, i).getBytes(UTF_8));
+  }
+
+  @Test
+  public void testMembership() throws IOException {
+    BlockedBloomFilter.Builder builder = new BlockedBloomFilter.Builder(1_000_000, 0.01);
+    for (int i = 0; i < 100_000; i++) {
+      // consecutive duplicates are only counted once
+      builder.add(key("r", i));
+      builder.add(key("r", i));
+    }
+    assertEquals(100_000, builder.getCount());
+
+    // fewer keys than a filter holds get one filter sized for them
+    List<BlockedBloomFilter> filters = builder.build();
+    assertEquals(1, filters.size());
+    BlockedBloomFilter filter = filters.get(0);
+    assertEquals(BlockedBloomFilter.numBlocks(100_000, 0.01) * 32L, filter.getSize());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    filter.write(new DataOutputStream(baos));
+    BlockedBloomFilter read = new BlockedBloomFilter();
+    read.readFields(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    assertEquals(filter.getSize(), read.getSize());
+
+    for (BlockedBloomFilter f : new BlockedBloomFilter[] {filter, read}) {
+      for (int i = 0; i < 100_000; i++) {
+        assertTrue(f.membershipTest(key("r", i)));
+      }
+
+      int falsePositives = 0;
+      for (int i = 0; i < 100_000; i++) {
+        if (f.membershipTest(key("x", i))) {
+          falsePositives++;
+        }
+      }
+      // blocking raises the false positive rate a little above the rate the filter is sized for
+      assertTrue("false positives " + falsePositives, falsePositives < 2_000);
+    }
+  }
+
+  @Test
+  public void testChain() {
+    BlockedBloomFilter.Builder builder = new BlockedBloomFilter.Builder(10_000, 0.01);
+    for (int i = 0; i < 25_000; i++) {
+      builder.add(key("r", i));
+    }
+    assertEquals(25_000, builder.getCount());
+
+    List<BlockedBloomFilter> filters = builder.build();
+    assertEquals(3, filters.size());
+    for (BlockedBloomFilter filter : filters) {
+      assertEquals(BlockedBloomFilter.numBlocks(10_000, 0.01) * 32L, filter.getSize());
+    }
+
+    for (int i = 0; i < 25_000; i++) {
+      Key k = key("r", i);
+      assertTrue(filters.stream().anyMatch(f -> f.membershipTest(k)));
+    }
+
+    // each key is in the filter that was filling when it was added
+    assertTrue(filters.get(0).membershipTest(key("r", 0)));
+    assertTrue(filters.get(2).membershipTest(key("r", 24_999)));
+  }
+
+  @Test
+  public void testSize() {
+    // about 12 bits per key at a 0.5% false positive rate
+    assertEquals(1_000_000 * 11.03 / 256, BlockedBloomFilter.numBlocks(1_000_000, 0.005), 100);
+    assertEquals(1, BlockedBloomFilter.numBlocks(0, 0.005));
+  }
+}
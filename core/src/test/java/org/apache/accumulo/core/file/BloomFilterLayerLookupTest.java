@@ -18,8 +18,11 @@
  */
 package org.apache.accumulo.core.file;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.security.SecureRandom;
@@ -36,10 +39,13 @@ import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.keyfunctor.ColumnFamilyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.KeyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.RowPrefixFunctor;
 import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -64,6 +70,57 @@ public class BloomFilterLayerLookupTest {
 
   @Test
   public void test() throws IOException {
+    test(BloomFilterLayer.DYNAMIC_TYPE);
+  }
+
+  @Test
+  public void testBlocked() throws IOException {
+    test(BloomFilterLayer.BLOCKED_TYPE);
+  }
+
+  @Test
+  public void testBlockedChain() throws IOException {
+    // more keys than fit in one filter are added to a chain of filters
+    test(BloomFilterLayer.BLOCKED_TYPE, 10_000);
+  }
+
+  @Test
+  public void testUnknownType() throws IOException {
+    // falls back to a dynamic filter
+    test("unknown");
+  }
+
+  @Test
+  public void testWritableFunctor() throws IOException {
+    // a functor that happens to be Writable is stored as before, without its fields
+    test(BloomFilterLayer.DYNAMIC_TYPE, 1_048_576, WritableFunctor.class);
+  }
+
+  /**
+   * A custom functor that is Writable for reasons of its own.
+   */
+  public static class WritableFunctor extends ColumnFamilyFunctor implements Writable {
+    @Override
+    public void write(DataOutput out) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void readFields(DataInput in) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private void test(String bloomType) throws IOException {
+    test(bloomType, 1_048_576);
+  }
+
+  private void test(String bloomType, int bloomSize) throws IOException {
+    test(bloomType, bloomSize, ColumnFamilyFunctor.class);
+  }
+
+  private void test(String bloomType, int bloomSize, Class<? extends KeyFunctor> functor)
+      throws IOException {
     HashSet<Integer> valsSet = new HashSet<>();
     for (int i = 0; i < 100000; i++) {
       valsSet.add(random.nextInt(Integer.MAX_VALUE));
@@ -74,7 +131,9 @@ public class BloomFilterLayerLookupTest {
 
     ConfigurationCopy acuconf = new ConfigurationCopy(DefaultConfiguration.getInstance());
     acuconf.set(Property.TABLE_BLOOM_ENABLED, "true");
-    acuconf.set(Property.TABLE_BLOOM_KEY_FUNCTOR, ColumnFamilyFunctor.class.getName());
+    acuconf.set(Property.TABLE_BLOOM_TYPE, bloomType);
+    acuconf.set(Property.TABLE_BLOOM_SIZE, Integer.toString(bloomSize));
+    acuconf.set(Property.TABLE_BLOOM_KEY_FUNCTOR, functor.getName());
     acuconf.set(Property.TABLE_FILE_TYPE, RFile.EXTENSION);
     acuconf.set(Property.TABLE_BLOOM_LOAD_THRESHOLD, "1");
     acuconf.set(Property.TSERV_BLOOM_LOAD_MAXCONCURRENT, "1");
@@ -145,6 +204,49 @@ public class BloomFilterLayerLookupTest {
     assertTrue(rate1 > rate2);
   }
 
+  @Test
+  public void testRowPrefix() throws IOException {
+    ConfigurationCopy acuconf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    acuconf.set(Property.TABLE_BLOOM_ENABLED, "true");
+    acuconf.set(Property.TABLE_BLOOM_KEY_FUNCTOR, RowPrefixFunctor.class.getName());
+    acuconf.set(Property.TABLE_BLOOM_PREFIX_LENGTH, "6");
+    acuconf.set(Property.TABLE_BLOOM_TYPE, BloomFilterLayer.BLOCKED_TYPE);
+    acuconf.set(Property.TABLE_FILE_TYPE, RFile.EXTENSION);
+    acuconf.set(Property.TABLE_BLOOM_LOAD_THRESHOLD, "0");
+    acuconf.set(Property.TSERV_BLOOM_LOAD_MAXCONCURRENT, "0");
+
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.get(conf);
+
+    String suffix = FileOperations.getNewFileExtension(acuconf);
+    String fname = new File(tempDir.getRoot(), "prefix." + suffix).getAbsolutePath();
+    FileSKVWriter bmfw = FileOperations.getInstance().newWriterBuilder()
+        .forFile(fname, fs, conf, CryptoServiceFactory.newDefaultInstance())
+        .withTableConfiguration(acuconf).build();
+
+    // rows with even five digit prefixes
+    bmfw.startDefaultLocalityGroup();
+    for (int i = 0; i < 10000; i += 2) {
+      for (int j = 0; j < 10; j++) {
+        bmfw.append(new Key(new Text(String.format("r%05d%02d", i, j)), new Text("cf")),
+            new Value("v"));
+      }
+    }
+    bmfw.close();
+
+    // the prefix functor's length is read from the file, not the table configuration
+    acuconf.set(Property.TABLE_BLOOM_PREFIX_LENGTH, "3");
+    FileSKVIterator bmfr = FileOperations.getInstance().newReaderBuilder()
+        .forFile(fname, fs, conf, CryptoServiceFactory.newDefaultInstance())
+        .withTableConfiguration(acuconf).build();
+
+    for (int i = 0; i < 10000; i++) {
+      bmfr.seek(Range.prefix(new Text(String.format("r%05d", i))), new ArrayList<>(), false);
+      assertEquals(i % 2 == 0, bmfr.hasTop());
+    }
+    bmfr.close();
+  }
+
   private void seek(FileSKVIterator bmfr, int row) throws IOException {
     String fi = String.format("%010d", row);
     // bmfr.seek(new Range(new Text("r"+fi)));
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.List;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.slab.SlabBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.slab.SlabBlockCache.SizeClassStats;
+import org.apache.accumulo.core.file.blockfile.cache.slab.SlabBlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.slab.SlabBlockCacheManager;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.spi.cache.CacheEntry.Weighable;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.apache.accumulo.core.metrics.MetricsProducer;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests the off-heap SlabBlockCache.
+ */
+public class TestSlabBlockCache {
+
+  private static final SecureRandom random = new SecureRandom();
+
+  private BlockCacheManager manager;
+
+  private SlabBlockCache startCache(long maxSize, SlabBlockCacheConfiguration.Builder builder)
+      throws Exception {
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, SlabBlockCacheManager.class.getName());
+    manager = BlockCacheManagerFactory.getInstance(cc);
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(1024));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(maxSize));
+    builder.buildMap().forEach(cc::set);
+    manager.start(new BlockCacheConfiguration(cc));
+    return (SlabBlockCache) manager.getBlockCache(CacheType.INDEX);
+  }
+
+  @Test
+  public void testConfiguration() {
+    ConfigurationCopy cc = new ConfigurationCopy();
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, SlabBlockCacheManager.class.getName());
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(1019));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(10_000_000));
+    cc.set(Property.TSERV_DATACACHE_SIZE, Long.toString(1000));
+    cc.set(Property.TSERV_SUMMARYCACHE_SIZE, Long.toString(1000));
+
+    SlabBlockCacheConfiguration.builder(CacheType.INDEX).slabSize(65536).minChunkSize(100)
+        .growthFactor(2.0f).indexHeapFactor(0.1f).buildMap().forEach(cc::set);
+
+    BlockCacheConfiguration bcc = new BlockCacheConfiguration(cc);
+    SlabBlockCacheConfiguration sbcc = new SlabBlockCacheConfiguration(bcc, CacheType.INDEX);
+
+    assertEquals(65536, sbcc.getSlabSize());
+    assertEquals(100, sbcc.getMinChunkSize());
+    assertEquals(2.0f, sbcc.getGrowthFactor(), 0.0000001);
+    assertEquals(0.1f, sbcc.getIndexHeapFactor(), 0.0000001);
+    assertEquals(10_000_000, sbcc.getMaxSize());
+    assertArrayEquals(new int[] {100, 200, 400, 800, 1600, 3200, 6400, 12800, 25600, 51200, 65536},
+        sbcc.getChunkSizes());
+
+    // cache smaller than the default slab size gets a single slab
+    SlabBlockCacheConfiguration data = new SlabBlockCacheConfiguration(bcc, CacheType.DATA);
+    assertEquals(1000, data.getSlabSize());
+    int[] sizes = data.getChunkSizes();
+    assertEquals(1000, sizes[sizes.length - 1]);
+  }
+
+  @Test
+  public void testCacheSimple() throws Exception {
+    SlabBlockCache cache = startCache(1 << 20,
+        SlabBlockCacheConfiguration.builder(CacheType.INDEX).slabSize(64 * 1024));
+
+    byte[][] blocks = new byte[100][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = new byte[random.nextInt(4000) + 1];
+      random.nextBytes(blocks[i]);
+    }
+
+    // Confirm empty
+    for (int i = 0; i < blocks.length; i++) {
+      assertNull(cache.getBlock("block" + i));
+    }
+
+    for (int i = 0; i < blocks.length; i++) {
+      cache.cacheBlock("block" + i, blocks[i]);
+    }
+
+    // Check if all blocks are properly cached and retrieved
+    for (int i = 0; i < blocks.length; i++) {
+      CacheEntry ce = cache.getBlock("block" + i);
+      assertNotNull(ce);
+      assertArrayEquals(blocks[i], ce.getBuffer());
+    }
+
+    assertEquals(100, cache.size());
+    assertEquals(100, cache.getStats().hitCount());
+    assertEquals(200, cache.getStats().requestCount());
+    assertTrue(cache.getAllocatedSize() <= cache.getMaxSize());
+
+    long stored = 0;
+    for (SizeClassStats scs : cache.getSizeClassStats()) {
+      stored += scs.getStoredBytes();
+      assertTrue(scs.getFragmentation() >= 0 && scs.getFragmentation() < 1);
+    }
+    long expected = 0;
+    for (byte[] block : blocks) {
+      expected += block.length;
+    }
+    assertEquals(expected, stored);
+
+    manager.stop();
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    // room for 16 chunks of 4096 bytes
+    SlabBlockCache cache = startCache(64 * 1024, SlabBlockCacheConfiguration
+        .builder(CacheType.INDEX).slabSize(16 * 1024).minChunkSize(4096).growthFactor(2.0f));
+
+    for (int i = 0; i < 32; i++) {
+      byte[] buf = new byte[4000];
+      buf[0] = (byte) i;
+      cache.cacheBlock("block" + i, buf);
+      // access the even blocks so they get a second chance
+      if (i % 2 == 0) {
+        cache.getBlock("block" + i);
+      }
+    }
+
+    assertEquals(64 * 1024, cache.getAllocatedSize());
+    assertEquals(16, cache.size());
+
+    List<SizeClassStats> stats = cache.getSizeClassStats();
+    assertEquals(1, stats.size());
+    assertEquals(4096, stats.get(0).getChunkSize());
+    assertEquals(16, stats.get(0).getEvicted());
+    assertEquals(32, stats.get(0).getInserts());
+
+    // the most recent block is always present and readable
+    CacheEntry ce = cache.getBlock("block31");
+    assertNotNull(ce);
+    assertEquals(31, ce.getBuffer()[0]);
+
+    manager.stop();
+  }
+
+  @Test
+  public void testSlabMovesBetweenSizeClasses() throws Exception {
+    // a single slab, which must move to whichever size class needs it
+    SlabBlockCache cache = startCache(16 * 1024, SlabBlockCacheConfiguration
+        .builder(CacheType.INDEX).slabSize(16 * 1024).minChunkSize(1024).growthFactor(2.0f));
+
+    cache.cacheBlock("small", new byte[1000]);
+    assertNotNull(cache.getBlock("small"));
+
+    cache.cacheBlock("large", new byte[10000]);
+    assertNotNull(cache.getBlock("large"));
+    assertNull(cache.getBlock("small"));
+
+    List<SizeClassStats> stats = cache.getSizeClassStats();
+    assertEquals(1, stats.size());
+    assertEquals(16 * 1024, stats.get(0).getChunkSize());
+
+    manager.stop();
+  }
+
+  @Test
+  public void testOversizedBlock() throws Exception {
+    SlabBlockCache cache = startCache(64 * 1024,
+        SlabBlockCacheConfiguration.builder(CacheType.INDEX).slabSize(16 * 1024));
+
+    byte[] buf = new byte[20000];
+    CacheEntry ce = cache.cacheBlock("big", buf);
+    assertArrayEquals(buf, ce.getBuffer());
+    assertNull(ce.getIndex(() -> null));
+    assertNull(cache.getBlock("big"));
+    assertEquals(0, cache.getAllocatedSize());
+
+    manager.stop();
+  }
+
+  private static class TestIndex implements Weighable {
+    int weight = 100;
+
+    @Override
+    public int weight() {
+      return weight;
+    }
+  }
+
+  @Test
+  public void testIndexHeap() throws Exception {
+    // 1% of 100KB allows 1000 bytes of index
+    SlabBlockCache cache = startCache(100 * 1024,
+        SlabBlockCacheConfiguration.builder(CacheType.INDEX).indexHeapFactor(0.01f));
+
+    CacheEntry ce1 = cache.cacheBlock("b1", new byte[100]);
+    TestIndex index = ce1.getIndex(TestIndex::new);
+    assertNotNull(index);
+    assertEquals(100, cache.getIndexHeapSize());
+
+    // same index is returned for later reads of the block
+    assertTrue(index == cache.getBlock("b1").getIndex(TestIndex::new));
+
+    index.weight = 2000;
+    ce1.indexWeightChanged();
+    assertEquals(2000, cache.getIndexHeapSize());
+
+    // over budget, so no new indexes are created
+    CacheEntry ce2 = cache.cacheBlock("b2", new byte[100]);
+    assertNull(ce2.getIndex(TestIndex::new));
+
+    manager.stop();
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    Metrics.addRegistry(registry);
+    try {
+      checkMetrics(registry);
+    } finally {
+      Metrics.removeRegistry(registry);
+    }
+  }
+
+  private void checkMetrics(SimpleMeterRegistry registry) throws Exception {
+    SlabBlockCache cache = startCache(64 * 1024, SlabBlockCacheConfiguration
+        .builder(CacheType.INDEX).slabSize(16 * 1024).minChunkSize(4096).growthFactor(2.0f));
+
+    cache.cacheBlock("b1", new byte[4000]);
+    cache.getBlock("b1");
+
+    Gauge slabs = registry.find(MetricsProducer.METRICS_TSERVER_SLAB_CACHE_SLABS)
+        .tags("cache", "INDEX", "chunk.size", "4096").gauge();
+    assertNotNull(slabs);
+    assertEquals(1, slabs.value(), 0);
+    FunctionCounter hits = registry.find(MetricsProducer.METRICS_TSERVER_SLAB_CACHE_HITS)
+        .tags("cache", "INDEX", "chunk.size", "4096").functionCounter();
+    assertNotNull(hits);
+    assertEquals(1, hits.count(), 0);
+
+    manager.stop();
+    assertNull(registry.find(MetricsProducer.METRICS_TSERVER_SLAB_CACHE_SLABS)
+        .tags("cache", "INDEX").gauge());
+  }
+
+  @Test
+  public void testSlabAllocationFailure() throws Exception {
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(1024));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(64 * 1024));
+    SlabBlockCacheConfiguration.builder(CacheType.INDEX).slabSize(16 * 1024).buildMap()
+        .forEach(cc::set);
+    SlabBlockCache cache = new SlabBlockCache(
+        new SlabBlockCacheConfiguration(new BlockCacheConfiguration(cc), CacheType.INDEX)) {
+      @Override
+      protected ByteBuffer allocateSlab(int size) {
+        throw new OutOfMemoryError("Direct buffer memory");
+      }
+    };
+
+    // the block is handed back uncached and the failed slab is not counted
+    byte[] buf = new byte[1000];
+    assertArrayEquals(buf, cache.cacheBlock("b1", buf).getBuffer());
+    assertNull(cache.getBlock("b1"));
+    assertEquals(0, cache.getAllocatedSize());
+
+    cache.shutdown();
+  }
+}
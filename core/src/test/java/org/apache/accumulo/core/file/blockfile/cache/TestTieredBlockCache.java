@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.DiskBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.TieredBlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCache.Loader;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "paths not set by user input")
+public class TestTieredBlockCache {
+
+  @Rule
+  public TemporaryFolder tempFolder =
+      new TemporaryFolder(new File(System.getProperty("user.dir") + "/target"));
+
+  private static class CountingLoader implements Loader {
+    final AtomicInteger loads = new AtomicInteger();
+    final byte[] data;
+
+    CountingLoader(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public Map<String,Loader> getDependencies() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+      loads.incrementAndGet();
+      return data;
+    }
+  }
+
+  private static byte[] block(int size, int seed) {
+    byte[] b = new byte[size];
+    for (int i = 0; i < size; i++) {
+      b[i] = (byte) (i * 31 + seed);
+    }
+    return b;
+  }
+
+  private BlockCacheManager startL1(long maxSize) throws Exception {
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(1024));
+    cc.set(Property.TSERV_DATACACHE_SIZE, Long.toString(maxSize));
+    manager.start(new BlockCacheConfiguration(cc));
+    return manager;
+  }
+
+  @Test
+  public void testDiskBlockCachePersists() throws Exception {
+    Path dir = tempFolder.newFolder().toPath();
+
+    DiskBlockCache l2 = new DiskBlockCache(dir, 1 << 20, 4096);
+    for (int i = 0; i < 10; i++) {
+      l2.put("file1O" + i, block(1000, i));
+    }
+    // close waits for queued writes
+    l2.close();
+
+    l2 = new DiskBlockCache(dir, 1 << 20, 4096);
+    assertEquals(10, l2.size());
+    for (int i = 0; i < 10; i++) {
+      assertArrayEquals(block(1000, i), l2.get("file1O" + i));
+    }
+    assertNull(l2.get("file2O0"));
+    assertEquals(10, l2.getHitCount());
+    assertEquals(11, l2.getRequestCount());
+    l2.close();
+  }
+
+  @Test
+  public void testDiskBlockCacheEvictsOldestSegments() throws Exception {
+    Path dir = tempFolder.newFolder().toPath();
+
+    // segments hold about 4 blocks, room for about 3 segments
+    DiskBlockCache l2 = new DiskBlockCache(dir, 12_000, 4000);
+    for (int i = 0; i < 20; i++) {
+      l2.put("b" + i, block(1000, i));
+    }
+    l2.close();
+
+    l2 = new DiskBlockCache(dir, 12_000, 4000);
+    assertNull(l2.get("b0"));
+    assertArrayEquals(block(1000, 19), l2.get("b19"));
+    l2.close();
+  }
+
+  @Test
+  public void testDiskBlockCacheTruncatesTornRecord() throws Exception {
+    Path dir = tempFolder.newFolder().toPath();
+
+    DiskBlockCache l2 = new DiskBlockCache(dir, 1 << 20, 1 << 20);
+    l2.put("b0", block(1000, 0));
+    l2.put("b1", block(1000, 1));
+    l2.close();
+
+    File segment = dir.resolve("segment-0.blocks").toFile();
+    try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+      raf.setLength(raf.length() - 10);
+    }
+
+    l2 = new DiskBlockCache(dir, 1 << 20, 1 << 20);
+    assertEquals(1, l2.size());
+    assertArrayEquals(block(1000, 0), l2.get("b0"));
+    assertNull(l2.get("b1"));
+    l2.close();
+  }
+
+  @Test
+  public void testTieredLoadsFromDiskAfterRestart() throws Exception {
+    Path dir = tempFolder.newFolder().toPath();
+
+    BlockCacheManager manager = startL1(1 << 20);
+    TieredBlockCache cache = new TieredBlockCache(manager.getBlockCache(CacheType.DATA),
+        new DiskBlockCache(dir, 1 << 20));
+
+    CountingLoader loader = new CountingLoader(block(2000, 7));
+    CacheEntry ce = cache.getBlock("file1O0", loader);
+    assertArrayEquals(block(2000, 7), ce.getBuffer());
+    assertEquals(1, loader.loads.get());
+
+    // served from the first level
+    assertNotNull(cache.getBlock("file1O0", loader));
+    assertEquals(1, loader.loads.get());
+
+    cache.close();
+    manager.stop();
+
+    // a new first level is empty, but the block comes from disk
+    manager = startL1(1 << 20);
+    cache = new TieredBlockCache(manager.getBlockCache(CacheType.DATA),
+        new DiskBlockCache(dir, 1 << 20));
+    assertNull(cache.getFirstLevel().getBlock("file1O0"));
+
+    ce = cache.getBlock("file1O0", loader);
+    assertArrayEquals(block(2000, 7), ce.getBuffer());
+    assertEquals(1, loader.loads.get());
+    assertEquals(1, cache.getSecondLevel().getHitCount());
+    // the combined stats count the lookup once, as a hit from the second level
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(2, cache.getStats().requestCount());
+
+    // the block from disk was promoted to the first level
+    assertNotNull(cache.getFirstLevel().getBlock("file1O0"));
+
+    cache.close();
+    manager.stop();
+  }
+
+  @Test
+  public void testTieredGetBlockWithoutLoader() throws Exception {
+    Path dir = tempFolder.newFolder().toPath();
+
+    BlockCacheManager manager = startL1(1 << 20);
+    BlockCache l1 = manager.getBlockCache(CacheType.DATA);
+    DiskBlockCache l2 = new DiskBlockCache(dir, 1 << 20);
+    l2.put("b0", block(100, 3));
+    l2.close();
+
+    TieredBlockCache cache = new TieredBlockCache(l1, new DiskBlockCache(dir, 1 << 20));
+    assertArrayEquals(block(100, 3), cache.getBlock("b0").getBuffer());
+    assertNull(cache.getBlock("b1"));
+
+    cache.close();
+    manager.stop();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.keyfunctor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class RowPrefixFunctorTest {
+
+  private static RowPrefixFunctor functor(String length, String delimiter) {
+    ConfigurationCopy conf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    conf.set(Property.TABLE_BLOOM_PREFIX_LENGTH, length);
+    conf.set(Property.TABLE_BLOOM_PREFIX_DELIMITER, delimiter);
+    RowPrefixFunctor functor = new RowPrefixFunctor();
+    functor.init(conf);
+    return functor;
+  }
+
+  private static void assertBloomKey(String expected, org.apache.hadoop.util.bloom.Key actual) {
+    assertArrayEquals(expected.getBytes(UTF_8), actual.getBytes());
+  }
+
+  @Test
+  public void testFixedLength() {
+    RowPrefixFunctor functor = functor("4", "");
+
+    assertBloomKey("user", functor.transform(new Key("user1234", "cf", "cq")));
+    assertBloomKey("usr", functor.transform(new Key("usr", "cf", "cq")));
+
+    // prefixes at least as long as the configured length
+    assertBloomKey("user", functor.transform(Range.prefix(new Text("user"))));
+    assertBloomKey("user", functor.transform(Range.prefix(new Text("user12"))));
+    assertBloomKey("user", functor.transform(new Range("user1", "user5")));
+    assertBloomKey("user", functor.transform(Range.exact("user1234")));
+    // shorter rows are only checked for a single row
+    assertBloomKey("usr", functor.transform(Range.exact("usr")));
+
+    assertNull(functor.transform(Range.prefix(new Text("use"))));
+    assertNull(functor.transform(new Range("user1", "usex")));
+    assertNull(functor.transform(new Range("user", true, "uses", true)));
+    assertNull(functor.transform(new Range("user", null)));
+    assertNull(functor.transform(new Range()));
+  }
+
+  @Test
+  public void testDelimiter() {
+    RowPrefixFunctor functor = functor("0", ":");
+
+    assertBloomKey("user:", functor.transform(new Key("user:1234", "cf", "cq")));
+    assertBloomKey("user", functor.transform(new Key("user", "cf", "cq")));
+
+    assertBloomKey("user:", functor.transform(Range.prefix(new Text("user:"))));
+    assertBloomKey("user:", functor.transform(Range.prefix(new Text("user:12"))));
+    assertBloomKey("user:", functor.transform(new Range("user:1", "user:5")));
+    assertBloomKey("user", functor.transform(Range.exact("user")));
+
+    assertNull(functor.transform(Range.prefix(new Text("user"))));
+    assertNull(functor.transform(new Range("user:1", "user;")));
+  }
+
+  @Test
+  public void testInvalidConfig() {
+    assertThrows(IllegalArgumentException.class, () -> functor("0", ""));
+    assertThrows(IllegalArgumentException.class, () -> functor("0", "::"));
+  }
+
+  @Test
+  public void testSerialization() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    functor("0", ":").write(new DataOutputStream(baos));
+
+    RowPrefixFunctor read = new RowPrefixFunctor();
+    read.readFields(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    assertBloomKey("user:", read.transform(new Key("user:1234", "cf", "cq")));
+  }
+}
@@ -19,6 +19,8 @@
 package org.apache.accumulo.core.file.rfile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -181,4 +183,64 @@ public class BlockIndexTest {
     }
     cacheBlock.close();
   }
+
+  private static byte[] writeBlock(int num, int restartInterval) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    RestartPoints restartPoints = new RestartPoints(restartInterval);
+
+    Key prevKey = null;
+    for (int i = 0; i < num; i++) {
+      Key key = new Key(RFileTest.formatString("", i), "cf1", "cq1");
+      if (restartPoints.isRestart(i)) {
+        restartPoints.add(out.size());
+        new RelativeKey(null, key).write(out);
+      } else {
+        new RelativeKey(prevKey, key).write(out);
+      }
+      new Value().write(out);
+      prevKey = key;
+    }
+    restartPoints.write(out);
+
+    out.close();
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void testBlockWithoutUsableRestartPoints() throws IOException {
+    int num = 1000;
+    Key lastKey = new Key(RFileTest.formatString("", num - 1), "cf1", "cq1");
+
+    // a block with restart points can be seeked with them
+    byte[] data = writeBlock(num, 16);
+    CachableBlockFile.CachedBlockRead cacheBlock =
+        new CachableBlockFile.CachedBlockRead(new MyCacheEntry(data), data);
+    assertTrue(RestartPoints.canSeek(cacheBlock));
+    cacheBlock.close();
+
+    // with no restart points or only the one at the start of the block, a seek falls back to the
+    // block index, which reads the entries and ignores the restart point trailer
+    for (int interval : new int[] {0, num}) {
+      data = writeBlock(num, interval);
+      cacheBlock = new CachableBlockFile.CachedBlockRead(new MyCacheEntry(data), data);
+      assertFalse(RestartPoints.canSeek(cacheBlock));
+
+      BlockIndex blockIndex = null;
+      for (int i = 0; i < 16; i++) {
+        blockIndex = BlockIndex.getIndex(cacheBlock, new IndexEntry(lastKey, num, 0, 0, 0), null);
+      }
+      assertNotNull(blockIndex);
+
+      Key seekKey = new Key(RFileTest.formatString("", 500), "cf1", "cq1");
+      BlockIndexEntry bie = blockIndex.seekBlock(seekKey, cacheBlock);
+      assertTrue(bie.getPrevKey().compareTo(seekKey) < 0);
+      RelativeKey rk = new RelativeKey();
+      rk.setPrevKey(bie.getPrevKey());
+      rk.readFields(cacheBlock);
+      assertTrue(rk.getKey().compareTo(seekKey) <= 0);
+      assertEquals(num - Integer.parseInt(rk.getKey().getRow().toString()), bie.getEntriesLeft());
+      cacheBlock.close();
+    }
+  }
 }
@@ -19,20 +19,27 @@
 package org.apache.accumulo.core.file.rfile;
 
 import static org.apache.accumulo.core.crypto.CryptoServiceFactory.ClassloaderType.JAVA;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_INDEX_PINNED_BYTES;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.security.SecureRandom;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
 import org.apache.accumulo.core.crypto.CryptoServiceFactory;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.file.blockfile.impl.BasicCacheProvider;
 import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
 import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachableBuilder;
+import org.apache.accumulo.core.file.blockfile.impl.PinnedBlockTier;
 import org.apache.accumulo.core.file.rfile.MultiLevelIndex.BufferedWriter;
 import org.apache.accumulo.core.file.rfile.MultiLevelIndex.IndexEntry;
 import org.apache.accumulo.core.file.rfile.MultiLevelIndex.Reader;
@@ -46,6 +53,9 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.junit.Test;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class MultiLevelIndexTest {
   private static final SecureRandom random = new SecureRandom();
   private Configuration hadoopConf = new Configuration();
@@ -62,7 +72,108 @@ public class MultiLevelIndexTest {
     runTest(1, 100);
   }
 
+  @Test
+  public void testPinnedIndexBlocks() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    Metrics.addRegistry(registry);
+    try {
+      PinnedBlockTier tier = new PinnedBlockTier(10_000_000);
+      runTest(500, 10000, tier, "pinned");
+      // released when the file is closed, along with the table's metric
+      assertEquals(0, tier.getSize());
+      assertFalse(tier.getSizeByTable().containsKey("pinned"));
+      assertNull(registry.find(METRICS_TSERVER_INDEX_PINNED_BYTES).gauge());
+
+      // blocks that do not fit are read as usual
+      tier = new PinnedBlockTier(1000);
+      runTest(500, 10000, tier, "full");
+      assertEquals(0, tier.getSize());
+    } finally {
+      Metrics.removeRegistry(registry);
+    }
+  }
+
+  @Test
+  public void testPinnedPerFile() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    Metrics.addRegistry(registry);
+    try {
+      PinnedBlockTier tier = new PinnedBlockTier(10_000_000);
+      byte[] data = writeIndex(500, 10000);
+
+      CachableBlockFile.Reader cbr1 = openFile(data, "source-1", tier, "t1");
+      Reader reader1 = readIndex(cbr1);
+      verifyIndex(reader1, 10000);
+      long pinned = tier.getSize();
+      assertTrue(pinned > 0);
+      assertEquals(pinned,
+          registry.get(METRICS_TSERVER_INDEX_PINNED_BYTES).tag("table.id", "t1").gauge().value(),
+          0);
+
+      // a second reader of the same file shares its pinned blocks
+      CachableBlockFile.Reader cbr2 = openFile(data, "source-1", tier, "t1");
+      verifyIndex(readIndex(cbr2), 10000);
+      assertEquals(pinned, tier.getSize());
+
+      // another file of the table pins its own blocks
+      CachableBlockFile.Reader cbr3 = openFile(data, "source-2", tier, "t1");
+      verifyIndex(readIndex(cbr3), 10000);
+      assertEquals(2 * pinned, tier.getSize());
+      assertEquals(2 * pinned, (long) tier.getSizeByTable().get("t1"));
+
+      // the blocks of a file stay pinned until its last reader is closed
+      cbr1.close();
+      assertEquals(2 * pinned, tier.getSize());
+      cbr2.close();
+      assertEquals(pinned, tier.getSize());
+      cbr3.close();
+      assertEquals(0, tier.getSize());
+      assertTrue(tier.getSizeByTable().isEmpty());
+      assertNull(registry.find(METRICS_TSERVER_INDEX_PINNED_BYTES).gauge());
+
+      // closing the tier unpins the blocks of files still open
+      CachableBlockFile.Reader cbr4 = openFile(data, "source-1", tier, "t2");
+      verifyIndex(readIndex(cbr4), 10000);
+      assertTrue(tier.getSize() > 0);
+      tier.close();
+      assertEquals(0, tier.getSize());
+      assertNull(registry.find(METRICS_TSERVER_INDEX_PINNED_BYTES).gauge());
+      verifyIndex(readIndex(cbr4), 10000);
+      cbr4.close();
+    } finally {
+      Metrics.removeRegistry(registry);
+    }
+  }
+
   private void runTest(int maxBlockSize, int num) throws IOException {
+    runTest(maxBlockSize, num, null, null);
+  }
+
+  private void runTest(int maxBlockSize, int num, PinnedBlockTier tier, String pinnedTable)
+      throws IOException {
+    byte[] data = writeIndex(maxBlockSize, num);
+    CachableBlockFile.Reader _cbr = openFile(data, "source-1", tier, pinnedTable);
+    Reader reader = readIndex(_cbr);
+    verifyIndex(reader, num);
+
+    if (pinnedTable != null) {
+      long pinned = tier.getSize();
+      Map<Integer,Long> sizes = new TreeMap<>();
+      reader.getIndexInfo(sizes, new TreeMap<>());
+      if (tier.getMaxSize() > sizes.values().stream().mapToLong(Long::longValue).sum()) {
+        // the index has more than two levels, and the levels above the lowest are pinned
+        assertTrue(sizes.size() > 2);
+        assertTrue(pinned > 0);
+        assertEquals(pinned, (long) tier.getSizeByTable().get(pinnedTable));
+      } else {
+        assertTrue(pinned <= tier.getMaxSize());
+      }
+      // pinned blocks are released when the file is closed
+      _cbr.close();
+    }
+  }
+
+  private byte[] writeIndex(int maxBlockSize, int num) throws IOException {
     AccumuloConfiguration aconf = DefaultConfiguration.getInstance();
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     FSDataOutputStream dos = new FSDataOutputStream(baos, new FileSystem.Statistics("a"));
@@ -84,17 +195,29 @@ public class MultiLevelIndexTest {
     dos.close();
     baos.close();
 
-    byte[] data = baos.toByteArray();
+    return baos.toByteArray();
+  }
+
+  private CachableBlockFile.Reader openFile(byte[] data, String cacheId, PinnedBlockTier tier,
+      String pinnedTable) {
     SeekableByteArrayInputStream bais = new SeekableByteArrayInputStream(data);
     FSDataInputStream in = new FSDataInputStream(bais);
-    CachableBuilder cb = new CachableBuilder().input(in, "source-1").length(data.length)
-        .conf(hadoopConf).cryptoService(CryptoServiceFactory.newInstance(aconf, JAVA));
-    CachableBlockFile.Reader _cbr = new CachableBlockFile.Reader(cb);
+    CachableBuilder cb = new CachableBuilder().input(in, cacheId).length(data.length)
+        .conf(hadoopConf)
+        .cryptoService(CryptoServiceFactory.newInstance(DefaultConfiguration.getInstance(), JAVA))
+        .cacheProvider(new BasicCacheProvider(null, null, null, tier)).pinIndexBlocks(pinnedTable);
+    return new CachableBlockFile.Reader(cb);
+  }
 
+  private Reader readIndex(CachableBlockFile.Reader _cbr) throws IOException {
     Reader reader = new Reader(_cbr, RFile.RINDEX_VER_8);
     CachableBlockFile.CachedBlockRead rootIn = _cbr.getMetaBlock("root");
     reader.readFields(rootIn);
     rootIn.close();
+    return reader;
+  }
+
+  private void verifyIndex(Reader reader, int num) throws IOException {
     IndexIterator liter = reader.lookup(new Key("000000"));
     int count = 0;
     while (liter.hasNext()) {
@@ -132,7 +255,6 @@ public class MultiLevelIndexTest {
         throw new UncheckedIOException(e);
       }
     });
-
   }
 
 }
@@ -18,6 +18,7 @@
  */
 package org.apache.accumulo.core.file.rfile;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -44,7 +45,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.accumulo.core.client.sample.RowSampler;
 import org.apache.accumulo.core.client.sample.Sampler;
@@ -63,13 +69,16 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
 import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.FileSKVWriter;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
 import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCache;
 import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
 import org.apache.accumulo.core.file.blockfile.impl.BasicCacheProvider;
 import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachableBuilder;
+import org.apache.accumulo.core.file.blockfile.impl.ReadAheadPool;
 import org.apache.accumulo.core.file.rfile.RFile.Reader;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
@@ -87,6 +96,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.io.Text;
@@ -234,6 +244,8 @@ public class RFileTest {
     public Reader reader;
     public SortedKeyValueIterator<Key,Value> iter;
     private BlockCacheManager manager;
+    public ReadAheadPool readAheadPool = null;
+    public ExecutorService compressionExecutor = null;
 
     public TestRFile(AccumuloConfiguration accumuloConfiguration) {
       this.accumuloConfiguration = accumuloConfiguration;
@@ -248,8 +260,12 @@ public class RFileTest {
     public void openWriter(boolean startDLG, int blockSize) throws IOException {
       baos = new ByteArrayOutputStream();
       dos = new FSDataOutputStream(baos, new FileSystem.Statistics("a"));
-      BCFile.Writer _cbw = new BCFile.Writer(dos, null, "gz", conf,
-          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA));
+      BCFile.Writer _cbw = new BCFile.Writer(dos, null,
+          accumuloConfiguration.get(Property.TABLE_FILE_COMPRESSION_TYPE), conf,
+          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA),
+          compressionExecutor,
+          accumuloConfiguration.getCount(Property.TABLE_FILE_COMPRESSION_THREADS),
+          (int) accumuloConfiguration.getAsBytes(Property.TABLE_FILE_COMPRESSION_DICTIONARY_SIZE));
 
       SamplerConfigurationImpl samplerConfig =
           SamplerConfigurationImpl.newSamplerConfig(accumuloConfiguration);
@@ -259,7 +275,11 @@ public class RFileTest {
         sampler = SamplerFactory.newSampler(samplerConfig, accumuloConfiguration);
       }
 
-      writer = new RFile.Writer(_cbw, blockSize, 1000, samplerConfig, sampler);
+      writer = new RFile.Writer(_cbw, blockSize, 1000,
+          accumuloConfiguration.getCount(Property.TABLE_FILE_RESTART_INTERVAL),
+          accumuloConfiguration.getCount(Property.TABLE_FILE_DICTIONARY_FAMILIES),
+          accumuloConfiguration.getCount(Property.TABLE_FILE_DICTIONARY_VISIBILITIES),
+          samplerConfig, sampler);
 
       if (startDLG)
         writer.startDefaultLocalityGroup();
@@ -311,8 +331,10 @@ public class RFileTest {
       LruBlockCache dataCache = (LruBlockCache) manager.getBlockCache(CacheType.DATA);
 
       CachableBuilder cb = new CachableBuilder().input(in, "source-1").length(fileLength).conf(conf)
-          .cacheProvider(new BasicCacheProvider(indexCache, dataCache)).cryptoService(
-              CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA));
+          .cacheProvider(new BasicCacheProvider(indexCache, dataCache, readAheadPool))
+          .cryptoService(
+              CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA))
+          .readAhead(accumuloConfiguration.getCount(Property.TABLE_FILE_READAHEAD_BLOCKS));
       reader = new RFile.Reader(cb);
       if (cfsi)
         iter = new ColumnFamilySkippingIterator(reader);
@@ -558,6 +580,546 @@ public class RFileTest {
     }
     assertEquals(20, count);
 
+    // seeking the index skips the entries of blocks before the start of the range
+    List<Key> indexKeys = new ArrayList<>();
+    iiter = trf.reader.getIndex();
+    while (iiter.hasTop()) {
+      indexKeys.add(new Key(iiter.getTopKey()));
+      iiter.next();
+    }
+    for (int i = 0; i < 12; i++) {
+      Key start = expectedKeys.get(random.nextInt(expectedKeys.size()));
+      iiter.seek(new Range(start, null), Set.of(), false);
+      int first = 0;
+      while (indexKeys.get(first).compareTo(start) < 0) {
+        first++;
+      }
+      for (Key indexKey : indexKeys.subList(first, indexKeys.size())) {
+        assertTrue(iiter.hasTop());
+        assertEquals(indexKey, iiter.getTopKey());
+        iiter.next();
+      }
+      assertFalse(iiter.hasTop());
+    }
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testRestartPointsVersion() throws IOException {
+    for (int interval : new int[] {0, 16}) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_RESTART_INTERVAL, Integer.toString(interval));
+      TestRFile trf = new TestRFile(cc);
+      trf.openWriter(false, 1000);
+      trf.writer.startDefaultLocalityGroup();
+      for (int row = 0; row < 1000; row++) {
+        trf.writer.append(newKey(formatString("r_", row), "cf", "cq", "", 1), newValue("v"));
+      }
+      trf.closeWriter();
+
+      // files without restart points can be read by versions that do not know about them
+      trf.openReader();
+      assertEquals(interval > 0 ? RFile.RINDEX_VER_9 : RFile.RINDEX_VER_8, trf.reader.getVersion());
+      trf.iter.seek(new Range(new Text(formatString("r_", 500)), null), EMPTY_COL_FAMS, false);
+      assertEquals(newKey(formatString("r_", 500), "cf", "cq", "", 1), trf.iter.getTopKey());
+      trf.closeReader();
+    }
+  }
+
+  @Test
+  public void testRestartPoints() throws IOException {
+    for (int interval : new int[] {0, 1, 3, 16}) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_RESTART_INTERVAL, Integer.toString(interval));
+      TestRFile trf = new TestRFile(cc);
+
+      // large blocks, so most seeks land inside a block
+      trf.openWriter(false, 1 << 20);
+      trf.writer.startDefaultLocalityGroup();
+
+      List<Key> expectedKeys = new ArrayList<>();
+      for (int row = 0; row < 200; row++) {
+        for (int cq = 0; cq < 10; cq++) {
+          for (int ts = 3; ts > 0; ts--) {
+            Key k = newKey(formatString("r_", row), "cf", formatString("cq_", cq), "", ts);
+            trf.writer.append(k, newValue(k.toString()));
+            expectedKeys.add(k);
+          }
+        }
+      }
+      trf.closeWriter();
+
+      trf.openReader();
+
+      for (int i = 0; i < 500; i++) {
+        int index = random.nextInt(expectedKeys.size());
+        Key seekKey = expectedKeys.get(index);
+        if (random.nextBoolean()) {
+          // seek to a key that is not in the file
+          seekKey = seekKey.followingKey(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME);
+          index++;
+        }
+
+        trf.iter.seek(new Range(seekKey, null), EMPTY_COL_FAMS, false);
+        for (int j = index; j < Math.min(index + 3, expectedKeys.size()); j++) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(j), trf.iter.getTopKey());
+          assertEquals(newValue(expectedKeys.get(j).toString()), trf.iter.getTopValue());
+          trf.iter.next();
+        }
+      }
+
+      trf.closeReader();
+    }
+  }
+
+  @Test
+  public void testReadAhead() throws IOException {
+    // no read ahead, read ahead, and read ahead without memory to hold blocks
+    int[] readAheadBlocks = {0, 4, 4};
+    long[] maxMemory = {0, 1 << 20, 0};
+    long[] cachedBlocks = new long[readAheadBlocks.length];
+    long[] blocksReadAhead = new long[readAheadBlocks.length];
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+
+    for (int i = 0; i < readAheadBlocks.length; i++) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_READAHEAD_BLOCKS, Integer.toString(readAheadBlocks[i]));
+      TestRFile trf = new TestRFile(cc);
+      trf.readAheadPool = new ReadAheadPool(executor, maxMemory[i]);
+      long tasksBefore = executor.getTaskCount();
+
+      trf.openWriter();
+      List<Key> expectedKeys = new ArrayList<>();
+      for (int row = 0; row < 1000; row++) {
+        for (int cq = 0; cq < 5; cq++) {
+          Key k = newKey(formatString("r_", row), "cf", formatString("cq_", cq), "", 1);
+          trf.writer.append(k, newValue(k.toString()));
+          expectedKeys.add(k);
+        }
+      }
+      trf.closeWriter();
+
+      trf.openReader();
+
+      // scan part of the file, then seek forward and backward within and past the blocks read
+      // ahead
+      int[][] scans = {{0, 1500}, {1600, 1700}, {100, 2000}, {4000, expectedKeys.size()}};
+      for (int[] scan : scans) {
+        trf.iter.seek(new Range(expectedKeys.get(scan[0]), null), EMPTY_COL_FAMS, false);
+        for (int j = scan[0]; j < scan[1]; j++) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(j), trf.iter.getTopKey());
+          assertEquals(newValue(expectedKeys.get(j).toString()), trf.iter.getTopValue());
+          trf.iter.next();
+        }
+      }
+      assertFalse(trf.iter.hasTop());
+
+      // blocks read ahead are only cached when a scan reaches them
+      cachedBlocks[i] = ((LruBlockCache) trf.manager.getBlockCache(CacheType.DATA)).size();
+
+      trf.closeReader();
+      // closing the reader discards its blocks and waits for their reads
+      assertEquals(0, trf.readAheadPool.getReserved());
+      blocksReadAhead[i] = executor.getTaskCount() - tasksBefore;
+    }
+    executor.shutdown();
+
+    assertEquals(0, blocksReadAhead[0]);
+    assertTrue(blocksReadAhead[1] > 0);
+    assertEquals(0, blocksReadAhead[2]);
+
+    assertEquals(cachedBlocks[0], cachedBlocks[1]);
+    assertEquals(cachedBlocks[0], cachedBlocks[2]);
+  }
+
+  @Test
+  public void testPipelinedCompression() throws IOException {
+    byte[][] files = new byte[2][];
+    int[] compressionThreads = {0, 4};
+    long[] blocksCompressed = new long[2];
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+
+    for (int i = 0; i < compressionThreads.length; i++) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_COMPRESSION_THREADS, Integer.toString(compressionThreads[i]));
+      cc.set(Property.TABLE_SAMPLER, RowSampler.class.getName());
+      cc.set(Property.TABLE_SAMPLER_OPTS + "hasher", "murmur3_32");
+      cc.set(Property.TABLE_SAMPLER_OPTS + "modulus", "19");
+      TestRFile trf = new TestRFile(cc);
+      trf.compressionExecutor = executor;
+
+      long tasksBefore = executor.getCompletedTaskCount();
+      trf.openWriter(false);
+      trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence("cf1"));
+      for (int row = 0; row < 2000; row++) {
+        Key k = newKey(formatString("r_", row), "cf1", "cq", "", 1);
+        trf.writer.append(k, newValue(k.toString()));
+      }
+      trf.writer.startDefaultLocalityGroup();
+      for (int row = 0; row < 2000; row++) {
+        Key k = newKey(formatString("r_", row), "cf2", "cq", "", 1);
+        trf.writer.append(k, newValue(k.toString()));
+      }
+      trf.closeWriter();
+      blocksCompressed[i] = executor.getCompletedTaskCount() - tasksBefore;
+
+      // blocks compressed in the background are written in order, so the file is the same
+      files[i] = trf.baos.toByteArray();
+
+      trf.openReader();
+      trf.iter.seek(new Range(), EMPTY_COL_FAMS, false);
+      int count = 0;
+      while (trf.iter.hasTop()) {
+        assertEquals(newValue(trf.iter.getTopKey().toString()), trf.iter.getTopValue());
+        count++;
+        trf.iter.next();
+      }
+      assertEquals(4000, count);
+      trf.closeReader();
+    }
+
+    executor.shutdown();
+
+    assertArrayEquals(files[0], files[1]);
+    assertEquals(0, blocksCompressed[0]);
+    assertTrue(blocksCompressed[1] > 0);
+  }
+
+  @Test
+  public void testCompressionDictionary() throws IOException {
+    // dictionary size, compression threads
+    int[][] settings = {{0, 0}, {16 * 1024, 0}, {16 * 1024, 2}};
+    int[] fileSizes = new int[settings.length];
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    for (int i = 0; i < settings.length; i++) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_COMPRESSION_DICTIONARY_SIZE, Integer.toString(settings[i][0]));
+      cc.set(Property.TABLE_FILE_COMPRESSION_THREADS, Integer.toString(settings[i][1]));
+      TestRFile trf = new TestRFile(cc);
+      trf.compressionExecutor = executor;
+
+      trf.openWriter();
+      List<Key> expectedKeys = new ArrayList<>();
+      for (int row = 0; row < 5000; row++) {
+        Key k = newKey(formatString("r_", row), "attributes", "json", "", 1);
+        trf.writer.append(k, jsonValue(row));
+        expectedKeys.add(k);
+      }
+      trf.closeWriter();
+      fileSizes[i] = trf.baos.size();
+
+      trf.openReader();
+      trf.iter.seek(new Range(), EMPTY_COL_FAMS, false);
+      for (int row = 0; row < expectedKeys.size(); row++) {
+        assertTrue(trf.iter.hasTop());
+        assertEquals(expectedKeys.get(row), trf.iter.getTopKey());
+        assertEquals(jsonValue(row), trf.iter.getTopValue());
+        trf.iter.next();
+      }
+      assertFalse(trf.iter.hasTop());
+
+      for (int j = 0; j < 100; j++) {
+        int row = random.nextInt(expectedKeys.size());
+        trf.seek(expectedKeys.get(row));
+        assertEquals(expectedKeys.get(row), trf.iter.getTopKey());
+        assertEquals(jsonValue(row), trf.iter.getTopValue());
+      }
+      trf.closeReader();
+    }
+
+    executor.shutdown();
+
+    // small blocks with common content compress better with a dictionary
+    assertTrue(fileSizes[1] < fileSizes[0]);
+    assertEquals(fileSizes[1], fileSizes[2]);
+  }
+
+  private static Value jsonValue(int row) {
+    return new Value(String.format(
+        "{\"id\":%d,\"type\":\"sensor\",\"location\":{\"site\":\"%s\","
+            + "\"rack\":%d},\"status\":\"%s\",\"reading\":%d}",
+        row, row % 3 == 0 ? "east" : "west", row % 17, row % 5 == 0 ? "degraded" : "nominal",
+        row * 7919 % 1000));
+  }
+
+  @Test
+  public void testMappedFile() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf);
+
+    for (String compression : new String[] {"none", "gz"}) {
+      ConfigurationCopy acuconf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      acuconf.set(Property.TABLE_FILE_COMPRESSION_TYPE, compression);
+      acuconf.set(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE, "1K");
+
+      String fname = new File(tempFolder.getRoot(), "mapped-" + compression + ".rf").getPath();
+      FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder()
+          .forFile(fname, fs, conf, CryptoServiceFactory.newDefaultInstance())
+          .withTableConfiguration(acuconf).build();
+      writer.startDefaultLocalityGroup();
+      List<Key> expectedKeys = new ArrayList<>();
+      for (int row = 0; row < 1000; row++) {
+        Key k = newKey(formatString("r_", row), "cf", "cq", "", 1);
+        writer.append(k, newValue(k.toString()));
+        expectedKeys.add(k);
+      }
+      writer.close();
+
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+      BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+      manager.start(new BlockCacheConfiguration(cc));
+      LruBlockCache dataCache = (LruBlockCache) manager.getBlockCache(CacheType.DATA);
+
+      CachableBuilder cb = new CachableBuilder().fsPath(fs, new Path(fname), true).conf(conf)
+          .cacheProvider(new BasicCacheProvider(
+              (LruBlockCache) manager.getBlockCache(CacheType.INDEX), dataCache))
+          .cryptoService(CryptoServiceFactory.newDefaultInstance());
+      Reader reader = new RFile.Reader(cb);
+
+      for (int start : new int[] {0, 500, 10, 999}) {
+        reader.seek(new Range(expectedKeys.get(start), null), EMPTY_COL_FAMS, false);
+        for (int i = start; i < expectedKeys.size(); i++) {
+          assertTrue(reader.hasTop());
+          assertEquals(expectedKeys.get(i), reader.getTopKey());
+          assertEquals(newValue(expectedKeys.get(i).toString()), reader.getTopValue());
+          reader.next();
+        }
+        assertFalse(reader.hasTop());
+      }
+
+      // uncompressed blocks are copied from the mapping into the data cache, later seeks hit it
+      assertTrue(dataCache.size() > 0);
+      assertTrue(dataCache.getStats().hitCount() > 0);
+
+      reader.close();
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void testReopenUsesParsedIndex() throws Exception {
+    TestRFile trf = new TestRFile(conf);
+    trf.openWriter(false, 100);
+    trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence("cf1"));
+    List<Key> expectedKeys = new ArrayList<>();
+    for (int row = 0; row < 500; row++) {
+      Key k = newKey(formatString("r_", row), "cf1", "cq", "", 1);
+      trf.writer.append(k, newValue(k.toString()));
+      expectedKeys.add(k);
+    }
+    trf.writer.startDefaultLocalityGroup();
+    for (int row = 0; row < 500; row++) {
+      Key k = newKey(formatString("r_", row), "cf2", "cq", "", 1);
+      trf.writer.append(k, newValue(k.toString()));
+      expectedKeys.add(k);
+    }
+    trf.closeWriter();
+    Collections.sort(expectedKeys);
+
+    trf.openReader(false);
+    Key firstKey = trf.reader.getFirstKey();
+    Key lastKey = trf.reader.getLastKey();
+    trf.reader.close();
+
+    BasicCacheProvider cacheProvider = new BasicCacheProvider(
+        trf.manager.getBlockCache(CacheType.INDEX), trf.manager.getBlockCache(CacheType.DATA));
+    byte[] data = trf.baos.toByteArray();
+
+    // the index was cached when the file was first opened, so reopening it reads nothing from the
+    // file
+    CachableBuilder cb = new CachableBuilder()
+        .input(new FSDataInputStream(new SeekableByteArrayInputStream(new byte[data.length])),
+            "source-1")
+        .length(data.length).conf(trf.conf).cacheProvider(cacheProvider)
+        .cryptoService(CryptoServiceFactory.newDefaultInstance());
+    Reader reader = new RFile.Reader(cb);
+    assertEquals(firstKey, reader.getFirstKey());
+    assertEquals(lastKey, reader.getLastKey());
+    assertTrue(reader.getLocalityGroupCF().containsKey("lg1"));
+    reader.close();
+
+    // readers sharing the parsed index still read their own index and data blocks
+    for (int i = 0; i < 2; i++) {
+      cb = new CachableBuilder()
+          .input(new FSDataInputStream(new SeekableByteArrayInputStream(data)), "source-1")
+          .length(data.length).conf(trf.conf).cacheProvider(cacheProvider)
+          .cryptoService(CryptoServiceFactory.newDefaultInstance());
+      reader = new RFile.Reader(cb);
+      for (int start : new int[] {0, 250, 777, 999}) {
+        reader.seek(new Range(expectedKeys.get(start), null), EMPTY_COL_FAMS, false);
+        for (int j = start; j < expectedKeys.size(); j++) {
+          assertTrue(reader.hasTop());
+          assertEquals(expectedKeys.get(j), reader.getTopKey());
+          reader.next();
+        }
+        assertFalse(reader.hasTop());
+      }
+      reader.close();
+    }
+
+    trf.closeReader();
+  }
+
+  private TestRFile writeWideRows(int maxFamilies, int maxVisibilities, int restartInterval,
+      List<Key> expectedKeys) throws IOException {
+    ConfigurationCopy conf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    conf.set(Property.TABLE_FILE_RESTART_INTERVAL, Integer.toString(restartInterval));
+    conf.set(Property.TABLE_FILE_DICTIONARY_FAMILIES, Integer.toString(maxFamilies));
+    conf.set(Property.TABLE_FILE_DICTIONARY_VISIBILITIES, Integer.toString(maxVisibilities));
+    // compare the sizes of the encoded keys, not how well they compress
+    conf.set(Property.TABLE_FILE_COMPRESSION_TYPE, "none");
+    TestRFile trf = new TestRFile(conf);
+    trf.openWriter(false, 1000);
+    trf.writer.startNewLocalityGroup("events",
+        newColFamByteSequence(formatString("event_", 0), formatString("event_", 1)));
+    for (int row = 0; row < 100; row++) {
+      for (int cf = 0; cf < 2; cf++) {
+        Key k = newKey(formatString("r_", row), formatString("event_", cf), "cq", "public", 1);
+        trf.writer.append(k, newValue(k.toString()));
+        expectedKeys.add(k);
+      }
+    }
+    trf.writer.startDefaultLocalityGroup();
+    for (int row = 0; row < 100; row++) {
+      // more families than fit in the smaller dictionary
+      for (int cf = 0; cf < 40; cf++) {
+        String cv = (cf % 3 == 0) ? "" : (cf % 3 == 1 ? "audit&ops" : "ops|admin");
+        Key k = newKey(formatString("r_", row), formatString("family_", cf), "cq", cv, 1);
+        trf.writer.append(k, newValue(""));
+        expectedKeys.add(k);
+      }
+    }
+    trf.closeWriter();
+    Collections.sort(expectedKeys);
+    return trf;
+  }
+
+  @Test
+  public void testColumnDictionary() throws IOException {
+    // dictionary sizes and restart interval
+    for (int[] params : new int[][] {{64, 0, 16}, {64, 8, 0}, {10, 1, 3}}) {
+      List<Key> plainKeys = new ArrayList<>();
+      TestRFile plain = writeWideRows(0, 0, params[2], plainKeys);
+      plain.openReader();
+      assertEquals(params[2] > 0 ? RFile.RINDEX_VER_9 : RFile.RINDEX_VER_8,
+          plain.reader.getVersion());
+      plain.closeReader();
+
+      List<Key> expectedKeys = new ArrayList<>();
+      TestRFile trf = writeWideRows(params[0], params[1], params[2], expectedKeys);
+      assertEquals(plainKeys, expectedKeys);
+      assertTrue(trf.baos.size() < plain.baos.size());
+
+      trf.openReader();
+      assertEquals(RFile.RINDEX_VER_10, trf.reader.getVersion());
+
+      // read everything
+      trf.iter.seek(new Range(), EMPTY_COL_FAMS, false);
+      for (Key k : expectedKeys) {
+        assertTrue(trf.iter.hasTop());
+        assertEquals(k, trf.iter.getTopKey());
+        trf.iter.next();
+      }
+      assertFalse(trf.iter.hasTop());
+
+      // seek to keys, which uses restart points when there are any, and fast skipping
+      for (int i = 0; i < expectedKeys.size(); i += 37) {
+        trf.iter.seek(new Range(expectedKeys.get(i), null), EMPTY_COL_FAMS, false);
+        for (int j = i; j < Math.min(i + 50, expectedKeys.size()); j++) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(j), trf.iter.getTopKey());
+          trf.iter.next();
+        }
+      }
+
+      // fetch column families
+      trf.iter.seek(new Range(),
+          newColFamByteSequence(formatString("family_", 7), formatString("family_", 33)), true);
+      int count = 0;
+      while (trf.iter.hasTop()) {
+        String cf = trf.iter.getTopKey().getColumnFamily().toString();
+        assertTrue(cf.equals(formatString("family_", 7)) || cf.equals(formatString("family_", 33)));
+        count++;
+        trf.iter.next();
+      }
+      assertEquals(200, count);
+
+      trf.closeReader();
+    }
+  }
+
+  @Test
+  public void testRowSketch() throws IOException {
+    TestRFile trf = new TestRFile(conf);
+    trf.openWriter(false);
+
+    // the bytes through each row, for each locality group
+    List<TreeMap<Text,Long>> expected = new ArrayList<>();
+    Random rand = new Random(42);
+    for (String family : new String[] {"a", "b"}) {
+      if (family.equals("a")) {
+        trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence(family));
+      } else {
+        trf.writer.startDefaultLocalityGroup();
+      }
+      TreeMap<Text,Long> bytesThrough = new TreeMap<>();
+      long total = 0;
+      for (int row = 0; row < 5000; row++) {
+        for (int cq = 0; cq < 1 + rand.nextInt(4); cq++) {
+          Key key = newKey(formatString("r_", row), family, formatString("q_", cq), "", 1);
+          Value value = new Value(new byte[rand.nextInt(100)]);
+          trf.writer.append(key, value);
+          total += key.getSize() + value.getSize();
+        }
+        bytesThrough.put(new Text(formatString("r_", row)), total);
+      }
+      expected.add(bytesThrough);
+    }
+    trf.closeWriter();
+
+    trf.openReader();
+    List<RowSketch> sketches = RowSketch.read(trf.reader);
+    assertEquals(2, sketches.size());
+    for (int i = 0; i < 2; i++) {
+      RowSketch sketch = sketches.get(i);
+      TreeMap<Text,Long> bytesThrough = expected.get(i);
+      long total = bytesThrough.lastEntry().getValue();
+
+      List<Text> rows = sketch.getRows();
+      assertTrue(rows.size() >= RowSketch.MAX_ROWS / 4 && rows.size() < RowSketch.MAX_ROWS);
+      assertEquals(bytesThrough.lastKey(), rows.get(rows.size() - 1));
+      long previous = 0;
+      for (Text row : rows) {
+        // the sketch is exact at its rows, which are about evenly spaced
+        assertEquals((long) bytesThrough.get(row), sketch.bytesThrough(row));
+        assertTrue(bytesThrough.get(row) - previous <= 4 * total / RowSketch.MAX_ROWS);
+        previous = bytesThrough.get(row);
+      }
+
+      // between its rows the sketch is a lower bound
+      for (Entry<Text,Long> entry : bytesThrough.entrySet()) {
+        assertTrue(sketch.bytesThrough(entry.getKey()) <= entry.getValue());
+        assertTrue(sketch.bytesThroughNext(entry.getKey()) >= entry.getValue());
+      }
+      assertEquals(0, sketch.bytesThrough(new Text("a")));
+      assertEquals(total, sketch.bytesThrough(null));
+      assertEquals(total, sketch.bytesThrough(new Text("z")));
+    }
+    assertEquals(expected.get(0).lastEntry().getValue() + expected.get(1).lastEntry().getValue(),
+        RowSketch.bytesThrough(sketches, null));
+    trf.closeReader();
+
+    // an empty file has no sketch
+    trf = new TestRFile(conf);
+    trf.openWriter();
+    trf.closeWriter();
+    trf.openReader();
+    assertNull(RowSketch.read(trf.reader));
     trf.closeReader();
   }
 
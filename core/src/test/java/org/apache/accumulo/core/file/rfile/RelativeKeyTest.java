@@ -18,7 +18,11 @@
  */
 package org.apache.accumulo.core.file.rfile;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThrows;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -32,6 +36,7 @@ import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachedBlockRead;
 import org.apache.accumulo.core.file.rfile.RelativeKey.SkippR;
 import org.apache.accumulo.core.util.MutableByteSequence;
 import org.junit.Before;
@@ -90,6 +95,55 @@ public class RelativeKeyTest {
     assertEquals(expected.getKey(), actual.getKey());
   }
 
+  @Test
+  public void testReadWriteDictionary() throws IOException {
+    ColumnDictionary writeDictionary = new ColumnDictionary(2, 1);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+
+    ArrayList<Key> keys = new ArrayList<>();
+    for (int row = 0; row < 3; row++) {
+      for (String cf : new String[] {"event", "meta", "other"}) {
+        for (String cv : new String[] {"A&B", "C"}) {
+          keys.add(new Key("row" + row, cf, "cq", cv, 5));
+        }
+      }
+    }
+
+    Key prev = null;
+    int written = 0;
+    for (Key key : keys) {
+      // a null previous key writes all fields, as at a restart point
+      new RelativeKey(written++ % 4 == 0 ? null : prev, key, writeDictionary).write(out);
+      prev = key;
+    }
+
+    // the first two families and the first visibility were added, until each dictionary was full
+    assertEquals(2, writeDictionary.numFamilies());
+    assertEquals(1, writeDictionary.numVisibilities());
+
+    ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+    writeDictionary.write(new DataOutputStream(dictBytes));
+    ColumnDictionary readDictionary = new ColumnDictionary();
+    readDictionary
+        .readFields(new DataInputStream(new ByteArrayInputStream(dictBytes.toByteArray())));
+    assertArrayEquals("event".getBytes(UTF_8), readDictionary.getFamily(0));
+    assertArrayEquals("meta".getBytes(UTF_8), readDictionary.getFamily(1));
+    assertArrayEquals("A&B".getBytes(UTF_8), readDictionary.getVisibility(0));
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    RelativeKey rk = new RelativeKey(readDictionary);
+    for (Key key : keys) {
+      rk.readFields(in);
+      assertEquals(key, rk.getKey());
+    }
+
+    // keys that use the dictionary can not be read without it
+    DataInputStream noDictionaryIn =
+        new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    assertThrows(IOException.class, () -> new RelativeKey().readFields(noDictionaryIn));
+  }
+
   private static ArrayList<Key> expectedKeys;
   private static ArrayList<Value> expectedValues;
   private static ArrayList<Integer> expectedPositions;
@@ -261,4 +315,52 @@ public class RelativeKeyTest {
     assertEquals(expectedValues.get(j).toString(), value.toString());
 
   }
+
+  @Test
+  public void testReadFromCachedBlock() throws IOException {
+    byte[] buffer = baos.toByteArray();
+    CachedBlockRead block = new CachedBlockRead(null, buffer);
+
+    RelativeKey rk = new RelativeKey();
+    Value value = new Value();
+    for (int i = 0; i < expectedKeys.size(); i++) {
+      rk.readFields(block);
+      value.readFields(block);
+      // only create some of the keys, the others are never materialized
+      if (i % 7 == 0) {
+        Key key = rk.getKey();
+        assertEquals(expectedKeys.get(i), key);
+        assertNotSame(buffer, key.getRowData().getBackingArray());
+        assertNotSame(buffer, key.getColumnQualifierData().getBackingArray());
+      }
+      if (i % 11 == 1) {
+        assertEquals(expectedKeys.get(i - 1), rk.getPrevKey());
+      }
+      assertEquals(expectedValues.get(i), value);
+    }
+  }
+
+  @Test
+  public void testSeekMiddleOfCachedBlock() throws IOException {
+    CachedBlockRead block = new CachedBlockRead(null, baos.toByteArray());
+    int seekIndex = expectedKeys.size() / 4;
+    MutableByteSequence value = new MutableByteSequence(new byte[64], 0, 0);
+
+    SkippR skippr = RelativeKey.fastSkip(block, expectedKeys.get(seekIndex), value, new Key(), null,
+        expectedKeys.size());
+    assertEquals(seekIndex + 1, skippr.skipped);
+    assertEquals(expectedKeys.get(seekIndex - 1), skippr.prevKey);
+    assertEquals(expectedKeys.get(seekIndex - 1), skippr.rk.getPrevKey());
+    assertEquals(expectedKeys.get(seekIndex), skippr.rk.getKey());
+    assertEquals(expectedValues.get(seekIndex).toString(), value.toString());
+
+    // continue reading after the skip
+    Value v = new Value();
+    for (int i = seekIndex + 1; i < expectedKeys.size(); i++) {
+      skippr.rk.readFields(block);
+      v.readFields(block);
+      assertEquals(expectedKeys.get(i), skippr.rk.getKey());
+      assertEquals(expectedValues.get(i), v);
+    }
+  }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.file.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "paths not set by user input")
+public class MappedFileInputStreamTest {
+
+  @Rule
+  public TemporaryFolder tempFolder =
+      new TemporaryFolder(new File(System.getProperty("user.dir") + "/target"));
+
+  private File createFile(byte[] data) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), data);
+    return file;
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    try (MappedFileInputStream in = MappedFileInputStream.map(createFile(data).toPath())) {
+      assertEquals(data.length, in.length());
+
+      byte[] range = new byte[100];
+      in.read(500, range, 0, range.length);
+      assertArrayEquals(Arrays.copyOfRange(data, 500, 600), range);
+      // positional reads do not move the stream
+      assertEquals(0, in.getPos());
+
+      in.seek(990);
+      assertEquals(data[990] & 0xff, in.read());
+      assertEquals(9, in.read(range, 0, range.length));
+      assertEquals(-1, in.read());
+
+      assertThrows(IOException.class, () -> in.read(950, range, 0, range.length));
+    }
+  }
+
+  @Test
+  public void testCloseReleasesMapping() throws IOException {
+    MappedFileInputStream in = MappedFileInputStream.map(createFile(new byte[100]).toPath());
+    in.close();
+    // supported JDKs allow releasing a mapping, so it is not left to the GC
+    assertTrue(in.isUnmapped());
+    assertThrows(IOException.class, () -> in.read(0, new byte[10], 0, 10));
+    assertThrows(IOException.class, in::read);
+    // closing twice does not release the mapping twice
+    in.close();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
+import org.junit.Test;
+
+public class ServerFilterTest {
+
+  // accepts the rows whose number is a multiple of the divisor
+  private static class MultipleFilter extends ServerFilter {
+    private final int divisor;
+
+    MultipleFilter(SortedKeyValueIterator<Key,Value> source, int divisor) {
+      super(source);
+      this.divisor = divisor;
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      return new MultipleFilter(source.deepCopy(env), divisor);
+    }
+
+    @Override
+    public boolean accept(Key k, Value v) {
+      return Integer.parseInt(k.getRowData().toString().substring(1)) % divisor == 0;
+    }
+  }
+
+  private static TreeMap<Key,Value> newData() {
+    TreeMap<Key,Value> data = new TreeMap<>();
+    for (int i = 0; i < 100; i++) {
+      Key key = new Key(String.format("r%03d", i), "cf", "cq", 5);
+      // deleted keys are passed through for the deleting iterator to see
+      key.setDeleted(i % 7 == 0);
+      data.put(key, new Value("v" + i));
+    }
+    return data;
+  }
+
+  private static SortedKeyValueIterator<Key,Value> newFilters(TreeMap<Key,Value> data)
+      throws IOException {
+    SortedKeyValueIterator<Key,Value> iter =
+        new MultipleFilter(new MultipleFilter(new SortedMapIterator(data), 2), 3);
+    iter.seek(new Range(), Set.of(), false);
+    return iter;
+  }
+
+  @Test
+  public void testNextBatch() throws IOException {
+    TreeMap<Key,Value> data = newData();
+
+    List<Key> expected = new ArrayList<>();
+    SortedKeyValueIterator<Key,Value> iter = newFilters(data);
+    while (iter.hasTop()) {
+      expected.add(new Key(iter.getTopKey()));
+      iter.next();
+    }
+    // multiples of 6 and of 7, less the multiples of 42
+    assertEquals(17 + 15 - 3, expected.size());
+
+    for (int max : new int[] {1, 2, 5, 64}) {
+      iter = newFilters(data);
+      Key[] keys = new Key[max];
+      Value[] values = new Value[max];
+      List<Key> actual = new ArrayList<>();
+      int count;
+      while ((count = BatchKeyValueIterator.nextBatch(iter, keys, values, max)) > 0) {
+        assertTrue(count <= max);
+        for (int i = 0; i < count; i++) {
+          actual.add(keys[i]);
+          assertEquals(data.get(keys[i]), values[i]);
+        }
+        // a full batch leaves the filter at the next accepted key
+        if (count == max && iter.hasTop()) {
+          assertEquals(expected.get(actual.size()), iter.getTopKey());
+        }
+      }
+      assertFalse(iter.hasTop());
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testNextBatchCopiesAccepted() throws IOException {
+    TreeMap<Key,Value> data = newData();
+    SortedKeyValueIterator<Key,Value> iter = newFilters(data);
+
+    // the filter passed by the caller sees the source's keys, only the accepted ones are copied
+    List<Key> seen = new ArrayList<>();
+    Key[] keys = new Key[100];
+    Value[] values = new Value[100];
+    int count = BatchKeyValueIterator.nextBatch(iter, keys, values, 100, (k, v) -> {
+      seen.add(k);
+      return k.getRowData().toString().endsWith("0");
+    });
+
+    assertFalse(iter.hasTop());
+    List<Key> expected = new ArrayList<>();
+    for (Key key : seen) {
+      if (key.getRowData().toString().endsWith("0")) {
+        expected.add(key);
+      }
+    }
+    assertEquals(expected.size(), count);
+    for (int i = 0; i < count; i++) {
+      assertEquals(expected.get(i), keys[i]);
+      assertNotSame(expected.get(i), keys[i]);
+      assertEquals(data.get(keys[i]), values[i]);
+    }
+    // every key seen passed both filters
+    for (Key key : seen) {
+      int row = Integer.parseInt(key.getRowData().toString().substring(1));
+      assertTrue(key.isDeleted() || row % 6 == 0);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.HeapIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
+import org.junit.Test;
+
+/**
+ * Counts the key comparisons of the two ways {@link HeapIterator} merges its sources. Unlike
+ * timings, the counts are the same on every run, and they are what the choice between the two rests
+ * on. HeapMergeBenchmark times the same merges.
+ */
+public class HeapIteratorTest {
+
+  private static class CountingKey extends Key {
+    private static long compares = 0;
+
+    CountingKey(String row) {
+      super(row);
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      compares++;
+      return super.compareTo(other);
+    }
+  }
+
+  private static class Merge extends HeapIterator {
+
+    private final List<SortedKeyValueIterator<Key,Value>> sources;
+
+    Merge(List<SortedKeyValueIterator<Key,Value>> sources, boolean loserTree) {
+      this.sources = sources;
+      createHeap(sources.size(), loserTree);
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
+        throws IOException {
+      clear();
+      for (SortedKeyValueIterator<Key,Value> source : sources) {
+        source.seek(range, columnFamilies, inclusive);
+        addSource(source);
+      }
+    }
+  }
+
+  private static final int NUM_ROWS = 20_000;
+
+  /**
+   * @param runLength
+   *          the number of consecutive rows in each source, or zero to put each row in a random
+   *          source, the way the rows of a tablet are spread over its files
+   * @return the comparisons per key read
+   */
+  private static double comparesPerKey(int numSources, int runLength, boolean loserTree)
+      throws IOException {
+    Random random = new Random(42);
+    List<TreeMap<Key,Value>> maps = new ArrayList<>();
+    for (int i = 0; i < numSources; i++) {
+      maps.add(new TreeMap<>());
+    }
+    for (int row = 0; row < NUM_ROWS; row++) {
+      int source = runLength == 0 ? random.nextInt(numSources) : (row / runLength) % numSources;
+      maps.get(source).put(new CountingKey(String.format("r%06d", row)), new Value());
+    }
+    List<SortedKeyValueIterator<Key,Value>> sources = new ArrayList<>();
+    for (TreeMap<Key,Value> map : maps) {
+      sources.add(new SortedMapIterator(map));
+    }
+
+    Merge merge = new Merge(sources, loserTree);
+    merge.seek(new Range(), Set.of(), false);
+    CountingKey.compares = 0;
+    int count = 0;
+    Key last = null;
+    while (merge.hasTop()) {
+      // a plain copy, so checking the order is not counted
+      assertTrue(last == null || last.compareTo(merge.getTopKey()) < 0);
+      last = new Key(merge.getTopKey());
+      merge.next();
+      count++;
+    }
+    assertEquals(NUM_ROWS, count);
+    return CountingKey.compares / (double) count;
+  }
+
+  @Test
+  public void testComparisons() throws IOException {
+    // with keys spread over the sources the top moves on most keys, which costs the tree half the
+    // comparisons of the queue from about 8 sources, the least count the tree is used for
+    for (int numSources : new int[] {8, 16, 64}) {
+      double heap = comparesPerKey(numSources, 0, false);
+      double tree = comparesPerKey(numSources, 0, true);
+      assertTrue(numSources + " " + heap + " " + tree, tree < heap * .7);
+      heap = comparesPerKey(numSources, 1, false);
+      tree = comparesPerKey(numSources, 1, true);
+      assertTrue(numSources + " " + heap + " " + tree, tree < heap * .6);
+    }
+    assertTrue(comparesPerKey(4, 0, true) < comparesPerKey(4, 0, false));
+
+    // runs of keys from one source cost the tree another comparison per level for each run
+    for (int numSources : new int[] {8, 16, 64}) {
+      double heap = comparesPerKey(numSources, 16, false);
+      double tree = comparesPerKey(numSources, 16, true);
+      assertTrue(numSources + " " + heap + " " + tree, tree < heap * 1.25);
+    }
+  }
+}
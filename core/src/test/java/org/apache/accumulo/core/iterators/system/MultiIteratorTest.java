@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -411,4 +412,43 @@ public class MultiIteratorTest {
     mi.seek(r7, EMPTY_COL_FAMS, false);
     assertFalse(mi.hasTop());
   }
+
+  @Test
+  public void testManySources() throws IOException {
+    // enough sources to merge them with a loser tree, with runs of keys from the same source and
+    // some sources that are empty or end early
+    Random random = new Random(42);
+    for (int numSources : new int[] {8, 13, 31, 64}) {
+      TreeMap<Key,Value> expected = new TreeMap<>();
+      List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<>();
+      for (int s = 0; s < numSources; s++) {
+        TreeMap<Key,Value> tm = new TreeMap<>();
+        int numKeys = s % 5 == 0 ? 0 : random.nextInt(200);
+        int row = random.nextInt(50);
+        for (int i = 0; i < numKeys; i++) {
+          row += random.nextInt(4) == 0 ? 1 + random.nextInt(20) : 0;
+          Key key = newKey(row, random.nextInt(1000) * numSources + s);
+          tm.put(key, new Value("v" + s));
+          expected.put(key, new Value("v" + s));
+        }
+        iters.add(new SortedMapIterator(tm));
+      }
+
+      MultiIterator mi = new MultiIterator(iters, true);
+      List<Range> ranges = List.of(new Range(), new Range(newRow(100), null),
+          new Range(newRow(50), newRow(200)), new Range(newRow(5000), null));
+      for (Range range : ranges) {
+        mi.seek(range, EMPTY_COL_FAMS, false);
+        for (var entry : expected.entrySet()) {
+          if (range.contains(entry.getKey())) {
+            assertTrue(mi.hasTop());
+            assertEquals(entry.getKey(), mi.getTopKey());
+            assertEquals(entry.getValue(), mi.getTopValue());
+            mi.next();
+          }
+        }
+        assertFalse(mi.hasTop());
+      }
+    }
+  }
 }
@@ -29,23 +29,29 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Column;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.BatchKeyValueIterator;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.WrappingIterator;
 import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.accumulo.core.iteratorsImpl.system.ColumnQualifierFilter;
 import org.apache.accumulo.core.iteratorsImpl.system.InterruptibleIterator;
 import org.apache.accumulo.core.iteratorsImpl.system.IterationInterruptedException;
 import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
 import org.apache.accumulo.core.iteratorsImpl.system.SourceSwitchingIterator;
 import org.apache.accumulo.core.iteratorsImpl.system.SourceSwitchingIterator.DataSource;
+import org.apache.accumulo.core.iteratorsImpl.system.VisibilityFilter;
+import org.apache.accumulo.core.security.Authorizations;
 import org.apache.hadoop.io.Text;
 import org.junit.Test;
 
@@ -144,6 +150,59 @@ public class SourceSwitchingIteratorTest {
     assertFalse(ssi.hasTop());
   }
 
+  @Test
+  public void testBatches() throws Exception {
+    TreeMap<Key,Value> tm1 = new TreeMap<>();
+    for (int i = 0; i < 100; i++) {
+      String cq = "cq" + (i % 3);
+      String vis = i % 5 == 0 ? "B" : "A";
+      tm1.put(new Key(new Text(String.format("r%03d", i)), new Text("cf1"), new Text(cq),
+          new Text(vis), 5), new Value("v" + i));
+    }
+    Set<Column> columns = Set.of(new Column("cf1".getBytes(), "cq0".getBytes(), null),
+        new Column("cf1".getBytes(), "cq1".getBytes(), null));
+
+    // filtered the same way one key at a time
+    List<Key> expected = new ArrayList<>();
+    SortedKeyValueIterator<Key,Value> iter =
+        VisibilityFilter.wrap(ColumnQualifierFilter.wrap(new SortedMapIterator(tm1), columns),
+            new Authorizations("A"), new byte[0]);
+    iter.seek(new Range(), List.of(), false);
+    while (iter.hasTop()) {
+      expected.add(new Key(iter.getTopKey()));
+      iter.next();
+    }
+
+    for (int max : new int[] {1, 2, 7, 64}) {
+      SortedKeyValueIterator<Key,Value> filters =
+          VisibilityFilter.wrap(ColumnQualifierFilter.wrap(new SortedMapIterator(tm1), columns),
+              new Authorizations("A"), new byte[0]);
+      TestDataSource tds = new TestDataSource(filters);
+      SourceSwitchingIterator ssi = new SourceSwitchingIterator(tds);
+      ssi.seek(new Range(), List.of(), false);
+
+      Key[] keys = new Key[max];
+      Value[] values = new Value[max];
+      List<Key> actual = new ArrayList<>();
+      int count;
+      while ((count = BatchKeyValueIterator.nextBatch(ssi, keys, values, max)) > 0) {
+        assertTrue(count <= max);
+        for (int i = 0; i < count; i++) {
+          actual.add(keys[i]);
+          assertEquals(tm1.get(keys[i]), values[i]);
+        }
+        if (actual.size() == 10) {
+          // switch to a copy of the data half way through a batch
+          tds.next = new TestDataSource(
+              VisibilityFilter.wrap(ColumnQualifierFilter.wrap(new SortedMapIterator(tm1), columns),
+                  new Authorizations("A"), new byte[0]));
+        }
+      }
+      assertFalse(ssi.hasTop());
+      assertEquals(expected, actual);
+    }
+  }
+
   @Test
   public void test2() throws Exception {
     TreeMap<Key,Value> tm1 = new TreeMap<>();
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.accumulo.core.client.IteratorSetting;
@@ -90,6 +91,12 @@ public class FileCompactor implements Callable<CompactionStats> {
 
     RateLimiter getWriteLimiter();
 
+    /**
+     * @return the executor that compresses the data blocks of the output file, or null to compress
+     *         them on the compacting thread
+     */
+    ExecutorService getCompressionExecutor();
+
     SystemIteratorEnvironment createIteratorEnv(ServerContext context,
         AccumuloConfiguration acuTableConf, TableId tableId);
 
@@ -210,7 +217,8 @@ public class FileCompactor implements Callable<CompactionStats> {
       FileSystem ns = this.fs.getFileSystemByPath(outputFile.getPath());
       mfw = fileFactory.newWriterBuilder()
           .forFile(outputFile.getMetaInsert(), ns, ns.getConf(), context.getCryptoService())
-          .withTableConfiguration(acuTableConf).withRateLimiter(env.getWriteLimiter()).build();
+          .withTableConfiguration(acuTableConf).withRateLimiter(env.getWriteLimiter())
+          .withCompressionExecutor(env.getCompressionExecutor()).build();
 
       Map<String,Set<ByteSequence>> lGroups = getLocalityGroups(acuTableConf);
 
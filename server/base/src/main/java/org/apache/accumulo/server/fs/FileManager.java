@@ -547,6 +547,23 @@ public class FileManager {
       return iters;
     }
 
+    /**
+     * Reserves readers for files and returns their indexes, which are parsed once per open reader
+     * and read through the block caches. The indexes must not be closed; the readers are released
+     * by {@link #releaseOpenFiles(boolean)}.
+     */
+    public synchronized List<FileSKVIterator> openIndexes(Collection<TabletFile> files)
+        throws IOException {
+      Map<FileSKVIterator,String> newlyReservedReaders =
+          openFiles(files.stream().map(TabletFile::getPathStr).collect(Collectors.toList()));
+
+      List<FileSKVIterator> indexes = new ArrayList<>(newlyReservedReaders.size());
+      for (FileSKVIterator reader : newlyReservedReaders.keySet()) {
+        indexes.add(reader.getIndex());
+      }
+      return indexes;
+    }
+
     public synchronized void detach() {
 
       releaseReaders(tablet, tabletReservedReaders, false);
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.accumulo.core.clientImpl.bulk.BulkImport;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -44,6 +45,7 @@ import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.file.FileSKVWriter;
 import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.accumulo.core.file.rfile.RFileOperations;
+import org.apache.accumulo.core.file.rfile.RowSketch;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iteratorsImpl.system.MultiIterator;
 import org.apache.accumulo.core.metadata.TabletFile;
@@ -81,6 +83,10 @@ public class FileUtil {
 
   private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
 
+  // the largest fraction of a tablet's bytes that may fall between consecutive rows of its files'
+  // row sketches for them to be used to find its mid point
+  private static final double MAX_SKETCH_GAP = .1;
+
   private static Path createTmpDir(ServerContext context, String tabletDirectory)
       throws IOException {
 
@@ -399,6 +405,141 @@ public class FileUtil {
     }
   }
 
+  /**
+   * Finds the mid point of a tablet from the row sketches of its files, which only requires reading
+   * a small meta block from each file. The mid point is the first row of the sketches through which
+   * the files have at least half of the tablet's bytes.
+   *
+   * @return the same as
+   *         {@link #findMidPoint(ServerContext, String, Text, Text, Collection, double)} or null if
+   *         a file has no row sketch, or if the sketches do not have enough rows in the tablet to
+   *         find its mid point precisely, in which case the mid point should be found from the file
+   *         indexes
+   */
+  public static SortedMap<Double,Key> findMidPointFromSketches(ServerContext context,
+      Text prevEndRow, Text endRow, Collection<TabletFile> mapFiles, double minSplit)
+      throws IOException {
+
+    long t1 = System.currentTimeMillis();
+
+    List<RowSketch> sketches = new ArrayList<>();
+    for (TabletFile file : mapFiles) {
+      FileSystem ns = context.getVolumeManager().getFileSystemByPath(file.getPath());
+      try (FileSKVIterator reader = FileOperations.getInstance().newReaderBuilder()
+          .forFile(file.getPathStr(), ns, ns.getConf(), context.getCryptoService())
+          .withTableConfiguration(context.getConfiguration()).build()) {
+        List<RowSketch> fileSketches = RowSketch.read(reader);
+        if (fileSketches == null) {
+          log.debug("File {} has no row sketch, can not use sketches to find mid point", file);
+          return null;
+        }
+        sketches.addAll(fileSketches);
+      }
+    }
+
+    // candidate rows in the tablet
+    TreeSet<Text> rows = new TreeSet<>();
+    for (RowSketch sketch : sketches) {
+      for (Text row : sketch.getRows()) {
+        if ((prevEndRow == null || row.compareTo(prevEndRow) > 0)
+            && (endRow == null || row.compareTo(endRow) <= 0)) {
+          rows.add(row);
+        }
+      }
+    }
+
+    long startBytes = prevEndRow == null ? 0 : RowSketch.bytesThrough(sketches, prevEndRow);
+    long endBytes = RowSketch.bytesThrough(sketches, endRow);
+    long tabletBytes = endBytes - startBytes;
+    if (rows.isEmpty() || tabletBytes <= 0) {
+      return null;
+    }
+    // the bytes between the last rows of the sketches in the tablet and their next rows may or may
+    // not be in the tablet
+    if (endRow != null
+        && RowSketch.bytesThroughNext(sketches, endRow) - endBytes > MAX_SKETCH_GAP * tabletBytes) {
+      log.debug("Row sketches of {} are too coarse after {} to find mid point", mapFiles, endRow);
+      return null;
+    }
+
+    TreeMap<Double,Key> ret = new TreeMap<>();
+    double previous = 0;
+    Text previousRow = null;
+    for (Text row : rows) {
+      double position = (RowSketch.bytesThrough(sketches, row) - startBytes) / (double) tabletBytes;
+      if (position - previous > MAX_SKETCH_GAP) {
+        log.debug("Row sketches of {} are too coarse between {} and {} to find mid point", mapFiles,
+            prevEndRow, endRow);
+        return null;
+      }
+      if (position >= .5) {
+        if (previousRow != null && previous >= minSplit) {
+          ret.put(previous, new Key(previousRow));
+        }
+        ret.put(.5, new Key(row));
+        break;
+      }
+      previous = position;
+      previousRow = row;
+    }
+
+    long t2 = System.currentTimeMillis();
+    log.debug(
+        String.format("Found midPoint from row sketches in %6.2f secs.%n", ((t2 - t1) / 1000.0)));
+
+    return ret;
+  }
+
+  /**
+   * Finds rows that split a range of a tablet into parts with about the same number of index
+   * entries in the tablet's files, and so about the same number of data blocks. The indexes are
+   * seeked to the start of the range and read up to its end.
+   *
+   * @param minIndexEntries
+   *          the number of index entries in the range below which it is not worth splitting
+   * @return at most numParts - 1 rows in increasing order, each in the tablet and after the start
+   *         and before the end of the range, or no rows if the range has fewer than minIndexEntries
+   *         index entries
+   */
+  public static List<Text> findPartitionRows(KeyExtent extent, Range range,
+      Collection<FileSKVIterator> indexes, int numParts, long minIndexEntries) throws IOException {
+
+    List<Text> indexRows = new ArrayList<>();
+    for (FileSKVIterator index : indexes) {
+      index.seek(range, Set.of(), false);
+      while (index.hasTop()) {
+        Text row = index.getTopKey().getRow();
+        Key rowStart = new Key(row);
+        if (range.getEndKey() != null && rowStart.compareTo(range.getEndKey()) >= 0) {
+          break;
+        }
+        if ((range.getStartKey() == null || rowStart.compareTo(range.getStartKey()) > 0)
+            && extent.contains(row)) {
+          indexRows.add(row);
+        }
+        index.next();
+      }
+    }
+
+    if (indexRows.size() < minIndexEntries) {
+      return List.of();
+    }
+
+    Collections.sort(indexRows);
+
+    List<Text> rows = new ArrayList<>();
+    for (int i = 1; i < numParts; i++) {
+      int index = (int) ((long) i * indexRows.size() / numParts);
+      if (index < indexRows.size()) {
+        Text row = indexRows.get(index);
+        if (rows.isEmpty() || row.compareTo(rows.get(rows.size() - 1)) > 0) {
+          rows.add(row);
+        }
+      }
+    }
+    return rows;
+  }
+
   protected static void cleanupIndexOp(Path tmpDir, VolumeManager fs,
       ArrayList<FileSKVIterator> readers) throws IOException {
     // close all of the index sequence files
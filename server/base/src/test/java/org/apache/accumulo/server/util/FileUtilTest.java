@@ -18,17 +18,40 @@
  */
 package org.apache.accumulo.server.util;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.SortedMap;
 
+import org.apache.accumulo.core.conf.DefaultConfiguration;
 import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.crypto.CryptoServiceFactory;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.TableId;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.dataImpl.KeyExtent;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.metadata.TabletFile;
+import org.apache.accumulo.core.spi.crypto.CryptoService;
+import org.apache.accumulo.server.ServerContext;
 import org.apache.accumulo.server.fs.VolumeManagerImpl;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -178,4 +201,118 @@ public class FileUtilTest {
       assertFalse("Expected " + tmp2 + " to be cleaned up but it wasn't", tmp2.exists());
     }
   }
+
+  @Test
+  public void testFindMidPointFromSketches() throws IOException {
+    try (var fs = VolumeManagerImpl.getLocalForTesting(accumuloDir.getAbsolutePath())) {
+      ServerContext context = createMock(ServerContext.class);
+      expect(context.getVolumeManager()).andReturn(fs).anyTimes();
+      expect(context.getCryptoService()).andReturn(CryptoServiceFactory.newDefaultInstance())
+          .anyTimes();
+      expect(context.getConfiguration()).andReturn(DefaultConfiguration.getInstance()).anyTimes();
+      replay(context);
+
+      // two files with the same rows, one with bigger values than the other
+      List<TabletFile> files = new ArrayList<>();
+      for (int f = 0; f < 2; f++) {
+        File dir = new File(accumuloDir, "tables/1/t-0000001");
+        assertTrue(dir.mkdirs() || dir.isDirectory());
+        TabletFile file = new TabletFile(new Path(new File(dir, "F000000" + f + ".rf").toURI()));
+        FileSystem ns = fs.getFileSystemByPath(file.getPath());
+        try (FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder()
+            .forFile(file.getPathStr(), ns, ns.getConf(), context.getCryptoService())
+            .withTableConfiguration(DefaultConfiguration.getInstance()).build()) {
+          writer.startDefaultLocalityGroup();
+          for (int row = 0; row < 10000; row++) {
+            writer.append(new Key(String.format("r%05d", row)), new Value(new byte[10 + 20 * f]));
+          }
+        }
+        files.add(file);
+      }
+
+      // the rows are the same size, so the mid point is near the middle row
+      SortedMap<Double,Key> keys =
+          FileUtil.findMidPointFromSketches(context, null, null, files, .25);
+      assertEquals(2, keys.size());
+      assertTrue(Math.abs(getRowNumber(keys.get(.5)) - 5000) < 200);
+      assertTrue(keys.firstKey() >= .25 && keys.firstKey() < .5);
+      assertTrue(getRowNumber(keys.get(keys.firstKey())) < getRowNumber(keys.get(.5)));
+
+      keys = FileUtil.findMidPointFromSketches(context, new Text("r05000"), null, files, .25);
+      assertTrue(Math.abs(getRowNumber(keys.get(.5)) - 7500) < 200);
+
+      keys = FileUtil.findMidPointFromSketches(context, new Text("r02000"), new Text("r04000"),
+          files, .25);
+      assertTrue(Math.abs(getRowNumber(keys.get(.5)) - 3000) < 200);
+
+      // the sketches are too coarse for a small tablet
+      assertNull(FileUtil.findMidPointFromSketches(context, new Text("r05000"), new Text("r05010"),
+          files, .25));
+
+      verify(context);
+    }
+  }
+
+  @Test
+  public void testFindPartitionRows() throws IOException {
+    try (var fs = VolumeManagerImpl.getLocalForTesting(accumuloDir.getAbsolutePath())) {
+      File dir = new File(accumuloDir, "tables/1/t-0000001");
+      assertTrue(dir.mkdirs() || dir.isDirectory());
+      TabletFile file = new TabletFile(new Path(new File(dir, "F0000000.rf").toURI()));
+      FileSystem ns = fs.getFileSystemByPath(file.getPath());
+      CryptoService cs = CryptoServiceFactory.newDefaultInstance();
+      try (FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder()
+          .forFile(file.getPathStr(), ns, ns.getConf(), cs)
+          .withTableConfiguration(DefaultConfiguration.getInstance()).build()) {
+        writer.startDefaultLocalityGroup();
+        for (int row = 0; row < 10000; row++) {
+          writer.append(new Key(String.format("r%05d", row)), new Value(new byte[200]));
+        }
+      }
+
+      try (FileSKVIterator index = FileOperations.getInstance().newIndexReaderBuilder()
+          .forFile(file.getPathStr(), ns, ns.getConf(), cs)
+          .withTableConfiguration(DefaultConfiguration.getInstance()).build()) {
+        List<FileSKVIterator> indexes = List.of(index);
+        KeyExtent extent = new KeyExtent(TableId.of("1"), null, null);
+
+        // the rows are the same size, so the parts are about the same number of rows, the rows
+        // found come from index keys so they may fall between the rows of the file
+        List<Text> rows = FileUtil.findPartitionRows(extent, new Range(), indexes, 4, 0);
+        assertEquals(3, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+          assertNear(2500 * (i + 1), rows.get(i));
+        }
+
+        // the rows are strictly inside the range and the tablet
+        Range range = new Range(new Text("r02000"), new Text("r04000"));
+        rows = FileUtil.findPartitionRows(extent, range, indexes, 2, 0);
+        assertEquals(1, rows.size());
+        assertNear(3000, rows.get(0));
+
+        // the range covers a fifth of the file's blocks
+        assertEquals(1, FileUtil.findPartitionRows(extent, range, indexes, 2, 2).size());
+        assertTrue(FileUtil.findPartitionRows(extent, range, indexes, 2, 10).isEmpty());
+
+        extent = new KeyExtent(TableId.of("1"), new Text("r02500"), null);
+        rows = FileUtil.findPartitionRows(extent, range, indexes, 2, 0);
+        assertEquals(1, rows.size());
+        assertTrue(rows.get(0).compareTo(new Text("r02000")) > 0);
+        assertTrue(rows.get(0).compareTo(new Text("r02500")) <= 0);
+
+        // too small a range to split
+        assertTrue(FileUtil.findPartitionRows(extent, new Range(new Text("r01000")), indexes, 4, 0)
+            .isEmpty());
+      }
+    }
+  }
+
+  private static void assertNear(int expectedRow, Text row) {
+    assertTrue(row.compareTo(new Text(String.format("r%05d", expectedRow - 600))) > 0);
+    assertTrue(row.compareTo(new Text(String.format("r%05d", expectedRow + 600))) < 0);
+  }
+
+  private static int getRowNumber(Key key) {
+    return Integer.parseInt(key.getRow().toString().substring(1));
+  }
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.accumulo.compactor;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.TableId;
@@ -84,6 +86,12 @@ public class ExtCEnv implements CompactionEnv {
     return NullRateLimiter.INSTANCE;
   }
 
+  @Override
+  public ExecutorService getCompressionExecutor() {
+    // a compactor runs one compaction at a time and compresses its blocks on that thread
+    return null;
+  }
+
   @Override
   public SystemIteratorEnvironment createIteratorEnv(ServerContext context,
       AccumuloConfiguration acuTableConf, TableId tableId) {
@@ -0,0 +1,606 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.accumulo.core.client.SampleNotPresentException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.InterruptibleIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.IterationInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class stores data outside of the Java heap, in direct byte buffers. Like {@link NativeMap}
+ * this allows us to store more in memory and avoid Java GC pauses, but it does not need a native
+ * library.
+ * <p>
+ * Entries are allocated from chunks of memory and are linked into a skip list whose next pointers
+ * are stored in the entries, so the map adds no objects to the heap for each entry. The layout of
+ * an entry, which always starts 8 byte aligned, is:
+ *
+ * <pre>
+ * int height
+ * int kvCount
+ * long timestamp
+ * int rowLength, cfLength, cqLength, cvLength, valueLength
+ * byte deleted
+ * byte[3] padding
+ * long next[height]
+ * byte[] row, cf, cq, cv, value
+ * </pre>
+ *
+ * Entries are only ever added, which keeps the skip list lock free. An entry is written completely
+ * before it is linked in by a compare and set of its predecessor's next pointer, and readers follow
+ * next pointers with acquire reads, so a reader that finds an entry sees all of it.
+ * <p>
+ * The first chunk is small and each new chunk is twice the size of the one before it, up to the
+ * chunk size, so that the many small maps of a tablet server do not each hold a large mostly empty
+ * chunk. The memory used by the map is the capacity of its chunks, free space included. Deleting
+ * the map frees the chunks right away, so reads and writes hold a read lock that delete waits for,
+ * like {@link NativeMap}.
+ */
+public class OffHeapMap {
+
+  private static final Logger log = LoggerFactory.getLogger(OffHeapMap.class);
+
+  // sun.misc.Unsafe.invokeCleaner, the only way to free a direct buffer before it is garbage
+  // collected
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Unable to free off heap maps on delete, they will be freed by the GC", e);
+      unsafe = null;
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private static final int HEIGHT = 0;
+  private static final int KV_COUNT = 4;
+  private static final int TIMESTAMP = 8;
+  private static final int ROW_LENGTH = 16;
+  private static final int CF_LENGTH = 20;
+  private static final int CQ_LENGTH = 24;
+  private static final int CV_LENGTH = 28;
+  private static final int VALUE_LENGTH = 32;
+  private static final int DELETED = 36;
+  private static final int NEXT = 40;
+
+  static final int MAX_HEIGHT = 16;
+  static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+  static final int MIN_CHUNK_SIZE = 1 << 12;
+
+  private static final VarHandle POINTER =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final int chunkSize;
+
+  // the first entry of each level, an address of 0 is the end of a level
+  private final AtomicLongArray head = new AtomicLongArray(MAX_HEIGHT);
+
+  // an address is the index of the chunk plus one in the high int and the offset in the low int
+  private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+  // the chunk entries are allocated from, its free space, the size of the next chunk and the
+  // buffers allocated for the chunks before they were aligned, guarded by this
+  private ByteBuffer current = null;
+  private int currentOffset = 0;
+  private int nextChunkSize;
+  private final List<ByteBuffer> allocated = new ArrayList<>();
+
+  // reads and writes hold the read lock, so that delete does not free memory they are using
+  private final Lock readLock;
+  private final Lock writeLock;
+
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong memoryUsed = new AtomicLong();
+
+  public OffHeapMap() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  OffHeapMap(int chunkSize) {
+    this.chunkSize = align(chunkSize);
+    this.nextChunkSize = Math.min(MIN_CHUNK_SIZE, this.chunkSize);
+    ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    this.readLock = rwLock.readLock();
+    this.writeLock = rwLock.writeLock();
+  }
+
+  private static int align(int length) {
+    return (length + 7) & ~7;
+  }
+
+  private ByteBuffer[] getChunks() {
+    ByteBuffer[] chunks = this.chunks;
+    if (chunks == null) {
+      throw new IllegalStateException("Off heap map was deleted");
+    }
+    return chunks;
+  }
+
+  private ByteBuffer chunk(long address) {
+    return getChunks()[(int) (address >>> 32) - 1];
+  }
+
+  private static int offset(long address) {
+    return (int) address;
+  }
+
+  private synchronized long allocate(int length) {
+    ByteBuffer[] chunks = getChunks();
+    length = align(length);
+
+    if (current == null || currentOffset + length > current.capacity()) {
+      // entries larger than a chunk get a chunk of their own
+      int capacity = Math.max(nextChunkSize, length);
+      nextChunkSize = Math.min(nextChunkSize * 2, chunkSize);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + 7);
+      allocated.add(buffer);
+      memoryUsed.addAndGet(buffer.capacity());
+      current = buffer.alignedSlice(8);
+      currentOffset = 0;
+      chunks = Arrays.copyOf(chunks, chunks.length + 1);
+      chunks[chunks.length - 1] = current;
+      this.chunks = chunks;
+    }
+
+    long address = ((long) chunks.length << 32) | currentOffset;
+    currentOffset += length;
+    return address;
+  }
+
+  private long next(long address, int level) {
+    if (address == 0) {
+      return head.get(level);
+    }
+    return (long) POINTER.getAcquire(chunk(address), offset(address) + NEXT + 8 * level);
+  }
+
+  private boolean casNext(long address, int level, long expected, long next) {
+    if (address == 0) {
+      return head.compareAndSet(level, expected, next);
+    }
+    return POINTER.compareAndSet(chunk(address), offset(address) + NEXT + 8 * level, expected,
+        next);
+  }
+
+  private static int randomHeight() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int height = 1;
+    while (height < MAX_HEIGHT && random.nextInt(4) == 0) {
+      height++;
+    }
+    return height;
+  }
+
+  /**
+   * The parts of a key, pulled out once for the many comparisons of a search.
+   */
+  private static class SearchKey {
+    final ByteSequence row;
+    final ByteSequence cf;
+    final ByteSequence cq;
+    final ByteSequence cv;
+    final long timestamp;
+    final boolean deleted;
+    final boolean isMemKey;
+    final int kvCount;
+
+    SearchKey(Key key) {
+      row = key.getRowData();
+      cf = key.getColumnFamilyData();
+      cq = key.getColumnQualifierData();
+      cv = key.getColumnVisibilityData();
+      timestamp = key.getTimestamp();
+      deleted = key.isDeleted();
+      isMemKey = key instanceof MemKey;
+      kvCount = isMemKey ? ((MemKey) key).getKVCount() : 0;
+    }
+  }
+
+  private static int compareBytes(ByteBuffer chunk, int offset, int length, ByteSequence bs) {
+    byte[] data = bs.getBackingArray();
+    int dataOffset = bs.offset();
+    int end = Math.min(length, bs.length());
+    for (int i = 0; i < end; i++) {
+      int cmp = (chunk.get(offset + i) & 0xff) - (data[dataOffset + i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - bs.length();
+  }
+
+  /**
+   * Compares the key of an entry to a search key, in the order of {@link MemKeyComparator}.
+   */
+  private int compare(long address, SearchKey key) {
+    ByteBuffer chunk = chunk(address);
+    int offset = offset(address);
+    int pos = offset + NEXT + 8 * chunk.getInt(offset + HEIGHT);
+
+    int length = chunk.getInt(offset + ROW_LENGTH);
+    int cmp = compareBytes(chunk, pos, length, key.row);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += length;
+
+    length = chunk.getInt(offset + CF_LENGTH);
+    cmp = compareBytes(chunk, pos, length, key.cf);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += length;
+
+    length = chunk.getInt(offset + CQ_LENGTH);
+    cmp = compareBytes(chunk, pos, length, key.cq);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += length;
+
+    length = chunk.getInt(offset + CV_LENGTH);
+    cmp = compareBytes(chunk, pos, length, key.cv);
+    if (cmp != 0) {
+      return cmp;
+    }
+
+    cmp = Long.compare(key.timestamp, chunk.getLong(offset + TIMESTAMP));
+    if (cmp != 0) {
+      return cmp;
+    }
+
+    boolean deleted = chunk.get(offset + DELETED) != 0;
+    if (deleted != key.deleted) {
+      return deleted ? -1 : 1;
+    }
+
+    // a key that is not a MemKey sorts before the entries with the same key
+    if (!key.isMemKey) {
+      return 1;
+    }
+    return key.kvCount - chunk.getInt(offset + KV_COUNT);
+  }
+
+  /**
+   * Finds the last entry before the key and the first entry after it on each level, starting the
+   * search of each level below the top one from the entry found on the level above.
+   */
+  private void findSplice(SearchKey key, long[] preds, long[] succs) {
+    long pred = 0;
+    for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+      pred = findSplice(key, pred, level, preds, succs);
+    }
+  }
+
+  private long findSplice(SearchKey key, long pred, int level, long[] preds, long[] succs) {
+    long succ = next(pred, level);
+    while (succ != 0 && compare(succ, key) < 0) {
+      pred = succ;
+      succ = next(pred, level);
+    }
+    preds[level] = pred;
+    succs[level] = succ;
+    return pred;
+  }
+
+  private long ceiling(Key key) {
+    SearchKey searchKey = new SearchKey(key);
+    long pred = 0;
+    long succ = 0;
+    for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+      succ = next(pred, level);
+      while (succ != 0 && compare(succ, searchKey) < 0) {
+        pred = succ;
+        succ = next(pred, level);
+      }
+    }
+    return succ;
+  }
+
+  private void put(byte[] row, ColumnUpdate cvp, int kvCount) {
+    byte[] cf = cvp.getColumnFamily();
+    byte[] cq = cvp.getColumnQualifier();
+    byte[] cv = cvp.getColumnVisibility();
+    byte[] value = cvp.getValue();
+    int height = randomHeight();
+
+    long address =
+        allocate(NEXT + 8 * height + row.length + cf.length + cq.length + cv.length + value.length);
+    ByteBuffer chunk = chunk(address);
+    int offset = offset(address);
+
+    chunk.putInt(offset + HEIGHT, height);
+    chunk.putInt(offset + KV_COUNT, kvCount);
+    chunk.putLong(offset + TIMESTAMP, cvp.getTimestamp());
+    chunk.putInt(offset + ROW_LENGTH, row.length);
+    chunk.putInt(offset + CF_LENGTH, cf.length);
+    chunk.putInt(offset + CQ_LENGTH, cq.length);
+    chunk.putInt(offset + CV_LENGTH, cv.length);
+    chunk.putInt(offset + VALUE_LENGTH, value.length);
+    chunk.put(offset + DELETED, (byte) (cvp.isDeleted() ? 1 : 0));
+
+    ByteBuffer data = chunk.duplicate();
+    data.position(offset + NEXT + 8 * height);
+    data.put(row).put(cf).put(cq).put(cv).put(value);
+
+    SearchKey key = new SearchKey(
+        new MemKey(row, cf, cq, cv, cvp.getTimestamp(), cvp.isDeleted(), false, kvCount));
+    long[] preds = new long[MAX_HEIGHT];
+    long[] succs = new long[MAX_HEIGHT];
+    findSplice(key, preds, succs);
+
+    for (int level = 0; level < height; level++) {
+      while (true) {
+        POINTER.set(chunk, offset + NEXT + 8 * level, succs[level]);
+        if (casNext(preds[level], level, succs[level], address)) {
+          break;
+        }
+        // another entry was linked in after the predecessor, search again from it
+        findSplice(key, preds[level], level, preds, succs);
+      }
+    }
+
+    size.incrementAndGet();
+  }
+
+  public void mutate(List<Mutation> mutations, int kvCount) {
+    readLock.lock();
+    try {
+      for (Mutation m : mutations) {
+        byte[] row = m.getRow();
+        for (ColumnUpdate cvp : m.getUpdates()) {
+          put(row, cvp, kvCount++);
+        }
+      }
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * @return the bytes of off heap memory allocated to the chunks of the map, including the space
+   *         not yet used by entries
+   */
+  public long getMemoryUsed() {
+    return memoryUsed.get();
+  }
+
+  /**
+   * Frees the memory of the map, after waiting for reads and writes in progress. Using the map or
+   * its iterators after it is deleted throws an {@link IllegalStateException}.
+   */
+  public void delete() {
+    // the write lock is taken before synchronizing, writes hold the read lock while they allocate
+    writeLock.lock();
+    try {
+      synchronized (this) {
+        getChunks();
+        chunks = null;
+        current = null;
+        for (ByteBuffer buffer : allocated) {
+          free(buffer);
+        }
+        allocated.clear();
+        memoryUsed.set(0);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Unable to free off heap map chunk, it will be freed by the GC", e);
+    }
+  }
+
+  private MemKey readKey(long address) {
+    ByteBuffer chunk = chunk(address);
+    int offset = offset(address);
+
+    byte[] row = new byte[chunk.getInt(offset + ROW_LENGTH)];
+    byte[] cf = new byte[chunk.getInt(offset + CF_LENGTH)];
+    byte[] cq = new byte[chunk.getInt(offset + CQ_LENGTH)];
+    byte[] cv = new byte[chunk.getInt(offset + CV_LENGTH)];
+
+    ByteBuffer data = chunk.duplicate();
+    data.position(offset + NEXT + 8 * chunk.getInt(offset + HEIGHT));
+    data.get(row).get(cf).get(cq).get(cv);
+
+    return new MemKey(row, cf, cq, cv, chunk.getLong(offset + TIMESTAMP),
+        chunk.get(offset + DELETED) != 0, false, chunk.getInt(offset + KV_COUNT));
+  }
+
+  private Value readValue(long address) {
+    ByteBuffer chunk = chunk(address);
+    int offset = offset(address);
+
+    byte[] value = new byte[chunk.getInt(offset + VALUE_LENGTH)];
+
+    ByteBuffer data = chunk.duplicate();
+    data.position(offset + NEXT + 8 * chunk.getInt(offset + HEIGHT)
+        + chunk.getInt(offset + ROW_LENGTH) + chunk.getInt(offset + CF_LENGTH)
+        + chunk.getInt(offset + CQ_LENGTH) + chunk.getInt(offset + CV_LENGTH));
+    data.get(value);
+
+    return new Value(value);
+  }
+
+  private static class OHMSKVIter implements InterruptibleIterator {
+
+    private final OffHeapMap map;
+    private long address = 0;
+    private Key topKey = null;
+    private Value topValue = null;
+
+    private Range range = new Range();
+    private AtomicBoolean interruptFlag;
+    private int interruptCheckCount = 0;
+
+    private OHMSKVIter(OffHeapMap map, AtomicBoolean interruptFlag) {
+      this.map = map;
+      this.interruptFlag = interruptFlag;
+    }
+
+    @Override
+    public Key getTopKey() {
+      return topKey;
+    }
+
+    @Override
+    public Value getTopValue() {
+      return topValue;
+    }
+
+    @Override
+    public boolean hasTop() {
+      return topKey != null;
+    }
+
+    private void readTop() {
+      if (address == 0) {
+        topKey = null;
+        topValue = null;
+        return;
+      }
+
+      topKey = map.readKey(address);
+      if (range.afterEndKey(topKey)) {
+        address = 0;
+        topKey = null;
+        topValue = null;
+      } else {
+        topValue = map.readValue(address);
+      }
+    }
+
+    @Override
+    public void next() {
+      if (topKey == null)
+        throw new IllegalStateException();
+
+      // only check the interrupt flag every 100th call to next, checking it every time is slow
+      if (interruptFlag != null && interruptCheckCount++ % 100 == 0 && interruptFlag.get())
+        throw new IterationInterruptedException();
+
+      map.readLock.lock();
+      try {
+        address = map.next(address, 0);
+        readTop();
+      } finally {
+        map.readLock.unlock();
+      }
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+
+      if (interruptFlag != null && interruptFlag.get())
+        throw new IterationInterruptedException();
+
+      this.range = range;
+
+      Key key = range.getStartKey();
+      map.readLock.lock();
+      try {
+        address = key == null ? map.next(0, 0) : map.ceiling(key);
+        readTop();
+      } finally {
+        map.readLock.unlock();
+      }
+
+      while (hasTop() && range.beforeStartKey(getTopKey())) {
+        next();
+      }
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) {
+      throw new UnsupportedOperationException("init");
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      if (env != null && env.isSamplingEnabled()) {
+        throw new SampleNotPresentException();
+      }
+      return new OHMSKVIter(map, interruptFlag);
+    }
+
+    @Override
+    public void setInterruptFlag(AtomicBoolean flag) {
+      this.interruptFlag = flag;
+    }
+  }
+
+  public InterruptibleIterator skvIterator() {
+    return new OHMSKVIter(this, null);
+  }
+}
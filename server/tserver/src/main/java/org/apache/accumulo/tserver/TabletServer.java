@@ -342,8 +342,9 @@ public class TabletServer extends AbstractServer {
         .maxWait(walFailureRetryMax, TimeUnit.MILLISECONDS).backOffFactor(1.5)
         .logInterval(3, TimeUnit.MINUTES).createFactory();
 
-    logger = new TabletServerLogger(this, walMaxSize, syncCounter, flushCounter,
-        walCreationRetryFactory, walWritingRetryFactory, walMaxAge);
+    logger =
+        new TabletServerLogger(this, walMaxSize, syncCounter, flushCounter, walCreationRetryFactory,
+            walWritingRetryFactory, walMaxAge, aconf.getCount(Property.TSERV_WAL_STREAMS));
     this.resourceManager = new TabletServerResourceManager(context);
     this.security = AuditedSecurityOperation.getInstance(context);
 
@@ -911,6 +912,9 @@ public class TabletServer extends AbstractServer {
     log.debug("Stopping Thrift Servers");
     TServerUtils.stopTServer(server);
 
+    log.debug("Closing block caches");
+    resourceManager.close();
+
     try {
       log.debug("Closing filesystems");
       getVolumeManager().close();
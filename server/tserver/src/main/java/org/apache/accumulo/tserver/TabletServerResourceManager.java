@@ -20,9 +20,14 @@ package org.apache.accumulo.tserver;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toUnmodifiableMap;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_CACHE_L2_DROPPED;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_CACHE_L2_HITS;
+import static org.apache.accumulo.core.metrics.MetricsProducer.METRICS_TSERVER_CACHE_L2_REQUESTS;
 import static org.apache.accumulo.fate.util.UtilWaitThread.sleepUninterruptibly;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -53,6 +58,10 @@ import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.DiskBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.TieredBlockCache;
+import org.apache.accumulo.core.file.blockfile.impl.PinnedBlockTier;
+import org.apache.accumulo.core.file.blockfile.impl.ReadAheadPool;
 import org.apache.accumulo.core.file.blockfile.impl.ScanCacheProvider;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager;
@@ -84,6 +93,9 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
 
 /**
  * ResourceManager is responsible for managing the resources of all tablets within a tablet server.
@@ -102,6 +114,10 @@ public class TabletServerResourceManager {
   private final ExecutorService summaryRetrievalPool;
   private final ExecutorService summaryPartitionPool;
   private final ExecutorService summaryRemotePool;
+  private final ExecutorService scanPartitionPool;
+  private final ExecutorService readAheadPool;
+  private final ExecutorService compressionPool;
+  private final ReadAheadPool readAhead;
 
   private final Map<String,ExecutorService> scanExecutors;
   private final Map<String,ScanExecutor> scanExecutorChoices;
@@ -115,6 +131,7 @@ public class TabletServerResourceManager {
   private final MemoryManagementFramework memMgmt;
 
   private final BlockCacheManager cacheManager;
+  private final PinnedBlockTier pinnedTier;
   private final BlockCache _dCache;
   private final BlockCache _iCache;
   private final BlockCache _sCache;
@@ -246,6 +263,37 @@ public class TabletServerResourceManager {
 
   }
 
+  /**
+   * Puts a local disk cache behind a block cache, if a second level cache directory is configured.
+   */
+  private static BlockCache addSecondLevel(AccumuloConfiguration acuConf, CacheType type,
+      BlockCache cache) {
+    String dir = acuConf.get(Property.TSERV_CACHE_L2_PATH);
+    if (dir == null || dir.isBlank()) {
+      return cache;
+    }
+    try {
+      DiskBlockCache l2 = new DiskBlockCache(Paths.get(dir, type.name().toLowerCase()),
+          acuConf.getAsBytes(Property.TSERV_CACHE_L2_SIZE));
+      log.info("Using second level {} block cache in {}", type, dir);
+      Tags tags = Tags.of("cache", type.name());
+      FunctionCounter.builder(METRICS_TSERVER_CACHE_L2_HITS, l2, DiskBlockCache::getHitCount)
+          .tags(tags).description("Blocks read from the second level cache")
+          .register(Metrics.globalRegistry);
+      FunctionCounter
+          .builder(METRICS_TSERVER_CACHE_L2_REQUESTS, l2, DiskBlockCache::getRequestCount)
+          .tags(tags).description("Lookups in the second level cache")
+          .register(Metrics.globalRegistry);
+      FunctionCounter
+          .builder(METRICS_TSERVER_CACHE_L2_DROPPED, l2, DiskBlockCache::getDroppedWrites)
+          .tags(tags).description("Blocks not written to the second level cache")
+          .register(Metrics.globalRegistry);
+      return new TieredBlockCache(cache, l2);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open second level block cache in " + dir, e);
+    }
+  }
+
   @SuppressFBWarnings(value = "DM_GC",
       justification = "GC is run to get a good estimate of memory availability")
   public TabletServerResourceManager(ServerContext context) {
@@ -253,8 +301,9 @@ public class TabletServerResourceManager {
     final AccumuloConfiguration acuConf = context.getConfiguration();
 
     long maxMemory = acuConf.getAsBytes(Property.TSERV_MAXMEM);
-    boolean usingNativeMap =
-        acuConf.getBoolean(Property.TSERV_NATIVEMAP_ENABLED) && NativeMap.isLoaded();
+    // the native and off heap maps both hold their data outside of the Java heap
+    boolean usingNativeMap = acuConf.getBoolean(Property.TSERV_OFFHEAPMAP_ENABLED)
+        || (acuConf.getBoolean(Property.TSERV_NATIVEMAP_ENABLED) && NativeMap.isLoaded());
 
     long totalQueueSize = acuConf.getAsBytes(Property.TSERV_TOTAL_MUTATION_QUEUE_MAX);
 
@@ -266,13 +315,17 @@ public class TabletServerResourceManager {
 
     cacheManager.start(new BlockCacheConfiguration(acuConf));
 
-    _iCache = cacheManager.getBlockCache(CacheType.INDEX);
-    _dCache = cacheManager.getBlockCache(CacheType.DATA);
+    _iCache = addSecondLevel(acuConf, CacheType.INDEX, cacheManager.getBlockCache(CacheType.INDEX));
+    _dCache = addSecondLevel(acuConf, CacheType.DATA, cacheManager.getBlockCache(CacheType.DATA));
     _sCache = cacheManager.getBlockCache(CacheType.SUMMARY);
 
     long dCacheSize = _dCache.getMaxHeapSize();
     long iCacheSize = _iCache.getMaxHeapSize();
     long sCacheSize = _sCache.getMaxHeapSize();
+    long pinnedIndexSize = acuConf.getAsBytes(Property.TSERV_INDEXCACHE_PINNED_SIZE);
+    pinnedTier = pinnedIndexSize > 0 ? new PinnedBlockTier(pinnedIndexSize) : null;
+    // pinned index blocks are held on the heap alongside the caches
+    iCacheSize += pinnedIndexSize;
 
     Runtime runtime = Runtime.getRuntime();
     if (usingNativeMap) {
@@ -354,6 +407,25 @@ public class TabletServerResourceManager {
         () -> context.getConfiguration().getCount(Property.TSERV_SUMMARY_PARTITION_THREADS),
         "summary partition", (ThreadPoolExecutor) summaryPartitionPool);
 
+    scanPartitionPool =
+        ThreadPools.createExecutorService(acuConf, Property.TSERV_SCAN_PARTITION_THREADS);
+    modifyThreadPoolSizesAtRuntime(
+        () -> context.getConfiguration().getCount(Property.TSERV_SCAN_PARTITION_THREADS),
+        "scan partition", (ThreadPoolExecutor) scanPartitionPool);
+
+    readAheadPool = ThreadPools.createExecutorService(acuConf, Property.TSERV_READ_AHEAD_THREADS);
+    modifyThreadPoolSizesAtRuntime(
+        () -> context.getConfiguration().getCount(Property.TSERV_READ_AHEAD_THREADS),
+        "block read ahead", (ThreadPoolExecutor) readAheadPool);
+    readAhead =
+        new ReadAheadPool(readAheadPool, acuConf.getAsBytes(Property.TSERV_READ_AHEAD_MAX_MEMORY));
+
+    compressionPool =
+        ThreadPools.createExecutorService(acuConf, Property.TSERV_COMPRESSION_THREADS);
+    modifyThreadPoolSizesAtRuntime(
+        () -> context.getConfiguration().getCount(Property.TSERV_COMPRESSION_THREADS),
+        "compaction block compression", (ThreadPoolExecutor) compressionPool);
+
     Collection<ScanExecutorConfig> scanExecCfg = acuConf.getScanExecutors();
     Map<String,Queue<Runnable>> scanExecQueues = new HashMap<>();
     scanExecutors = scanExecCfg.stream().collect(
@@ -667,7 +739,7 @@ public class TabletServerResourceManager {
       }
 
       return fileManager.newScanFileManager(extent,
-          new ScanCacheProvider(tableConf, scanDispatch, _iCache, _dCache));
+          new ScanCacheProvider(tableConf, scanDispatch, _iCache, _dCache, readAhead, pinnedTier));
     }
 
     // END methods that Tablets call to manage their set of open map files
@@ -850,6 +922,29 @@ public class TabletServerResourceManager {
     return _sCache;
   }
 
+  /**
+   * Stops reading blocks ahead of scans and compressing blocks for compactions, closes the second
+   * level block caches, which waits for their queued writes to reach the disk, unpins index blocks
+   * and stops the block cache manager. Called once the tablet server no longer serves tablets.
+   */
+  public void close() {
+    readAheadPool.shutdown();
+    compressionPool.shutdown();
+    for (BlockCache cache : List.of(_iCache, _dCache)) {
+      if (cache instanceof TieredBlockCache) {
+        try {
+          ((TieredBlockCache) cache).close();
+        } catch (IOException e) {
+          log.warn("Failed to close second level block cache", e);
+        }
+      }
+    }
+    if (pinnedTier != null) {
+      pinnedTier.close();
+    }
+    cacheManager.stop();
+  }
+
   public Cache<String,Long> getFileLenCache() {
     return fileLenCache;
   }
@@ -862,6 +957,14 @@ public class TabletServerResourceManager {
     return summaryPartitionPool;
   }
 
+  public ExecutorService getScanPartitionExecutor() {
+    return scanPartitionPool;
+  }
+
+  public ExecutorService getCompressionExecutor() {
+    return compressionPool;
+  }
+
   public ExecutorService getSummaryRemoteExecutor() {
     return summaryRemotePool;
   }
@@ -384,7 +384,7 @@ public class ThriftClientHandler extends ClientServiceHandler implements TabletC
     try {
       bresult = scanSession.nextBatchTask.get(MAX_TIME_TO_WAIT_FOR_SCAN_RESULT_MILLIS,
           TimeUnit.MILLISECONDS);
-      scanSession.nextBatchTask = null;
+      scanSession.nextBatchReturned();
     } catch (ExecutionException e) {
       server.sessionManager.removeSession(scanID);
       if (e.getCause() instanceof NotServingTabletException) {
@@ -398,7 +398,7 @@ public class ThriftClientHandler extends ClientServiceHandler implements TabletC
         sleepUninterruptibly(MAX_TIME_TO_WAIT_FOR_SCAN_RESULT_MILLIS, TimeUnit.MILLISECONDS);
         List<KVEntry> empty = Collections.emptyList();
         bresult = new ScanBatch(empty, true);
-        scanSession.nextBatchTask = null;
+        scanSession.nextBatchReturned();
       } else {
         throw new RuntimeException(e);
       }
@@ -427,12 +427,11 @@ public class ThriftClientHandler extends ClientServiceHandler implements TabletC
 
     scanSession.batchCount++;
 
-    if (scanResult.more && scanSession.batchCount > scanSession.readaheadThreshold) {
+    if (scanResult.more && scanSession.batchCount > scanSession.readaheadThreshold
+        && scanSession.needsReadAhead()) {
       // start reading next batch while current batch is transmitted
       // to client
-      scanSession.nextBatchTask = new NextBatchTask(server, scanID, scanSession.interruptFlag);
-      server.resourceManager.executeReadAhead(scanSession.extent,
-          getScanDispatcher(scanSession.extent), scanSession, scanSession.nextBatchTask);
+      readAhead(scanID, scanSession);
     }
 
     if (!scanResult.more) {
@@ -442,6 +441,25 @@ public class ThriftClientHandler extends ClientServiceHandler implements TabletC
     return scanResult;
   }
 
+  /**
+   * Starts reading the next batch of a scan ahead of the client. For user tables, each batch read
+   * that is not the last one starts reading the one after it, until
+   * {@link Property#TSERV_SCAN_READ_AHEAD_BATCHES} batches are waiting for the client. Read ahead
+   * starts again when the client takes one of them.
+   */
+  private void readAhead(long scanID, SingleScanSession scanSession) {
+    ScanDispatcher dispatcher = getScanDispatcher(scanSession.extent);
+    int maxBatches = dispatcher == null ? 1
+        : server.getConfiguration().getCount(Property.TSERV_SCAN_READ_AHEAD_BATCHES);
+    NextBatchTask task = new NextBatchTask(server, scanID, scanSession.interruptFlag, () -> {
+      if (scanSession.canReadAhead(maxBatches)) {
+        readAhead(scanID, scanSession);
+      }
+    });
+    scanSession.addReadAhead(task);
+    server.resourceManager.executeReadAhead(scanSession.extent, dispatcher, scanSession, task);
+  }
+
   @Override
   public void closeScan(TInfo tinfo, long scanID) {
     final SingleScanSession ss = (SingleScanSession) server.sessionManager.removeSession(scanID);
@@ -1791,12 +1809,7 @@ public class ThriftClientHandler extends ClientServiceHandler implements TabletC
 
   @Override
   public List<String> getActiveLogs(TInfo tinfo, TCredentials credentials) {
-    String log = server.logger.getLogFile();
-    // Might be null if there no active logger
-    if (log == null) {
-      return Collections.emptyList();
-    }
-    return Collections.singletonList(log);
+    return server.logger.getLogFiles();
   }
 
   @Override
@@ -38,7 +38,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -53,6 +55,8 @@ import org.apache.accumulo.core.crypto.CryptoServiceFactory.ClassloaderType;
 import org.apache.accumulo.core.crypto.CryptoUtils;
 import org.apache.accumulo.core.crypto.streams.NoFlushOutputStream;
 import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression.Algorithm;
 import org.apache.accumulo.core.spi.crypto.CryptoEnvironment;
 import org.apache.accumulo.core.spi.crypto.CryptoEnvironment.Scope;
 import org.apache.accumulo.core.spi.crypto.CryptoService;
@@ -133,6 +137,9 @@ public class DfsLogger implements Comparable<DfsLogger> {
 
   private static final LogFileValue EMPTY = new LogFileValue();
 
+  // the bad compression settings already warned about, so each is only logged once
+  private static final Set<String> warnedCompressionTypes = ConcurrentHashMap.newKeySet();
+
   private boolean closed = false;
 
   private class LogSyncingTask implements Runnable {
@@ -308,6 +315,8 @@ public class DfsLogger implements Comparable<DfsLogger> {
   private AtomicLong syncCounter;
   private AtomicLong flushCounter;
   private final long slowFlushMillis;
+  // compresses the mutations of MANY_MUTATIONS entries, or null to write them uncompressed
+  private final Algorithm compression;
   private long writes = 0;
 
   private DfsLogger(ServerContext context, ServerResources conf) {
@@ -315,6 +324,35 @@ public class DfsLogger implements Comparable<DfsLogger> {
     this.conf = conf;
     this.slowFlushMillis =
         conf.getConfiguration().getTimeInMillis(Property.TSERV_SLOW_FLUSH_MILLIS);
+    this.compression = getCompression(conf.getConfiguration());
+  }
+
+  /**
+   * @return the algorithm to compress the mutations of MANY_MUTATIONS entries with, or null to
+   *         write them uncompressed. An unknown or unsupported algorithm is logged and not used, so
+   *         that a bad setting does not stop the tablet server from creating logs.
+   */
+  static Algorithm getCompression(AccumuloConfiguration conf) {
+    String compressionType = conf.get(Property.TSERV_WAL_COMPRESSION_TYPE);
+    if (compressionType.equals(Compression.COMPRESSION_NONE)) {
+      return null;
+    }
+    try {
+      Algorithm algorithm = Compression.getCompressionAlgorithmByName(compressionType);
+      if (algorithm.isSupported()) {
+        return algorithm;
+      }
+      if (warnedCompressionTypes.add(compressionType)) {
+        log.warn("Compression {} for {} is not supported, writing logs uncompressed",
+            compressionType, Property.TSERV_WAL_COMPRESSION_TYPE.getKey());
+      }
+    } catch (IllegalArgumentException e) {
+      if (warnedCompressionTypes.add(compressionType)) {
+        log.warn("Unknown compression {} for {}, writing logs uncompressed", compressionType,
+            Property.TSERV_WAL_COMPRESSION_TYPE.getKey());
+      }
+    }
+    return null;
   }
 
   public DfsLogger(ServerContext context, ServerResources conf, AtomicLong syncCounter,
@@ -608,6 +646,9 @@ public class DfsLogger implements Comparable<DfsLogger> {
       key.tabletId = tabletMutations.getTid();
       LogFileValue value = new LogFileValue();
       value.mutations = tabletMutations.getMutations();
+      if (compression != null) {
+        value.compress(compression);
+      }
       data.add(new Pair<>(key, value));
       durability = maxDurability(tabletMutations.getDurability(), durability);
     }
@@ -28,7 +28,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -56,6 +61,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 
 public class LogSorter {
 
@@ -71,6 +77,10 @@ public class LogSorter {
     private long bytesCopied = -1;
     private long sortStart = 0;
     private long sortStop = -1;
+    // time spent in each phase of the sort, summed over the threads doing it
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong sortNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
 
     @Override
     public Processor newProcessor() {
@@ -156,27 +166,99 @@ public class LogSorter {
           Property.TSERV_SORT_BUFFER_SIZE);
       final long bufferSize = sortedLogConf.getAsBytes(prop);
       Thread.currentThread().setName("Sorting " + name + " for recovery");
-      while (true) {
-        final ArrayList<Pair<LogFileKey,LogFileValue>> buffer = new ArrayList<>();
-        try {
-          long start = input.getPos();
-          while (input.getPos() - start < bufferSize) {
-            LogFileKey key = new LogFileKey();
-            LogFileValue value = new LogFileValue();
-            key.readFields(decryptingInput);
-            value.readFields(decryptingInput);
-            buffer.add(new Pair<>(key, value));
+
+      // This thread reads the log into buffers, which are sorted and written by the sort threads.
+      // Each buffer being read or sorted holds a permit, which bounds the memory used.
+      Semaphore buffers = new Semaphore(sortThreads);
+      List<Future<?>> spills = new ArrayList<>();
+      boolean success = false;
+      try {
+        boolean eof = false;
+        while (!eof) {
+          buffers.acquireUninterruptibly();
+          final ArrayList<Pair<LogFileKey,LogFileValue>> buffer = new ArrayList<>();
+          long t1 = System.nanoTime();
+          try {
+            long start = input.getPos();
+            while (input.getPos() - start < bufferSize) {
+              LogFileKey key = new LogFileKey();
+              LogFileValue value = new LogFileValue();
+              key.readFields(decryptingInput);
+              value.readFields(decryptingInput);
+              buffer.add(new Pair<>(key, value));
+            }
+          } catch (EOFException ex) {
+            eof = true;
+          } finally {
+            readNanos.addAndGet(System.nanoTime() - t1);
+          }
+
+          final int bufferPart = part++;
+          spills.add(sortThreadPool.submit(() -> {
+            try {
+              spill(destPath, buffer, bufferPart);
+            } finally {
+              buffers.release();
+            }
+            return null;
+          }));
+          checkSpills(spills, false);
+        }
+        checkSpills(spills, true);
+        success = true;
+      } finally {
+        if (!success) {
+          // let the spills finish before the sort is marked failed
+          for (Future<?> spill : spills) {
+            try {
+              spill.get();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              break;
+            } catch (ExecutionException e) {
+              log.debug("Spill of sort {} failed", name, e);
+            }
           }
-          writeBuffer(destPath, buffer, part++);
-          buffer.clear();
-        } catch (EOFException ex) {
-          writeBuffer(destPath, buffer, part++);
-          break;
         }
       }
       fs.create(new Path(destPath, "finished")).close();
-      log.info("Finished log sort {} {} bytes {} parts in {}ms", name, getBytesCopied(), part,
-          getSortTime());
+      log.info("Finished log sort {} {} bytes {} parts in {}ms (read {}ms, sort {}ms, write {}ms)",
+          name, getBytesCopied(), part, getSortTime(), getReadTime(), getSortPhaseTime(),
+          getWriteTime());
+    }
+
+    private void spill(String destPath, List<Pair<LogFileKey,LogFileValue>> buffer, int part)
+        throws IOException {
+      long t1 = System.nanoTime();
+      Map<Key,List<Mutation>> sorted = sortBuffer(buffer);
+      long t2 = System.nanoTime();
+      sortNanos.addAndGet(t2 - t1);
+      writeSorted(destPath, sorted, part);
+      writeNanos.addAndGet(System.nanoTime() - t2);
+    }
+
+    /**
+     * Removes the finished spills from the list, throwing the exception of any that failed. When
+     * wait is true, waits for all of the spills to finish.
+     */
+    private void checkSpills(List<Future<?>> spills, boolean wait) throws IOException {
+      var iter = spills.iterator();
+      while (iter.hasNext()) {
+        Future<?> spill = iter.next();
+        if (wait || spill.isDone()) {
+          try {
+            spill.get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+          } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+          }
+          iter.remove();
+        }
+      }
     }
 
     synchronized void close() throws IOException {
@@ -202,9 +284,23 @@ public class LogSorter {
     synchronized long getBytesCopied() throws IOException {
       return input == null ? bytesCopied : input.getPos();
     }
+
+    long getReadTime() {
+      return TimeUnit.NANOSECONDS.toMillis(readNanos.get());
+    }
+
+    long getSortPhaseTime() {
+      return TimeUnit.NANOSECONDS.toMillis(sortNanos.get());
+    }
+
+    long getWriteTime() {
+      return TimeUnit.NANOSECONDS.toMillis(writeNanos.get());
+    }
   }
 
   ThreadPoolExecutor threadPool;
+  private final ThreadPoolExecutor sortThreadPool;
+  private final int sortThreads;
   private final ServerContext context;
   private double walBlockSize;
 
@@ -215,6 +311,9 @@ public class LogSorter {
     int threadPoolSize = conf.getCount(conf.resolve(Property.TSERV_WAL_SORT_MAX_CONCURRENT,
         Property.TSERV_RECOVERY_MAX_CONCURRENT));
     this.threadPool = ThreadPools.createFixedThreadPool(threadPoolSize, this.getClass().getName());
+    this.sortThreads = conf.getCount(Property.TSERV_WAL_SORT_THREADS);
+    this.sortThreadPool =
+        ThreadPools.createFixedThreadPool(threadPoolSize * sortThreads, "WAL sort spill");
     this.walBlockSize = DfsLogger.getWalBlockSize(conf);
   }
 
@@ -241,12 +340,14 @@ public class LogSorter {
   @VisibleForTesting
   void writeBuffer(String destPath, List<Pair<LogFileKey,LogFileValue>> buffer, int part)
       throws IOException {
-    String filename = String.format("part-r-%05d.rf", part);
-    Path path = new Path(destPath, filename);
-    FileSystem fs = context.getVolumeManager().getFileSystemByPath(path);
-    Path fullPath = fs.makeQualified(path);
+    writeSorted(destPath, sortBuffer(buffer), part);
+  }
 
-    // convert the LogFileKeys to Keys, sort and collect the mutations
+  /**
+   * Convert the LogFileKeys to Keys, sort and collect the mutations.
+   */
+  private static Map<Key,List<Mutation>> sortBuffer(List<Pair<LogFileKey,LogFileValue>> buffer)
+      throws IOException {
     Map<Key,List<Mutation>> keyListMap = new TreeMap<>();
     for (Pair<LogFileKey,LogFileValue> pair : buffer) {
       var logFileKey = pair.getFirst();
@@ -259,6 +360,15 @@ public class LogSorter {
         keyListMap.put(logFileKey.toKey(), muts);
       }
     }
+    return keyListMap;
+  }
+
+  private void writeSorted(String destPath, Map<Key,List<Mutation>> keyListMap, int part)
+      throws IOException {
+    String filename = String.format("part-r-%05d.rf", part);
+    Path path = new Path(destPath, filename);
+    FileSystem fs = context.getVolumeManager().getFileSystemByPath(path);
+    Path fullPath = fs.makeQualified(path);
 
     try (var writer = FileOperations.getInstance().newWriterBuilder()
         .forFile(fullPath.toString(), fs, fs.getConf(), context.getCryptoService())
@@ -293,6 +403,9 @@ public class LogSorter {
           log.warn("Error getting bytes read");
         }
         status.runtime = (int) entries.getValue().getSortTime();
+        log.debug("Sort {} has spent {}ms reading, {}ms sorting and {}ms writing", status.name,
+            entries.getValue().getReadTime(), entries.getValue().getSortPhaseTime(),
+            entries.getValue().getWriteTime());
         result.add(status);
       }
       return result;
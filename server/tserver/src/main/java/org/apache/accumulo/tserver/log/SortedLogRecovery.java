@@ -38,7 +38,16 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
@@ -51,6 +60,8 @@ import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
@@ -63,10 +74,30 @@ public class SortedLogRecovery {
 
   private static final Logger log = LoggerFactory.getLogger(SortedLogRecovery.class);
 
+  // the number of log entries read ahead of the mutations being replayed
+  private static final int READ_AHEAD = 16;
+
   private final ServerContext context;
+  private final Cache<Path,Map<KeyExtent,Integer>> definedTablets;
+  private final ExecutorService readAheadPool;
 
   public SortedLogRecovery(ServerContext context) {
+    this(context, null, null);
+  }
+
+  /**
+   * @param definedTablets
+   *          a cache of the tablets defined by each recovery log, shared by the recoveries of
+   *          tablets that use the same logs, or null to not cache them
+   * @param readAheadPool
+   *          reads the mutations to replay while they are being replayed, or null to read them on
+   *          the thread replaying them
+   */
+  public SortedLogRecovery(ServerContext context, Cache<Path,Map<KeyExtent,Integer>> definedTablets,
+      ExecutorService readAheadPool) {
     this.context = context;
+    this.definedTablets = definedTablets;
+    this.readAheadPool = readAheadPool;
   }
 
   static LogFileKey maxKey(LogEvents event) {
@@ -100,33 +131,51 @@ public class SortedLogRecovery {
     return key;
   }
 
-  private int findMaxTabletId(KeyExtent extent, List<Path> recoveryLogDirs) throws IOException {
-    int tabletId = -1;
-
-    try (var rli = new RecoveryLogsIterator(context, recoveryLogDirs, minKey(DEFINE_TABLET),
-        maxKey(DEFINE_TABLET), true)) {
+  /**
+   * Reads all of the DEFINE_TABLET events of a recovery log.
+   *
+   * @return the maximum tablet id of each tablet defined in the log
+   */
+  private Map<KeyExtent,Integer> readDefinedTablets(Path recoveryLogDir) throws IOException {
+    Map<KeyExtent,Integer> tabletIds = new HashMap<>();
 
-      KeyExtent alternative = extent;
-      if (extent.isRootTablet()) {
-        alternative = RootTable.OLD_EXTENT;
-      }
+    try (var rli = new RecoveryLogsIterator(context, Collections.singletonList(recoveryLogDir),
+        minKey(DEFINE_TABLET), maxKey(DEFINE_TABLET), true)) {
 
       while (rli.hasNext()) {
         LogFileKey key = rli.next().getKey();
 
         checkState(key.event == DEFINE_TABLET); // should only fail if bug elsewhere
+        checkState(key.tabletId >= 0, "tabletId %s for %s is negative", key.tabletId, key.tablet);
 
-        if (key.tablet.equals(extent) || key.tablet.equals(alternative)) {
-          checkState(key.tabletId >= 0, "tabletId %s for %s is negative", key.tabletId, extent);
-          checkState(tabletId == -1 || key.tabletId >= tabletId); // should only fail if bug in
-          // RecoveryLogsIterator
-
-          if (tabletId != key.tabletId) {
-            tabletId = key.tabletId;
-          }
-        }
+        Integer previous = tabletIds.put(key.tablet, key.tabletId);
+        // should only fail if bug in RecoveryLogsIterator
+        checkState(previous == null || key.tabletId >= previous);
       }
     }
+    return tabletIds;
+  }
+
+  private Map<KeyExtent,Integer> getDefinedTablets(Path recoveryLogDir) throws IOException {
+    if (definedTablets == null) {
+      return readDefinedTablets(recoveryLogDir);
+    }
+    try {
+      // concurrent recoveries of tablets in the same log wait for a single read of it
+      return definedTablets.get(recoveryLogDir, () -> readDefinedTablets(recoveryLogDir));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private int findMaxTabletId(KeyExtent extent, Path recoveryLogDir) throws IOException {
+    Map<KeyExtent,Integer> tabletIds = getDefinedTablets(recoveryLogDir);
+
+    int tabletId = tabletIds.getOrDefault(extent, -1);
+    if (extent.isRootTablet()) {
+      tabletId = Math.max(tabletId, tabletIds.getOrDefault(RootTable.OLD_EXTENT, -1));
+    }
     return tabletId;
   }
 
@@ -144,7 +193,7 @@ public class SortedLogRecovery {
     Map<Integer,List<Path>> logsThatDefineTablet = new HashMap<>();
 
     for (Path walDir : recoveryDirs) {
-      int tabletId = findMaxTabletId(extent, Collections.singletonList(walDir));
+      int tabletId = findMaxTabletId(extent, walDir);
       if (tabletId == -1) {
         log.debug("Did not find tablet {} in recovery log {}", extent, walDir.getName());
       } else {
@@ -194,6 +243,119 @@ public class SortedLogRecovery {
 
   }
 
+  /**
+   * Reads the entries of a source iterator on another thread, while the entries already read are
+   * consumed. The source must not be used until this iterator is closed.
+   */
+  static class ReadAheadIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final ExecutorService executor;
+    private final Future<?> reader;
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+    private Object next = null;
+
+    ReadAheadIterator(Iterator<T> source, int capacity, ExecutorService executor) {
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.executor = executor;
+      this.reader = executor.submit(() -> {
+        try {
+          while (!closed && source.hasNext()) {
+            put(source.next());
+          }
+          put(END);
+        } catch (InterruptedException e) {
+          // the executor is shutting down, so the rest of the source will not be read
+          failure = e;
+        } catch (RuntimeException | Error e) {
+          failure = e;
+        }
+        return null;
+      });
+    }
+
+    private void put(Object o) throws InterruptedException {
+      while (!closed && !queue.offer(o, 100, TimeUnit.MILLISECONDS)) {}
+    }
+
+    /**
+     * @return true if the reader will not queue any more entries. A reader that the executor
+     *         dropped when it shut down never runs, so its future is never done.
+     */
+    private boolean isReaderDone() {
+      return reader.isDone() || executor.isTerminated();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null) {
+        try {
+          next = queue.poll(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+        if (next == null && isReaderDone()) {
+          // the reader queues END only after reading all of the source
+          next = queue.poll();
+          if (next == null) {
+            if (failure == null) {
+              failure = new IllegalStateException("Stopped reading ahead before the end of logs");
+            }
+            next = END;
+          }
+        }
+      }
+      if (next == END) {
+        if (failure != null) {
+          Throwables.throwIfUnchecked(failure);
+          throw new IllegalStateException(failure);
+        }
+        return false;
+      }
+      return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T result = (T) next;
+      next = null;
+      return result;
+    }
+
+    /**
+     * Stops reading the source and waits for the reader to finish with it.
+     */
+    @Override
+    public void close() {
+      closed = true;
+      queue.clear();
+      while (true) {
+        try {
+          reader.get(100, TimeUnit.MILLISECONDS);
+          return;
+        } catch (TimeoutException e) {
+          if (isReaderDone()) {
+            return;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException | CancellationException e) {
+          log.debug("Failed to read ahead", e);
+          return;
+        }
+      }
+    }
+  }
+
   private long findRecoverySeq(List<Path> recoveryLogs, Set<String> tabletFiles, int tabletId)
       throws IOException {
     HashSet<String> suffixes = new HashSet<>();
@@ -261,22 +423,34 @@ public class SortedLogRecovery {
     LogFileKey end = maxKey(MUTATION, tabletId);
 
     try (var rli = new RecoveryLogsIterator(context, recoveryLogs, start, end, false)) {
-      while (rli.hasNext()) {
-        Entry<LogFileKey,LogFileValue> entry = rli.next();
-        LogFileKey logFileKey = entry.getKey();
+      if (readAheadPool == null) {
+        playbackMutations(rli, mr, tabletId, recoverySeq);
+      } else {
+        // decode the next entries from the logs while the mutations are applied
+        try (var rai = new ReadAheadIterator<>(rli, READ_AHEAD, readAheadPool)) {
+          playbackMutations(rai, mr, tabletId, recoverySeq);
+        }
+      }
+    }
+  }
 
-        checkState(logFileKey.tabletId == tabletId); // should only fail if bug elsewhere
-        checkState(logFileKey.seq >= recoverySeq); // should only fail if bug elsewhere
+  private void playbackMutations(Iterator<Entry<LogFileKey,LogFileValue>> entries,
+      MutationReceiver mr, int tabletId, long recoverySeq) {
+    while (entries.hasNext()) {
+      Entry<LogFileKey,LogFileValue> entry = entries.next();
+      LogFileKey logFileKey = entry.getKey();
 
-        LogFileValue val = entry.getValue();
-        if (logFileKey.event == MUTATION || logFileKey.event == MANY_MUTATIONS) {
-          log.debug("Recover {} mutation(s) for {}", val.mutations.size(), entry.getKey());
-          for (Mutation m : val.mutations) {
-            mr.receive(m);
-          }
-        } else {
-          throw new IllegalStateException("Non mutation event seen " + logFileKey.event);
+      checkState(logFileKey.tabletId == tabletId); // should only fail if bug elsewhere
+      checkState(logFileKey.seq >= recoverySeq); // should only fail if bug elsewhere
+
+      LogFileValue val = entry.getValue();
+      if (logFileKey.event == MUTATION || logFileKey.event == MANY_MUTATIONS) {
+        log.debug("Recover {} mutation(s) for {}", val.mutations.size(), entry.getKey());
+        for (Mutation m : val.mutations) {
+          mr.receive(m);
         }
+      } else {
+        throw new IllegalStateException("Non mutation event seen " + logFileKey.event);
       }
     }
   }
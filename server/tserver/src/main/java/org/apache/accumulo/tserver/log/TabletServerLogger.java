@@ -22,9 +22,13 @@ import static java.util.Collections.singletonList;
 
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -56,6 +60,10 @@ import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Central logging facility for the TServerInfo.
  *
@@ -63,45 +71,35 @@ import org.slf4j.LoggerFactory;
  * maintaining the maximum thread parallelism for greater performance. As new logs are used and
  * minor compactions are performed, the metadata table is kept up-to-date.
  *
+ * The logger can write to several logs at once, each one a stream of logs that are rolled
+ * independently. Each tablet always writes to the same stream, so the order of a tablet's log
+ * entries is the same as with a single stream. A batch of mutations for tablets of several streams
+ * is written to each stream before waiting on any of them, so the streams sync in parallel.
  */
 public class TabletServerLogger {
 
   private static final Logger log = LoggerFactory.getLogger(TabletServerLogger.class);
 
-  private final AtomicLong logSizeEstimate = new AtomicLong();
   private final long maxSize;
   private final long maxAge;
 
   private final TabletServer tserver;
 
-  // The current logger
-  private DfsLogger currentLog = null;
-  private final SynchronousQueue<Object> nextLog = new SynchronousQueue<>();
-  private ThreadPoolExecutor nextLogMaker;
-
-  // The current generation of logs.
-  // Because multiple threads can be using a log at one time, a log
-  // failure is likely to affect multiple threads, who will all attempt to
-  // create a new log. This will cause many unnecessary updates to the
-  // metadata table.
-  // We'll use this generational counter to determine if another thread has
-  // already fetched a new log.
-  private final AtomicInteger logId = new AtomicInteger();
-
-  // Use a ReadWriteLock to allow multiple threads to use the log set, but obtain a write lock to
-  // change them
-  private final ReentrantReadWriteLock logIdLock = new ReentrantReadWriteLock();
+  private final LogStream[] streams;
 
   private final AtomicLong syncCounter;
   private final AtomicLong flushCounter;
 
-  private long createTime = 0;
-
   private final RetryFactory createRetryFactory;
-  private Retry createRetry = null;
 
   private final RetryFactory writeRetryFactory;
 
+  // the tablets defined by each recovery log, shared by the tablets recovering from the same logs
+  private final Cache<Path,Map<KeyExtent,Integer>> recoveryLogTablets =
+      CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).maximumSize(1000).build();
+  // reads the mutations of recovering tablets while they are replayed
+  private ThreadPoolExecutor recoveryReaders;
+
   private abstract static class TestCallWithWriteLock {
     abstract boolean test();
 
@@ -148,342 +146,474 @@ public class TabletServerLogger {
 
   public TabletServerLogger(TabletServer tserver, long maxSize, AtomicLong syncCounter,
       AtomicLong flushCounter, RetryFactory createRetryFactory, RetryFactory writeRetryFactory,
-      long maxAge) {
+      long maxAge, int numStreams) {
     this.tserver = tserver;
     this.maxSize = maxSize;
     this.syncCounter = syncCounter;
     this.flushCounter = flushCounter;
     this.createRetryFactory = createRetryFactory;
-    this.createRetry = null;
     this.writeRetryFactory = writeRetryFactory;
     this.maxAge = maxAge;
-  }
-
-  private DfsLogger initializeLoggers(final AtomicInteger logIdOut) throws IOException {
-    final AtomicReference<DfsLogger> result = new AtomicReference<>();
-    testLockAndRun(logIdLock, new TestCallWithWriteLock() {
-      @Override
-      boolean test() {
-        result.set(currentLog);
-        if (currentLog != null)
-          logIdOut.set(logId.get());
-        return currentLog == null;
-      }
-
-      @Override
-      void withWriteLock() {
-        createLogger();
-        result.set(currentLog);
-        if (currentLog != null)
-          logIdOut.set(logId.get());
-        else
-          logIdOut.set(-1);
-      }
-    });
-    return result.get();
+    this.streams = new LogStream[Math.max(1, numStreams)];
+    for (int i = 0; i < streams.length; i++) {
+      streams[i] = new LogStream();
+    }
   }
 
   /**
-   * Get the current WAL file
+   * Get the current WAL files
    *
-   * @return The name of the current log, or null if there is no current log.
+   * @return The names of the current logs of all streams, which may be empty if there are no
+   *         current logs.
    */
-  public String getLogFile() {
-    logIdLock.readLock().lock();
-    try {
-      if (currentLog == null) {
-        return null;
+  public List<String> getLogFiles() {
+    List<String> files = new ArrayList<>(streams.length);
+    for (LogStream stream : streams) {
+      String file = stream.getLogFile();
+      if (file != null) {
+        files.add(file);
       }
-      return currentLog.getFileName();
-    } finally {
-      logIdLock.readLock().unlock();
     }
+    return files;
+  }
+
+  @VisibleForTesting
+  int getStreamIndex(CommitSession commitSession) {
+    return Math.floorMod(commitSession.getExtent().hashCode(), streams.length);
+  }
+
+  private LogStream getStream(CommitSession commitSession) {
+    return streams[getStreamIndex(commitSession)];
   }
 
-  private synchronized void createLogger() {
-    if (!logIdLock.isWriteLockedByCurrentThread()) {
-      throw new IllegalStateException("createLoggers should be called with write lock held!");
+  private synchronized ThreadPoolExecutor getRecoveryReaders() {
+    if (recoveryReaders == null) {
+      recoveryReaders = ThreadPools.createThreadPool(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+          "WALog recovery reader", new SynchronousQueue<>(), OptionalInt.empty());
     }
+    return recoveryReaders;
+  }
+
+  interface Writer {
+    LoggerOperation write(DfsLogger logger) throws Exception;
+  }
 
-    if (currentLog != null) {
-      throw new IllegalStateException("createLoggers should not be called when current log is set");
+  /**
+   * A sequence of logs, only one of which is written to at a time. When the current log fails or
+   * gets too big or too old, it is closed and the stream moves on to a new log.
+   */
+  private class LogStream {
+
+    private final AtomicLong logSizeEstimate = new AtomicLong();
+
+    // The current logger
+    private DfsLogger currentLog = null;
+    private final SynchronousQueue<Object> nextLog = new SynchronousQueue<>();
+    private ThreadPoolExecutor nextLogMaker;
+
+    // The current generation of logs.
+    // Because multiple threads can be using a log at one time, a log
+    // failure is likely to affect multiple threads, who will all attempt to
+    // create a new log. This will cause many unnecessary updates to the
+    // metadata table.
+    // We'll use this generational counter to determine if another thread has
+    // already fetched a new log.
+    private final AtomicInteger logId = new AtomicInteger();
+
+    // Use a ReadWriteLock to allow multiple threads to use the log set, but obtain a write lock to
+    // change them
+    private final ReentrantReadWriteLock logIdLock = new ReentrantReadWriteLock();
+
+    private long createTime = 0;
+
+    private Retry createRetry = null;
+
+    private DfsLogger initializeLoggers(final AtomicInteger logIdOut) throws IOException {
+      final AtomicReference<DfsLogger> result = new AtomicReference<>();
+      testLockAndRun(logIdLock, new TestCallWithWriteLock() {
+        @Override
+        boolean test() {
+          result.set(currentLog);
+          if (currentLog != null)
+            logIdOut.set(logId.get());
+          return currentLog == null;
+        }
+
+        @Override
+        void withWriteLock() {
+          createLogger();
+          result.set(currentLog);
+          if (currentLog != null)
+            logIdOut.set(logId.get());
+          else
+            logIdOut.set(-1);
+        }
+      });
+      return result.get();
     }
 
-    try {
-      startLogMaker();
-      Object next = nextLog.take();
-      if (next instanceof Exception) {
-        throw (Exception) next;
-      }
-      if (next instanceof DfsLogger) {
-        currentLog = (DfsLogger) next;
-        logId.incrementAndGet();
-        log.info("Using next log {}", currentLog.getFileName());
-
-        // When we successfully create a WAL, make sure to reset the Retry.
-        if (createRetry != null) {
-          createRetry = null;
+    /**
+     * Get the current WAL file
+     *
+     * @return The name of the current log, or null if there is no current log.
+     */
+    public String getLogFile() {
+      logIdLock.readLock().lock();
+      try {
+        if (currentLog == null) {
+          return null;
         }
+        return currentLog.getFileName();
+      } finally {
+        logIdLock.readLock().unlock();
+      }
+    }
 
-        this.createTime = System.currentTimeMillis();
-        return;
-      } else {
-        throw new RuntimeException("Error: unexpected type seen: " + next);
+    private synchronized void createLogger() {
+      if (!logIdLock.isWriteLockedByCurrentThread()) {
+        throw new IllegalStateException("createLoggers should be called with write lock held!");
       }
-    } catch (Exception t) {
-      if (createRetry == null) {
-        createRetry = createRetryFactory.createRetry();
+
+      if (currentLog != null) {
+        throw new IllegalStateException(
+            "createLoggers should not be called when current log is set");
       }
 
-      // We have more retries or we exceeded the maximum number of accepted failures
-      if (createRetry.canRetry()) {
-        // Use the createRetry and record the time in which we did so
-        createRetry.useRetry();
+      try {
+        startLogMaker();
+        Object next = nextLog.take();
+        if (next instanceof Exception) {
+          throw (Exception) next;
+        }
+        if (next instanceof DfsLogger) {
+          currentLog = (DfsLogger) next;
+          logId.incrementAndGet();
+          log.info("Using next log {}", currentLog.getFileName());
+
+          // When we successfully create a WAL, make sure to reset the Retry.
+          if (createRetry != null) {
+            createRetry = null;
+          }
 
-        try {
-          // Backoff
-          createRetry.waitForNextAttempt();
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          throw new RuntimeException(e);
+          this.createTime = System.currentTimeMillis();
+          return;
+        } else {
+          throw new RuntimeException("Error: unexpected type seen: " + next);
+        }
+      } catch (Exception t) {
+        if (createRetry == null) {
+          createRetry = createRetryFactory.createRetry();
         }
-      } else {
-        log.error("Repeatedly failed to create WAL. Going to exit tabletserver.", t);
-        // We didn't have retries or we failed too many times.
-        Halt.halt("Experienced too many errors creating WALs, giving up", 1);
-      }
 
-      // The exception will trigger the log creation to be re-attempted.
-      throw new RuntimeException(t);
-    }
-  }
+        // We have more retries or we exceeded the maximum number of accepted failures
+        if (createRetry.canRetry()) {
+          // Use the createRetry and record the time in which we did so
+          createRetry.useRetry();
 
-  private synchronized void startLogMaker() {
-    if (nextLogMaker != null) {
-      return;
+          try {
+            // Backoff
+            createRetry.waitForNextAttempt();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+          }
+        } else {
+          log.error("Repeatedly failed to create WAL. Going to exit tabletserver.", t);
+          // We didn't have retries or we failed too many times.
+          Halt.halt("Experienced too many errors creating WALs, giving up", 1);
+        }
+
+        // The exception will trigger the log creation to be re-attempted.
+        throw new RuntimeException(t);
+      }
     }
-    nextLogMaker = ThreadPools.createFixedThreadPool(1, "WALog creator");
-    nextLogMaker.submit(new Runnable() {
-      @Override
-      public void run() {
-        final ServerResources conf = tserver.getServerConfig();
-        final VolumeManager fs = conf.getVolumeManager();
-        while (!nextLogMaker.isShutdown()) {
-          log.debug("Creating next WAL");
-          DfsLogger alog = null;
 
-          try {
-            alog = new DfsLogger(tserver.getContext(), conf, syncCounter, flushCounter);
-            alog.open(tserver.getClientAddressString());
-          } catch (Exception t) {
-            log.error("Failed to open WAL", t);
-            // the log is not advertised in ZK yet, so we can just delete it if it exists
-            if (alog != null) {
+    private synchronized void startLogMaker() {
+      if (nextLogMaker != null) {
+        return;
+      }
+      nextLogMaker = ThreadPools.createFixedThreadPool(1, "WALog creator");
+      nextLogMaker.submit(new Runnable() {
+        @Override
+        public void run() {
+          final ServerResources conf = tserver.getServerConfig();
+          final VolumeManager fs = conf.getVolumeManager();
+          while (!nextLogMaker.isShutdown()) {
+            log.debug("Creating next WAL");
+            DfsLogger alog = null;
+
+            try {
+              alog = new DfsLogger(tserver.getContext(), conf, syncCounter, flushCounter);
+              alog.open(tserver.getClientAddressString());
+            } catch (Exception t) {
+              log.error("Failed to open WAL", t);
+              // the log is not advertised in ZK yet, so we can just delete it if it exists
+              if (alog != null) {
+                try {
+                  alog.close();
+                } catch (Exception e) {
+                  log.error("Failed to close WAL after it failed to open", e);
+                }
+
+                try {
+                  Path path = alog.getPath();
+                  if (fs.exists(path)) {
+                    fs.delete(path);
+                  }
+                } catch (Exception e) {
+                  log.warn("Failed to delete a WAL that failed to open", e);
+                }
+              }
+
+              try {
+                nextLog.offer(t, 12, TimeUnit.HOURS);
+              } catch (InterruptedException ex) {
+                // ignore
+              }
+
+              continue;
+            }
+
+            String fileName = alog.getFileName();
+            log.debug("Created next WAL {}", fileName);
+
+            try {
+              tserver.addNewLogMarker(alog);
+            } catch (Exception t) {
+              log.error("Failed to add new WAL marker for " + fileName, t);
+
               try {
+                // Intentionally not deleting walog because it may have been advertised in ZK. See
+                // #949
                 alog.close();
               } catch (Exception e) {
                 log.error("Failed to close WAL after it failed to open", e);
               }
 
+              // it's possible the log was advertised in ZK even though we got an
+              // exception. If there's a chance the WAL marker may have been created,
+              // this will ensure it's closed. Either the close will be written and
+              // the GC will clean it up, or the tserver is about to die due to sesson
+              // expiration and the GC will also clean it up.
               try {
-                Path path = alog.getPath();
-                if (fs.exists(path)) {
-                  fs.delete(path);
-                }
+                tserver.walogClosed(alog);
               } catch (Exception e) {
-                log.warn("Failed to delete a WAL that failed to open", e);
+                log.error("Failed to close WAL that failed to open: " + fileName, e);
               }
+
+              try {
+                nextLog.offer(t, 12, TimeUnit.HOURS);
+              } catch (InterruptedException ex) {
+                // ignore
+              }
+
+              continue;
             }
 
             try {
-              nextLog.offer(t, 12, TimeUnit.HOURS);
-            } catch (InterruptedException ex) {
-              // ignore
+              while (!nextLog.offer(alog, 12, TimeUnit.HOURS)) {
+                log.info("Our WAL was not used for 12 hours: {}", fileName);
+              }
+            } catch (InterruptedException e) {
+              // ignore - server is shutting down
             }
-
-            continue;
           }
+        }
+      });
+    }
 
-          String fileName = alog.getFileName();
-          log.debug("Created next WAL {}", fileName);
-
+    private synchronized void close() throws IOException {
+      if (!logIdLock.isWriteLockedByCurrentThread()) {
+        throw new IllegalStateException("close should be called with write lock held!");
+      }
+      try {
+        if (currentLog != null) {
           try {
-            tserver.addNewLogMarker(alog);
-          } catch (Exception t) {
-            log.error("Failed to add new WAL marker for " + fileName, t);
-
-            try {
-              // Intentionally not deleting walog because it may have been advertised in ZK. See
-              // #949
-              alog.close();
-            } catch (Exception e) {
-              log.error("Failed to close WAL after it failed to open", e);
-            }
+            currentLog.close();
+          } catch (DfsLogger.LogClosedException ex) {
+            // ignore
+          } catch (Exception ex) {
+            log.error("Unable to cleanly close log " + currentLog.getFileName() + ": " + ex, ex);
+          } finally {
+            tserver.walogClosed(currentLog);
+            currentLog = null;
+            logSizeEstimate.set(0);
+          }
+        }
+      } catch (Exception t) {
+        throw new IOException(t);
+      }
+    }
 
-            // it's possible the log was advertised in ZK even though we got an
-            // exception. If there's a chance the WAL marker may have been created,
-            // this will ensure it's closed. Either the close will be written and
-            // the GC will clean it up, or the tserver is about to die due to sesson
-            // expiration and the GC will also clean it up.
-            try {
-              tserver.walogClosed(alog);
-            } catch (Exception e) {
-              log.error("Failed to close WAL that failed to open: " + fileName, e);
-            }
+    private void write(Collection<CommitSession> sessions, boolean mincFinish, Writer writer,
+        Retry writeRetry) throws IOException {
+      PendingWrite write = new PendingWrite(this, sessions, mincFinish, writer, writeRetry);
+      write.start();
+      write.finish();
+    }
 
+    /**
+     * Writes to the current log, first defining the tablets of the sessions in it if they have not
+     * been. Does not wait for the write to be synced.
+     *
+     * @return the operation to wait on, or null if the log changed before it was written to
+     */
+    private LoggerOperation startWrite(Collection<CommitSession> sessions, boolean mincFinish,
+        Writer writer, Retry writeRetry, AtomicInteger currentLogId) throws Exception {
+      // get a reference to the loggers that no other thread can touch
+      AtomicInteger currentId = new AtomicInteger(-1);
+      DfsLogger copy = initializeLoggers(currentId);
+      currentLogId.set(currentId.get());
+
+      // add the logger to the log set for the memory in the tablet,
+      // update the metadata table if we've never used this tablet
+
+      if (currentLogId.get() == logId.get()) {
+        for (CommitSession commitSession : sessions) {
+          if (commitSession.beginUpdatingLogsUsed(copy, mincFinish)) {
             try {
-              nextLog.offer(t, 12, TimeUnit.HOURS);
-            } catch (InterruptedException ex) {
-              // ignore
+              // Scribble out a tablet definition and then write to the metadata table
+              write(singletonList(commitSession), false,
+                  logger -> logger.defineTablet(commitSession), writeRetry);
+            } finally {
+              commitSession.finishUpdatingLogsUsed();
             }
 
-            continue;
-          }
-
-          try {
-            while (!nextLog.offer(alog, 12, TimeUnit.HOURS)) {
-              log.info("Our WAL was not used for 12 hours: {}", fileName);
+            // Need to release
+            KeyExtent extent = commitSession.getExtent();
+            @SuppressWarnings("deprecation")
+            boolean replicationEnabled =
+                org.apache.accumulo.core.replication.ReplicationConfigurationUtil.isEnabled(extent,
+                    tserver.getTableConfiguration(extent));
+            if (replicationEnabled) {
+              @SuppressWarnings("deprecation")
+              Status status = org.apache.accumulo.server.replication.StatusUtil
+                  .openWithUnknownLength(System.currentTimeMillis());
+              log.debug("Writing " + ProtobufUtil.toString(status) + " to metadata table for "
+                  + copy.getFileName());
+              // Got some new WALs, note this in the metadata table
+              ReplicationTableUtil.updateFiles(tserver.getContext(), commitSession.getExtent(),
+                  copy.getFileName(), status);
             }
-          } catch (InterruptedException e) {
-            // ignore - server is shutting down
           }
         }
       }
-    });
-  }
 
-  private synchronized void close() throws IOException {
-    if (!logIdLock.isWriteLockedByCurrentThread()) {
-      throw new IllegalStateException("close should be called with write lock held!");
-    }
-    try {
-      if (currentLog != null) {
-        try {
-          currentLog.close();
-        } catch (DfsLogger.LogClosedException ex) {
-          // ignore
-        } catch (Exception ex) {
-          log.error("Unable to cleanly close log " + currentLog.getFileName() + ": " + ex, ex);
-        } finally {
-          this.tserver.walogClosed(currentLog);
-          currentLog = null;
-          logSizeEstimate.set(0);
-        }
+      // Make sure that the logs haven't changed out from underneath our copy
+      if (currentLogId.get() == logId.get()) {
+        // write the mutation to the logs
+        return writer.write(copy);
       }
-    } catch (Exception t) {
-      throw new IOException(t);
+      return null;
     }
-  }
 
-  interface Writer {
-    LoggerOperation write(DfsLogger logger) throws Exception;
-  }
-
-  private void write(final Collection<CommitSession> sessions, boolean mincFinish, Writer writer,
-      Retry writeRetry) throws IOException {
-    // Work very hard not to lock this during calls to the outside world
-    int currentLogId = logId.get();
-
-    boolean success = false;
-    while (!success) {
-      try {
-        // get a reference to the loggers that no other thread can touch
-        AtomicInteger currentId = new AtomicInteger(-1);
-        DfsLogger copy = initializeLoggers(currentId);
-        currentLogId = currentId.get();
-
-        // add the logger to the log set for the memory in the tablet,
-        // update the metadata table if we've never used this tablet
-
-        if (currentLogId == logId.get()) {
-          for (CommitSession commitSession : sessions) {
-            if (commitSession.beginUpdatingLogsUsed(copy, mincFinish)) {
-              try {
-                // Scribble out a tablet definition and then write to the metadata table
-                write(singletonList(commitSession), false,
-                    logger -> logger.defineTablet(commitSession), writeRetry);
-              } finally {
-                commitSession.finishUpdatingLogsUsed();
-              }
+    private void writeFailed(int currentLogId) throws IOException {
+      // Some sort of write failure occurred. Grab the write lock and reset the logs.
+      // But since multiple threads will attempt it, only attempt the reset when
+      // the logs haven't changed.
+      testLockAndRun(logIdLock, new TestCallWithWriteLock() {
 
-              // Need to release
-              KeyExtent extent = commitSession.getExtent();
-              @SuppressWarnings("deprecation")
-              boolean replicationEnabled =
-                  org.apache.accumulo.core.replication.ReplicationConfigurationUtil
-                      .isEnabled(extent, tserver.getTableConfiguration(extent));
-              if (replicationEnabled) {
-                @SuppressWarnings("deprecation")
-                Status status = org.apache.accumulo.server.replication.StatusUtil
-                    .openWithUnknownLength(System.currentTimeMillis());
-                log.debug("Writing " + ProtobufUtil.toString(status) + " to metadata table for "
-                    + copy.getFileName());
-                // Got some new WALs, note this in the metadata table
-                ReplicationTableUtil.updateFiles(tserver.getContext(), commitSession.getExtent(),
-                    copy.getFileName(), status);
-              }
-            }
-          }
+        @Override
+        boolean test() {
+          return currentLogId == logId.get();
         }
 
-        // Make sure that the logs haven't changed out from underneath our copy
-        if (currentLogId == logId.get()) {
-
-          // write the mutation to the logs
-          LoggerOperation lop = writer.write(copy);
-          lop.await();
+        @Override
+        void withWriteLock() throws IOException {
+          close();
+        }
+      });
+    }
 
-          // double-check: did the log set change?
-          success = (currentLogId == logId.get());
+    private void writeFinished() throws IOException {
+      // if the log gets too big or too old, reset it .. grab the write lock first
+      logSizeEstimate.addAndGet(4 * 3); // event, tid, seq overhead
+      testLockAndRun(logIdLock, new TestCallWithWriteLock() {
+        @Override
+        boolean test() {
+          return (logSizeEstimate.get() > maxSize)
+              || ((System.currentTimeMillis() - createTime) > maxAge);
         }
-      } catch (DfsLogger.LogClosedException | ClosedChannelException ex) {
-        writeRetry.logRetry(log, "Logs closed while writing", ex);
-      } catch (Exception t) {
-        writeRetry.logRetry(log, "Failed to write to WAL", t);
 
-        try {
-          // Backoff
-          writeRetry.waitForNextAttempt();
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          throw new RuntimeException(e);
+        @Override
+        void withWriteLock() throws IOException {
+          close();
         }
-      } finally {
-        writeRetry.useRetry();
+      });
+    }
+  }
+
+  /**
+   * A write to a stream, which is started by queueing it on the current log and finished by waiting
+   * for the log to sync it. A write that fails is retried on a new log when it is finished.
+   */
+  private static class PendingWrite {
+    private final LogStream stream;
+    private final Collection<CommitSession> sessions;
+    private final boolean mincFinish;
+    private final Writer writer;
+    private final Retry writeRetry;
+
+    private final AtomicInteger currentLogId;
+    private LoggerOperation lop = null;
+    private Exception failure = null;
+
+    PendingWrite(LogStream stream, Collection<CommitSession> sessions, boolean mincFinish,
+        Writer writer, Retry writeRetry) {
+      this.stream = stream;
+      this.sessions = sessions;
+      this.mincFinish = mincFinish;
+      this.writer = writer;
+      this.writeRetry = writeRetry;
+      // Work very hard not to lock this during calls to the outside world
+      this.currentLogId = new AtomicInteger(stream.logId.get());
+    }
+
+    void start() {
+      try {
+        lop = stream.startWrite(sessions, mincFinish, writer, writeRetry, currentLogId);
+        failure = null;
+      } catch (Exception e) {
+        lop = null;
+        failure = e;
       }
-      // Some sort of write failure occurred. Grab the write lock and reset the logs.
-      // But since multiple threads will attempt it, only attempt the reset when
-      // the logs haven't changed.
-      final int finalCurrent = currentLogId;
-      if (!success) {
-        testLockAndRun(logIdLock, new TestCallWithWriteLock() {
+    }
 
-          @Override
-          boolean test() {
-            return finalCurrent == logId.get();
+    void finish() throws IOException {
+      boolean success = false;
+      while (!success) {
+        try {
+          if (failure != null) {
+            throw failure;
+          }
+          if (lop != null) {
+            lop.await();
+            // double-check: did the log set change?
+            success = (currentLogId.get() == stream.logId.get());
           }
+        } catch (DfsLogger.LogClosedException | ClosedChannelException ex) {
+          writeRetry.logRetry(log, "Logs closed while writing", ex);
+        } catch (Exception t) {
+          writeRetry.logRetry(log, "Failed to write to WAL", t);
 
-          @Override
-          void withWriteLock() throws IOException {
-            close();
+          try {
+            // Backoff
+            writeRetry.waitForNextAttempt();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
           }
-        });
-      }
-    }
-    // if the log gets too big or too old, reset it .. grab the write lock first
-    logSizeEstimate.addAndGet(4 * 3); // event, tid, seq overhead
-    testLockAndRun(logIdLock, new TestCallWithWriteLock() {
-      @Override
-      boolean test() {
-        return (logSizeEstimate.get() > maxSize)
-            || ((System.currentTimeMillis() - createTime) > maxAge);
-      }
+        } finally {
+          writeRetry.useRetry();
+        }
 
-      @Override
-      void withWriteLock() throws IOException {
-        close();
+        if (!success) {
+          stream.writeFailed(currentLogId.get());
+          start();
+        }
       }
-    });
+      stream.writeFinished();
+    }
   }
 
   /**
@@ -494,9 +624,10 @@ public class TabletServerLogger {
     if (durability == Durability.DEFAULT || durability == Durability.NONE) {
       throw new IllegalArgumentException("Unexpected durability " + durability);
     }
-    write(singletonList(commitSession), false, logger -> logger.log(commitSession, m, durability),
-        writeRetryFactory.createRetry());
-    logSizeEstimate.addAndGet(m.numBytes());
+    LogStream stream = getStream(commitSession);
+    stream.write(singletonList(commitSession), false,
+        logger -> logger.log(commitSession, m, durability), writeRetryFactory.createRetry());
+    stream.logSizeEstimate.addAndGet(m.numBytes());
   }
 
   /**
@@ -506,28 +637,67 @@ public class TabletServerLogger {
     if (loggables.isEmpty())
       return;
 
-    write(loggables.keySet(), false, logger -> logger.logManyTablets(loggables.values()),
-        writeRetryFactory.createRetry());
+    if (streams.length == 1) {
+      logManyTablets(streams[0], loggables);
+      return;
+    }
+
+    Map<LogStream,Map<CommitSession,TabletMutations>> byStream = new HashMap<>();
+    for (Entry<CommitSession,TabletMutations> entry : loggables.entrySet()) {
+      byStream.computeIfAbsent(getStream(entry.getKey()), s -> new HashMap<>()).put(entry.getKey(),
+          entry.getValue());
+    }
+
+    // queue the mutations on every stream before waiting on any of them, so that they sync in
+    // parallel and this thread only waits on its own writes
+    List<PendingWrite> writes = new ArrayList<>(byStream.size());
+    for (Entry<LogStream,Map<CommitSession,TabletMutations>> entry : byStream.entrySet()) {
+      PendingWrite write = newManyTabletsWrite(entry.getKey(), entry.getValue());
+      write.start();
+      writes.add(write);
+    }
+
+    for (PendingWrite write : writes) {
+      write.finish();
+      addToSizeEstimate(write.stream, byStream.get(write.stream));
+    }
+  }
+
+  private PendingWrite newManyTabletsWrite(LogStream stream,
+      Map<CommitSession,TabletMutations> loggables) {
+    return new PendingWrite(stream, loggables.keySet(), false,
+        logger -> logger.logManyTablets(loggables.values()), writeRetryFactory.createRetry());
+  }
+
+  private void addToSizeEstimate(LogStream stream, Map<CommitSession,TabletMutations> loggables) {
     for (TabletMutations entry : loggables.values()) {
       if (entry.getMutations().size() < 1) {
         throw new IllegalArgumentException("logManyTablets: logging empty mutation list");
       }
       for (Mutation m : entry.getMutations()) {
-        logSizeEstimate.addAndGet(m.numBytes());
+        stream.logSizeEstimate.addAndGet(m.numBytes());
       }
     }
   }
 
+  private void logManyTablets(LogStream stream, Map<CommitSession,TabletMutations> loggables)
+      throws IOException {
+    PendingWrite write = newManyTabletsWrite(stream, loggables);
+    write.start();
+    write.finish();
+    addToSizeEstimate(stream, loggables);
+  }
+
   public void minorCompactionFinished(final CommitSession commitSession, final long walogSeq,
       final Durability durability) throws IOException {
-    write(singletonList(commitSession), true,
+    getStream(commitSession).write(singletonList(commitSession), true,
         logger -> logger.minorCompactionFinished(walogSeq, commitSession.getLogId(), durability),
         writeRetryFactory.createRetry());
   }
 
   public long minorCompactionStarted(final CommitSession commitSession, final long seq,
       final String fullyQualifiedFileName, final Durability durability) throws IOException {
-    write(
+    getStream(commitSession).write(
         singletonList(commitSession), false, logger -> logger.minorCompactionStarted(seq,
             commitSession.getLogId(), fullyQualifiedFileName, durability),
         writeRetryFactory.createRetry());
@@ -537,7 +707,8 @@ public class TabletServerLogger {
   public void recover(ServerContext context, KeyExtent extent, List<Path> recoveryDirs,
       Set<String> tabletFiles, MutationReceiver mr) throws IOException {
     try {
-      SortedLogRecovery recovery = new SortedLogRecovery(context);
+      SortedLogRecovery recovery =
+          new SortedLogRecovery(context, recoveryLogTablets, getRecoveryReaders());
       recovery.recover(extent, recoveryDirs, tabletFiles, mr);
     } catch (Exception e) {
       throw new IOException(e);
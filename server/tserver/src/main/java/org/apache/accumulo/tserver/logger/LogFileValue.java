@@ -35,18 +35,57 @@ import java.util.List;
 import org.apache.accumulo.core.data.ColumnUpdate;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression.Algorithm;
 import org.apache.accumulo.server.data.ServerMutation;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
 
+/**
+ * The mutations of a write ahead log entry. They are written as a count followed by the mutations.
+ * When the mutations are compressed, the count is {@value #COMPRESSED} instead, which is followed
+ * by the name of the compression algorithm, the count, and the length and bytes of the compressed
+ * mutations. Logs written before compression was added only have uncompressed values, which are
+ * still read the same way.
+ */
 public class LogFileValue implements Writable {
 
   private static final List<Mutation> empty = Collections.emptyList();
 
+  // a count of mutations is never negative, so this marks a compressed value
+  private static final int COMPRESSED = -1;
+
   public List<Mutation> mutations = empty;
 
+  private Algorithm compressionAlgorithm = null;
+  private byte[] compressedMutations = null;
+
   @Override
   public void readFields(DataInput in) throws IOException {
+    compressionAlgorithm = null;
+    compressedMutations = null;
+
     int count = in.readInt();
+    if (count == COMPRESSED) {
+      Algorithm algorithm = Compression.getCompressionAlgorithmByName(in.readUTF());
+      count = in.readInt();
+      byte[] compressed = new byte[in.readInt()];
+      in.readFully(compressed);
+
+      Decompressor decompressor = algorithm.getDecompressor();
+      try (DataInputStream din = new DataInputStream(algorithm
+          .createDecompressionStream(new ByteArrayInputStream(compressed), decompressor, 0))) {
+        readMutations(din, count);
+      } finally {
+        algorithm.returnDecompressor(decompressor);
+      }
+    } else {
+      readMutations(in, count);
+    }
+  }
+
+  private void readMutations(DataInput in, int count) throws IOException {
     mutations = new ArrayList<>(count);
     for (int i = 0; i < count; i++) {
       ServerMutation mutation = new ServerMutation();
@@ -55,8 +94,36 @@ public class LogFileValue implements Writable {
     }
   }
 
+  /**
+   * Compresses the mutations, so that they are written compressed. Compressing up front keeps the
+   * work out of the write, which is serialized with the other writes to a log.
+   */
+  public void compress(Algorithm algorithm) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    Compressor compressor = algorithm.getCompressor();
+    try (DataOutputStream out =
+        new DataOutputStream(algorithm.createCompressionStream(baos, compressor, 0))) {
+      for (Mutation m : mutations) {
+        m.write(out);
+      }
+    } finally {
+      algorithm.returnCompressor(compressor);
+    }
+    compressionAlgorithm = algorithm;
+    compressedMutations = baos.toByteArray();
+  }
+
   @Override
   public void write(DataOutput out) throws IOException {
+    if (compressedMutations != null) {
+      out.writeInt(COMPRESSED);
+      out.writeUTF(compressionAlgorithm.getName());
+      out.writeInt(mutations.size());
+      out.writeInt(compressedMutations.length);
+      out.write(compressedMutations);
+      return;
+    }
+
     out.writeInt(mutations.size());
     for (Mutation m : mutations) {
       m.write(out);
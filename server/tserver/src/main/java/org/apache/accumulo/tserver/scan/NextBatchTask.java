@@ -37,10 +37,22 @@ public class NextBatchTask extends ScanTask<ScanBatch> {
   private static final Logger log = LoggerFactory.getLogger(NextBatchTask.class);
 
   private final long scanID;
+  private final Runnable readAhead;
 
   public NextBatchTask(TabletServer server, long scanID, AtomicBoolean interruptFlag) {
+    this(server, scanID, interruptFlag, null);
+  }
+
+  /**
+   * @param readAhead
+   *          run after reading a batch that is not the last one and before returning it, may be
+   *          null
+   */
+  public NextBatchTask(TabletServer server, long scanID, AtomicBoolean interruptFlag,
+      Runnable readAhead) {
     super(server);
     this.scanID = scanID;
+    this.readAhead = readAhead;
     this.interruptFlag = interruptFlag;
 
     if (interruptFlag.get())
@@ -73,6 +85,10 @@ public class NextBatchTask extends ScanTask<ScanBatch> {
 
       ScanBatch batch = scanSession.scanner.read();
 
+      if (readAhead != null && batch.isMore()) {
+        readAhead.run();
+      }
+
       // there should only be one thing on the queue at a time, so
       // it should be ok to call add()
       // instead of put()... if add() fails because queue is at
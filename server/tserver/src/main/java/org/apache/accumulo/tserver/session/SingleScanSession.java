@@ -18,6 +18,8 @@
  */
 package org.apache.accumulo.tserver.session;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -38,6 +40,10 @@ public class SingleScanSession extends ScanSession {
   public Scanner scanner;
   public final long readaheadThreshold;
 
+  // tasks reading the batches after nextBatchTask, in scan order, all guarded by readAheadTasks
+  private final Deque<ScanTask<ScanBatch>> readAheadTasks = new ArrayDeque<>();
+  private boolean readAheadStopped = false;
+
   public SingleScanSession(TCredentials credentials, KeyExtent extent, ScanParameters scanParams,
       long readaheadThreshold, Map<String,String> executionHints) {
     super(credentials, scanParams, executionHints);
@@ -55,10 +61,67 @@ public class SingleScanSession extends ScanSession {
     return extent.tableId();
   }
 
+  /**
+   * Adds a task reading the batch after the last one already being read ahead for the client.
+   */
+  public void addReadAhead(ScanTask<ScanBatch> task) {
+    synchronized (readAheadTasks) {
+      readAheadStopped = false;
+      if (nextBatchTask == null) {
+        nextBatchTask = task;
+      } else {
+        readAheadTasks.add(task);
+      }
+    }
+  }
+
+  /**
+   * Called by the last task added with {@link #addReadAhead(ScanTask)} once it has read a batch
+   * that is not the last one, before that batch is returned.
+   *
+   * @param maxBatches
+   *          the most batches to read ahead of the client
+   * @return true if the task should add another task to read the following batch, false if read
+   *         ahead stops until the client takes a batch
+   */
+  public boolean canReadAhead(int maxBatches) {
+    synchronized (readAheadTasks) {
+      int pending = (nextBatchTask == null ? 0 : 1) + readAheadTasks.size();
+      if (pending < maxBatches) {
+        return true;
+      }
+      readAheadStopped = true;
+      return false;
+    }
+  }
+
+  /**
+   * Moves on to the next task read ahead, once the client has been given the result of
+   * {@link #nextBatchTask}.
+   */
+  public void nextBatchReturned() {
+    synchronized (readAheadTasks) {
+      nextBatchTask = readAheadTasks.poll();
+    }
+  }
+
+  /**
+   * @return true if no batch is being read ahead, because read ahead has not started or stopped
+   *         when it had read as many batches ahead as it could
+   */
+  public boolean needsReadAhead() {
+    synchronized (readAheadTasks) {
+      return nextBatchTask == null || readAheadStopped;
+    }
+  }
+
   @Override
   public boolean cleanup() {
     final boolean ret;
     try {
+      synchronized (readAheadTasks) {
+        readAheadTasks.forEach(task -> task.cancel(true));
+      }
       if (nextBatchTask != null)
         nextBatchTask.cancel(true);
     } finally {
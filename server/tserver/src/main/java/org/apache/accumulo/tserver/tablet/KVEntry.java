@@ -31,6 +31,13 @@ public class KVEntry extends KeyValue {
     super(new Key(k), Arrays.copyOf(v.get(), v.get().length));
   }
 
+  /**
+   * Creates an entry that uses the given key and value bytes without copying them.
+   */
+  KVEntry(Key k, byte[] v) {
+    super(k, v);
+  }
+
   int numBytes() {
     return getKey().getSize() + getValue().get().length;
   }
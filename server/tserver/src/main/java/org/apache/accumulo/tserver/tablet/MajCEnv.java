@@ -18,6 +18,8 @@
  */
 package org.apache.accumulo.tserver.tablet;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.TableId;
@@ -36,14 +38,17 @@ public class MajCEnv implements FileCompactor.CompactionEnv {
   private final CompactionKind kind;
   private final RateLimiter readLimiter;
   private final RateLimiter writeLimiter;
+  private final ExecutorService compressionExecutor;
   private final boolean propagateDeletes;
   private final CompactableImpl.CompactionCheck compactionCheck;
 
   public MajCEnv(CompactionKind kind, CompactableImpl.CompactionCheck compactionCheck,
-      RateLimiter readLimiter, RateLimiter writeLimiter, boolean propagateDeletes) {
+      RateLimiter readLimiter, RateLimiter writeLimiter, ExecutorService compressionExecutor,
+      boolean propagateDeletes) {
     this.kind = kind;
     this.readLimiter = readLimiter;
     this.writeLimiter = writeLimiter;
+    this.compressionExecutor = compressionExecutor;
     this.propagateDeletes = propagateDeletes;
     this.compactionCheck = compactionCheck;
   }
@@ -68,6 +73,11 @@ public class MajCEnv implements FileCompactor.CompactionEnv {
     return writeLimiter;
   }
 
+  @Override
+  public ExecutorService getCompressionExecutor() {
+    return compressionExecutor;
+  }
+
   @Override
   public SystemIteratorEnvironment createIteratorEnv(ServerContext context,
       AccumuloConfiguration acuTableConf, TableId tableId) {
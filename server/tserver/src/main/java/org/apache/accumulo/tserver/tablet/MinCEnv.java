@@ -18,6 +18,8 @@
  */
 package org.apache.accumulo.tserver.tablet;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.TableId;
@@ -35,10 +37,13 @@ import org.apache.accumulo.tserver.MinorCompactionReason;
 public class MinCEnv implements FileCompactor.CompactionEnv {
   private final MinorCompactionReason reason;
   private final SortedKeyValueIterator<Key,Value> iter;
+  private final ExecutorService compressionExecutor;
 
-  public MinCEnv(MinorCompactionReason reason, SortedKeyValueIterator<Key,Value> iter) {
+  public MinCEnv(MinorCompactionReason reason, SortedKeyValueIterator<Key,Value> iter,
+      ExecutorService compressionExecutor) {
     this.reason = reason;
     this.iter = iter;
+    this.compressionExecutor = compressionExecutor;
   }
 
   @Override
@@ -61,6 +66,11 @@ public class MinCEnv implements FileCompactor.CompactionEnv {
     return null;
   }
 
+  @Override
+  public ExecutorService getCompressionExecutor() {
+    return compressionExecutor;
+  }
+
   @Override
   public SystemIteratorEnvironment createIteratorEnv(ServerContext context,
       AccumuloConfiguration acuTableConf, TableId tableId) {
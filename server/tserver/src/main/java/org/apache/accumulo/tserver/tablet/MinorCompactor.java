@@ -57,7 +57,9 @@ public class MinorCompactor extends FileCompactor {
   public MinorCompactor(TabletServer tabletServer, Tablet tablet, InMemoryMap imm,
       TabletFile outputFile, MinorCompactionReason mincReason, TableConfiguration tableConfig) {
     super(tabletServer.getContext(), tablet.getExtent(), Collections.emptyMap(), outputFile, true,
-        new MinCEnv(mincReason, imm.compactionIterator()), Collections.emptyList(), tableConfig);
+        new MinCEnv(mincReason, imm.compactionIterator(),
+            tablet.getTabletResources().getTabletServerResourceManager().getCompressionExecutor()),
+        Collections.emptyList(), tableConfig);
     this.tabletServer = tabletServer;
     this.mincReason = mincReason;
   }
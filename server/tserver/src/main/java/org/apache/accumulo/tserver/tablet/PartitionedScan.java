@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver.tablet;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.accumulo.core.iteratorsImpl.system.IterationInterruptedException;
+
+/**
+ * Reads the parts of a scan range concurrently and returns their batches in order. Each part is
+ * read by a {@link Scanner} of its own, at most {@link #MAX_QUEUED} batches ahead of the batch
+ * being returned.
+ */
+class PartitionedScan {
+
+  static final int MAX_QUEUED = 2;
+
+  private final List<Part> parts = new ArrayList<>();
+  private final Executor executor;
+  private int current = 0;
+
+  /**
+   * @param scanners
+   *          scanners for the parts of the range, in order
+   */
+  PartitionedScan(List<Scanner> scanners, Executor executor) {
+    this.executor = executor;
+    for (Scanner scanner : scanners) {
+      parts.add(new Part(scanner));
+    }
+  }
+
+  ScanBatch read() throws IOException {
+    if (current == 0) {
+      parts.forEach(Part::readAhead);
+    }
+
+    ScanBatch batch = parts.get(current).take();
+    if (!batch.isMore()) {
+      current++;
+      return new ScanBatch(batch.getResults(), current < parts.size());
+    }
+    return batch;
+  }
+
+  private class Part {
+
+    private final Scanner scanner;
+    // batches read and not yet taken, or the exception that stopped the part from being read
+    private final Deque<Object> queued = new ArrayDeque<>();
+    private boolean reading = false;
+    private boolean done = false;
+
+    Part(Scanner scanner) {
+      this.scanner = scanner;
+    }
+
+    synchronized void readAhead() {
+      if (!reading && !done && queued.size() < MAX_QUEUED) {
+        reading = true;
+        try {
+          executor.execute(this::readBatch);
+        } catch (RejectedExecutionException e) {
+          reading = false;
+          done = true;
+          queued.add(e);
+          notifyAll();
+        }
+      }
+    }
+
+    private void readBatch() {
+      Object result;
+      try {
+        result = scanner.read();
+      } catch (IOException | RuntimeException | Error e) {
+        result = e;
+      }
+
+      synchronized (this) {
+        reading = false;
+        queued.add(result);
+        if (!(result instanceof ScanBatch) || !((ScanBatch) result).isMore()) {
+          done = true;
+        }
+        notifyAll();
+        readAhead();
+      }
+    }
+
+    synchronized ScanBatch take() throws IOException {
+      while (queued.isEmpty()) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IterationInterruptedException("Interrupted waiting for part of scan");
+        }
+      }
+
+      Object result = queued.remove();
+      if (!(result instanceof ScanBatch)) {
+        // the part stopped, so fail again on later takes rather than wait for it
+        queued.addFirst(result);
+      }
+      readAhead();
+
+      if (result instanceof IOException) {
+        throw (IOException) result;
+      } else if (result instanceof RuntimeException) {
+        throw (RuntimeException) result;
+      } else if (result instanceof Error) {
+        throw (Error) result;
+      }
+      return (ScanBatch) result;
+    }
+  }
+}
@@ -55,12 +55,22 @@ public class Scanner {
 
   private AtomicBoolean interruptFlag;
 
+  // whether the range may still be split into parts read concurrently, decided on the first read
+  private boolean mayPartition;
+  private PartitionedScan partitionedScan;
+
   Scanner(Tablet tablet, Range range, ScanParameters scanParams, AtomicBoolean interruptFlag) {
+    this(tablet, range, scanParams, interruptFlag, true);
+  }
+
+  Scanner(Tablet tablet, Range range, ScanParameters scanParams, AtomicBoolean interruptFlag,
+      boolean mayPartition) {
     this.tablet = tablet;
     this.range = range;
     this.scanParams = scanParams;
     this.scannerSemaphore = new Semaphore(1, true);
     this.interruptFlag = interruptFlag;
+    this.mayPartition = mayPartition;
   }
 
   public ScanBatch read() throws IOException, TabletClosedException {
@@ -85,6 +95,15 @@ public class Scanner {
       if (scanClosed)
         throw new IllegalStateException("Tried to use scanner after it was closed.");
 
+      if (mayPartition) {
+        mayPartition = false;
+        partitionedScan = tablet.partitionScan(range, scanParams, interruptFlag);
+      }
+
+      if (partitionedScan != null) {
+        return partitionedScan.read();
+      }
+
       if (scanParams.isIsolated()) {
         if (isolatedDataSource == null)
           isolatedDataSource = new ScanDataSource(tablet, scanParams, true, interruptFlag);
@@ -132,7 +151,8 @@ public class Scanner {
       }
 
       sawException = true;
-      dataSource.close(true);
+      if (dataSource != null)
+        dataSource.close(true);
       throw ioe;
     } catch (RuntimeException re) {
       sawException = true;
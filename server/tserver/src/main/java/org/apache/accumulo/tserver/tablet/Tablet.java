@@ -66,6 +66,7 @@ import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
 import org.apache.accumulo.core.dataImpl.thrift.MapFileInfo;
 import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.iterators.BatchKeyValueIterator;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.YieldCallback;
 import org.apache.accumulo.core.iteratorsImpl.system.IterationInterruptedException;
@@ -99,6 +100,7 @@ import org.apache.accumulo.core.volume.Volume;
 import org.apache.accumulo.server.ServerContext;
 import org.apache.accumulo.server.compaction.CompactionStats;
 import org.apache.accumulo.server.conf.TableConfiguration;
+import org.apache.accumulo.server.fs.FileManager.ScanFileManager;
 import org.apache.accumulo.server.fs.TooManyFilesException;
 import org.apache.accumulo.server.fs.VolumeChooserEnvironmentImpl;
 import org.apache.accumulo.server.fs.VolumeUtil;
@@ -136,6 +138,7 @@ import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -150,6 +153,9 @@ public class Tablet {
 
   private static final byte[] EMPTY_BYTES = new byte[0];
 
+  // the most key values read from the scan iterators in one call
+  private static final int MAX_ITERATOR_BATCH = 64;
+
   private final TabletServer tabletServer;
   private final ServerContext context;
   private final KeyExtent extent;
@@ -697,8 +703,21 @@ public class Tablet {
 
   Batch nextBatch(SortedKeyValueIterator<Key,Value> iter, Range range, ScanParameters scanParams)
       throws IOException {
+    return nextBatch(iter, range, scanParams,
+        tableConfiguration.getAsBytes(Property.TABLE_SCAN_MAXMEM),
+        () -> getTabletServer().getScanMetrics().addYield(1));
+  }
 
-    // log.info("In nextBatch..");
+  /**
+   * Reads the results of one scan RPC from the iterators of a scan, stopping after the entry that
+   * reaches the entry count, result memory or time limit.
+   *
+   * @param onYield
+   *          called when the iterators yield
+   */
+  @VisibleForTesting
+  static Batch nextBatch(SortedKeyValueIterator<Key,Value> iter, Range range,
+      ScanParameters scanParams, long maxResultsSize, Runnable onYield) throws IOException {
 
     long batchTimeOut = scanParams.getBatchTimeOut();
 
@@ -715,8 +734,6 @@ public class Tablet {
     long resultSize = 0L;
     long resultBytes = 0L;
 
-    long maxResultsSize = tableConfiguration.getAsBytes(Property.TABLE_SCAN_MAXMEM);
-
     Key continueKey = null;
     boolean skipContinueKey = false;
 
@@ -733,31 +750,54 @@ public class Tablet {
       iter.seek(range, LocalityGroupUtil.families(scanParams.getColumnSet()), true);
     }
 
-    while (iter.hasTop()) {
+    // read the iterators a batch at a time, growing the batches while they stay well within the
+    // memory left for results, as any key values read past the end of the results are read again
+    // by the next call
+    Key[] keys = new Key[MAX_ITERATOR_BATCH];
+    Value[] values = new Value[MAX_ITERATOR_BATCH];
+    int batchSize = 1;
+    boolean full = false;
+
+    while (!full && iter.hasTop()) {
       if (yield.hasYielded()) {
         throw new IOException(
             "Coding error: hasTop returned true but has yielded at " + yield.getPositionAndReset());
       }
-      value = iter.getTopValue();
-      key = iter.getTopKey();
 
-      KVEntry kvEntry = new KVEntry(key, value); // copies key and value
-      results.add(kvEntry);
-      resultSize += kvEntry.estimateMemoryUsed();
-      resultBytes += kvEntry.numBytes();
+      int count = BatchKeyValueIterator.nextBatch(iter, keys, values,
+          Math.min(batchSize, scanParams.getMaxEntries() - results.size()));
+
+      for (int i = 0; i < count; i++) {
+        key = keys[i];
+        value = values[i];
+
+        KVEntry kvEntry = new KVEntry(key, value.get()); // already copied
+        results.add(kvEntry);
+        resultSize += kvEntry.estimateMemoryUsed();
+        resultBytes += kvEntry.numBytes();
 
-      boolean timesUp = batchTimeOut > 0 && (System.nanoTime() - startNanos) >= timeToRun;
+        boolean timesUp = batchTimeOut > 0 && (System.nanoTime() - startNanos) >= timeToRun;
 
-      if (resultSize >= maxResultsSize || results.size() >= scanParams.getMaxEntries() || timesUp) {
-        continueKey = new Key(key);
-        skipContinueKey = true;
-        break;
+        if (resultSize >= maxResultsSize || results.size() >= scanParams.getMaxEntries()
+            || timesUp) {
+          continueKey = new Key(key);
+          skipContinueKey = true;
+          full = true;
+          break;
+        }
       }
 
-      iter.next();
+      if (!full) {
+        long entriesLeft = (maxResultsSize - resultSize) * results.size() / resultSize;
+        batchSize = (int) Math.max(1,
+            Math.min(Math.min(batchSize * 2, entriesLeft / 2), MAX_ITERATOR_BATCH));
+      }
     }
 
-    if (yield.hasYielded()) {
+    if (full) {
+      // any yield happened after the last key value returned
+      yield.getPositionAndReset();
+    } else if (yield.hasYielded()) {
       continueKey = new Key(yield.getPositionAndReset());
       skipContinueKey = true;
       if (!range.contains(continueKey)) {
@@ -772,8 +812,8 @@ public class Tablet {
       }
 
       log.debug("Scan yield detected at position " + continueKey);
-      getTabletServer().getScanMetrics().addYield(1);
-    } else if (!iter.hasTop()) {
+      onYield.run();
+    } else {
       // end of tablet has been reached
       continueKey = null;
       if (results.isEmpty()) {
@@ -793,6 +833,68 @@ public class Tablet {
     return new Scanner(this, range, scanParams, interruptFlag);
   }
 
+  /**
+   * Splits the range of a scan into parts to be read concurrently, when the table sets
+   * {@link Property#TABLE_SCAN_PARTITIONS} and the range covers more than
+   * {@link Property#TABLE_SCAN_PARTITION_THRESHOLD} bytes of its files. The parts start at rows, so
+   * each row is read by one part.
+   *
+   * @return a scan of the parts of the range, or null if the range should be read as a whole
+   */
+  PartitionedScan partitionScan(Range range, ScanParameters scanParams, AtomicBoolean interruptFlag)
+      throws IOException {
+    int numParts = tableConfiguration.getCount(Property.TABLE_SCAN_PARTITIONS);
+    if (numParts <= 1 || scanParams.isIsolated() || extent.isMeta()) {
+      return null;
+    }
+
+    // each index entry is for about one data block
+    long minIndexEntries = tableConfiguration.getAsBytes(Property.TABLE_SCAN_PARTITION_THRESHOLD)
+        / Math.max(1, tableConfiguration.getAsBytes(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE));
+
+    List<Text> rows;
+    ScanFileManager fileManager =
+        getTabletResources().newScanFileManager(scanParams.getScanDispatch());
+    Pair<Long,Map<TabletFile,DataFileValue>> reservation =
+        getDatafileManager().reserveFilesForScan();
+    boolean sawIOException = false;
+    try {
+      rows = FileUtil.findPartitionRows(extent, range,
+          fileManager.openIndexes(reservation.getSecond().keySet()), numParts, minIndexEntries);
+    } catch (TooManyFilesException e) {
+      log.debug("Not splitting scan of {} : {}", extent, e.getMessage());
+      return null;
+    } catch (IOException e) {
+      sawIOException = true;
+      throw e;
+    } finally {
+      fileManager.releaseOpenFiles(sawIOException);
+      getDatafileManager().returnFilesForScan(reservation.getFirst());
+    }
+    if (rows.isEmpty()) {
+      return null;
+    }
+
+    List<Scanner> scanners = new ArrayList<>(rows.size() + 1);
+    Key start = range.getStartKey();
+    boolean startInclusive = range.isStartKeyInclusive();
+    for (Text row : rows) {
+      Key rowStart = new Key(row);
+      scanners.add(new Scanner(this, new Range(start, startInclusive, rowStart, false), scanParams,
+          interruptFlag, false));
+      start = rowStart;
+      startInclusive = true;
+    }
+    scanners.add(new Scanner(this,
+        new Range(start, startInclusive, range.getEndKey(), range.isEndKeyInclusive()), scanParams,
+        interruptFlag, false));
+
+    log.trace("Scanning {} of {} in {} parts", range, extent, scanners.size());
+
+    return new PartitionedScan(scanners,
+        getTabletResources().getTabletServerResourceManager().getScanPartitionExecutor());
+  }
+
   DataFileValue minorCompact(InMemoryMap memTable, TabletFile tmpDatafile, TabletFile newDatafile,
       long queued, CommitSession commitSession, long flushId, MinorCompactionReason mincReason) {
     boolean failed = false;
@@ -1475,8 +1577,12 @@ public class Tablet {
 
     try {
       // we should make .25 below configurable
-      keys = FileUtil.findMidPoint(context, chooseTabletDir(), extent.prevEndRow(), extent.endRow(),
-          files, .25);
+      keys = FileUtil.findMidPointFromSketches(context, extent.prevEndRow(), extent.endRow(), files,
+          .25);
+      if (keys == null) {
+        keys = FileUtil.findMidPoint(context, chooseTabletDir(), extent.prevEndRow(),
+            extent.endRow(), files, .25);
+      }
     } catch (IOException e) {
       log.error("Failed to find midpoint {}", e.getMessage());
       return null;
@@ -29,11 +29,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.client.SampleNotPresentException;
@@ -539,6 +544,50 @@ public class InMemoryMapTest {
     seekLocalityGroups(iter1.deepCopy(null));
   }
 
+  @Test
+  public void testOffHeapMap() throws Exception {
+    ConfigurationCopy config = newConfig(tempFolder.newFolder().getAbsolutePath());
+    config.set(Property.TSERV_OFFHEAPMAP_ENABLED, "true");
+    InMemoryMap imm = new InMemoryMap(config, getServerContext(), TableId.of("--TEST--"));
+    assertEquals(InMemoryMap.TYPE_OFF_HEAP_MAP_WRAPPER, imm.getMapType());
+
+    mutate(imm, "r1", "foo:cq1", 3, "bar1");
+    MemoryIterator ski1 = imm.skvIterator(null);
+    mutate(imm, "r1", "foo:cq1", 3, "bar2");
+    mutate(imm, "r1", "foo:cq2", 3, "bar3");
+    MemoryIterator ski2 = imm.skvIterator(null);
+
+    // the iterator created before the later mutations does not see them
+    ski1.seek(new Range(), Set.of(), false);
+    testAndCallNext(ski1, "r1", "foo:cq1", 3, "bar1");
+    assertFalse(ski1.hasTop());
+
+    ski2.seek(new Range(), Set.of(), false);
+    testAndCallNext(ski2, "r1", "foo:cq1", 3, "bar2");
+    testAndCallNext(ski2, "r1", "foo:cq1", 3, "bar1");
+    testAndCallNext(ski2, "r1", "foo:cq2", 3, "bar3");
+    assertFalse(ski2.hasTop());
+
+    assertEquals(3, imm.getNumEntries());
+    assertTrue(imm.estimatedSizeInBytes() > 0);
+
+    // iterators switch to a dump of the map when it is deleted
+    imm.delete(0);
+
+    ski2.seek(new Range(newKey("r1", "foo:cq2", 3), null), Set.of(), false);
+    testAndCallNext(ski2, "r1", "foo:cq2", 3, "bar3");
+    assertFalse(ski2.hasTop());
+
+    ski1.close();
+    ski2.close();
+
+    config.set(Property.TABLE_LOCALITY_GROUP_PREFIX + "lg1",
+        LocalityGroupUtil.encodeColumnFamilies(toTextSet("cf1", "cf2")));
+    config.set(Property.TABLE_LOCALITY_GROUPS.getKey(), "lg1");
+    imm = new InMemoryMap(config, getServerContext(), TableId.of("--TEST--"));
+    assertEquals(InMemoryMap.TYPE_LOCALITY_GROUP_MAP_OFF_HEAP, imm.getMapType());
+  }
+
   @Test
   public void testSample() throws Exception {
 
@@ -559,7 +608,12 @@ public class InMemoryMapTest {
       config2.set(entry.getKey(), entry.getValue());
     }
 
-    for (ConfigurationCopy config : Arrays.asList(config1, config2)) {
+    ConfigurationCopy config3 = new ConfigurationCopy(config1);
+    config3.set(Property.TSERV_OFFHEAPMAP_ENABLED, "true");
+    ConfigurationCopy config4 = new ConfigurationCopy(config2);
+    config4.set(Property.TSERV_OFFHEAPMAP_ENABLED, "true");
+
+    for (ConfigurationCopy config : Arrays.asList(config1, config2, config3, config4)) {
       InMemoryMap imm = new InMemoryMap(config, getServerContext(), TableId.of("--TEST--"));
 
       TreeMap<Key,Value> expectedSample = new TreeMap<>();
@@ -785,6 +839,74 @@ public class InMemoryMapTest {
         () -> finalIter.seek(new Range(), Set.of(), false));
   }
 
+  @Test
+  public void testConcurrentMutations() throws Exception {
+    ConfigurationCopy config1 = newConfig(tempFolder.newFolder().getAbsolutePath());
+    ConfigurationCopy config2 = newConfig(tempFolder.newFolder().getAbsolutePath());
+    config2.set(Property.TABLE_LOCALITY_GROUP_PREFIX + "lg1",
+        LocalityGroupUtil.encodeColumnFamilies(toTextSet("cf1")));
+    config2.set(Property.TABLE_LOCALITY_GROUPS.getKey(), "lg1");
+    ConfigurationCopy config3 = new ConfigurationCopy(config1);
+    config3.set(Property.TSERV_OFFHEAPMAP_ENABLED, "true");
+
+    int numThreads = 8;
+    int numMutations = 500;
+
+    for (ConfigurationCopy config : Arrays.asList(config1, config2, config3)) {
+      InMemoryMap imm = new InMemoryMap(config, getServerContext(), TableId.of("--TEST--"));
+
+      AtomicBoolean done = new AtomicBoolean(false);
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+      try {
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+          int thread = t;
+          writers.add(executor.submit(() -> {
+            for (int i = 0; i < numMutations; i++) {
+              Mutation m = new Mutation(String.format("t%02d_m%05d", thread, i));
+              m.put("cf1", "cq", "v1");
+              m.put("cf2", "cq", "v2");
+              m.put("cf3", "cq", "v3");
+              imm.mutate(Collections.singletonList(m), 3);
+            }
+          }));
+        }
+
+        // a reader must never see part of a mutation
+        Future<?> reader = executor.submit(() -> {
+          while (!done.get()) {
+            MemoryIterator iter = imm.skvIterator(null);
+            try {
+              Map<String,Integer> counts = new HashMap<>();
+              for (Key key : readAll(iter).keySet()) {
+                counts.merge(key.getRowData().toString(), 1, Integer::sum);
+              }
+              counts.forEach((row, count) -> assertEquals(row, 3, (int) count));
+            } finally {
+              iter.close();
+            }
+          }
+          return null;
+        });
+
+        for (Future<?> writer : writers) {
+          writer.get();
+        }
+        done.set(true);
+        reader.get();
+      } finally {
+        executor.shutdownNow();
+      }
+
+      assertEquals(numThreads * numMutations * 3, imm.getNumEntries());
+      MemoryIterator iter = imm.skvIterator(null);
+      assertEquals(numThreads * numMutations * 3, readAll(iter).size());
+      iter.close();
+      // the kv counts of all writes were published
+      imm.compactionIterator();
+    }
+  }
+
   private TreeMap<Key,Value> readAll(SortedKeyValueIterator<Key,Value> iter) throws IOException {
     iter.seek(new Range(), Set.of(), false);
 
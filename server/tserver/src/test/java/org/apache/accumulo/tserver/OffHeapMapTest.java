@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.InterruptibleIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.IterationInterruptedException;
+import org.junit.Test;
+
+public class OffHeapMapTest {
+
+  private static Mutation newMutation(Random random, int maxRow) {
+    Mutation m = new Mutation(String.format("r%05d", random.nextInt(maxRow)));
+    int numUpdates = 1 + random.nextInt(3);
+    for (int i = 0; i < numUpdates; i++) {
+      String cf = "cf" + random.nextInt(3);
+      String cq = "cq" + random.nextInt(5);
+      long ts = random.nextInt(3);
+      if (random.nextInt(10) == 0) {
+        m.putDelete(cf, cq, ts);
+      } else {
+        byte[] val = new byte[random.nextInt(64)];
+        random.nextBytes(val);
+        m.put(cf, cq, ts, new Value(val));
+      }
+    }
+    return m;
+  }
+
+  private static int addExpected(TreeMap<Key,Value> expected, Mutation m, int kvCount) {
+    for (ColumnUpdate cu : m.getUpdates()) {
+      Key k = new MemKey(m.getRow(), cu.getColumnFamily(), cu.getColumnQualifier(),
+          cu.getColumnVisibility(), cu.getTimestamp(), cu.isDeleted(), false, kvCount++);
+      expected.put(k, new Value(cu.getValue()));
+    }
+    return kvCount;
+  }
+
+  private static void verify(SortedMap<Key,Value> expected, SortedKeyValueIterator<Key,Value> iter,
+      Range range) throws Exception {
+    iter.seek(range, Set.of(), false);
+    for (Entry<Key,Value> entry : expected.entrySet()) {
+      assertTrue(iter.hasTop());
+      assertEquals(entry.getKey(), iter.getTopKey());
+      assertEquals(((MemKey) entry.getKey()).getKVCount(),
+          ((MemKey) iter.getTopKey()).getKVCount());
+      assertEquals(entry.getValue(), iter.getTopValue());
+      iter.next();
+    }
+    assertFalse(iter.hasTop());
+  }
+
+  @Test
+  public void testRandom() throws Exception {
+    Random random = new Random(42);
+    // small chunks so entries are spread across many of them
+    OffHeapMap map = new OffHeapMap(4096);
+    TreeMap<Key,Value> expected = new TreeMap<>(new MemKeyComparator());
+
+    int kvCount = 1;
+    for (int i = 0; i < 2000; i++) {
+      Mutation m = newMutation(random, 500);
+      map.mutate(List.of(m), kvCount);
+      kvCount = addExpected(expected, m, kvCount);
+    }
+
+    assertEquals(expected.size(), map.size());
+    assertTrue(map.getMemoryUsed() > 0);
+
+    InterruptibleIterator iter = map.skvIterator();
+    verify(expected, iter, new Range());
+
+    for (int i = 0; i < 100; i++) {
+      String start = String.format("r%05d", random.nextInt(500));
+      String end = String.format("r%05d", random.nextInt(500));
+      if (start.compareTo(end) > 0) {
+        String tmp = start;
+        start = end;
+        end = tmp;
+      }
+      Range range = new Range(start, end);
+      SortedMap<Key,Value> subMap =
+          expected.subMap(new Key(start), new Key(end).followingKey(PartialKey.ROW));
+      verify(subMap, iter, range);
+      verify(subMap, iter.deepCopy(null), range);
+    }
+
+    // a key in the map, seeked to exclusively
+    Key key = expected.keySet().stream().skip(expected.size() / 2).findFirst().get();
+    verify(expected.tailMap(key, false), iter, new Range(key, false, null, true));
+  }
+
+  @Test
+  public void testLargeEntries() throws Exception {
+    OffHeapMap map = new OffHeapMap(1024);
+    TreeMap<Key,Value> expected = new TreeMap<>(new MemKeyComparator());
+
+    int kvCount = 1;
+    for (int i = 0; i < 20; i++) {
+      Mutation m = new Mutation(String.format("r%05d", i));
+      // values larger than a chunk get a chunk of their own
+      m.put("cf", "cq", new Value(new byte[i % 2 == 0 ? 3000 : 10]));
+      map.mutate(List.of(m), kvCount);
+      kvCount = addExpected(expected, m, kvCount);
+    }
+
+    verify(expected, map.skvIterator(), new Range());
+  }
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    OffHeapMap map = new OffHeapMap(8192);
+    TreeMap<Key,Value> expected = new TreeMap<>(new MemKeyComparator());
+
+    int numThreads = 8;
+    int numMutations = 2000;
+    List<List<Mutation>> batches = new ArrayList<>();
+    int kvCount = 1;
+    List<Integer> kvCounts = new ArrayList<>();
+    Random random = new Random(7);
+    for (int i = 0; i < numThreads * numMutations; i++) {
+      Mutation m = newMutation(random, 1000);
+      batches.add(List.of(m));
+      kvCounts.add(kvCount);
+      kvCount = addExpected(expected, m, kvCount);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = thread; i < batches.size(); i += numThreads) {
+            map.mutate(batches.get(i), kvCounts.get(i));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    assertEquals(expected.size(), map.size());
+    verify(expected, map.skvIterator(), new Range());
+  }
+
+  @Test
+  public void testInterrupt() throws Exception {
+    OffHeapMap map = new OffHeapMap();
+    Random random = new Random(3);
+    for (int i = 0; i < 500; i++) {
+      map.mutate(List.of(newMutation(random, 100)), 1 + 3 * i);
+    }
+
+    InterruptibleIterator iter = map.skvIterator();
+    AtomicBoolean flag = new AtomicBoolean(false);
+    iter.setInterruptFlag(flag);
+    iter.seek(new Range(), Set.of(), false);
+    flag.set(true);
+    assertThrows(IterationInterruptedException.class, () -> {
+      while (iter.hasTop()) {
+        iter.next();
+      }
+    });
+    assertThrows(IterationInterruptedException.class,
+        () -> iter.seek(new Range(), Set.of(), false));
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    OffHeapMap map = new OffHeapMap();
+    map.mutate(List.of(newMutation(new Random(5), 10)), 1);
+    InterruptibleIterator iter = map.skvIterator();
+    assertTrue(map.getMemoryUsed() > 0);
+    map.delete();
+    assertEquals(0, map.getMemoryUsed());
+    assertThrows(IllegalStateException.class, () -> iter.seek(new Range(), Set.of(), false));
+    assertThrows(IllegalStateException.class,
+        () -> map.mutate(List.of(newMutation(new Random(5), 10)), 2));
+    assertThrows(IllegalStateException.class, map::delete);
+  }
+
+  @Test
+  public void testMemoryUsed() throws Exception {
+    OffHeapMap map = new OffHeapMap();
+    assertEquals(0, map.getMemoryUsed());
+
+    // a small map only holds a small chunk, which is counted whole
+    Mutation m = new Mutation("r1");
+    m.put("cf", "cq", "v");
+    map.mutate(List.of(m), 1);
+    long memoryUsed = map.getMemoryUsed();
+    assertTrue(memoryUsed >= OffHeapMap.MIN_CHUNK_SIZE);
+    assertTrue(memoryUsed < 2 * OffHeapMap.MIN_CHUNK_SIZE);
+
+    // chunks double in size until they reach the chunk size
+    int kvCount = 2;
+    long entryBytes = 0;
+    while (map.getMemoryUsed() < 4 * OffHeapMap.DEFAULT_CHUNK_SIZE) {
+      m = new Mutation(String.format("r%08d", kvCount));
+      m.put("cf", "cq", new Value(new byte[1000]));
+      map.mutate(List.of(m), kvCount++);
+      entryBytes += 1000;
+    }
+    assertTrue(map.getMemoryUsed() > entryBytes);
+    assertTrue(map.getMemoryUsed() < entryBytes + 2 * OffHeapMap.DEFAULT_CHUNK_SIZE);
+    assertEquals(kvCount - 1, map.size());
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.accumulo.tserver.log;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,6 +27,10 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.accumulo.core.client.Durability;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression;
 import org.apache.accumulo.tserver.TabletMutations;
 import org.apache.accumulo.tserver.tablet.CommitSession;
 import org.easymock.EasyMock;
@@ -68,6 +73,19 @@ public class DfsLoggerTest {
     assertEquals(Durability.SYNC, chooseDurabilityForGroupCommit(lst));
   }
 
+  @Test
+  public void testCompression() {
+    ConfigurationCopy conf = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    assertNull(DfsLogger.getCompression(conf));
+
+    conf.set(Property.TSERV_WAL_COMPRESSION_TYPE, Compression.COMPRESSION_GZ);
+    assertEquals(Compression.COMPRESSION_GZ, DfsLogger.getCompression(conf).getName());
+
+    // a bad setting writes logs uncompressed instead of failing to create them
+    conf.set(Property.TSERV_WAL_COMPRESSION_TYPE, "unknown");
+    assertNull(DfsLogger.getCompression(conf));
+  }
+
   static Durability chooseDurabilityForGroupCommit(Collection<TabletMutations> mutations) {
     Durability result = Durability.NONE;
     for (TabletMutations tabletMutations : mutations) {
@@ -28,6 +28,7 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -38,12 +39,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
@@ -74,6 +79,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterators;
+
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "paths not set by user input")
@@ -200,6 +209,22 @@ public class SortedLogRecoveryTest {
       SortedLogRecovery recovery = new SortedLogRecovery(context);
       CaptureMutations capture = new CaptureMutations();
       recovery.recover(extent, dirs, files, capture);
+
+      // recovering with the logs read ahead and their defined tablets cached gets the same result,
+      // both when reading the defined tablets and when they are already cached
+      ExecutorService readAheadPool = Executors.newCachedThreadPool();
+      try {
+        Cache<Path,Map<KeyExtent,Integer>> definedTablets = CacheBuilder.newBuilder().build();
+        for (int i = 0; i < 2; i++) {
+          CaptureMutations pipelined = new CaptureMutations();
+          new SortedLogRecovery(context, definedTablets, readAheadPool).recover(extent, dirs, files,
+              pipelined);
+          assertEquals(capture.result, pipelined.result);
+        }
+      } finally {
+        readAheadPool.shutdownNow();
+      }
+
       verify(context);
       return capture.result;
     }
@@ -1176,4 +1201,95 @@ public class SortedLogRecoveryTest {
       return Compression.getCompressionAlgorithmByName(Utils.readString(in));
     }
   }
+
+  @Test
+  public void testReadAheadIterator() {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      List<Integer> source = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        source.add(i);
+      }
+      List<Integer> read = new ArrayList<>();
+      try (var iter = new SortedLogRecovery.ReadAheadIterator<>(source.iterator(), 3, executor)) {
+        iter.forEachRemaining(read::add);
+        assertFalse(iter.hasNext());
+      }
+      assertEquals(source, read);
+
+      // closing before the source is read stops the reader
+      try (var iter = new SortedLogRecovery.ReadAheadIterator<>(source.iterator(), 3, executor)) {
+        assertEquals(0, (int) iter.next());
+      }
+
+      // a failure reading the source is thrown to the consumer
+      Iterator<Integer> failing = Iterators.concat(source.iterator(), new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return true;
+        }
+
+        @Override
+        public Integer next() {
+          throw new IllegalStateException("bad log");
+        }
+      });
+      try (var iter = new SortedLogRecovery.ReadAheadIterator<>(failing, 3, executor)) {
+        for (int i = 0; i < 100; i++) {
+          assertEquals(i, (int) iter.next());
+        }
+        var e = assertThrows(IllegalStateException.class, iter::hasNext);
+        assertEquals("bad log", e.getMessage());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testReadAheadShutdown() throws Exception {
+    CountDownLatch queueFull = new CountDownLatch(1);
+    Iterator<Integer> source = new Iterator<>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        if (i == 3) {
+          queueFull.countDown();
+        }
+        return i++;
+      }
+    };
+
+    // a reader interrupted while waiting to queue an entry fails the consumer
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (var iter = new SortedLogRecovery.ReadAheadIterator<>(source, 3, executor)) {
+      queueFull.await();
+      executor.shutdownNow();
+      List<Integer> read = new ArrayList<>();
+      var e = assertThrows(IllegalStateException.class, () -> iter.forEachRemaining(read::add));
+      assertTrue(e.getCause() instanceof InterruptedException);
+      assertEquals(List.of(0, 1, 2), read);
+    }
+
+    // a reader dropped by the executor before it runs fails the consumer
+    executor = Executors.newSingleThreadExecutor();
+    CountDownLatch blocked = new CountDownLatch(1);
+    executor.submit(() -> {
+      blocked.countDown();
+      Thread.sleep(Long.MAX_VALUE);
+      return null;
+    });
+    blocked.await();
+    try (var iter = new SortedLogRecovery.ReadAheadIterator<>(List.of(1).iterator(), 3, executor)) {
+      executor.shutdownNow();
+      var e = assertThrows(IllegalStateException.class, iter::hasNext);
+      assertEquals("Stopped reading ahead before the end of logs", e.getMessage());
+    }
+  }
 }
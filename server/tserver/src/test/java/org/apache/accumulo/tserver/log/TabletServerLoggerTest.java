@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver.log;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArgument;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.client.Durability;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.crypto.CryptoServiceFactory;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.TableId;
+import org.apache.accumulo.core.dataImpl.KeyExtent;
+import org.apache.accumulo.core.volume.Volume;
+import org.apache.accumulo.core.volume.VolumeImpl;
+import org.apache.accumulo.fate.util.Retry;
+import org.apache.accumulo.fate.util.Retry.RetryFactory;
+import org.apache.accumulo.server.ServerContext;
+import org.apache.accumulo.server.conf.TableConfiguration;
+import org.apache.accumulo.server.data.ServerMutation;
+import org.apache.accumulo.server.fs.VolumeManager;
+import org.apache.accumulo.server.fs.VolumeManagerImpl;
+import org.apache.accumulo.tserver.TabletMutations;
+import org.apache.accumulo.tserver.TabletServer;
+import org.apache.accumulo.tserver.tablet.CommitSession;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TabletServerLoggerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder =
+      new TemporaryFolder(new File(System.getProperty("user.dir") + "/target"));
+
+  private String workdir;
+  private VolumeManager fs;
+  private ServerContext context;
+  private TabletServer tserver;
+  private final List<DfsLogger> closedLogs = Collections.synchronizedList(new ArrayList<>());
+
+  // the logs each tablet was defined in, in the order they were used
+  private final Map<KeyExtent,Set<String>> logsUsed = new HashMap<>();
+
+  @Before
+  public void setup() throws Exception {
+    workdir = tempFolder.newFolder().getAbsolutePath();
+    AccumuloConfiguration conf = DefaultConfiguration.getInstance();
+    Configuration hadoopConf = new Configuration();
+    // the raw file system can read a log that is still being written, as recovery would after the
+    // tablet server died
+    FileSystem rawFS = FileSystem.getLocal(hadoopConf).getRaw();
+    fs = new VolumeManagerImpl(Map.<String,Volume>of("", new VolumeImpl(rawFS, workdir)), conf,
+        hadoopConf) {};
+
+    context = createMock(ServerContext.class);
+    expect(context.getBaseUris()).andReturn(Set.of("file://" + workdir)).anyTimes();
+    expect(context.getVolumeManager()).andReturn(fs).anyTimes();
+    expect(context.getCryptoService()).andReturn(CryptoServiceFactory.newDefaultInstance())
+        .anyTimes();
+    expect(context.getConfiguration()).andReturn(conf).anyTimes();
+    replay(context);
+
+    DfsLogger.ServerResources resources = new DfsLogger.ServerResources() {
+      @Override
+      public AccumuloConfiguration getConfiguration() {
+        return conf;
+      }
+
+      @Override
+      public VolumeManager getVolumeManager() {
+        return fs;
+      }
+    };
+
+    // replication is not enabled for the tablets
+    TableConfiguration tableConf = createNiceMock(TableConfiguration.class);
+    replay(tableConf);
+
+    tserver = createMock(TabletServer.class);
+    expect(tserver.getServerConfig()).andReturn(resources).anyTimes();
+    expect(tserver.getContext()).andReturn(context).anyTimes();
+    expect(tserver.getClientAddressString()).andReturn("localhost:9997").anyTimes();
+    expect(tserver.getTableConfiguration(anyObject())).andReturn(tableConf).anyTimes();
+    tserver.addNewLogMarker(anyObject());
+    expectLastCall().anyTimes();
+    tserver.walogClosed(anyObject());
+    expectLastCall().andAnswer(() -> {
+      closedLogs.add(getCurrentArgument(0));
+      return null;
+    }).anyTimes();
+    replay(tserver);
+  }
+
+  @After
+  public void teardown() throws IOException {
+    fs.close();
+  }
+
+  private TabletServerLogger newLogger(int numStreams, long maxSize) {
+    RetryFactory createRetryFactory =
+        Retry.builder().maxRetries(3).retryAfter(1, TimeUnit.MILLISECONDS)
+            .incrementBy(1, TimeUnit.MILLISECONDS).maxWait(10, TimeUnit.MILLISECONDS)
+            .backOffFactor(1.5).logInterval(1, TimeUnit.MINUTES).createFactory();
+    RetryFactory writeRetryFactory =
+        Retry.builder().infiniteRetries().retryAfter(1, TimeUnit.MILLISECONDS)
+            .incrementBy(1, TimeUnit.MILLISECONDS).maxWait(10, TimeUnit.MILLISECONDS)
+            .backOffFactor(1.5).logInterval(1, TimeUnit.MINUTES).createFactory();
+    return new TabletServerLogger(tserver, maxSize, new AtomicLong(), new AtomicLong(),
+        createRetryFactory, writeRetryFactory, TimeUnit.HOURS.toMillis(1), numStreams);
+  }
+
+  private List<CommitSession> newSessions(int numTablets) {
+    List<CommitSession> sessions = new ArrayList<>();
+    Text prevEndRow = null;
+    for (int i = 0; i < numTablets; i++) {
+      Text endRow = i == numTablets - 1 ? null : new Text(String.format("r%03d", i));
+      KeyExtent extent = new KeyExtent(TableId.of("1"), endRow, prevEndRow);
+      Set<String> used = Collections.synchronizedSet(new LinkedHashSet<>());
+      logsUsed.put(extent, used);
+
+      CommitSession session = createMock(CommitSession.class);
+      expect(session.getExtent()).andReturn(extent).anyTimes();
+      expect(session.getLogId()).andReturn(i).anyTimes();
+      expect(session.getWALogSeq()).andReturn(1L).anyTimes();
+      expect(session.beginUpdatingLogsUsed(anyObject(), anyBoolean()))
+          .andAnswer(() -> used.add(((DfsLogger) getCurrentArgument(0)).getFileName())).anyTimes();
+      session.finishUpdatingLogsUsed();
+      expectLastCall().anyTimes();
+      replay(session);
+
+      sessions.add(session);
+      prevEndRow = endRow;
+    }
+    return sessions;
+  }
+
+  private static Mutation newMutation(CommitSession session, int batch, int valueSize) {
+    // the tablet server logs server mutations, which is what recovery reads back
+    Mutation m = new ServerMutation(new Text(session.getLogId() + "_" + batch));
+    m.put("cf", "cq", new String(new char[valueSize]).replace('\0', 'v'));
+    return m;
+  }
+
+  private static void logBatch(TabletServerLogger logger, List<CommitSession> sessions, int batch,
+      int valueSize, Map<KeyExtent,Set<String>> written) throws IOException {
+    Map<CommitSession,TabletMutations> loggables = new HashMap<>();
+    for (CommitSession session : sessions) {
+      Mutation m = newMutation(session, batch, valueSize);
+      loggables.put(session, new TabletMutations(session, List.of(m), Durability.SYNC));
+      written.computeIfAbsent(session.getExtent(), e -> new TreeSet<>())
+          .add(new String(m.getRow()));
+    }
+    logger.logManyTablets(loggables);
+  }
+
+  @Test
+  public void testStriping() throws Exception {
+    TabletServerLogger logger = newLogger(3, Long.MAX_VALUE);
+    List<CommitSession> sessions = newSessions(12);
+
+    Set<Integer> streams = new HashSet<>();
+    for (CommitSession session : sessions) {
+      streams.add(logger.getStreamIndex(session));
+    }
+    assertEquals(Set.of(0, 1, 2), streams);
+
+    logBatch(logger, sessions, 0, 10, new HashMap<>());
+    for (CommitSession session : sessions) {
+      logger.log(session, newMutation(session, 1, 10), Durability.SYNC);
+    }
+
+    // each tablet only ever wrote to the log of its stream, which it shares with the other tablets
+    // of that stream
+    Set<String> current = new HashSet<>(logger.getLogFiles());
+    assertEquals(3, current.size());
+    for (CommitSession s1 : sessions) {
+      Set<String> used1 = logsUsed.get(s1.getExtent());
+      assertEquals(1, used1.size());
+      assertTrue(current.containsAll(used1));
+      for (CommitSession s2 : sessions) {
+        Set<String> used2 = logsUsed.get(s2.getExtent());
+        if (logger.getStreamIndex(s1) == logger.getStreamIndex(s2)) {
+          assertEquals(used1, used2);
+        } else {
+          assertNotEquals(used1, used2);
+        }
+      }
+    }
+    assertTrue(closedLogs.isEmpty());
+  }
+
+  @Test
+  public void testRoll() throws Exception {
+    TabletServerLogger logger = newLogger(2, 1000);
+    List<CommitSession> sessions = newSessions(8);
+
+    for (int batch = 0; batch < 10; batch++) {
+      logBatch(logger, sessions, batch, 500, new HashMap<>());
+    }
+
+    // each stream rolled over to new logs on its own, the logs of the streams never mix
+    Set<String> allUsed = new HashSet<>();
+    for (CommitSession s1 : sessions) {
+      Set<String> used1 = logsUsed.get(s1.getExtent());
+      assertTrue(used1.size() > 2);
+      allUsed.addAll(used1);
+      for (CommitSession s2 : sessions) {
+        Set<String> used2 = logsUsed.get(s2.getExtent());
+        if (logger.getStreamIndex(s1) == logger.getStreamIndex(s2)) {
+          assertEquals(List.copyOf(used1), List.copyOf(used2));
+        } else {
+          assertTrue(Collections.disjoint(used1, used2));
+        }
+      }
+    }
+
+    // every log that was used is either closed or is the current log of its stream
+    Set<String> closed = new HashSet<>();
+    for (DfsLogger closedLog : closedLogs) {
+      closed.add(closedLog.getFileName());
+    }
+    List<String> current = logger.getLogFiles();
+    assertTrue(current.size() <= 2);
+    assertTrue(Collections.disjoint(closed, current));
+    Set<String> expected = new HashSet<>(closed);
+    expected.addAll(current);
+    assertEquals(allUsed, expected);
+  }
+
+  @Test
+  public void testRecovery() throws Exception {
+    TabletServerLogger logger = newLogger(3, 1000);
+    List<CommitSession> sessions = newSessions(9);
+
+    Map<KeyExtent,Set<String>> written = new HashMap<>();
+    for (int batch = 0; batch < 6; batch++) {
+      logBatch(logger, sessions, batch, 200, written);
+    }
+    for (CommitSession session : sessions) {
+      Mutation m = newMutation(session, 6, 200);
+      logger.log(session, m, Durability.SYNC);
+      written.get(session.getExtent()).add(new String(m.getRow()));
+    }
+
+    // sort every log that was used, including the current ones that are still open
+    Map<String,Path> sorted = new HashMap<>();
+    LogSorter sorter = new LogSorter(context, DefaultConfiguration.getInstance());
+    for (Set<String> used : logsUsed.values()) {
+      for (String logFile : used) {
+        if (!sorted.containsKey(logFile)) {
+          Path src = new Path(logFile);
+          String dest = workdir + "/recovery/" + src.getName();
+          sorter.new LogProcessor().sort(fs, src.getName(), src, dest);
+          sorted.put(logFile, new Path(dest));
+        }
+      }
+    }
+
+    // each tablet recovers all of its mutations from the logs it was defined in
+    for (CommitSession session : sessions) {
+      KeyExtent extent = session.getExtent();
+      List<Path> dirs = new ArrayList<>();
+      for (String logFile : logsUsed.get(extent)) {
+        dirs.add(sorted.get(logFile));
+      }
+      assertTrue(dirs.size() > 1);
+
+      Set<String> recovered = new TreeSet<>();
+      logger.recover(context, extent, dirs, Set.of(), m -> recovered.add(new String(m.getRow())));
+      assertEquals(written.get(extent), recovered);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
@@ -32,14 +33,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.accumulo.core.client.rfile.RFile;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.crypto.CryptoServiceFactory;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.server.ServerContext;
 import org.apache.accumulo.server.fs.VolumeManager;
 import org.apache.accumulo.server.fs.VolumeManagerImpl;
 import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.After;
 import org.junit.Before;
@@ -155,4 +169,54 @@ public class TestUpgradePathForWALogs {
     }
   }
 
+  @Test
+  public void testParallelSort() throws IOException {
+    String walogToTest = WALOG_FROM_20;
+    String testPath = tempFolder.getRoot().getAbsolutePath();
+
+    try (InputStream walogStream = getClass().getResourceAsStream(walogToTest);
+        OutputStream walogInHDFStream = new FileOutputStream(testPath + walogToTest)) {
+      IOUtils.copyLarge(walogStream, walogInHDFStream);
+    }
+
+    // a tiny buffer, so the log is split into many parts
+    ConfigurationCopy serialConfig = new ConfigurationCopy(config);
+    serialConfig.set(Property.TSERV_WAL_SORT_BUFFER_SIZE, "1");
+    ConfigurationCopy parallelConfig = new ConfigurationCopy(serialConfig);
+    parallelConfig.set(Property.TSERV_WAL_SORT_THREADS, "4");
+
+    String serialPath = "file://" + testPath + "/serial";
+    new LogSorter(context, serialConfig).new LogProcessor().sort(context.getVolumeManager(),
+        walogToTest, new Path("file://" + testPath + walogToTest), serialPath);
+    String parallelPath = "file://" + testPath + "/parallel";
+    new LogSorter(context, parallelConfig).new LogProcessor().sort(context.getVolumeManager(),
+        walogToTest, new Path("file://" + testPath + walogToTest), parallelPath);
+
+    assertTrue(context.getVolumeManager().exists(getFinishedMarkerPath(parallelPath)));
+    List<List<Entry<Key,Value>>> parts = readParts(serialPath);
+    assertTrue(parts.size() > 1);
+    assertEquals(parts, readParts(parallelPath));
+  }
+
+  private List<List<Entry<Key,Value>>> readParts(String dir) throws IOException {
+    VolumeManager vm = context.getVolumeManager();
+    FileSystem fs = vm.getFileSystemByPath(new Path(dir));
+    FileStatus[] files = vm.listStatus(new Path(dir));
+    Arrays.sort(files, Comparator.comparing(status -> status.getPath().getName()));
+    List<List<Entry<Key,Value>>> parts = new ArrayList<>();
+    for (FileStatus status : files) {
+      String name = status.getPath().getName();
+      if (!name.startsWith("part-")) {
+        continue;
+      }
+      List<Entry<Key,Value>> entries = new ArrayList<>();
+      try (var scanner =
+          RFile.newScanner().from(status.getPath().toString()).withFileSystem(fs).build()) {
+        scanner.forEach(e -> entries.add(
+            new AbstractMap.SimpleImmutableEntry<>(new Key(e.getKey()), new Value(e.getValue()))));
+      }
+      parts.add(entries);
+    }
+    return parts;
+  }
 }
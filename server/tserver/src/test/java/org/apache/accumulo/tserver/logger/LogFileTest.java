@@ -34,6 +34,7 @@ import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.TableId;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.server.data.ServerMutation;
 import org.apache.hadoop.io.DataInputBuffer;
@@ -113,6 +114,42 @@ public class LogFileTest {
     assertEquals(value.mutations, Arrays.asList(m, m));
   }
 
+  @Test
+  public void testCompressedMutations() throws IOException {
+    Mutation m1 = new ServerMutation(new Text("row1"));
+    m1.put(new Text("cf"), new Text("cq"), new ColumnVisibility("vis"), 12345, new Value("value"));
+    m1.putDelete(new Text("cf"), new Text("cq2"), new ColumnVisibility("vis2"));
+    Mutation m2 = new ServerMutation(new Text("row2"));
+    m2.put("cf", "cq", "value");
+
+    LogFileValue value = new LogFileValue();
+    value.mutations = Arrays.asList(m1, m2, m1);
+    DataOutputBuffer uncompressed = new DataOutputBuffer();
+    value.write(uncompressed);
+    value.compress(Compression.getCompressionAlgorithmByName(Compression.COMPRESSION_GZ));
+    DataOutputBuffer out = new DataOutputBuffer();
+    value.write(out);
+    // an uncompressed value following a compressed one
+    value = new LogFileValue();
+    value.mutations = Arrays.asList(m2);
+    value.write(out);
+    out.flush();
+
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.size());
+    LogFileValue result = new LogFileValue();
+    result.readFields(in);
+    assertEquals(Arrays.asList(m1, m2, m1), result.mutations);
+    result.readFields(in);
+    assertEquals(Arrays.asList(m2), result.mutations);
+    assertEquals(in.read(), -1);
+
+    // the uncompressed form of the first value is still read the same way
+    in.reset(uncompressed.getData(), uncompressed.size());
+    result.readFields(in);
+    assertEquals(Arrays.asList(m1, m2, m1), result.mutations);
+  }
+
   @Test
   public void testEventType() {
     assertEquals(LogFileKey.eventType(MUTATION), LogFileKey.eventType(MANY_MUTATIONS));
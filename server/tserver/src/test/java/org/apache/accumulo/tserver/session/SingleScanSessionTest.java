@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver.session;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.TableId;
+import org.apache.accumulo.core.dataImpl.KeyExtent;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.securityImpl.thrift.TCredentials;
+import org.apache.accumulo.tserver.scan.NextBatchTask;
+import org.apache.accumulo.tserver.scan.ScanParameters;
+import org.junit.Test;
+
+public class SingleScanSessionTest {
+
+  private static SingleScanSession newSession() {
+    ScanParameters params = new ScanParameters(100, Authorizations.EMPTY, Set.of(), List.of(),
+        Map.of(), false, null, Long.MAX_VALUE, null);
+    return new SingleScanSession(new TCredentials(), new KeyExtent(TableId.of("1"), null, null),
+        params, 3, Map.of());
+  }
+
+  private static NextBatchTask newTask(SingleScanSession session) {
+    return new NextBatchTask(null, 1, session.interruptFlag);
+  }
+
+  @Test
+  public void testReadAheadWindow() {
+    SingleScanSession session = newSession();
+    assertTrue(session.needsReadAhead());
+
+    NextBatchTask first = newTask(session);
+    session.addReadAhead(first);
+    assertSame(first, session.nextBatchTask);
+    assertFalse(session.needsReadAhead());
+
+    // the first task read its batch, and there is room for two more
+    assertTrue(session.canReadAhead(3));
+    NextBatchTask second = newTask(session);
+    session.addReadAhead(second);
+    assertTrue(session.canReadAhead(3));
+    NextBatchTask third = newTask(session);
+    session.addReadAhead(third);
+
+    // the window is full, so the third task stops reading ahead
+    assertFalse(session.canReadAhead(3));
+    assertTrue(session.needsReadAhead());
+
+    // the client takes a batch, and read ahead starts again after the third task
+    session.nextBatchReturned();
+    assertSame(second, session.nextBatchTask);
+    NextBatchTask fourth = newTask(session);
+    session.addReadAhead(fourth);
+    assertFalse(session.needsReadAhead());
+
+    session.nextBatchReturned();
+    assertSame(third, session.nextBatchTask);
+    session.nextBatchReturned();
+    assertSame(fourth, session.nextBatchTask);
+    session.nextBatchReturned();
+    assertNull(session.nextBatchTask);
+    assertTrue(session.needsReadAhead());
+  }
+
+  @Test
+  public void testCleanupCancelsReadAhead() {
+    SingleScanSession session = newSession();
+    NextBatchTask first = newTask(session);
+    NextBatchTask second = newTask(session);
+    session.addReadAhead(first);
+    session.addReadAhead(second);
+
+    assertTrue(session.cleanup());
+    assertTrue(first.isCancelled());
+    assertTrue(second.isCancelled());
+    assertTrue(session.interruptFlag.get());
+
+    // tasks created after the session is cleaned up are cancelled right away
+    assertTrue(newTask(session).isCancelled());
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.tserver.tablet;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+public class PartitionedScanTest {
+
+  private static ScanBatch batch(String row, boolean more) {
+    return new ScanBatch(List.of(new KVEntry(new Key(row), new Value())), more);
+  }
+
+  private static String row(ScanBatch batch) {
+    assertEquals(1, batch.getResults().size());
+    return batch.getResults().get(0).getKey().getRow().toString();
+  }
+
+  @Test(timeout = 60_000)
+  public void testOrder() throws Exception {
+    Scanner s1 = createMock(Scanner.class);
+    expect(s1.read()).andReturn(batch("a", true));
+    expect(s1.read()).andReturn(batch("b", true));
+    expect(s1.read()).andReturn(batch("c", false));
+    Scanner s2 = createMock(Scanner.class);
+    expect(s2.read()).andReturn(batch("d", false));
+    Scanner s3 = createMock(Scanner.class);
+    expect(s3.read()).andReturn(batch("e", true));
+    expect(s3.read()).andReturn(batch("f", false));
+    replay(s1, s2, s3);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      PartitionedScan scan = new PartitionedScan(List.of(s1, s2, s3), executor);
+      List<String> rows = new ArrayList<>();
+      ScanBatch batch;
+      do {
+        batch = scan.read();
+        rows.add(row(batch));
+      } while (batch.isMore());
+      // only the last batch of the last part ends the scan
+      assertEquals(List.of("a", "b", "c", "d", "e", "f"), rows);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    verify(s1, s2, s3);
+  }
+
+  @Test(timeout = 60_000)
+  public void testReadAhead() throws Exception {
+    Scanner s1 = createMock(Scanner.class);
+    for (int i = 0; i < 5; i++) {
+      expect(s1.read()).andReturn(batch("a" + i, i < 4));
+    }
+    Scanner s2 = createMock(Scanner.class);
+    for (int i = 0; i < 5; i++) {
+      expect(s2.read()).andReturn(batch("b" + i, i < 4));
+    }
+    replay(s1, s2);
+
+    // run reads only when asked, to see how far ahead of the taken batches they get
+    List<Runnable> tasks = Collections.synchronizedList(new ArrayList<>());
+    PartitionedScan scan = new PartitionedScan(List.of(s1, s2), tasks::add);
+    assertTrue(tasks.isEmpty());
+
+    // the first read starts reading every part
+    AtomicReference<ScanBatch> first = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      try {
+        first.set(scan.read());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    reader.start();
+    while (tasks.size() < 2) {
+      Thread.sleep(1);
+    }
+    tasks.remove(0).run();
+    tasks.remove(0).run();
+    reader.join();
+    assertEquals("a0", row(first.get()));
+
+    // each part reads one batch at a time, and at most MAX_QUEUED batches ahead of the taken ones
+    int reads = 2;
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+      reads++;
+    }
+    assertEquals(2 * PartitionedScan.MAX_QUEUED + 1, reads);
+
+    List<String> rows = new ArrayList<>();
+    ScanBatch batch;
+    do {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+      batch = scan.read();
+      rows.add(row(batch));
+    } while (batch.isMore());
+    assertEquals(List.of("a1", "a2", "a3", "a4", "b0", "b1", "b2", "b3", "b4"), rows);
+
+    verify(s1, s2);
+  }
+
+  @Test(timeout = 60_000)
+  public void testFailure() throws Exception {
+    IOException failure = new IOException("bad file");
+    Scanner s1 = createMock(Scanner.class);
+    expect(s1.read()).andReturn(batch("a", false));
+    Scanner s2 = createMock(Scanner.class);
+    expect(s2.read()).andThrow(failure);
+    replay(s1, s2);
+
+    PartitionedScan scan = new PartitionedScan(List.of(s1, s2), Runnable::run);
+    ScanBatch batch = scan.read();
+    assertEquals("a", row(batch));
+    assertTrue(batch.isMore());
+    // the failure of a part is thrown when its batches are taken
+    assertSame(failure, assertThrows(IOException.class, scan::read));
+
+    verify(s1, s2);
+  }
+
+  @Test(timeout = 60_000)
+  public void testRejected() throws Exception {
+    Scanner s1 = createMock(Scanner.class);
+    replay(s1);
+
+    PartitionedScan scan = new PartitionedScan(List.of(s1), task -> {
+      throw new RejectedExecutionException("shutdown");
+    });
+    assertThrows(RejectedExecutionException.class, scan::read);
+    // the part is done, so it is not read again
+    assertThrows(RejectedExecutionException.class, scan::read);
+    assertFalse(Thread.currentThread().isInterrupted());
+
+    verify(s1);
+  }
+}
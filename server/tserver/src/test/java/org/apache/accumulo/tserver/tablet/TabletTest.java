@@ -19,12 +19,29 @@
 package org.apache.accumulo.tserver.tablet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
+import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.tserver.compaction.CompactionPlan;
 import org.apache.accumulo.tserver.compaction.WriteParameters;
+import org.apache.accumulo.tserver.scan.ScanParameters;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -63,4 +80,83 @@ public class TabletTest {
     assertEquals(replication,
         Integer.parseInt(aConf.get(Property.TABLE_FILE_REPLICATION.getKey())));
   }
+
+  private static TreeMap<Key,Value> newData() {
+    TreeMap<Key,Value> data = new TreeMap<>();
+    for (int i = 0; i < 1000; i++) {
+      data.put(new Key(String.format("r%04d", i), "cf", "cq"), new Value(new byte[20]));
+    }
+    return data;
+  }
+
+  private static ScanParameters newScanParams(int maxEntries, long batchTimeOut) {
+    return new ScanParameters(maxEntries, Authorizations.EMPTY, Set.of(), List.of(), Map.of(),
+        false, null, batchTimeOut, null);
+  }
+
+  private static void assertContinues(TreeMap<Key,Value> data, Batch batch) {
+    List<KVEntry> results = batch.getResults();
+    assertEquals(new ArrayList<>(data.keySet()).subList(0, results.size()),
+        results.stream().map(KVEntry::getKey).collect(Collectors.toList()));
+    assertEquals(results.get(results.size() - 1).getKey(), batch.getContinueKey());
+    assertTrue(batch.isSkipContinueKey());
+  }
+
+  @Test
+  public void testNextBatch() throws Exception {
+    TreeMap<Key,Value> data = newData();
+
+    Batch batch = Tablet.nextBatch(new SortedMapIterator(data), new Range(),
+        newScanParams(Integer.MAX_VALUE, 0), Long.MAX_VALUE, () -> {});
+    assertEquals(1000, batch.getResults().size());
+    assertNull(batch.getContinueKey());
+  }
+
+  @Test
+  public void testNextBatchEntryLimit() throws Exception {
+    TreeMap<Key,Value> data = newData();
+    for (int maxEntries : new int[] {1, 10, 999}) {
+      Batch batch = Tablet.nextBatch(new SortedMapIterator(data), new Range(),
+          newScanParams(maxEntries, 0), Long.MAX_VALUE, () -> {});
+      assertEquals(maxEntries, batch.getResults().size());
+      assertContinues(data, batch);
+    }
+  }
+
+  @Test
+  public void testNextBatchByteLimit() throws Exception {
+    TreeMap<Key,Value> data = newData();
+    Entry<Key,Value> first = data.firstEntry();
+    long entrySize = new KVEntry(first.getKey(), first.getValue()).estimateMemoryUsed();
+
+    // the entry that reaches the limit is the last one returned
+    for (int entries : new int[] {1, 5, 100}) {
+      Batch batch = Tablet.nextBatch(new SortedMapIterator(data), new Range(),
+          newScanParams(Integer.MAX_VALUE, 0), entries * entrySize, () -> {});
+      assertEquals(entries, batch.getResults().size());
+      assertContinues(data, batch);
+    }
+  }
+
+  @Test
+  public void testNextBatchTimeLimit() throws Exception {
+    TreeMap<Key,Value> data = newData();
+    SortedKeyValueIterator<Key,Value> slow = new WrappingIterator() {
+      @Override
+      public void next() throws IOException {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        super.next();
+      }
+    };
+    slow.init(new SortedMapIterator(data), Map.of(), null);
+
+    Batch batch = Tablet.nextBatch(slow, new Range(), newScanParams(Integer.MAX_VALUE, 50),
+        Long.MAX_VALUE, () -> {});
+    assertTrue(batch.getResults().size() < 1000);
+    assertContinues(data, batch);
+  }
 }
@@ -92,6 +92,7 @@ public class MetricsIT extends ConfigurableMacBase implements MetricsProducer {
     expectedMetricNames.remove(METRICS_UPDATE_ERRORS);
     expectedMetricNames.remove(METRICS_REPLICATION_QUEUE);
     expectedMetricNames.remove(METRICS_FATE_TYPE_IN_PROGRESS);
+    expectedMetricNames.remove(METRICS_TSERVER_INDEX_PINNED_BYTES);
 
     try (AccumuloClient client = Accumulo.newClient().from(getClientProperties()).build()) {
       String tableName = this.getClass().getSimpleName();